@@ -37,7 +37,9 @@ import edu.bonn.cs.iv.util.maps.CoordinateTransformation.proj4lib;
 import edu.bonn.cs.iv.util.maps.Route.ClippedRouteInfo;
 import edu.bonn.cs.iv.util.maps.Route.ClippingInfo;
 import edu.bonn.cs.iv.util.maps.osm.OSMGraph;
+import edu.bonn.cs.iv.util.maps.osm.OSMRouter;
 import edu.bonn.cs.iv.util.maps.osm.PBFParser;
+import edu.bonn.cs.iv.util.maps.osm.PBFReader;
 
 /** Base class for map-based models. */
 
@@ -75,6 +77,8 @@ public class MapScenario extends Scenario {
     protected String rsMetric = "Pedestrian";
     /** route service instance */
     protected RouteServiceInterface rsInstance = null;
+    /** route on the OSM input file in-process instead of using the route service */
+    protected boolean embeddedRouting = false;
     /** projection of the scenario area positions */
     protected CoordinateTransformation transformation = new CoordinateTransformation(null, proj4lib.PROJ4J);
     /** OSM input file */
@@ -85,6 +89,18 @@ public class MapScenario extends Scenario {
     protected Vector<Vector<WaypointGeo>> wpGeo = null;
 
     protected String distFile = null;
+    /** distance evaluation output of the route service routes, null if not written */
+    protected PrintWriter distWriter = null;
+    /** distance evaluation lines of every node, written in node order by postGeneration() */
+    protected StringBuilder[] distLines = null;
+    /** file to cache the routes in, null if routes are not cached */
+    protected String routeCache = null;
+    /** number of route requests in flight at the same time */
+    protected int routeThreads = 1;
+    /** requests batches of routes from rsInstance */
+    protected RouteFetcher routeFetcher = null;
+    /** number of threads decoding the OSM input file, 0 reads it with the PBFParser alone */
+    protected int pbfThreads = 0;
 
 	public MapScenario() {}
 	
@@ -255,7 +271,7 @@ public class MapScenario extends Scenario {
         return result;
     }
     
-    protected void updateMinMaxPos(Position posScenario)
+    protected synchronized void updateMinMaxPos(Position posScenario)
     {
 		if (posScenario.x > positionMax.x) {
 			positionMax.x = posScenario.x;
@@ -279,16 +295,28 @@ public class MapScenario extends Scenario {
         BlockInputStream bis = null;
         OSMGraph completeGraph = new OSMGraph();
 		try {
-			input = new FileInputStream(osmFile);
-	        BlockReaderAdapter brad = new PBFParser(completeGraph, null);
-	        bis = new BlockInputStream(input, brad);
-	        bis.process();
-	        bis.close();
+			if (pbfThreads > 0) {
+				new PBFReader(completeGraph, null, pbfThreads).read(osmFile);
+			} else {
+				input = new FileInputStream(osmFile);
+		        BlockReaderAdapter brad = new PBFParser(completeGraph, null);
+		        bis = new BlockInputStream(input, brad);
+		        bis.process();
+		        bis.close();
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.exit(0);
 		}
 		
+		if (embeddedRouting) {
+			// route on the complete graph, routes may leave the bounding box
+			System.out.println("Preparing embedded router...");
+			OSMRouter router = new OSMRouter(completeGraph);
+			System.out.println("done (" + router.numNodes() + " nodes, " + router.numLandmarks() + " landmarks)");
+			rsInstance = router;
+		}
+		
 		osmGraph = completeGraph.createSubGraph(mapBBox);
         System.out.println("Total road network length: " + osmGraph.roadNetworkLength());
     	System.out.println("done");
@@ -433,11 +461,72 @@ public class MapScenario extends Scenario {
         
         wpGeo = new Vector<Vector<WaypointGeo>>(parameterData.nodes.length);
         
-        rsInstance = new OSRoutingMachine(rsURL, distFile);
+        if (embeddedRouting && osmFile == null) {
+            System.out.println("Error: Embedded routing needs an OSM input file!");
+            System.exit(0);
+        }
+        
+        if (!embeddedRouting) {
+        	OSRoutingMachine.setMaxConnections(Math.max(routeThreads, generationThreads));
+        	rsInstance = new OSRoutingMachine(rsURL);
+        	if (distFile != null) {
+        		try {
+        			distWriter = new PrintWriter(new FileOutputStream(distFile));
+        			distLines = new StringBuilder[parameterData.nodes.length];
+        		} catch (FileNotFoundException e) {
+        			e.printStackTrace();
+        		}
+        	}
+        }
         
         if (osmFile != null) {
         	processPBFFile();
         }
+        
+        if (routeCache != null) {
+        	try {
+        		rsInstance = new RouteCache(rsInstance, routeCache, routeServiceIdentity());
+        	} catch (IOException e) {
+        		System.out.println("Error: Opening the route cache \"" + routeCache + "\" failed: " + e.getMessage());
+        		System.exit(0);
+        	}
+        }
+        
+        routeFetcher = new RouteFetcher(rsInstance, routeThreads);
+    }
+    
+    /**
+     * Writes the distance evaluation (-X) of a route that node nodeIndex takes, or of a
+     * route that belongs to no node if nodeIndex < 0. It is called where the route is
+     * used, not in the route service: the lines of a node are kept until postGeneration()
+     * writes them in node order, so the file does not depend on the order in which
+     * concurrent requests complete. Routes the service answered without a route summary
+     * (src and dst map to the same position) are left out, as before.
+     */
+    protected void writeDistance(int nodeIndex, Route route)
+    {
+    	if (distWriter == null || route.distanceRS() < 0) {
+    		return;
+    	}
+    	String line = String.format("%.6f %.6f %.6f %.6f %.2f %.2f %.4f\n", route.src().x(), route.src().y(), route.dst().x(), route.dst().y(), route.flightLength(), route.distanceGeodesic(), route.distanceGeodesic() / route.flightLength());
+    	if (nodeIndex < 0) {
+    		distWriter.print(line);
+    		return;
+    	}
+    	if (distLines[nodeIndex] == null) {
+    		distLines[nodeIndex] = new StringBuilder();
+    	}
+    	distLines[nodeIndex].append(line);
+    }
+    
+    /** @return identity of the map and profile the route service computes routes for */
+    protected String routeServiceIdentity()
+    {
+    	if (embeddedRouting) {
+    		return RouteCache.identity("embedded", osmFile, rsMetric);
+    	} else {
+    		return "osrm:" + ((rsURL == null) ? "default" : rsURL) + ":" + rsMetric;
+    	}
     }
     
     protected void postGeneration()
@@ -511,9 +600,25 @@ public class MapScenario extends Scenario {
         	if (DEBUG) System.out.println("DEBUG: Positions shifted by (" + shiftX + ", " + shiftY + ")");
         }
         
-        // close writer for evaluation
-        if (rsInstance instanceof OSRoutingMachine && ((OSRoutingMachine) rsInstance).distWriter != null) {
-        	((OSRoutingMachine) rsInstance).distWriter.close();
+        routeFetcher.shutdown();
+        
+        if (rsInstance instanceof RouteCache) {
+        	System.out.println(((RouteCache) rsInstance).statistics());
+        	try {
+        		((RouteCache) rsInstance).close();
+        	} catch (IOException e) {
+        		e.printStackTrace();
+        	}
+        }
+        
+        // write and close the distance evaluation
+        if (distWriter != null) {
+        	for (int i = 0; i < distLines.length; i++) {
+        		if (distLines[i] != null) {
+        			distWriter.print(distLines[i]);
+        		}
+        	}
+        	distWriter.close();
         }
 
         super.postGeneration();
@@ -555,13 +660,15 @@ public class MapScenario extends Scenario {
     
 	public void write(String basename, String[] params) throws FileNotFoundException, IOException
 	{
-		String[] p = new String[6];
+		String[] p = new String[8];
         p[0] = "boundingBox=" + mapBBox.ll().x() + " " + mapBBox.ll().y() + " " + mapBBox.ur().x() + " " + mapBBox.ur().y();
         p[1] = "clippingMethod=" + clippingMethod;
         p[2] = "rsMetric=" + rsMetric;
         p[3] = "osmFile=" + osmFile;
         p[4] = "rsURL=" + rsURL;
         p[5] = "distFile=" + distFile;
+        p[6] = "embeddedRouting=" + embeddedRouting;
+        p[7] = "routeCache=" + routeCache;
 		super.writeParametersAndMovement(basename, App.stringArrayConcat(p, params));
 		
         // write to movements.geo file
@@ -626,6 +733,12 @@ public class MapScenario extends Scenario {
         } else if (key.equals("distFile")) {
             distFile = value;
         	return true;
+        } else if (key.equals("embeddedRouting")) {
+            embeddedRouting = Boolean.parseBoolean(value);
+        	return true;
+        } else if (key.equals("routeCache")) {
+            routeCache = value.equals("null") ? null : value;
+        	return true;
         } else {
             return super.parseArg(key, value);
         }
@@ -652,6 +765,15 @@ public class MapScenario extends Scenario {
         		clippingMethod = Integer.parseInt(value);
         		if (DEBUG) System.out.println("DEBUG: clippingMethod = " + clippingMethod);
         		return true;
+            case 'E': // "embedded routing"
+                embeddedRouting = true;
+                return true;
+            case 'I': // "OSM input threads"
+                pbfThreads = Integer.parseInt(value);
+                return true;
+            case 'K': // "route cache file"
+                routeCache = value;
+                return true;
             case 'm': // "route service metric"
                 if (!value.equals("Car") && !value.equals("Pedestrian")) {
                     System.out.println("Warning: rsMetric must be either \"Car\" or \"Pedestrian\"... using default: \""+rsMetric+"\"");
@@ -662,6 +784,9 @@ public class MapScenario extends Scenario {
             case 'o': // "OSM input file"
                 osmFile = value;
                 return true;
+            case 'T': // "route threads"
+                routeThreads = Integer.parseInt(value);
+                return true;
             case 'u': // "route service URL"
                 rsURL = value;
                 return true;
@@ -679,8 +804,12 @@ public class MapScenario extends Scenario {
 		System.out.println("MapScenario:");
         System.out.println("\t-B <left> <bottom> <right> <top>");
         System.out.println("\t-C <clipping method>");
+        System.out.println("\t-E [route on the OSM input file instead of using the route service]");
+        System.out.println("\t-I <number of threads reading the OSM input file, 0 = sequential>");
+        System.out.println("\t-K <route cache file>");
         System.out.println("\t-m <route service metric string>");
         System.out.println("\t-o <OSM (.pbf) input file>");
+        System.out.println("\t-T <number of route requests in flight at the same time (MSLAW)>");
         System.out.println("\t-u <route service URL>");
         System.out.println("\t-X <distance eval filename>");
 	}
@@ -20,6 +20,9 @@
 
 package edu.bonn.cs.iv.bonnmotion;
 
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 import java.util.Vector;
 
 import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
@@ -30,72 +33,92 @@ public class MobileNode {
 	
 	protected static final boolean printAngleStuff = false;
 
+    protected static final int INITIAL_CAPACITY = 8;
+
+    /** Where pairStatistics() and getConnectionTime() print their diagnostics on this thread, null for System.out. */
+    protected static final ThreadLocal<PrintStream> diagnostics = new ThreadLocal<PrintStream>();
+
     /** Times when mobile changes speed or direction. */
     protected double[] changeSpeedOrDirectionTimes = null;
 
-    protected Vector<Waypoint> waypoints = new Vector<Waypoint>();
+    /**
+     * Waypoints, stored column wise: the first waypointCount entries of the arrays hold
+     * time, position and status of the waypoints in increasing time order.
+     */
+    protected int waypointCount = 0;
+    protected double[] wpTime = new double[INITIAL_CAPACITY];
+    protected double[] wpX = new double[INITIAL_CAPACITY];
+    protected double[] wpY = new double[INITIAL_CAPACITY];
+    protected double[] wpZ = new double[INITIAL_CAPACITY];
+    protected double[] wpStatus = new double[INITIAL_CAPACITY];
 	
     /** Move all waypoints by a certain offset. */
     public void shiftPos(double _x, double _y) {
-        for (int i = 0; i < waypoints.size(); i++) {
-            Waypoint oldWP = waypoints.get(i);
-            Waypoint newWP = new Waypoint(oldWP.time, oldWP.pos.newShiftedPosition(_x, _y));
-            waypoints.setElementAt(newWP, i);
+        for (int i = 0; i < waypointCount; i++) {
+            // like Position.newShiftedPosition(), z and status are reset
+            wpX[i] += _x;
+            wpY[i] += _y;
+            wpZ[i] = 0.0;
+            wpStatus[i] = 0.0;
         }
     }
 	
     /** Move all waypoints by a certain offset. */
     public void shiftPos(double _x, double _y, double _z) {
-        for (int i = 0; i < waypoints.size(); i++) {
-            Waypoint oldWP = waypoints.get(i);
-            Waypoint newWP = new Waypoint(oldWP.time, (oldWP.pos).newShiftedPosition(_x, _y, _z));
-            waypoints.setElementAt(newWP, i);
+        for (int i = 0; i < waypointCount; i++) {
+            wpX[i] += _x;
+            wpY[i] += _y;
+            wpZ[i] += _z;
+            wpStatus[i] = 0.0;
         }
     }
 
     public void cut(double begin, double end) {
-        if (waypoints.size() == 0) {
+        if (waypointCount == 0) {
             return;
         }
         changeSpeedOrDirectionTimes = null;
-        Vector<Waypoint> nwp = new Vector<Waypoint>();
-        Waypoint w = null;
+        MobileNode nwp = new MobileNode();
+        int w = -1;
         double oldstatus = 0.0;
-        for (int i = 0; i < waypoints.size(); i++) {
-            Waypoint w2 = waypoints.elementAt(i);
-            if ((w2.time >= begin) && (w2.time <= end)) {
-                w = w2;
-                if (nwp.size() == 0) {
+        for (int i = 0; i < waypointCount; i++) {
+            if ((wpTime[i] >= begin) && (wpTime[i] <= end)) {
+                w = i;
+                if (nwp.waypointCount == 0) {
                     Position hpos = positionAt(begin);
-                    Position bpos = hpos.clone(oldstatus);
-                    nwp.addElement(new Waypoint(0.0, bpos));
-                    if (w.time > begin) {
-                        nwp.addElement(new Waypoint(w.time - begin, w.pos));
+                    nwp.append(0.0, hpos.x, hpos.y, hpos.z, oldstatus);
+                    if (wpTime[w] > begin) {
+                        nwp.append(wpTime[w] - begin, wpX[w], wpY[w], wpZ[w], wpStatus[w]);
                     }
                 }
                 else
-                    nwp.addElement(new Waypoint(w.time - begin, w.pos));
+                    nwp.append(wpTime[w] - begin, wpX[w], wpY[w], wpZ[w], wpStatus[w]);
             }
-            if (w2.pos.status == 2.0) {
+            if (wpStatus[i] == 2.0) {
                 oldstatus = 2.0;
             }
-            else if (w2.pos.status == 1.0) {
+            else if (wpStatus[i] == 1.0) {
                 oldstatus = 0.0;
             }
         }
-        if (w == null) { // no waypoints with the given time span
-            Waypoint start = new Waypoint(0.0, positionAt(begin));
-            Waypoint stop = new Waypoint(end - begin, positionAt(end));
-            nwp.addElement(start);
-            if (!start.pos.equals(stop.pos))
-                nwp.addElement(stop);
+        if (w < 0) { // no waypoints with the given time span
+            Position start = positionAt(begin);
+            Position stop = positionAt(end);
+            nwp.append(0.0, start.x, start.y, start.z, start.status);
+            if (!start.equals(stop))
+                nwp.append(end - begin, stop.x, stop.y, stop.z, stop.status);
         }
-        else if (w.time < end) {
+        else if (wpTime[w] < end) {
             Position epos = positionAt(end);
-            if (!epos.equals(w.pos))
-                nwp.addElement(new Waypoint(end - begin, epos));
+            if (!samePosition(w, epos.x, epos.y, epos.z))
+                nwp.append(end - begin, epos.x, epos.y, epos.z, epos.status);
         }
-        waypoints = nwp;
+        waypointCount = nwp.waypointCount;
+        wpTime = nwp.wpTime;
+        wpX = nwp.wpX;
+        wpY = nwp.wpY;
+        wpZ = nwp.wpZ;
+        wpStatus = nwp.wpStatus;
     }
     
     
@@ -107,194 +130,354 @@ public class MobileNode {
      */
     public boolean add(double _time, Position _newPosition) {
         changeSpeedOrDirectionTimes = null;
-        int waypointCount = waypoints.size() - 1;
-
-        Waypoint newWaypoint = new Waypoint(_time, _newPosition);
+        int index = waypointCount - 1;
 
-        while (waypointCount >= 0) {
-            Waypoint previousWaypoint = waypoints.elementAt(waypointCount);
-            if (_time > previousWaypoint.time) {
-                waypoints.insertElementAt(newWaypoint, waypointCount + 1);
-                return true;
+        while (index >= 0) {
+            if (_time > wpTime[index]) {
+                break;
             }
-            else if (_time == previousWaypoint.time) {
-                return sameWaypointAndTime(previousWaypoint, newWaypoint);
+            else if (_time == wpTime[index]) {
+                return samePosition(index, _newPosition.x, _newPosition.y, _newPosition.z);
             }
             else {
-                waypointCount--;
                 System.err.println("warning: MobileNode: trying to insert waypoint in the past <1>.");
-                System.err.println("w.time: " + previousWaypoint.time + " time: " + _time);
+                System.err.println("w.time: " + wpTime[index] + " time: " + _time);
+                index--;
             }
         }
 
-        waypoints.insertElementAt(newWaypoint, 0);
+        insert(index + 1, _time, _newPosition.x, _newPosition.y, _newPosition.z, _newPosition.status);
         return true;
     }
-    
-    protected boolean sameWaypointAndTime(Waypoint _A, Waypoint _B) {
-        if (_A.time != _B.time)
-            return false;
-        if (!_A.pos.equals(_B.pos))
-            return false;
-        return true;
+
+    /**
+     * Creates a node from waypoint columns in increasing time order, e.g. as read from a
+     * BinaryMovementFile. The arrays are taken over without copying. Columns that are not
+     * strictly increasing in time are inserted with add() instead.
+     */
+    public static MobileNode fromColumns(double[] time, double[] x, double[] y, double[] z, double[] status) {
+        MobileNode node = new MobileNode();
+        for (int i = 1; i < time.length; i++) {
+            if (!(time[i] > time[i - 1])) {
+                for (int k = 0; k < time.length; k++) {
+                    if (!node.add(time[k], new Position(x[k], y[k], z[k], status[k]))) {
+                        throw new RuntimeException("Error while adding waypoint.");
+                    }
+                }
+                return node;
+            }
+        }
+        node.waypointCount = time.length;
+        node.wpTime = time;
+        node.wpX = x;
+        node.wpY = y;
+        node.wpZ = z;
+        node.wpStatus = status;
+        return node;
+    }
+
+    /** Appends a waypoint without any checks. */
+    protected void append(double _time, double _x, double _y, double _z, double _status) {
+        insert(waypointCount, _time, _x, _y, _z, _status);
+    }
+
+    protected void insert(int index, double _time, double _x, double _y, double _z, double _status) {
+        if (waypointCount == wpTime.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, waypointCount + (waypointCount >> 1));
+            wpTime = Arrays.copyOf(wpTime, capacity);
+            wpX = Arrays.copyOf(wpX, capacity);
+            wpY = Arrays.copyOf(wpY, capacity);
+            wpZ = Arrays.copyOf(wpZ, capacity);
+            wpStatus = Arrays.copyOf(wpStatus, capacity);
+        }
+        int move = waypointCount - index;
+        if (move > 0) {
+            System.arraycopy(wpTime, index, wpTime, index + 1, move);
+            System.arraycopy(wpX, index, wpX, index + 1, move);
+            System.arraycopy(wpY, index, wpY, index + 1, move);
+            System.arraycopy(wpZ, index, wpZ, index + 1, move);
+            System.arraycopy(wpStatus, index, wpStatus, index + 1, move);
+        }
+        wpTime[index] = _time;
+        wpX[index] = _x;
+        wpY[index] = _y;
+        wpZ[index] = _z;
+        wpStatus[index] = _status;
+        waypointCount++;
+    }
+
+    /** @return true if waypoint idx is at the given coordinates (see Position.equals()) */
+    protected boolean samePosition(int idx, double _x, double _y, double _z) {
+        return (wpX[idx] == _x) && (wpY[idx] == _y) && (wpZ[idx] == _z);
     }
 	
     public void addWaypointsOfOtherNode(MobileNode _node) {
         double timeOffset = 0;
 
-        if (waypoints.size() > 0) {
-            timeOffset = waypoints.lastElement().time + 0.0001; // Otherwise same
-                                                                            // timestamp for 2
-                                                                            // positions
+        if (waypointCount > 0) {
+            timeOffset = wpTime[waypointCount - 1] + 0.0001; // Otherwise same
+                                                            // timestamp for 2
+                                                            // positions
         }
 
-        for (int i = 0; i < _node.waypoints.size(); i++) {
-            Waypoint next = _node.waypoints.get(i);
-            waypoints.add(new Waypoint(next.time + timeOffset, next.pos));
+        for (int i = 0; i < _node.waypointCount; i++) {
+            append(_node.wpTime[i] + timeOffset, _node.wpX[i], _node.wpY[i], _node.wpZ[i], _node.wpStatus[i]);
         }
+        changeSpeedOrDirectionTimes = null;
     }
     
     /** Remove the latest waypoint (last in the internal list). */
     public void removeLastElement() {
-        waypoints.remove(waypoints.lastElement());
+        if (waypointCount == 0) {
+            throw new NoSuchElementException();
+        }
+        waypointCount--;
+        changeSpeedOrDirectionTimes = null;
     }
     
     /** @return the latest waypoint (last in the internal list). */
     public Waypoint getLastWaypoint() {
-        return waypoints.lastElement();
+        if (waypointCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return getWaypoint(waypointCount - 1);
     }
 
     /** @return the number of waypoints */
     public int getNumWaypoints() {
-        return waypoints.size();
+        return waypointCount;
     }
     
+    /** @return copy of the waypoints, changing it does not change the node */
     public Vector<Waypoint> getWaypoints() {
-    	return waypoints;
+        Vector<Waypoint> result = new Vector<Waypoint>(waypointCount);
+        for (int i = 0; i < waypointCount; i++) {
+            result.addElement(getWaypoint(i));
+        }
+        return result;
     }
     
     public Waypoint getWaypoint(int idx) {
-        try {
-            return waypoints.elementAt(idx);
-        }
-        catch (ArrayIndexOutOfBoundsException e) {
-            System.err.println("Fatal error: Requested not existing waypoint: " + e.getLocalizedMessage());
+        if (idx < 0 || idx >= waypointCount) {
+            System.err.println("Fatal error: Requested not existing waypoint: " + idx);
             System.exit(-1);
             return null;
         }
+        return new Waypoint(wpTime[idx], new Position(wpX[idx], wpY[idx], wpZ[idx], wpStatus[idx]));
+    }
+
+    /** @return time of waypoint idx */
+    public double getWaypointTime(int idx) {
+        return wpTime[idx];
+    }
+
+    public double getWaypointX(int idx) {
+        return wpX[idx];
+    }
+
+    public double getWaypointY(int idx) {
+        return wpY[idx];
+    }
+
+    public double getWaypointZ(int idx) {
+        return wpZ[idx];
+    }
+
+    public double getWaypointStatus(int idx) {
+        return wpStatus[idx];
     }
     
     /** @return Array with times when this mobile changes speed or direction. */
     public double[] changeTimes() {
-        if (changeSpeedOrDirectionTimes == null) {
-            changeSpeedOrDirectionTimes = new double[waypoints.size()];
-            for (int i = 0; i < changeSpeedOrDirectionTimes.length; i++) {
-                changeSpeedOrDirectionTimes[i] = waypoints.elementAt(i).time;
-            }
+        double[] result = changeSpeedOrDirectionTimes;
+        if (result == null) {
+            // fill a local array first, the cache may be read by other threads
+            result = Arrays.copyOf(wpTime, waypointCount);
+            changeSpeedOrDirectionTimes = result;
         }
-        return changeSpeedOrDirectionTimes;
+        return result;
     }
     
     
     public String movementString(Dimension dim) {
-        StringBuffer sb = new StringBuffer(100 * waypoints.size());
-        for (int i = 0; i < waypoints.size(); i++) {
-            Waypoint w = waypoints.elementAt(i);
+        StringBuffer sb = new StringBuffer(100 * waypointCount);
+        for (int i = 0; i < waypointCount; i++) {
+            sb.append(" ");
+            sb.append(wpTime[i]);
             sb.append(" ");
-            sb.append(w.getMovementStringPart(dim));
+            sb.append(wpX[i]);
+            sb.append(" ");
+            sb.append(wpY[i]);
+            if (dim == Dimension.THREED) {
+                sb.append(" ");
+                sb.append(wpZ[i]);
+            }
         }
         sb.deleteCharAt(0);
         return sb.toString();
     }
 
     public String placementStringGlomo(String id) {
-        Waypoint w = waypoints.elementAt(0);
-        Position p = w.pos;
-        return id + " 0S (" + p.x + ", " + p.y + ", " + p.z + ")";
+        return id + " 0S (" + wpX[0] + ", " + wpY[0] + ", " + wpZ[0] + ")";
     }
 
     public String[] movementStringGlomo(String id) {
-        String[] r = new String[waypoints.size() - 1];
-        for (int i = 1; i < waypoints.size(); i++) {
-            Waypoint w = waypoints.elementAt(i);
-            Position p = w.pos;
-            r[i - 1] = id + " " + w.time + "S (" + p.x + ", " + p.y + ", " + p.z + ")";
+        String[] r = new String[waypointCount - 1];
+        for (int i = 1; i < waypointCount; i++) {
+            r[i - 1] = id + " " + wpTime[i] + "S (" + wpX[i] + ", " + wpY[i] + ", " + wpZ[i] + ")";
         }
         return r;
     }
     
-    
-    protected Position positionAt_old(double time) {
-        Position p1 = null;
-        double t1 = 0.0;
-        for (int i = 0; i < waypoints.size(); i++) {
-            Waypoint w = waypoints.elementAt(i);
-            if (w.time == time) {
-                return w.pos;
-            }
-            else if (w.time > time) {
-                if ((p1 == null) || p1.equals(w.pos))
-                    return w.pos;
-                else {
-                    double weight = (time - t1) / (w.time - t1);
-                    
-                    return p1.getWeightenedPosition(w.pos, weight);
-                }
-            }
-            p1 = w.pos;
-            t1 = w.time;
+    /** @return Position of this mobile at a given time, null if there are no waypoints. */
+    public Position positionAt(double time) {
+        if (waypointCount == 0) {
+            return null;
         }
-        return p1;
+        double[] p = new double[4];
+        positionAt(time, p);
+        return new Position(p[0], p[1], p[2], p[3]);
     }
-    
-    /** @return Position of this mobile at a given time. */
-    public Position positionAt(double time) {
-        int begin = 0;
-        int end = waypoints.size() - 1;
 
-        if (end < 2) { // there are up to two waypoints, then call the linear search (old
-                       // positionAt() function)
-            return positionAt_old(time);
+    /**
+     * Position of this mobile at a given time without creating objects.
+     * @param result receives x, y, z and status, unchanged if there are no waypoints
+     */
+    public void positionAt(double time, double[] result) {
+        if (waypointCount <= 2) {
+            // linear search for up to two waypoints
+            for (int i = 0; i < waypointCount; i++) {
+                if (wpTime[i] == time) {
+                    copyWaypoint(i, result);
+                    return;
+                }
+                else if (wpTime[i] > time) {
+                    if ((i == 0) || samePosition(i - 1, wpX[i], wpY[i], wpZ[i])) {
+                        copyWaypoint(i, result);
+                    }
+                    else {
+                        interpolate(i - 1, i, (time - wpTime[i - 1]) / (wpTime[i] - wpTime[i - 1]), result);
+                    }
+                    return;
+                }
+            }
+            if (waypointCount > 0) {
+                copyWaypoint(waypointCount - 1, result);
+            }
+            return;
         }
 
         // check initial conditions: out of range [begin,end]
-        Waypoint firstWaypoint = waypoints.firstElement();
-        Waypoint lastWaypoint = waypoints.lastElement();
-        if (time < firstWaypoint.time)
-            return firstWaypoint.pos;
-        else if (time > lastWaypoint.time)
-            return lastWaypoint.pos;
-        else
-            return binarySearch(begin, end, time);
-    }
-
-    protected Position binarySearch(int i, int j, double time) {
-        int median = (i + j) / 2;
-        Waypoint w = waypoints.elementAt(median);
-        if (i + 1 == j) { // waypoint not found in waypoint list
-            Waypoint w_i = waypoints.elementAt(i);
-            Waypoint w_j = waypoints.elementAt(j);
-
-            double weight = (time - w_i.time) / (w_j.time - w_i.time);
-            
-            // if positions of surrounding waypoints are equal => no movement at time
-            // just return position
-            if (w_i.pos.equals(w_j.pos)) {
-                return new Position(w_i.pos.x, w_i.pos.y, w_i.pos.z, w_i.pos.status);
+        if (time < wpTime[0]) {
+            copyWaypoint(0, result);
+            return;
+        }
+        else if (time > wpTime[waypointCount - 1]) {
+            copyWaypoint(waypointCount - 1, result);
+            return;
+        }
+
+        int i = 0;
+        int j = waypointCount - 1;
+        while (i + 1 != j) {
+            int median = (i + j) / 2;
+            if (time == wpTime[median]) { // waypoint found
+                copyWaypoint(median, result);
+                return;
             }
-            
-            return w_i.pos.getWeightenedPosition(w_j.pos, weight);
+            else if (time < wpTime[median]) {
+                j = median;
+            }
+            else {
+                i = median;
+            }
+        }
+        // if positions of surrounding waypoints are equal => no movement at time
+        if (samePosition(i, wpX[j], wpY[j], wpZ[j])) {
+            copyWaypoint(i, result);
         }
         else {
-            if (time == w.time) { // waypoint found
-                return w.pos;
+            interpolate(i, j, (time - wpTime[i]) / (wpTime[j] - wpTime[i]), result);
+        }
+    }
+
+    protected void copyWaypoint(int idx, double[] result) {
+        result[0] = wpX[idx];
+        result[1] = wpY[idx];
+        result[2] = wpZ[idx];
+        result[3] = wpStatus[idx];
+    }
+
+    /** Same arithmetic as Position.getWeightenedPosition(). */
+    protected void interpolate(int i, int j, double weight, double[] result) {
+        result[0] = wpX[i] * (1 - weight) + wpX[j] * weight;
+        result[1] = wpY[i] * (1 - weight) + wpY[j] * weight;
+        result[2] = wpZ[i] * (1 - weight) + wpZ[j] * weight;
+        result[3] = wpStatus[i];
+    }
+
+    /** @return a new cursor for reading the positions of this node at increasing times */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads positions of the node for a sequence of non-decreasing times. The cursor
+     * remembers the current segment, so that advancing to the next time costs amortized
+     * O(1) and does not create objects. The results are the same as those of positionAt().
+     * Going back in time is allowed, but then the segment is searched again.
+     */
+    public class Cursor {
+        /** Position at the time of the last call of advanceTo(). */
+        public double x, y, z, status;
+
+        /** index of the last waypoint not after time, -1 before the first waypoint */
+        protected int segment = -1;
+        protected double time = Double.NEGATIVE_INFINITY;
+        protected final double[] p = new double[4];
+
+        protected Cursor() {
+        }
+
+        /** Moves the cursor to the given time and updates x, y, z and status. */
+        public Cursor advanceTo(double _time) {
+            if (_time < time) {
+                segment = -1;
+            }
+            time = _time;
+            while ((segment + 1 < waypointCount) && (wpTime[segment + 1] <= _time)) {
+                segment++;
+            }
+
+            if ((waypointCount <= 2) || (segment < 0) || (segment == waypointCount - 1) || (wpTime[segment] == _time)) {
+                // outside of the waypoints or exactly at one of them: positionAt() is cheap
+                // there and decides which waypoint is returned
+                positionAt(_time, p);
             }
-            else if (time < w.time) { // left recursion
-                return binarySearch(i, median, time);
+            else if (samePosition(segment, wpX[segment + 1], wpY[segment + 1], wpZ[segment + 1])) {
+                copyWaypoint(segment, p);
             }
-            else { // right recursion
-                return binarySearch(median, j, time);
+            else {
+                interpolate(segment, segment + 1, (_time - wpTime[segment]) / (wpTime[segment + 1] - wpTime[segment]), p);
             }
+            x = p[0];
+            y = p[1];
+            z = p[2];
+            status = p[3];
+            return this;
+        }
+
+        /** @return distance to the current position of another cursor, like Position.distance() */
+        public double distance(Cursor c) {
+            double deltaX = c.x - x;
+            double deltaY = c.y - y;
+            double deltaZ = c.z - z;
+            return Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
+        }
+
+        /** @return the current position as a new object */
+        public Position position() {
+            return new Position(x, y, z, status);
         }
     }
 
@@ -339,38 +522,77 @@ public class MobileNode {
         return true;
     }
 
+    /**
+     * Redirects the diagnostics of pairStatistics() and getConnectionTime() on the current
+     * thread, so that callers evaluating pairs on several threads can print them in order.
+     * @param out the stream for the diagnostics, null for System.out
+     */
+    public static void setDiagnostics(PrintStream out) {
+        diagnostics.set(out);
+    }
+
+    protected static PrintStream diagnostics() {
+        PrintStream out = diagnostics.get();
+        return (out == null) ? System.out : out;
+    }
+
     public static double[] pairStatistics(MobileNode node1, MobileNode node2, double start, double duration, double range,
             boolean calculateMobility, Dimension dim) {
         return pairStatistics(node1, node2, start, duration, range, calculateMobility, new Building[0], dim);
     }
     
 
-    public static double[] pairStatistics(MobileNode _node1, MobileNode _node2, double start, double duration, double range,
+    public static double[] pairStatistics(MobileNode node1, MobileNode node2, double start, double duration, double range,
+            boolean calculateMobility, Building[] buildings, Dimension dim) {
+        return pairStatistics(node1, node2, start, duration, new double[] {range}, calculateMobility, buildings, dim)[0];
+    }
+
+    /**
+     * pairStatistics() for several transmission ranges at once. The positions and the relative
+     * motion of both nodes are computed once per segment, only the link changes and the range
+     * dependent statistics are evaluated for every range.
+     * @return one result per range, the same as pairStatistics() with this range
+     */
+    public static double[][] pairStatistics(MobileNode _node1, MobileNode _node2, double start, double duration, double[] ranges,
             boolean calculateMobility, Building[] buildings, Dimension dim) {
+        PrintStream out = diagnostics();
         MobileNode node1 = _node1;
         MobileNode node2 = _node2;
         double[] ch1 = node1.changeTimes();
         double[] ch2 = node2.changeTimes();
+        final int rc = ranges.length;
+        double maxRange = 0.0;
+        for (int r = 0; r < rc; r++) {
+            maxRange = Math.max(maxRange, ranges[r]);
+        }
 
         // ### wenn einer der beiden Knoten ausgeschaltet ist, ist der Link down
 
-        Vector<Double> changes = new Vector<Double>();
+        // positions as x, y, z, status, see positionAt(double, double[])
+        double[][] changes = new double[rc][16];
+        int[] changeCount = new int[rc];
         int i1 = 0;
         int i2 = 0;
         double t0 = start;
-        Position o1 = node1.positionAt(start);
-        Position o2 = node2.positionAt(start);
+        double[] o1 = new double[4];
+        double[] o2 = new double[4];
+        double[] n1 = new double[4];
+        double[] n2 = new double[4];
+        double[] in1 = new double[4];
+        double[] in2 = new double[4];
+        node1.positionAt(start, o1);
+        node2.positionAt(start, o2);
 
         double mobility = 0.0;
         double on_time = 0.0;
-        double D_spatial = 0.0;
-        int D_spatial_count = 0;
-        boolean connected = false;
+        double[] D_spatial = new double[rc];
+        int[] D_spatial_count = new int[rc];
+        boolean[] connected = new boolean[rc];
         boolean nodes_on_before = false;
 
         // For average relative speed metric
-        double Relative_speed = 0.0;
-        int Relative_speed_count = 0;
+        double[] Relative_speed = new double[rc];
+        int[] Relative_speed_count = new int[rc];
 
         while (t0 < duration) {
             double t1;
@@ -391,31 +613,21 @@ public class MobileNode {
             }
             
             if (t1 > t0) {
-                Position n1 = node1.positionAt(t1);
-                Position n2 = node2.positionAt(t1);
-                boolean conn_t0 = ((o1.distance(o2) <= range) && (sameBuilding(buildings, o1, o2, dim)));
-                boolean conn_t1 = ((n1.distance(n2) <= range) && (sameBuilding(buildings, n1, n2, dim)));
-                boolean nodes_on = ((o1.status != 2) && (o2.status != 2));
-                if ((!connected) && conn_t0 && nodes_on) {
-                    // either we just started, or some floating point op went wrong in the last
-                    // epoch.
-                    changes.addElement(new Double(t0));
-                    connected = true;
-                    if ((t0 != start) && nodes_on_before)
-                        System.out.println("MobileNode.pairStatistics: fp correction 1: connect at " + t0);
-                }
-                if (connected && conn_t0 && (!nodes_on)) {
-                    changes.addElement(new Double(t0));
-                    connected = false;
-                }
+                node1.positionAt(t1, n1);
+                node2.positionAt(t1, n2);
+                final double dist_t0 = distance(o1, o2);
+                final double dist_t1 = distance(n1, n2);
+                final boolean same_t0 = sameBuilding(buildings, o1, o2, dim);
+                final boolean same_t1 = sameBuilding(buildings, n1, n2, dim);
+                boolean nodes_on = ((o1[3] != 2) && (o2[3] != 2));
 
                 double dt = t1 - t0; // time
-                double dxo = o1.x - o2.x; // distance x at t0
-                double dxn = n1.x - n2.x; // distance x at t1
-                double dyo = o1.y - o2.y; // distance y at t0
-                double dyn = n1.y - n2.y; // distance y at t1
-                double dzo = o1.z - o2.z; // distance z at t0
-                double dzn = n1.z - n2.z; // distance z at t1
+                double dxo = o1[0] - o2[0]; // distance x at t0
+                double dxn = n1[0] - n2[0]; // distance x at t1
+                double dyo = o1[1] - o2[1]; // distance y at t0
+                double dyn = n1[1] - n2[1]; // distance y at t1
+                double dzo = o1[2] - o2[2]; // distance z at t0
+                double dzn = n1[2] - n2[2]; // distance z at t1
                 double c1 = (dxn - dxo) / dt;
                 double c0 = (dxo * t1 - dxn * t0) / dt;
                 double d1 = (dyn - dyo) / dt;
@@ -423,38 +635,42 @@ public class MobileNode {
                 double e1 = (dzn - dzo) / dt;
                 double e0 = (dzo * t1 - dzn * t0) / dt;
 
-                // calculate degree of spatial dependence
-                if (o1.distance(o2) < 2 * range) {
-                    Position v_i = Position.diff(o1, n1);
-                    Position v_j = Position.diff(o2, n2);
-                    double s_i = Math.sqrt(Position.scalarProduct(v_i, v_i));
-                    double s_j = Math.sqrt(Position.scalarProduct(v_j, v_j));
+                // degree of spatial dependence and relative speed, counted for the ranges
+                // with dist_t0 < 2 * range
+                double spatial = 0.0;
+                boolean spatialCounts = false;
+                double RS = 0.0;
+                if (dist_t0 < 2 * maxRange) {
+                    double v_ix = n1[0] - o1[0];
+                    double v_iy = n1[1] - o1[1];
+                    double v_iz = n1[2] - o1[2];
+                    double v_jx = n2[0] - o2[0];
+                    double v_jy = n2[1] - o2[1];
+                    double v_jz = n2[2] - o2[2];
+                    double s_i = Math.sqrt(v_ix * v_ix + v_iy * v_iy + v_iz * v_iz);
+                    double s_j = Math.sqrt(v_jx * v_jx + v_jy * v_jy + v_jz * v_jz);
                     if (s_i > 0.0 && s_j > 0.0) {
-                        double RD = Position.scalarProduct(v_i, v_j) / (s_i * s_j);
+                        double RD = (v_ix * v_jx + v_iy * v_jy + v_iz * v_jz) / (s_i * s_j);
                         double SR = s_i > s_j ? (s_j / s_i) : (s_i / s_j);
-                        D_spatial += RD * SR;
-                        if (RD * SR != 0.0) {
-                            D_spatial_count++;
-                        }
+                        spatial = RD * SR;
+                        spatialCounts = true;
                     }
 
                     // calculate the relative speed
-                    Position relative_vector = Position.diff(v_i, v_j);
-                    double RS = relative_vector.norm();
-
-                    if (Math.abs(RS) > 0.0000001) {
-                        Relative_speed += RS;
-                        Relative_speed_count++;
-                    }
-
+                    double r_x = v_jx - v_ix;
+                    double r_y = v_jy - v_iy;
+                    double r_z = v_jz - v_iz;
+                    RS = Math.sqrt(r_x * r_x + r_y * r_y + r_z * r_z);
                 }
 
                 if (nodes_on) {
                     on_time = on_time + dt;
                 }
 
-                if ((c1 != 0.0) || (d1 != 0.0) || e1 != 0.0) { // we have relative movement
-                    double m = -1.0 * (c0 * c1 + d0 * d1 + e0 * e1) / (c1 * c1 + d1 * d1 + e1 * e1);
+                boolean moving = (c1 != 0.0) || (d1 != 0.0) || e1 != 0.0; // we have relative movement
+                double m = 0.0;
+                if (moving) {
+                    m = -1.0 * (c0 * c1 + d0 * d1 + e0 * e1) / (c1 * c1 + d1 * d1 + e1 * e1);
                     // calculate relative mobility
                     double relmob = 0.0;
                     if ((calculateMobility || printAngleStuff) && nodes_on) {
@@ -463,9 +679,9 @@ public class MobileNode {
                         if ((m > t0) && (m < t1)) {
                             // at t0, nodes were losing distance to each other, but at t1, they are
                             // gaining distance again
-                            Position in1 = node1.positionAt(m);
-                            Position in2 = node2.positionAt(m);
-                            double dInt = in2.distance(in1);
+                            node1.positionAt(m, in1);
+                            node2.positionAt(m, in2);
+                            double dInt = distance(in2, in1);
                             relmob = (Math.abs(dInt - dOld) + Math.abs(dNew - dInt)) / dt;
                         }
                         else {
@@ -473,139 +689,191 @@ public class MobileNode {
                         }
                         mobility += relmob;
                     }
+                }
+
+                for (int r = 0; r < rc; r++) {
+                    final double range = ranges[r];
+                    boolean conn_t0 = ((dist_t0 <= range) && same_t0);
+                    if ((!connected[r]) && conn_t0 && nodes_on) {
+                        // either we just started, or some floating point op went wrong in the last
+                        // epoch.
+                        changes[r] = addChange(changes[r], changeCount[r]++, t0);
+                        connected[r] = true;
+                        if ((t0 != start) && nodes_on_before)
+                            out.println("MobileNode.pairStatistics: fp correction 1: connect at " + t0);
+                    }
+                    if (connected[r] && conn_t0 && (!nodes_on)) {
+                        changes[r] = addChange(changes[r], changeCount[r]++, t0);
+                        connected[r] = false;
+                    }
 
-                    double m2 = m * m;
-                    double q = (c0 * c0 + d0 * d0 + e0 * e0 - range * range) / (c1 * c1 + d1 * d1 + e1 * e1);
-                    if (m2 - q > 0.0) {
-                        double d = Math.sqrt(m2 - q);
-                        double min = m - d;
-                        double max = m + d;
-
-                        if ((min >= t0) && (min <= t1) && sameBuilding(buildings, o1, o2, dim)) {
-                            if (d < 0.01) {
-                                System.out.println("---------------");
-                                System.out.println("MobileNode.pairStatistics: The time span these 2 nodes are in range seems very");
-                                System.out.println("  short. Might this be an error or a bad choice of parameters?");
-                                System.out.println("o1=" + o1);
-                                System.out.println("n1=" + n1);
-                                System.out.println("o2=" + o2);
-                                System.out.println("n2=" + n2);
-                                System.out.println("[" + t0 + ";" + t1 + "]:[" + m + "-" + d + "=" + min + ";" + m + "+" + d + "=" + max
-                                        + "]");
-                                System.out.println("---------------");
+                    if (dist_t0 < 2 * range) {
+                        if (spatialCounts) {
+                            D_spatial[r] += spatial;
+                            if (spatial != 0.0) {
+                                D_spatial_count[r]++;
                             }
-                            if (nodes_on) {
-                                if (!connected) {
-                                    changes.addElement(new Double(min));
-                                    connected = true;
+                        }
+                        if (Math.abs(RS) > 0.0000001) {
+                            Relative_speed[r] += RS;
+                            Relative_speed_count[r]++;
+                        }
+                    }
+
+                    if (moving) {
+                        double m2 = m * m;
+                        double q = (c0 * c0 + d0 * d0 + e0 * e0 - range * range) / (c1 * c1 + d1 * d1 + e1 * e1);
+                        if (m2 - q > 0.0) {
+                            double d = Math.sqrt(m2 - q);
+                            double min = m - d;
+                            double max = m + d;
+
+                            if ((min >= t0) && (min <= t1) && same_t0) {
+                                if (d < 0.01) {
+                                    out.println("---------------");
+                                    out.println("MobileNode.pairStatistics: The time span these 2 nodes are in range seems very");
+                                    out.println("  short. Might this be an error or a bad choice of parameters?");
+                                    out.println("o1=" + toPosition(o1));
+                                    out.println("n1=" + toPosition(n1));
+                                    out.println("o2=" + toPosition(o2));
+                                    out.println("n2=" + toPosition(n2));
+                                    out.println("[" + t0 + ";" + t1 + "]:[" + m + "-" + d + "=" + min + ";" + m + "+" + d + "=" + max
+                                            + "]");
+                                    out.println("---------------");
                                 }
-                                else if (min - t0 > 0.001) {
-                                    System.out.println("MobileNode.pairStatistics: sanity check failed (1)");
-                                    System.exit(0);
+                                if (nodes_on) {
+                                    if (!connected[r]) {
+                                        changes[r] = addChange(changes[r], changeCount[r]++, min);
+                                        connected[r] = true;
+                                    }
+                                    else if (min - t0 > 0.001) {
+                                        throw new RuntimeException("MobileNode.pairStatistics: sanity check failed (1)");
+                                    }
+                                    else{
+                                        out.println("MobileNode.pairStatistics: connect too late: t=" + min + " t0=" + t0);
+                                    }
                                 }
-                                else{
-                                    System.out.println("MobileNode.pairStatistics: connect too late: t=" + min + " t0=" + t0);
+                                if (printAngleStuff) {
+                                    Position meet1 = node1.positionAt(min);
+                                    Position meet2 = node2.positionAt(min);
+                                    Position axis = Position.diff(meet1, meet2);
+                                    Position mov1 = Position.diff(toPosition(o1), toPosition(n1));
+                                    Position mov2 = Position.diff(toPosition(o2), toPosition(n2));
+                                    Position movd = Position.diff(mov2, mov1);
+
+                                    double v_delta = movd.norm() / dt;
+                                    double phi_a = Position.angle2(axis, mov1);
+                                    double phi_b = Position.angle2(axis, mov2);
+                                    double phi_delta = Position.angle2(axis, movd);
+
+                                    out.println("phi_a=" + phi_a + " phi_b=" + phi_b + " phi_delta=" + phi_delta + " v_delta=" + v_delta);
                                 }
                             }
-                            if (printAngleStuff) {
-                                Position meet1 = node1.positionAt(min);
-                                Position meet2 = node2.positionAt(min);
-                                Position axis = Position.diff(meet1, meet2);
-                                Position mov1 = Position.diff(o1, n1);
-                                Position mov2 = Position.diff(o2, n2);
-                                Position movd = Position.diff(mov2, mov1);
-
-                                double v_delta = movd.norm() / dt;
-                                double phi_a = Position.angle2(axis, mov1);
-                                double phi_b = Position.angle2(axis, mov2);
-                                double phi_delta = Position.angle2(axis, movd);
-
-                                System.out
-                                        .println("phi_a=" + phi_a + " phi_b=" + phi_b + " phi_delta=" + phi_delta + " v_delta=" + v_delta);
+                            if ((max >= t0) && (max <= t1) && same_t0) {
+                                if (nodes_on) // if not on, it was done before
+                                    if (connected[r]) {
+                                        changes[r] = addChange(changes[r], changeCount[r]++, max);
+                                        connected[r] = false;
+                                    }
+                                    else if (t0 - min < 0.001 && max - t0 > 0.001) { // MS: contact starts just before t0 but boolean says unconnected -> fp error?!
+                                        changes[r] = addChange(changes[r], changeCount[r]++, t0);
+                                        changes[r] = addChange(changes[r], changeCount[r]++, max);
+                                    }
+                                    else if (max - t0 > 0.001) {
+                                        out.println("t0: " + t0 + ", t1: " + t1);
+                                        out.println("min: " + min + ", d: " + d + ", max: " + max);
+                                        out.println("last disconnect at " + changes[r][changeCount[r] - 1]);
+                                        out.println("n1 (t0): " + node1.positionAt(t0).toString() + ", n2 (t0): " + node2.positionAt(t0).toString());
+                                        out.println("dist: " + node1.positionAt(t0).distance(node2.positionAt(t0)));
+                                        out.println("n1 (t1): " + node1.positionAt(t1).toString() + ", n2 (t1): " + node2.positionAt(t1).toString());
+                                        out.println("dist: " + node1.positionAt(t1).distance(node2.positionAt(t1)));
+                                        throw new RuntimeException("MobileNode.pairStatistics: sanity check failed (2)");
+                                    }
+                                    else {
+                                        out.println("MobileNode.pairStatistics: disconnect too late: t=" + max + " t0=" + t0);
+                                    }
                             }
                         }
-                        if ((max >= t0) && (max <= t1) && (sameBuilding(buildings, o1, o2, dim))) {
-                            if (nodes_on) // if not on, it was done before
-                                if (connected) {
-                                    changes.addElement(new Double(max));
-                                    connected = false;
-                                }
-                                else if (t0 - min < 0.001 && max - t0 > 0.001) { // MS: contact starts just before t0 but boolean says unconnected -> fp error?!
-//                                	if (!changes.isEmpty()){
-//                                		assert(t0 - changes.lastElement() > 0.001);
-//                                	}
-                                	changes.addElement(new Double(t0));
-                                	changes.addElement(new Double(max));
-                                }
-                                else if (max - t0 > 0.001) {
-                                	System.out.println("MobileNode.pairStatistics: sanity check failed (2)");
-                                    System.out.println("t0: " + t0 + ", t1: " + t1);
-                                    System.out.println("min: " + min + ", d: " + d + ", max: " + max);
-                                    System.out.println("last disconnect at " + changes.lastElement());
-                                    System.out.println("n1 (t0): " + node1.positionAt(t0).toString() + ", n2 (t0): " + node2.positionAt(t0).toString());
-                                    System.out.println("dist: " + node1.positionAt(t0).distance(node2.positionAt(t0)));
-                                    System.out.println("n1 (t1): " + node1.positionAt(t1).toString() + ", n2 (t1): " + node2.positionAt(t1).toString());
-                                    System.out.println("dist: " + node1.positionAt(t1).distance(node2.positionAt(t1)));
-                                    System.exit(0);
-                                }
-                                else {
-                                    System.out.println("MobileNode.pairStatistics: disconnect too late: t=" + max + " t0=" + t0);
-                                }
+                    }
+
+                    // floating point inaccuracy detection:
+                    boolean conn_t1 = ((dist_t1 <= range) && same_t1);
+                    if (connected[r]) {
+                        if (!conn_t1) {
+                            changes[r] = addChange(changes[r], changeCount[r]++, t1);
+                            connected[r] = false;
+                            out.println("MobileNode.pairStatistics: fp correction 2: disconnect at " + t1);
+                        }
+                    }
+                    else { // !connected
+                        if (conn_t1 && nodes_on) {
+                            changes[r] = addChange(changes[r], changeCount[r]++, t1);
+                            connected[r] = true;
+                            out.println("MobileNode.pairStatistics: fp correction 3: connect at " + t1);
                         }
                     }
                 }
+
                 t0 = t1;
+                double[] swap = o1;
                 o1 = n1;
+                n1 = swap;
+                swap = o2;
                 o2 = n2;
+                n2 = swap;
                 nodes_on_before = nodes_on;
-
-                // floating point inaccuracy detection:
-
-                if (connected) {
-                    if (!conn_t1) {
-                        changes.addElement(new Double(t1));
-                        connected = false;
-                        System.out.println("MobileNode.pairStatistics: fp correction 2: disconnect at " + t1);
-                    }
-                }
-                else { // !connected
-                    if (conn_t1 && nodes_on) {
-                        changes.addElement(new Double(t1));
-                        connected = true;
-                        System.out.println("MobileNode.pairStatistics: fp correction 3: connect at " + t1);
-                    }
-                }
             }
         }
-        /* add disconnect at the end of time - for correct stats link is counted at link-break */
-        /*
-         * NA: I do not know, why this wasn't needed before. However, due to our changes we seem to
-         * need it and it shouldn't change anything
-         */
-        if (connected) {
-            changes.addElement(new Double(duration));
-        }
 
-        double[] result = new double[changes.size() + 6];
-        for (int i = 0; i < result.length; i++) {
-            if (i == 0) {
-                result[i] = mobility;
-                result[i + 1] = on_time;
-                result[i + 2] = D_spatial;
-                result[i + 3] = D_spatial_count;
-                result[i + 4] = Relative_speed;
-                result[i + 5] = Relative_speed_count;
-                i += 5;
-            }
-            else {
-                result[i] = changes.elementAt(i - 6).doubleValue();
+        double[][] result = new double[rc][];
+        for (int r = 0; r < rc; r++) {
+            /* add disconnect at the end of time - for correct stats link is counted at link-break */
+            /*
+             * NA: I do not know, why this wasn't needed before. However, due to our changes we seem to
+             * need it and it shouldn't change anything
+             */
+            if (connected[r]) {
+                changes[r] = addChange(changes[r], changeCount[r]++, duration);
             }
+
+            result[r] = new double[changeCount[r] + 6];
+            result[r][0] = mobility;
+            result[r][1] = on_time;
+            result[r][2] = D_spatial[r];
+            result[r][3] = D_spatial_count[r];
+            result[r][4] = Relative_speed[r];
+            result[r][5] = Relative_speed_count[r];
+            System.arraycopy(changes[r], 0, result[r], 6, changeCount[r]);
         }
 
         return result;
     }
     
     
+    protected static double distance(double[] p, double[] q) {
+        double deltaX = q[0] - p[0];
+        double deltaY = q[1] - p[1];
+        double deltaZ = q[2] - p[2];
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY + deltaZ * deltaZ);
+    }
+
+    protected static Position toPosition(double[] p) {
+        return new Position(p[0], p[1], p[2], p[3]);
+    }
+
+    protected static boolean sameBuilding(Building[] buildings, double[] pos1, double[] pos2, Dimension dim) {
+        return (buildings.length == 0) || sameBuilding(buildings, toPosition(pos1), toPosition(pos2), dim);
+    }
+
+    protected static double[] addChange(double[] changes, int index, double time) {
+        if (index == changes.length) {
+            changes = Arrays.copyOf(changes, 2 * changes.length);
+        }
+        changes[index] = time;
+        return changes;
+    }
+    
+    
     /**
      * Finds the degree of temporal dependence for a node.
      * 
@@ -688,17 +956,29 @@ public class MobileNode {
         return getConnectionTime(node1, node2, start, duration, range, new Building[0], dim);
     }
 
-    public static double[] getConnectionTime(MobileNode _node1, MobileNode _node2, double start, double duration, double range,
+    public static double[] getConnectionTime(MobileNode node1, MobileNode node2, double start, double duration, double range,
             Building[] buildings, Dimension dim) {
+        return getConnectionTime(node1, node2, start, duration, new double[] {range}, buildings, dim)[0];
+    }
+
+    /**
+     * getConnectionTime() for several transmission ranges at once, the relative motion of
+     * the nodes is computed once per segment.
+     * @return one result per range, the same as getConnectionTime() with this range
+     */
+    public static double[][] getConnectionTime(MobileNode _node1, MobileNode _node2, double start, double duration, double[] ranges,
+            Building[] buildings, Dimension dim) {
+        PrintStream out = diagnostics();
 
         MobileNode node1 = _node1;
         MobileNode node2 = _node2;
         double[] ch1 = node1.changeTimes();
         double[] ch2 = node2.changeTimes();
+        final int rc = ranges.length;
 
         double on_time = 0.0;
-        double con_time = 0.0;
-        double link_up_at = 0.0;
+        double[] con_time = new double[rc];
+        double[] link_up_at = new double[rc];
 
         int i1 = 0;
         int i2 = 0;
@@ -706,7 +986,7 @@ public class MobileNode {
         Position o1 = node1.positionAt(start);
         Position o2 = node2.positionAt(start);
 
-        boolean connected = false;
+        boolean[] connected = new boolean[rc];
 
         while (t0 < duration) {
             double t1;
@@ -728,19 +1008,11 @@ public class MobileNode {
             if (t1 > t0) {
                 Position n1 = node1.positionAt(t1);
                 Position n2 = node2.positionAt(t1);
-                boolean conn_t0 = ((o1.distance(o2) <= range) && (sameBuilding(buildings, o1, o2, dim)));
-                boolean conn_t1 = ((n1.distance(n2) <= range) && (sameBuilding(buildings, n1, n2, dim)));
+                final double dist_t0 = o1.distance(o2);
+                final double dist_t1 = n1.distance(n2);
+                final boolean same_t0 = sameBuilding(buildings, o1, o2, dim);
+                final boolean same_t1 = sameBuilding(buildings, n1, n2, dim);
                 boolean nodes_on = ((o1.status != 2) && (o2.status != 2));
-                if ((!connected) && conn_t0 && nodes_on) {
-                    // either we just started, or some floating point op went wrong in the last
-                    // epoch.
-                    link_up_at = t0;
-                    connected = true;
-                }
-                if (connected && conn_t0 && (!nodes_on)) {
-                    con_time = con_time + (t0 - link_up_at);
-                    connected = false;
-                }
 
                 double dt = t1 - t0; // time
                 double dxo = o1.x - o2.x; // distance x at t0
@@ -760,90 +1032,108 @@ public class MobileNode {
                     on_time = on_time + dt;
                 }
 
-                if ((c1 != 0.0) || (d1 != 0.0) || (e1 != 0.0)) { // we have relative movement
-                    // TODO: check if calculations are correct for 3D coordinates
-                    double m = -1.0 * (c0 * c1 + d0 * d1 + e0 * e1) / (c1 * c1 + d1 * d1 + e1 * e1);
-                    double m2 = m * m;
-                    double q = (c0 * c0 + d0 * d0 + e0 * e0 - range * range) / (c1 * c1 + d1 * d1 + e1 * e1);
-                    if (m2 - q > 0.0) {
-                        double d = Math.sqrt(m2 - q);
-                        double min = m - d;
-                        double max = m + d;
-                        if ((min >= t0) && (min <= t1) && sameBuilding(buildings, o1, o2, dim)) {
-                            if (d < 0.01) {
-                                System.out.println("---------------");
-                                System.out.println("MobileNode.pairStatistics: The time span these 2 nodes are in range seems very");
-                                System.out.println("  short. Might this be an error or a bad choice of parameters?");
-                                System.out.println("o1=" + o1);
-                                System.out.println("n1=" + n1);
-                                System.out.println("o2=" + o2);
-                                System.out.println("n2=" + n2);
-                                System.out.println("[" + t0 + ";" + t1 + "]:[" + m + "-" + d + "=" + min + ";" + m + "+" + d + "=" + max
-                                        + "]");
-                                System.out.println("---------------");
-                            }
-                            if (nodes_on) {
-                                if (!connected) {
-                                    link_up_at = min;
-                                    connected = true;
+                boolean moving = (c1 != 0.0) || (d1 != 0.0) || (e1 != 0.0); // we have relative movement
+                // TODO: check if calculations are correct for 3D coordinates
+                double m = moving ? -1.0 * (c0 * c1 + d0 * d1 + e0 * e1) / (c1 * c1 + d1 * d1 + e1 * e1) : 0.0;
+
+                for (int r = 0; r < rc; r++) {
+                    final double range = ranges[r];
+                    boolean conn_t0 = ((dist_t0 <= range) && same_t0);
+                    if ((!connected[r]) && conn_t0 && nodes_on) {
+                        // either we just started, or some floating point op went wrong in the last
+                        // epoch.
+                        link_up_at[r] = t0;
+                        connected[r] = true;
+                    }
+                    if (connected[r] && conn_t0 && (!nodes_on)) {
+                        con_time[r] = con_time[r] + (t0 - link_up_at[r]);
+                        connected[r] = false;
+                    }
+
+                    if (moving) {
+                        double m2 = m * m;
+                        double q = (c0 * c0 + d0 * d0 + e0 * e0 - range * range) / (c1 * c1 + d1 * d1 + e1 * e1);
+                        if (m2 - q > 0.0) {
+                            double d = Math.sqrt(m2 - q);
+                            double min = m - d;
+                            double max = m + d;
+                            if ((min >= t0) && (min <= t1) && same_t0) {
+                                if (d < 0.01) {
+                                    out.println("---------------");
+                                    out.println("MobileNode.pairStatistics: The time span these 2 nodes are in range seems very");
+                                    out.println("  short. Might this be an error or a bad choice of parameters?");
+                                    out.println("o1=" + o1);
+                                    out.println("n1=" + n1);
+                                    out.println("o2=" + o2);
+                                    out.println("n2=" + n2);
+                                    out.println("[" + t0 + ";" + t1 + "]:[" + m + "-" + d + "=" + min + ";" + m + "+" + d + "=" + max
+                                            + "]");
+                                    out.println("---------------");
                                 }
-                                else if (min - t0 > 0.001) {
-                                    System.out.println("MobileNode.pairStatistics: sanity check failed (1)");
-                                    System.exit(0);
+                                if (nodes_on) {
+                                    if (!connected[r]) {
+                                        link_up_at[r] = min;
+                                        connected[r] = true;
+                                    }
+                                    else if (min - t0 > 0.001) {
+                                        throw new RuntimeException("MobileNode.pairStatistics: sanity check failed (1)");
+                                    }
+                                    else
+                                        out.println("MobileNode.pairStatistics: connect too late: t=" + min + " t0=" + t0);
                                 }
-                                else
-                                    System.out.println("MobileNode.pairStatistics: connect too late: t=" + min + " t0=" + t0);
+                            }
+                            if ((max >= t0) && (max <= t1) && same_t0) {
+                                if (nodes_on) // if not on, it was done before
+                                    if (connected[r]) {
+                                        con_time[r] = con_time[r] + (max - link_up_at[r]);
+                                        connected[r] = false;
+                                    }
+                                    else if (max - t0 > 0.001) {
+                                        throw new RuntimeException("MobileNode.pairStatistics: sanity check failed (2)");
+                                    }
+                                    else
+                                        out.println("MobileNode.pairStatistics: disconnect too late: t=" + max + " t0=" + t0);
                             }
                         }
-                        if ((max >= t0) && (max <= t1) && (sameBuilding(buildings, o1, o2, dim))) {
-                            if (nodes_on) // if not on, it was done before
-                                if (connected) {
-                                    con_time = con_time + (max - link_up_at);
-                                    connected = false;
-                                }
-                                else if (max - t0 > 0.001) {
-                                    System.out.println("MobileNode.pairStatistics: sanity check failed (2)");
-                                    System.exit(0);
-                                }
-                                else
-                                    System.out.println("MobileNode.pairStatistics: disconnect too late: t=" + max + " t0=" + t0);
+                    }
+
+                    // floating point inaccuracy detection:
+                    boolean conn_t1 = ((dist_t1 <= range) && same_t1);
+                    if (connected[r]) {
+                        if (!conn_t1) {
+                            con_time[r] = con_time[r] + (t1 - link_up_at[r]);
+                            connected[r] = false;
+                            out.println("MobileNode.pairStatistics: fp correction 2: disconnect at " + t1);
+                        }
+                    }
+                    else { // !connected
+                        if (conn_t1 && nodes_on) {
+                            link_up_at[r] = t1;
+                            connected[r] = true;
+                            out.println("MobileNode.pairStatistics: fp correction 3: connect at " + t1);
                         }
                     }
                 }
                 t0 = t1;
                 o1 = n1;
                 o2 = n2;
-
-                // floating point inaccuracy detection:
-
-                if (connected) {
-                    if (!conn_t1) {
-                        con_time = con_time + (t1 - link_up_at);
-                        connected = false;
-                        System.out.println("MobileNode.pairStatistics: fp correction 2: disconnect at " + t1);
-                    }
-                }
-                else { // !connected
-                    if (conn_t1 && nodes_on) {
-                        link_up_at = t1;
-                        connected = true;
-                        System.out.println("MobileNode.pairStatistics: fp correction 3: connect at " + t1);
-                    }
-                }
             }
         }
-        /* add disconnect at the end of time - for correct stats link is counted at link-break */
-        /*
-         * NA: I do not know, why this wasn't needed before. However, due to our changes we seem to
-         * need it and it shouldn't change anything
-         */
-        if (connected) {
-            con_time = con_time + (duration - link_up_at);
-        }
 
-        double[] result = new double[2];
-        result[0] = on_time;
-        result[1] = con_time;
+        double[][] result = new double[rc][2];
+        for (int r = 0; r < rc; r++) {
+            /* add disconnect at the end of time - for correct stats link is counted at link-break */
+            /*
+             * NA: I do not know, why this wasn't needed before. However, due to our changes we seem to
+             * need it and it shouldn't change anything
+             */
+            if (connected[r]) {
+                con_time[r] = con_time[r] + (duration - link_up_at[r]);
+            }
+
+            result[r][0] = on_time;
+            result[r][1] = con_time[r];
+        }
         return result;
     }
     
@@ -864,14 +1154,15 @@ public class MobileNode {
         double[] time_start = new double[cht.length];
 
         double t0 = start;
-        Position p0 = node.positionAt(start);
+        Cursor p0 = node.cursor().advanceTo(start);
+        Cursor p1 = node.cursor();
 
         for (int i = 0; i < cht.length; i++) {
 
             double t1 = cht[i];
             double dt = t1 - t0;
 
-            Position p1 = node.positionAt(t1);
+            p1.advanceTo(t1);
 
             double dp = p0.distance(p1);
 
@@ -881,7 +1172,9 @@ public class MobileNode {
             time_start[i] = t0;
 
             t0 = t1;
+            Cursor swap = p0;
             p0 = p1;
+            p1 = swap;
         }
 
         int i = 0;
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion;
+
+/**
+ * A model that generates its nodes independently of each other and therefore supports
+ * node random streams (-j), see Scenario.generateNodes().
+ */
+public interface NodeIndependent {
+	/**
+	 * Generates the movements of node i into parameterData.nodes[i]. Must not change
+	 * state shared with other nodes and must draw its random values through the
+	 * scenario, so that they come from the stream of node i.
+	 */
+	public void generateNode(int i);
+}
@@ -26,15 +26,25 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.util.LinkedList;
 import java.util.Random;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 
 
 //import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 import edu.bonn.cs.iv.bonnmotion.models.DisasterArea;
+import edu.bonn.cs.iv.bonnmotion.printer.BinaryMovementFile;
+import edu.bonn.cs.iv.bonnmotion.printer.CutFilter;
 import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
+import edu.bonn.cs.iv.bonnmotion.printer.MovementSink;
+import edu.bonn.cs.iv.bonnmotion.printer.MovementWriter;
 import edu.bonn.cs.iv.bonnmotion.printer.Printer;
 import edu.bonn.cs.iv.util.IntegerHashSet;
 
@@ -55,6 +65,26 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	/** caches movements from last read(basename). null if read(basename) was not executed yet */
 	public String movements = null;
 
+	/** basename for streaming generation, see setStreamingOutput() */
+	protected static String streamingBasename = null;
+	protected static boolean streamingBinary = false;
+
+	/** receives the generated movements in streaming mode, null otherwise */
+	protected MovementSink stream = null;
+	/** node that is generated at the moment in streaming mode */
+	protected StreamingMobileNode streamingNode = null;
+	/** true if the movements were written during the generation already */
+	protected boolean movementsStreamed = false;
+
+	/** number of threads for generateNodes() with node random streams */
+	protected int generationThreads = 1;
+	/** random stream of the node the current thread generates, see generateNodes() */
+	private final ThreadLocal<NodeStream> nodeStream = new ThreadLocal<NodeStream>();
+	/** read the nodes only on request, see getLazyScenario() */
+	private boolean lazyRead = false;
+	/** mapped movement file of a lazily read scenario, null if all nodes are read */
+	private BinaryMovementFile lazyNodes = null;
+
 	public Scenario() {
 	}
 	
@@ -93,6 +123,18 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		return new Scenario(basename);
 	}
 
+	/**
+	 * Like getScenario(), but if basename.movements.bin is up to date, a node is only read
+	 * from the mapped file when getNode(n) or getNode() requests it. Meant for apps that
+	 * only touch some of the nodes; until then parameterData.nodes holds null for them.
+	 */
+	public static Scenario getLazyScenario(String basename) throws FileNotFoundException, IOException {
+		Scenario s = new Scenario();
+		s.lazyRead = true;
+		s.read(basename);
+		return s;
+	}
+
 
 
 	public double getZ() {
@@ -150,6 +192,16 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		case 'R' :
 			parameterData.randomSeed = Long.parseLong(val);
 			return true;
+		case 'j' : // "jobs"
+			parameterData.nodeRandomStreams = true;
+			generationThreads = 0;
+			if (val.length() > 0) {
+				generationThreads = Integer.parseInt(val);
+			}
+			if (generationThreads < 1) {
+				generationThreads = Runtime.getRuntime().availableProcessors();
+			}
+			return true;
 		default :
 			return super.parseArg(key, val);
 		}
@@ -209,6 +261,9 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		} else if (key.equals("aFieldParams")) {
 			parameterData.aFieldParams = parseDoubleArray(val);
 			return true;
+		} else if (key.equals("nodeRandomStreams")) {
+			parameterData.nodeRandomStreams = val.equals("true");
+			return true;
 		} else {
 			return false;
 		}
@@ -288,6 +343,8 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		System.out.println("\t-y <height of simulation area>");
 		System.out.println("\t-z <depth of simulation area>");
 		System.out.println("\t-R <random seed>");
+		System.out.println("\t-j <threads> [one random stream per node, nodes are generated in parallel (if applicable for model);");
+		System.out.println("\t             the result differs from the one without -j, but does not depend on the number of threads]");
 		System.out.println("\t-J <2D, 3D> Dimension of movement output");
 
 	}
@@ -327,7 +384,14 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		StringBuilder movements = new StringBuilder();
 
 		if (!hasPrecomputedLinkDump) {
-			if (parameterData.outputDim == Dimension.THREED){
+			if (BinaryMovementFile.isUpToDate(basename)) {
+				BinaryMovementFile file = openBinaryMovementFile(basename);
+				if (lazyRead && !getModelName().equals(DisasterArea.getInfo().name)) {
+					lazyNodes = file;
+				} else {
+					buildScenarioFromBinaryMovementFile(file, movements);
+				}
+			} else if (parameterData.outputDim == Dimension.THREED){
 				buildScenarioFromMovementFile3D(basename, movements);
 			} else {
 				buildScenarioFromMovementFile2D(basename, movements);
@@ -337,6 +401,67 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		return this.movements;
 	}
 
+	private BinaryMovementFile openBinaryMovementFile(String basename) throws IOException, FileNotFoundException {
+		BinaryMovementFile file = new BinaryMovementFile(basename);
+		if (file.nodeCount() != parameterData.nodes.length) {
+			throw new IOException(basename + BinaryMovementFile.SUFFIX + " contains " + file.nodeCount() + " nodes instead of " + parameterData.nodes.length);
+		}
+		return file;
+	}
+
+	/**
+	 * Builds the nodes from the memory mapped basename.movements.bin, which holds the
+	 * same values as basename.movements.gz without the need to parse them.
+	 */
+	private void buildScenarioFromBinaryMovementFile(BinaryMovementFile file, StringBuilder movements) {
+		for (int i = 0; i < parameterData.nodes.length; i++) {
+			parameterData.nodes[i] = readNode(file, i);
+		}
+
+		if (getModelName().equals(DisasterArea.getInfo().name)) {
+			final boolean threeD = (parameterData.outputDim == Dimension.THREED);
+			for (int i = 0; i < parameterData.nodes.length; i++) {
+				MobileNode node = parameterData.nodes[i];
+				for (int k = 0; k < node.getNumWaypoints(); k++) {
+					double time = node.getWaypointTime(k);
+					movements.append(" ");
+					movements.append(time);
+					movements.append(" ");
+					movements.append(node.getWaypointX(k));
+					movements.append(" ");
+					movements.append(node.getWaypointY(k));
+					if (threeD) {
+						movements.append(" ");
+						movements.append(node.getWaypointZ(k));
+					}
+					movements.append(" ");
+					movements.append(node.getWaypointStatus(k));
+					if (parameterData.duration == time) {
+						movements.append("\n");
+					}
+				}
+			}
+		}
+	}
+
+	/** @return node n of the movement file, with z only in 3D and status only for DisasterArea */
+	private MobileNode readNode(BinaryMovementFile file, int n) {
+		final boolean threeD = (parameterData.outputDim == Dimension.THREED);
+		final boolean disasterArea = getModelName().equals(DisasterArea.getInfo().name);
+		MobileNode node = file.node(n, threeD, disasterArea);
+		if (threeD && !disasterArea && !negativeHeightWarningShowed) {
+			for (int k = 0; k < node.getNumWaypoints(); k++) {
+				if (node.getWaypointZ(k) < 0) {
+					System.err.printf("NOTE: your input contains a node with a negative z-value (%f;%f;%f).\n"+
+							"The following behaviour is not tested enough. Especially be careful with the resulting statistics!\n", node.getWaypointX(k), node.getWaypointY(k), node.getWaypointZ(k));
+					negativeHeightWarningShowed = true;
+					break;
+				}
+			}
+		}
+		return node;
+	}
+
 	private void buildScenarioFromMovementFile3D(String basename, StringBuilder movements) throws IOException, FileNotFoundException {
 		String line;
 		double extendedtime = 0.0;
@@ -563,6 +688,11 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	}
 
 	public MobileNode[] getNode() {
+		if (lazyNodes != null) {
+			for (int i = 0; i < parameterData.nodes.length; i++) {
+				getNode(i);
+			}
+		}
 		MobileNode[] r = new MobileNode[this.parameterData.nodes.length];
 		System.arraycopy(this.parameterData.nodes, 0, r, 0, this.parameterData.nodes.length);
 		return r;
@@ -594,7 +724,7 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	public MobileNode getNode(int n) {
 		try {
 			if (parameterData.nodes[n] == null) {
-				parameterData.nodes[n] = new MobileNode();
+				parameterData.nodes[n] = (lazyNodes != null) ? readNode(lazyNodes, n) : new MobileNode();
 			}
 			return parameterData.nodes[n];
 		} catch (ArrayIndexOutOfBoundsException e) {
@@ -610,13 +740,11 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 * @return double
 	 */
 	public double randomNextDouble() {
-		count_rands++;
-		return getRand().nextDouble();
+		return nextRand().nextDouble();
 	}
 	
 	public double randomNextDouble(final double value) {
-		count_rands++;
-		return (getRand().nextDouble()*value);
+		return (nextRand().nextDouble()*value);
 	}
 
 	/**
@@ -624,8 +752,7 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 * @return 1.0 or -1.0
 	 */
 	public double randomNextPlusOrMinusOne() {
-		count_rands++;
-		if(getRand().nextBoolean()) { return 1.0; }
+		if(nextRand().nextBoolean()) { return 1.0; }
 		else { return -1.0; }
 	}
 
@@ -635,13 +762,11 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 * @return a pseudorandom, uniformly distributed int value between 0 (inclusive) and n (exclusive).
 	 */
 	public int randomNextInt(int n) {
-		count_rands++;
-		return getRand().nextInt(n);
+		return nextRand().nextInt(n);
 	}
 
 	public int randomNextInt() {
-		count_rands++;
-		return getRand().nextInt();
+		return nextRand().nextInt();
 	}
 
 	/**
@@ -649,8 +774,7 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 * @return double
 	 */
 	public double randomNextGaussian() {
-		count_rands++;
-		return getRand().nextGaussian();
+		return nextRand().nextGaussian();
 	}
 
 	/**
@@ -658,8 +782,7 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 * @return double
 	 */
 	public double randomNextWeibull(double shape, double scale) {
-		count_rands++;
-		return scale * java.lang.Math.pow(-java.lang.Math.log(getRand().nextDouble()), 1.0 / shape);
+		return scale * java.lang.Math.pow(-java.lang.Math.log(nextRand().nextDouble()), 1.0 / shape);
 	}
 	
 	/** Called by subclasses before they generate node movements. */
@@ -686,6 +809,24 @@ public class Scenario  extends App implements Model, ScenarioLink {
 			System.out.println("model mismatch: modelName=" + parameterData.modelName + " myClass=" + myClass);
 			System.exit(0);
 		}
+
+		if (parameterData.nodeRandomStreams && !(this instanceof NodeIndependent)) {
+			System.out.println("note: " + myClass + " does not support node random streams, -j is ignored.");
+			parameterData.nodeRandomStreams = false;
+		}
+
+		if (streamingBasename != null && !isTransition) {
+			if (supportsStreaming()) {
+				try {
+					stream = openStream(streamingBasename, streamingBinary);
+				} catch (IOException e) {
+					App.exceptionHandler("Could not open the movement file", e);
+				}
+			}
+			else {
+				System.out.println("note: " + myClass + " does not support streaming, the movements are written after the generation.");
+			}
+		}
 	}
 
 
@@ -695,8 +836,15 @@ public class Scenario  extends App implements Model, ScenarioLink {
 			System.out.println("warning: setting the initial phase to be cut off to be too short may result in very weird scenarios");
 		}
 		if (parameterData.ignore > 0.0) {
-			cut(parameterData.ignore, parameterData.duration);
+			if (stream != null) {
+				// the stream was cut while it was written
+				parameterData.duration = parameterData.duration - parameterData.ignore;
+			}
+			else {
+				cut(parameterData.ignore, parameterData.duration);
+			}
 		}
+		closeStream();
 		long next_seed = getRand().nextLong();
 		while (Long.signum(next_seed) < 0) {
 			next_seed = getRand().nextLong();
@@ -704,6 +852,192 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		System.out.println("Next RNG-Seed =" + next_seed+ " | #Randoms = "+count_rands);
 	}
 	
+	/**
+	 * Requests streaming generation: the next model that supports it writes the movements
+	 * to basename.movements.gz while it generates them, instead of keeping all waypoints
+	 * in memory until write() is called.
+	 * @param binary also write basename.movements.bin
+	 */
+	public static void setStreamingOutput(String basename, boolean binary) {
+		streamingBasename = basename;
+		streamingBinary = binary;
+	}
+
+	/**
+	 * @return true if generate() creates the nodes one after another with newNode() and
+	 *         only changes the last waypoints of the current node
+	 */
+	protected boolean supportsStreaming() {
+		return false;
+	}
+
+	/**
+	 * Generates the nodes from (inclusive) to (exclusive) with model.generateNode().
+	 * Models that implement NodeIndependent call this from generate() with themselves.
+	 *
+	 * By default all nodes draw one after another from the random stream of the scenario.
+	 * With node random streams (-j), node i draws from its own stream, which is seeded with
+	 * the random seed and i. The nodes are then independent of each other and are
+	 * generated on a pool of threads; they are stored (and streamed) in increasing order,
+	 * so that the result only depends on the random seed, not on the number of threads.
+	 * generateNode() therefore must not change state shared with other nodes.
+	 */
+	protected void generateNodes(final NodeIndependent model, int from, int to) {
+		if (!parameterData.nodeRandomStreams) {
+			for (int i = from; i < to; i++) {
+				model.generateNode(i);
+			}
+			return;
+		}
+		if (generationThreads < 2) {
+			for (int i = from; i < to; i++) {
+				count_rands += generateNodeWithStream(model, i);
+				nodeGenerated(i);
+			}
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(generationThreads);
+		LinkedList<Future<Long>> results = new LinkedList<Future<Long>>();
+		int next = from;
+		try {
+			for (int i = from; i < to; i++) {
+				while (next < to && results.size() < 4 * generationThreads) {
+					final int n = next++;
+					results.add(pool.submit(new Callable<Long>() {
+						public Long call() {
+							return Long.valueOf(generateNodeWithStream(model, n));
+						}
+					}));
+				}
+				count_rands += results.removeFirst().get().longValue();
+				nodeGenerated(i);
+			}
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException("node generation interrupted");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/** @return the number of random values node i has drawn from its own stream */
+	private long generateNodeWithStream(NodeIndependent model, int i) {
+		NodeStream ns = new NodeStream(nodeSeed(parameterData.randomSeed, i));
+		nodeStream.set(ns);
+		try {
+			model.generateNode(i);
+		}
+		finally {
+			nodeStream.remove();
+		}
+		return ns.count;
+	}
+
+	/** Writes node i to the stream in streaming mode, it is not kept in memory then. */
+	private void nodeGenerated(int i) {
+		if (stream == null) {
+			return;
+		}
+		if (streamingNode != null) {
+			streamingNode.finish();
+			streamingNode = null;
+		}
+		MobileNode node = parameterData.nodes[i];
+		try {
+			stream.beginNode();
+			for (int k = 0; k < node.getNumWaypoints(); k++) {
+				stream.waypoint(node.getWaypointTime(k), node.getWaypointX(k), node.getWaypointY(k), node.getWaypointZ(k), node.getWaypointStatus(k));
+			}
+			stream.endNode();
+		} catch (IOException e) {
+			throw new RuntimeException("error while writing the movements: " + e.getMessage());
+		}
+		parameterData.nodes[i] = new MobileNode();
+	}
+
+	/** Seed of the random stream of node i: the SplitMix64 mix of the seed and the node id. */
+	protected static long nodeSeed(long seed, int i) {
+		long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** Random stream of a single node and the number of values drawn from it. */
+	private static class NodeStream {
+		final Random rand;
+		long count = 0;
+
+		NodeStream(long seed) {
+			rand = new Random(seed);
+		}
+	}
+
+	/** Builds the chain of sinks the generated movements pass through: cut, then written. */
+	protected MovementSink openStream(String basename, boolean binary) throws IOException {
+		MovementSink sink = new MovementWriter(basename, parameterData.outputDim, binary);
+		if (parameterData.ignore > 0.0) {
+			sink = new CutFilter(parameterData.ignore, parameterData.duration, sink);
+		}
+		return sink;
+	}
+
+	/**
+	 * Creates node i, the nodes have to be created in increasing order. In streaming mode
+	 * the previous node is complete then and is written.
+	 */
+	protected MobileNode newNode(int i) {
+		if (stream == null || nodeStream.get() != null) {
+			// with node random streams, generateNodes() streams the complete node
+			return new MobileNode();
+		}
+		if (streamingNode != null) {
+			streamingNode.finish();
+		}
+		streamingNode = new StreamingMobileNode(stream, parameterData.duration);
+		return streamingNode;
+	}
+
+	/** Finishes the last node and closes the movement file in streaming mode. */
+	protected void closeStream() {
+		if (stream == null) {
+			return;
+		}
+		try {
+			if (streamingNode != null) {
+				streamingNode.finish();
+				streamingNode = null;
+			}
+			stream.close();
+		} catch (IOException e) {
+			App.exceptionHandler("Could not write the movement file", e);
+		}
+		stream = null;
+		movementsStreamed = true;
+	}
+
+	/** Replaces a last waypoint after the end of the scenario by the position at the end. */
+	protected void clipToDuration(MobileNode node) {
+		Waypoint l = node.getLastWaypoint();
+		if (l.time > parameterData.duration) {
+			Position p = node.positionAt(parameterData.duration);
+			node.removeLastElement();
+			node.add(parameterData.duration, p);
+		}
+	}
+
 	/** Extract a certain time span from the scenario. */
 	public void cut(double begin, double end) {
 		if ((begin >= 0.0) && (end <= parameterData.duration) && (begin <= end)) {
@@ -853,7 +1187,12 @@ public class Scenario  extends App implements Model, ScenarioLink {
 	 */
 	public void writeParametersAndMovement(String basename, String[] params) throws FileNotFoundException, IOException {
 		Printer printer = new Printer(parameterData.outputDim);
-		printer.writeOutsourced(basename, parameterData, params);
+		if (movementsStreamed) {
+			printer.writeParameters(basename, parameterData, params);
+		}
+		else {
+			printer.writeOutsourced(basename, parameterData, params);
+		}
 	}
 
 
@@ -911,8 +1250,24 @@ public class Scenario  extends App implements Model, ScenarioLink {
 		}
 	}
 
+	/**
+	 * @return the random stream of the node the current thread generates (see
+	 *         generateNodes()), otherwise the random stream of the scenario
+	 */
 	public Random getRand() {
-		return rand;
+		NodeStream ns = nodeStream.get();
+		return (ns == null) ? rand : ns.rand;
+	}
+
+	/** @return the stream for the next random value, which is counted */
+	private Random nextRand() {
+		NodeStream ns = nodeStream.get();
+		if (ns == null) {
+			count_rands++;
+			return rand;
+		}
+		ns.count++;
+		return ns.rand;
 	}
 
 	public void setRand(Random rand) {
@@ -36,4 +36,8 @@ public class ScenarioParameters {
 	public AttractorField aField = null;
 	public Dimension outputDim = Dimension.TWOD;
 	public Dimension calculationDim = Dimension.TWOD;
+	/** also write the movements in the binary format, see BinaryMovementFile */
+	public boolean binaryMovements = false;
+	/** every node draws from its own random stream, see Scenario.generateNodes() */
+	public boolean nodeRandomStreams = false;
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion;
+
+import java.io.IOException;
+
+import edu.bonn.cs.iv.bonnmotion.printer.MovementSink;
+
+/**
+ * Mobile node that passes its waypoints on to a MovementSink while they are added,
+ * used for streaming scenario generation. Only the last waypoints stay in memory, so
+ * that a model can still look at and replace the end of the node (getLastWaypoint(),
+ * removeLastElement(), positionAt() at the end of the scenario). The waypoints have
+ * to be added in increasing time order.
+ */
+public class StreamingMobileNode extends MobileNode {
+	/** Number of waypoints that are always kept. */
+	protected static final int TAIL = 2;
+
+	protected final MovementSink sink;
+	/** The last waypoint not after this time is kept, so that positionAt(horizon) still works. */
+	protected final double horizon;
+
+	public StreamingMobileNode(MovementSink sink, double horizon) {
+		this.sink = sink;
+		this.horizon = horizon;
+		try {
+			sink.beginNode();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("error while writing the movements: " + e.getMessage());
+		}
+	}
+
+	public boolean add(double _time, Position _newPosition) {
+		boolean result = super.add(_time, _newPosition);
+		flush(TAIL);
+		return result;
+	}
+
+	/** Passes on the remaining waypoints and ends the node, which is empty afterwards. */
+	public void finish() {
+		flush(0);
+		try {
+			sink.endNode();
+		}
+		catch (IOException e) {
+			throw new RuntimeException("error while writing the movements: " + e.getMessage());
+		}
+	}
+
+	/** Passes on the oldest waypoints until at most keep are left (see horizon). */
+	protected void flush(int keep) {
+		int n = 0;
+		try {
+			while ((waypointCount - n > keep) && ((keep == 0) || (wpTime[n + 1] <= horizon))) {
+				sink.waypoint(wpTime[n], wpX[n], wpY[n], wpZ[n], wpStatus[n]);
+				n++;
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("error while writing the movements: " + e.getMessage());
+		}
+		if (n > 0) {
+			waypointCount -= n;
+			System.arraycopy(wpTime, n, wpTime, 0, waypointCount);
+			System.arraycopy(wpX, n, wpX, 0, waypointCount);
+			System.arraycopy(wpY, n, wpY, 0, waypointCount);
+			System.arraycopy(wpZ, n, wpZ, 0, waypointCount);
+			System.arraycopy(wpStatus, n, wpStatus, 0, waypointCount);
+			changeSpeedOrDirectionTimes = null;
+		}
+	}
+}
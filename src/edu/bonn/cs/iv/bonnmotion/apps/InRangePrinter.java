@@ -24,15 +24,18 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import edu.bonn.cs.iv.bonnmotion.App;
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
-import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.KineticTopologyChangeTimes;
 import edu.bonn.cs.iv.bonnmotion.apps.helper.TopologyChangeTimes;
 import edu.bonn.cs.iv.bonnmotion.apps.helper.TopologyChangeTimesResult;
 import edu.bonn.cs.iv.bonnmotion.apps.helper.TopologyChangeTimesResult.InRangeInfo;
+import edu.bonn.cs.iv.util.LongIntHashMap;
 
 public class InRangePrinter extends App {
 	private static ModuleInfo info;
@@ -44,8 +47,12 @@ public class InRangePrinter extends App {
 	protected TopologyChangeTimesResult tctr = null;
 	protected String name = null;
 	protected double range = -1;
+	/** use the window scan of TopologyChangeTimes instead of the kinetic engine */
+	protected boolean windowScan = false;
 	protected int nodeCount = -1;
 	protected MobileNode nodes[] = null;
+	/** in range state of the pairs (src * nodeCount + dst) changing at the current time */
+	protected LongIntHashMap changedInRange = null;
 	
 	static {
 		info = new ModuleInfo("InRangePrinter");
@@ -105,7 +112,7 @@ public class InRangePrinter extends App {
 				actualTime += intervalLength;
 			}
 		} else {
-			TopologyChangeTimes tct = new TopologyChangeTimes(range,s.getNode(),s.getDuration());
+			TopologyChangeTimes tct = windowScan ? new TopologyChangeTimes(range,s.getNode(),s.getDuration()) : new KineticTopologyChangeTimes(range,s.getNode(),s.getDuration());
 			tctr = tct.getTopologyChanges();
 			sortedChangeTimes = tctr.getChangeTimes();
 		}
@@ -118,16 +125,45 @@ public class InRangePrinter extends App {
 		
 		PrintWriter out = openPrintWriter(name + filesuffix);
 		
+		MobileNode.Cursor[] cursor = new MobileNode.Cursor[nodeCount];
+		for(int n=0;n<nodeCount;n++) {
+			cursor[n] = nodes[n].cursor();
+		}
+		
+		// the changes are walked in time order along with the timestamps, a later change of
+		// the same pair at the same time wins (the sort is stable)
+		InRangeInfo changes[] = new InRangeInfo[0];
+		int nextChange = 0;
+		if(tctr != null) {
+			changes = tctr.rangeInfo.toArray(changes);
+			Arrays.sort(changes, new Comparator<InRangeInfo>() {
+				public int compare(InRangeInfo a, InRangeInfo b) {
+					return Double.compare(a.time, b.time);
+				}
+			});
+			changedInRange = new LongIntHashMap();
+		}
+		
 		for(int i=0;i<timestamps.size();i++) {
 			final double actualTime = timestamps.get(i);
+			while(nextChange < changes.length && changes[nextChange].time < actualTime) {
+				nextChange++;
+			}
+			while(nextChange < changes.length && changes[nextChange].time == actualTime) {
+				InRangeInfo ri = changes[nextChange++];
+				changedInRange.put((long)ri.srcNode * nodeCount + ri.dstNode, ri.inRange ? 1 : 0);
+			}
+			for(int n=0;n<nodeCount;n++) {
+				cursor[n].advanceTo(actualTime);
+			}
 			for(int linkStartNode=0;linkStartNode<nodeCount;linkStartNode++) {
-				Position posStartNode = nodes[linkStartNode].positionAt(actualTime);
+				MobileNode.Cursor posStartNode = cursor[linkStartNode];
 				for(int linkEndNode=linkStartNode;linkEndNode<nodeCount;linkEndNode++) {
 					if(linkEndNode == linkStartNode) {
 						inRange[linkStartNode][linkStartNode] = 0.0;
 						continue;
 					}
-					Position posEndNode = nodes[linkEndNode].positionAt(actualTime);
+					MobileNode.Cursor posEndNode = cursor[linkEndNode];
 					
 					final double distance = posStartNode.distance(posEndNode);
 					inRange[linkStartNode][linkEndNode] = distance;
@@ -136,6 +172,10 @@ public class InRangePrinter extends App {
 			}
 			
 			printResults(out,actualTime, inRange,null);
+			
+			if(changedInRange != null) {
+				changedInRange.clear();
+			}
 		}
 		
 		out.close();
@@ -156,13 +196,8 @@ public class InRangePrinter extends App {
 					
 					int inRangeIndicator = -1;
 				
-					if(tctr != null) {
-						for(int i=0;i<tctr.rangeInfo.size();i++) {
-							InRangeInfo ri = tctr.rangeInfo.elementAt(i); 
-							if(ri.time == actualTime && ri.srcNode == src && ri.dstNode == dst) {
-								inRangeIndicator = ri.inRange ? 1 : 0;
-							}
-						}
+					if(changedInRange != null && changedInRange.size() > 0) {
+						inRangeIndicator = changedInRange.get((long)src * nodeCount + dst, -1);
 					}
 					
 					if(inRangeIndicator == -1) {
@@ -189,6 +224,9 @@ public class InRangePrinter extends App {
 			case 'r':
 				this.range = Double.parseDouble(val);
 				return true;
+			case 'w':
+				this.windowScan = true;
+				return true;
 			default:
 				return super.parseArg(key, val);
 		}
@@ -201,6 +239,7 @@ public class InRangePrinter extends App {
 		System.out.println("\t-f <filename> \tScenario");
 		System.out.println("\t[-l <double>]\tInterval length. Set this if intervals should be printed instead of change topology changes only");
 		System.out.println("\t[-r <double>]\tTransmission range. Required for non-interval mode");
+		System.out.println("\t[-w]\t\tCompute the topology changes with the window scan of earlier versions");
 	}
 
 	public static void main(String[] args) throws FileNotFoundException, IOException {
@@ -95,8 +95,9 @@ public class IntervalFormat extends App {
 	    
         for(int i = 0; i < node.length; i++){
             double t = 0.0;
+            MobileNode.Cursor p = node[i].cursor();
             while(t < duration + 1.0){
-                Position p = node[i].positionAt(t);
+                p.advanceTo(t);
                 out.println(i + " " + t + " " + p.x + " " + p.y + (outputDim == Dimension.THREED ? " "+p.z : ""));
                 t += intervalLength;
             }
@@ -24,6 +24,8 @@ import java.io.*;
 import java.util.Vector;
 
 import edu.bonn.cs.iv.bonnmotion.*;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.PairEngine;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.SpatialPrefilter;
 import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
 import edu.bonn.cs.iv.util.maps.*;
 
@@ -59,6 +61,7 @@ public class LinkDump extends App {
 	protected boolean inter_contact_only = false;
 	protected boolean show_time = false;
 	protected boolean useGeo = false;
+	protected int threads = 1;
 
 	protected double duration = 0;
 	protected MobileNode node[] = null;
@@ -91,77 +94,27 @@ public class LinkDump extends App {
 		    fLD = new PrintWriter(new FileOutputStream(name + (useGeo? ".ld_geo_" : ".ld_") + radius));
 		}
 
-		for (int j = 0; j < node.length; j++) {
-			for (int k = j+1; k < node.length; k++) {
-			    double[] lsc = null;
-			    
-			    if (s.getScenarioParameters().calculationDim == Dimension.THREED) {
-			        lsc = MobileNode.pairStatistics(node[j], node[k], 0.0, duration, radius, false, s.getBuilding(), Dimension.THREED);
-			    } else if (s instanceof MapScenario) {
-			    	lsc = pairStatisticsGeo((MapScenario)s, j, k, 0.0, duration, radius);
-			    } else {
-			        lsc = MobileNode.pairStatistics(node[j], node[k], 0.0, duration, radius, false, s.getBuilding(), Dimension.TWOD);
-			    }
-			    
-				boolean first = true;
-				boolean first_inter_contact = true;
-				boolean first_inter_contact_print = true;
-				double last_linkDown = 0.0;
-				for (int l = 6; l < lsc.length; l += 2) {
-					double linkUp = lsc[l];
-					double linkDown = (l+1 < lsc.length) ? lsc[l+1] : end;
-					if ((all && (linkUp <= end) && (linkDown >= begin)) || ((! all) && (linkUp > begin) && (linkDown < end))) {
-						if (inter_contact) {						    
-						    if (first_inter_contact) {
-					    		last_linkDown = linkDown; first_inter_contact = false;
-				    		} else {
-								if (linkUp - last_linkDown > 0.0) {
-									if (inter_contact_only) {
-										if (show_time) {
-											fICT.println(last_linkDown + " " + (linkUp - last_linkDown));
-										} else {
-											fICT.println(linkUp - last_linkDown);
-										}
-								    } else {
-								    	if (first_inter_contact_print & !inter_contact_only) {
-								    		System.out.println("");
-								    		System.out.print(j + " " + k);
-								    		first_inter_contact_print = false;
-										}
-								    	if (show_time) {
-								    		System.out.print(" " + last_linkDown + " " + (linkUp - last_linkDown));
-										} else {
-											System.out.print(" " + (linkUp - last_linkDown));
-										}
-								    }
-								    last_linkDown = linkDown;
-								}
-						    }
-						    if (donly) {
-						    	fLD.println(linkDown - linkUp);
-						    }
-						} else {
-							if (all) {
-								if (linkUp < begin)
-									linkUp = begin;
-								if (linkDown > end)
-									linkDown = end;
-							}
-							if (donly) {
-								fLD.println(linkDown - linkUp);
-							} else {
-								if (first) {
-									System.out.print(j + " " + k);
-									first = false;
-								}
-								System.out.print(" " + linkUp + "-" + linkDown);
-							}
-						}
-					}
-				}
-				if (!first)
-					System.out.println("");
+		final Scenario scenario = s;
+		final PrintWriter ict = fICT;
+		final PrintWriter ld = fLD;
+		PairEngine.prepare(node);
+		PairEngine engine = new PairEngine(threads);
+		PairEngine.PairFunction linkStatusChanges = new PairEngine.PairFunction() {
+			public double[] compute(int j, int k) {
+				return linkStatusChanges(scenario, j, k);
 			}
+		};
+		PairEngine.PairConsumer dumpLinks = new PairEngine.PairConsumer() {
+			public void consume(int j, int k, double[] lsc) {
+				dumpLinks(j, k, lsc, ict, ld);
+			}
+		};
+		if (s instanceof MapScenario) {
+			engine.triangle(node.length, linkStatusChanges, dumpLinks);
+		} else {
+			// pairs that are never in range do not print anything
+			SpatialPrefilter filter = new SpatialPrefilter(node, 0.0, duration, radius);
+			engine.partners(filter.upperPartners(), linkStatusChanges, dumpLinks);
 		}
 		if (inter_contact) 
 		    System.out.println(""); 
@@ -171,6 +124,79 @@ public class LinkDump extends App {
 			fLD.close();
 	}
 
+	/** @return the result of MobileNode.pairStatistics() (or its geo variant) for the nodes j and k */
+	protected double[] linkStatusChanges(Scenario s, int j, int k) {
+		if (s.getScenarioParameters().calculationDim == Dimension.THREED) {
+			return MobileNode.pairStatistics(node[j], node[k], 0.0, duration, radius, false, s.getBuilding(), Dimension.THREED);
+		} else if (s instanceof MapScenario) {
+			return pairStatisticsGeo((MapScenario)s, j, k, 0.0, duration, radius);
+		} else {
+			return MobileNode.pairStatistics(node[j], node[k], 0.0, duration, radius, false, s.getBuilding(), Dimension.TWOD);
+		}
+	}
+
+	/** Prints the links of the nodes j and k. */
+	protected void dumpLinks(int j, int k, double[] lsc, PrintWriter fICT, PrintWriter fLD) {
+		boolean first = true;
+		boolean first_inter_contact = true;
+		boolean first_inter_contact_print = true;
+		double last_linkDown = 0.0;
+		for (int l = 6; l < lsc.length; l += 2) {
+			double linkUp = lsc[l];
+			double linkDown = (l+1 < lsc.length) ? lsc[l+1] : end;
+			if ((all && (linkUp <= end) && (linkDown >= begin)) || ((! all) && (linkUp > begin) && (linkDown < end))) {
+				if (inter_contact) {						    
+				    if (first_inter_contact) {
+			    		last_linkDown = linkDown; first_inter_contact = false;
+		    		} else {
+						if (linkUp - last_linkDown > 0.0) {
+							if (inter_contact_only) {
+								if (show_time) {
+									fICT.println(last_linkDown + " " + (linkUp - last_linkDown));
+								} else {
+									fICT.println(linkUp - last_linkDown);
+								}
+						    } else {
+						    	if (first_inter_contact_print & !inter_contact_only) {
+						    		System.out.println("");
+						    		System.out.print(j + " " + k);
+						    		first_inter_contact_print = false;
+								}
+						    	if (show_time) {
+						    		System.out.print(" " + last_linkDown + " " + (linkUp - last_linkDown));
+								} else {
+									System.out.print(" " + (linkUp - last_linkDown));
+								}
+						    }
+						    last_linkDown = linkDown;
+						}
+				    }
+				    if (donly) {
+				    	fLD.println(linkDown - linkUp);
+				    }
+				} else {
+					if (all) {
+						if (linkUp < begin)
+							linkUp = begin;
+						if (linkDown > end)
+							linkDown = end;
+					}
+					if (donly) {
+						fLD.println(linkDown - linkUp);
+					} else {
+						if (first) {
+							System.out.print(j + " " + k);
+							first = false;
+						}
+						System.out.print(" " + linkUp + "-" + linkDown);
+					}
+				}
+			}
+		}
+		if (!first)
+			System.out.println("");
+	}
+
 	protected boolean parseArg(char key, String val) {
 		switch (key) {
 			case 'b':
@@ -198,6 +224,9 @@ public class LinkDump extends App {
 			case 't':
 				show_time = true;
 				return true;
+			case 'T':
+				threads = PairEngine.parseThreads(val);
+				return true;
 			case 'r':
 				radius = Double.parseDouble(val);
 				return true;
@@ -221,6 +250,7 @@ public class LinkDump extends App {
 		System.out.println("\t-i [print intercontact times]");
 		System.out.println("\t-j [print intercontact times only]");
 		System.out.println("\t-t [print start time of inter-contact times]");
+		System.out.println("\t-T [<threads>] number of threads (default: 1, no value: all processors)");
 		System.out.println("\t-r <transmission range>");
 		System.out.println("\t-w [print only links that go up and down after begin and before end of time span]");
 	}
@@ -21,9 +21,16 @@
 package edu.bonn.cs.iv.bonnmotion.apps;
 
 import edu.bonn.cs.iv.bonnmotion.*;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.EuclideanMST;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.PairEngine;
 
 import java.io.*;
-import java.util.Vector;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -56,6 +63,13 @@ public class LongestLink extends App {
 
 	protected String name;
 	protected String basename;
+	/** One cursor per node, the samples are taken at increasing times. */
+	protected MobileNode.Cursor[] cursor = null;
+	/** Number of threads computing the spanning trees. */
+	protected int threads = 1;
+	protected final EuclideanMST mst = new EuclideanMST();
+	/** x, y and z coordinates of the nodes at the current sample */
+	protected double[][] positions = null;
 
 	public LongestLink(String[] args) throws FileNotFoundException, IOException {
 		go(args);
@@ -85,6 +99,9 @@ public class LongestLink extends App {
 			case 'f':
 				name = val;
 				return true;
+			case 'j':
+				threads = PairEngine.parseThreads(val);
+				return true;
 			case 'v':
 				System.out.println("Version: " + info.toShortString());
 				return true;
@@ -99,6 +116,8 @@ public class LongestLink extends App {
 		System.out.println("Longest Link Metric:");
 		System.out.println("\t-f <scenario name>");
 		System.out.println("\t-i <(double) interval length> (Default: 1.0)");
+		System.out.println("\t-j [<threads>] compute the samples in parallel");
+		System.out.println("\t   (no number: number of available processors)");
 		System.out.println("\t-v print version information");
 	}
 
@@ -125,52 +144,102 @@ public class LongestLink extends App {
 
 		if(duration == 0) {
 			o.println(time + " " + longestLink(0));
-		} else {
+		} else if(threads < 2) {
 			while(time < duration) {
 				o.println(time + " " + longestLink(time));
 				time += intervalLength;
 			}
+		} else {
+			longestLinkParallel(o, duration);
 		}
 		o.close();
         return true;
 	}
-	
-	//ToDo: Use LongestLinkMetrics from edu.bonnmotion.cs.iv.bonnmotion.apps.statistics -> Not yet possible. Requires scenario3d
-	protected double longestLink(final double time) {
-		MobileNode[] node = s.getNode();
-		double longestEdge = Double.MIN_VALUE;
-		Vector<Position> inTheGraph = new Vector<Position>(node.length,1);
-		Vector<Position> notInTheGraph = new Vector<Position>(node.length,1);
-		
-		inTheGraph.add(node[0].positionAt(time));
-		
-		for(int i=0;i<node.length;i++) {
-			notInTheGraph.add(node[i].positionAt(time));
-		}
 
-		double edgeLength;
-		Position next;
-		double edge;	
-		while(!notInTheGraph.isEmpty()) { //Add edges until graph is fully connected
-			next = null;
-			edgeLength = Double.MAX_VALUE;
-			for(int i=0;i<inTheGraph.size();i++) {
-				for(int j=0;j<notInTheGraph.size();j++) {
-					edge = inTheGraph.elementAt(i).distance(notInTheGraph.elementAt(j));
-					if(edge < edgeLength) {
-						edgeLength = edge;
-						next = notInTheGraph.elementAt(j);
-					}
-				}	
+	/**
+	 * Takes the samples on the calling thread and computes their spanning trees on a
+	 * pool of threads. The results are written in the order of the samples.
+	 */
+	protected void longestLinkParallel(PrintWriter o, double duration) {
+		final int n = s.getNode().length;
+		final int window = 4 * threads;
+		final double[][][] buffers = new double[window][][];
+		final ThreadLocal<EuclideanMST> engines = new ThreadLocal<EuclideanMST>() {
+			protected EuclideanMST initialValue() {
+				return new EuclideanMST();
 			}
+		};
 
-			inTheGraph.add(next);
-			notInTheGraph.remove(next);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		LinkedList<Future<Double>> results = new LinkedList<Future<Double>>();
+		LinkedList<Double> times = new LinkedList<Double>();
+		double time = 0;
+		int submitted = 0;
+		try {
+			while(time < duration || !results.isEmpty()) {
+				// a buffer is used again only after the result of its sample was written
+				while(time < duration && results.size() < window) {
+					final double[][] b = sample(time, buffers[submitted % window]);
+					buffers[submitted % window] = b;
+					submitted++;
+					results.add(pool.submit(new Callable<Double>() {
+						public Double call() {
+							return Double.valueOf(longest(engines.get(), b, n));
+						}
+					}));
+					times.add(Double.valueOf(time));
+					time += intervalLength;
+				}
+				o.println(times.removeFirst().doubleValue() + " " + results.removeFirst().get().doubleValue());
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException("longest link computation interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
 
-			if(edgeLength > longestEdge) { longestEdge = edgeLength; }
+	/**
+	 * Writes the positions of all nodes at the given time into buffer.
+	 * @param buffer x, y and z arrays, allocated if null
+	 * @return the buffer
+	 */
+	protected double[][] sample(final double time, double[][] buffer) {
+		MobileNode[] node = s.getNode();
+		if(cursor == null) {
+			cursor = new MobileNode.Cursor[node.length];
+			for(int i=0;i<node.length;i++) {
+				cursor[i] = node[i].cursor();
+			}
+		}
+		if(buffer == null) {
+			buffer = new double[3][node.length];
+		}
+		for(int i=0;i<node.length;i++) {
+			cursor[i].advanceTo(time);
+			buffer[0][i] = cursor[i].x;
+			buffer[1][i] = cursor[i].y;
+			buffer[2][i] = cursor[i].z;
 		}
-		
-		return longestEdge;
+		return buffer;
+	}
+
+	/** @return the longest edge of the minimum spanning tree of the sampled positions */
+	protected static double longest(EuclideanMST mst, double[][] positions, int n) {
+		// no edge is shorter than Double.MIN_VALUE, as in the former Prim implementation
+		return Math.max(Double.MIN_VALUE, mst.longestEdge(positions[0], positions[1], positions[2], n));
+	}
+	
+	//ToDo: Use LongestLinkMetrics from edu.bonnmotion.cs.iv.bonnmotion.apps.statistics -> Not yet possible. Requires scenario3d
+	protected double longestLink(final double time) {
+		positions = sample(time, positions);
+		return longest(mst, positions, s.getNode().length);
 	}
 }
 
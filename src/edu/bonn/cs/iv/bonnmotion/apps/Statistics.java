@@ -21,11 +21,21 @@
 package edu.bonn.cs.iv.bonnmotion.apps;
 
 import edu.bonn.cs.iv.bonnmotion.*;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.OfflineConnectivity;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.PairEngine;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.SpatialPrefilter;
+import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
 import edu.bonn.cs.iv.graph.*;
 import edu.bonn.cs.iv.util.*;
 
 import java.io.*;
+import java.util.LinkedList;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** Application that calculates various statistics for movement scenarios. */
 
@@ -77,6 +87,9 @@ public class Statistics extends App {
 
 	protected static double temporalDependenceC = 100;
 
+	/** Number of threads for the pairwise computations. */
+	protected static int threads = 1;
+
 	public Statistics(String[] args) throws FileNotFoundException, IOException {
 		go(args);
 	}
@@ -94,15 +107,24 @@ public class Statistics extends App {
 
         if (radius != null) {
             if (flags > 0) {
+                EventQueue[] scheds = new EventQueue[radius.length];
+                EventQueue[] ooscheds = new EventQueue[radius.length];
                 for (int i = 0; i < radius.length; i++) {
-                    Heap sched = new Heap();
-                    Heap oosched = new Heap();
-                    System.out.println("radius=" + radius[i]);
-                    schedule(s, sched, radius[i], false, name, oosched);
-                    String basename = name + ".stats_" + radius[i];
-                    if (basename.endsWith(".0"))
-                        basename = basename.substring(0, basename.length() - 2);
-                    progressive(s.nodeCount(s.getModelName(), basename), s.getDuration(), s, sched, true, flags, basename, oosched);
+                    scheds[i] = new EventQueue();
+                    ooscheds[i] = new EventQueue();
+                }
+                schedule(s, scheds, radius, false, name, ooscheds);
+                if (threads > 1) {
+                    progressiveParallel(s, scheds, ooscheds);
+                } else {
+                    for (int i = 0; i < radius.length; i++) {
+                        EventQueue sched = scheds[i];
+                        EventQueue oosched = ooscheds[i];
+                        scheds[i] = null;
+                        ooscheds[i] = null;
+                        System.out.println("radius=" + radius[i]);
+                        progressive(s.nodeCount(s.getModelName(), progressiveBasename(radius[i])), s.getDuration(), s, sched, true, flags, progressiveBasename(radius[i]), oosched);
+                    }
                 }
             } else {
                 overall(s, radius, name); 
@@ -117,19 +139,83 @@ public class Statistics extends App {
         }
     }
 
+	protected String progressiveBasename(double r) {
+		String basename = name + ".stats_" + r;
+		if (basename.endsWith(".0"))
+			basename = basename.substring(0, basename.length() - 2);
+		return basename;
+	}
+
+	/**
+	 * Runs progressive() for all radii at the same time, every radius replays its events on
+	 * its own thread. MinCut and stability samples of all radii are computed on a shared
+	 * pool of worker threads.
+	 */
+	protected void progressiveParallel(final Scenario s, final EventQueue[] scheds, final EventQueue[] ooscheds) throws FileNotFoundException, IOException {
+		final ExecutorService workers = Executors.newFixedThreadPool(threads);
+		ExecutorService replay = Executors.newFixedThreadPool(Math.min(threads, radius.length));
+		LinkedList<Future<Object>> done = new LinkedList<Future<Object>>();
+		try {
+			for (int i = 0; i < radius.length; i++) {
+				final int r = i;
+				final String basename = progressiveBasename(radius[r]);
+				final int nodes = s.nodeCount(s.getModelName(), basename);
+				done.add(replay.submit(new Callable<Object>() {
+					public Object call() throws IOException {
+						System.out.println("radius=" + radius[r]);
+						progressive(nodes, s.getDuration(), s, scheds[r], true, flags, basename, ooscheds[r], workers, false);
+						return null;
+					}
+				}));
+			}
+			while (!done.isEmpty())
+				result(done.removeFirst());
+		}
+		finally {
+			replay.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
+
+	/** Waits for a task and passes on its exceptions. */
+	protected static <T> T result(Future<T> f) throws IOException {
+		try {
+			return f.get();
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException("statistics computation interrupted");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException)cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
 	/** Calculates statistics' devolution over time. */
-	public static void progressive(int nodes, double duration, Scenario s, Heap sched, boolean bidirectional,
-			int which, String basename, Heap oosched) throws FileNotFoundException, IOException {
+	public static void progressive(int nodes, double duration, Scenario s, EventQueue sched, boolean bidirectional,
+			int which, String basename, EventQueue oosched) throws FileNotFoundException, IOException {
+		progressive(nodes, duration, s, sched, bidirectional, which, basename, oosched, null, true);
+	}
 
-		Graph topo = new Graph();
-		for (int i = 0; i < nodes; i++)
-			topo.checkNode(i);
+	/**
+	 * Calculates statistics' devolution over time.
+	 * @param workers if not null, MinCut and stability are computed on these threads from
+	 *        copies of the topology, while the events are replayed on the calling thread
+	 * @param showProgress print the progress on stdout
+	 */
+	public static void progressive(int nodes, double duration, Scenario s, EventQueue sched, boolean bidirectional,
+			int which, String basename, EventQueue oosched, ExecutorService workers, boolean showProgress) throws FileNotFoundException, IOException {
 
 		// verwalte zweiten Heap fr On/Off-Events der Knoten
-		// basierend auf dieser wird dann Kopie des Graphen verwaltet, aus dem
-		// smtliche Off-Nodes jeweils gelscht werden
+		// switched off nodes are deleted from the graph before every evaluation
+		// and restored by rollback() afterwards
 		boolean off_nodes_exist = (oosched.size() > 0);
-		Graph topo_complete = (Graph)topo.clone();
 		boolean[] node_off = new boolean[nodes];
 		for (int off_init = 0; off_init < nodes; off_init++)
 			node_off[off_init] = false;
@@ -166,8 +252,10 @@ public class Statistics extends App {
 			fPart = new PrintWriter(new FileOutputStream(basename + ".part"));
 
 		PrintWriter fMinCut = null;
+		EdgeConnectivity minCut = null;
 		if ((which & STATS_MINCUT) > 0) {
 			fMinCut = new PrintWriter(new FileOutputStream(basename + ".mincut"));
+			minCut = new EdgeConnectivity();
 		}
 
 		PrintWriter fStability = null;
@@ -180,14 +268,40 @@ public class Statistics extends App {
 			fPartDeg = new PrintWriter(new FileOutputStream(basename + ".partdeg"));
 		}
 
+		// samples computed by the workers, written in order as they are finished
+		OrderedSamples minCutSamples = null;
+		OrderedSamples stabilitySamples = null;
+		final ThreadLocal<EdgeConnectivity> minCuts = new ThreadLocal<EdgeConnectivity>() {
+			protected EdgeConnectivity initialValue() {
+				return new EdgeConnectivity();
+			}
+		};
+		if (workers != null) {
+			if (fMinCut != null)
+				minCutSamples = new OrderedSamples(fMinCut);
+			if (fStability != null)
+				stabilitySamples = new OrderedSamples(fStability);
+		}
+
+		// partitions and partitioning degree are answered by OfflineConnectivity after the
+		// last event, the graph itself is only kept up to date for the other statistics
+		OfflineConnectivity conn = null;
+		OfflineSamples partSamples = new OfflineSamples();
+		OfflineSamples partDegSamples = new OfflineSamples();
+		if (bidirectional && ((which & (STATS_PARTITIONS | STATS_PARTDEG)) > 0)) {
+			conn = new OfflineConnectivity(nodes);
+		}
+		boolean needGraph = !bidirectional || ((which & (STATS_NODEDEG | STATS_MINCUT | STATS_STABILITY)) > 0);
+		CompactGraph topo = needGraph ? new CompactGraph(nodes) : null;
+
 		double n1 = (double)(nodes - 1);
 		int[] uni = new int[4];
 		int progress = -1;
 		int done = 0;
 		while (sched.size() > 0) {
-			double ntime = sched.minLevel();
+			double ntime = sched.minTime();
 			int nProg = (int)(100.0 * (double)done / (double)(sched.size() + done) + 0.5);
-			if (nProg > progress) {
+			if (showProgress && (nProg > progress)) {
 				progress = nProg;
 				System.out.print("calculating... " + progress + "% done.\r");
 			}
@@ -195,25 +309,28 @@ public class Statistics extends App {
 			if (ntime > time) {
 				if (printTime)
 					System.out.println("t=" + time);
-				Graph g;
+				int query = -1;
+				CompactGraph snapshot = null;
+
+				// switched off nodes and unidirectional links are removed temporarily
+				int mark = -1;
+				if (needGraph) {
+					mark = topo.snapshot();
+					if (off_nodes_exist)
+						for (int off_i = nodes - 1; off_i >= 0; off_i--)
+							if (node_off[off_i])
+								topo.delNode(off_i);
+				}
 
 				if (bidirectional) {
-					g = topo;
 					if (((which & STATS_NODEDEG) > 0) && (time >= tNextDeg)) {
 						tNextDeg += secN;
 
-						int ne = 0;
-						for (int i = 0; i < g.nodeCount(); i++) {
-							Node n = g.nodeAt(i);
-							ne += n.outDeg();
-						}
-
-						fDeg.println(time + " " + ((double)ne / (double)g.nodeCount()));
+						fDeg.println(time + " " + ((double)topo.edgeCount() / (double)topo.nodeCount()));
 					}
 				}
 				else {
-					g = (Graph)topo.clone();
-					g.unidirRemove(uni);
+					topo.unidirRemove(uni);
 					if (((which & STATS_UNIDIRECTIONAL) > 0) && (time >= tNextUni)) {
 						tNextUni += secU;
 
@@ -240,84 +357,138 @@ public class Statistics extends App {
 				if (((which & STATS_PARTITIONS) > 0) && (time >= tNextPart)) {
 					tNextPart += secP;
 
-					int npart = g.partitions(0);
-					if (part != npart) {
-						part = npart;
-						fPart.println(time + " " + part);
+					if (conn != null) {
+						if (query < 0)
+							query = conn.query();
+						partSamples.add(time, query);
+					}
+					else {
+						int npart = topo.partitions();
+						if (part != npart) {
+							part = npart;
+							fPart.println(time + " " + part);
+						}
 					}
 				}
 				if (((which & STATS_PARTDEG) > 0) && (time >= tNextPartDeg)) {
 					tNextPartDeg += secG;
 
-					double npartdeg = g.partdeg(0);
-					if (partdeg != npartdeg) {
-						partdeg = npartdeg;
-						fPartDeg.println(time + " " + partdeg);
+					if (conn != null) {
+						if (query < 0)
+							query = conn.query();
+						partDegSamples.add(time, query);
+					}
+					else {
+						double npartdeg = topo.partdeg();
+						if (partdeg != npartdeg) {
+							partdeg = npartdeg;
+							fPartDeg.println(time + " " + partdeg);
+						}
 					}
 				}
 				if (((which & STATS_MINCUT) > 0) && (time >= tNextMinCut)) {
 					tNextMinCut += secM;
 
-					Graph h = Graph.buildSeperatorTree(g);
-					Edge minedge = h.findMinEdge();
-					int nmincut = 0;
-					if (minedge != null)
-						nmincut = minedge.weight;
-					if (mincut != nmincut) {
-						mincut = nmincut;
-						fMinCut.println(time + " " + mincut);
+					if (minCutSamples != null) {
+						if (snapshot == null)
+							snapshot = topo.copy();
+						final CompactGraph g = snapshot;
+						minCutSamples.add(time, workers.submit(new Callable<Integer>() {
+							public Integer call() {
+								return Integer.valueOf(minCuts.get().minCut(g));
+							}
+						}));
+					}
+					else {
+						int nmincut = minCut.minCut(topo);
+						if (mincut != nmincut) {
+							mincut = nmincut;
+							fMinCut.println(time + " " + mincut);
+						}
 					}
 				}
 				if (((which & STATS_STABILITY) > 0) && (time >= tNextStability)) {
 					tNextStability += secS;
 
-					int nstability = g.stability();
-					if (stability != nstability) {
-						stability = nstability;
-						fStability.println(time + " " + stability);
+					if (stabilitySamples != null) {
+						if (snapshot == null)
+							snapshot = topo.copy();
+						final CompactGraph g = snapshot;
+						stabilitySamples.add(time, workers.submit(new Callable<Integer>() {
+							public Integer call() {
+								return Integer.valueOf(g.stability());
+							}
+						}));
+					}
+					else {
+						int nstability = topo.stability();
+						if (stability != nstability) {
+							stability = nstability;
+							fStability.println(time + " " + stability);
+						}
 					}
 				}
-			}
 
-			if (off_nodes_exist)
-				topo = topo_complete; // complete Graph with nodes that are switched off
+				if (needGraph)
+					topo.rollback(mark);
+			}
 
 			time = ntime;
 
-			IndexPair idx = (IndexPair)sched.deleteMin();
-			if (idx.i >= 0) { // hack: stopper
-				Node src = topo.getNode(idx.i);
-				if (src.getSucc(idx.j) == null) {
-					Node dst = topo.getNode(idx.j);
-					src.addSucc(dst, 1);
+			int ni = sched.minFirst();
+			int nj = sched.minSecond();
+			sched.deleteMin();
+			if (ni >= 0 && conn != null)
+				conn.toggleEdge(ni, nj);
+			if (ni >= 0 && needGraph) { // hack: stopper
+				if (!topo.hasEdge(ni, nj)) {
+					topo.addEdge(ni, nj);
 					if (bidirectional)
-						dst.addSucc(src, 1);
+						topo.addEdge(nj, ni);
 				}
 				else {
-					src.delSucc(idx.j);
+					topo.delEdge(ni, nj);
 					if (bidirectional)
-						topo.getNode(idx.j).delSucc(idx.i);
+						topo.delEdge(nj, ni);
 				}
 			}
 
 			if (off_nodes_exist) {
 				// update node_off array
-				while ((oosched.size() > 0) && (oosched.minLevel() <= time)) {
-					Integer off_index = (Integer)oosched.deleteMin();
-					node_off[off_index.intValue()] = !node_off[off_index.intValue()];
+				while ((oosched.size() > 0) && (oosched.minTime() <= time)) {
+					int off_index = oosched.minFirst();
+					oosched.deleteMin();
+					node_off[off_index] = !node_off[off_index];
+					if (conn != null)
+						conn.toggleNode(off_index);
 				}
-				// del nodes that are switched off
-				topo_complete = (Graph)topo.clone();
-				for (int off_i = nodes - 1; off_i >= 0; off_i--) {
-					if (node_off[off_i]) {
-						Node todell = topo.getNode(off_i);
-						topo.delNode(todell);
-					}
+			}
+		}
+		if (showProgress)
+			System.out.println();
+
+		if (minCutSamples != null)
+			minCutSamples.flush();
+		if (stabilitySamples != null)
+			stabilitySamples.flush();
+
+		if (conn != null) {
+			conn.solve();
+			for (int k = 0; k < partSamples.count; k++) {
+				int npart = conn.components(partSamples.query[k]);
+				if (part != npart) {
+					part = npart;
+					fPart.println(partSamples.time[k] + " " + part);
+				}
+			}
+			for (int k = 0; k < partDegSamples.count; k++) {
+				double npartdeg = conn.partdeg(partDegSamples.query[k]);
+				if (partdeg != npartdeg) {
+					partdeg = npartdeg;
+					fPartDeg.println(partDegSamples.time[k] + " " + partdeg);
 				}
 			}
-
 		}
-		System.out.println();
 
 		if (fDeg != null)
 			fDeg.close();
@@ -333,6 +504,62 @@ public class Statistics extends App {
 			fPartDeg.close();
 	}
 
+	/**
+	 * Samples of a statistic in progressive() that are computed by worker threads. The
+	 * values are written in the order of the samples, and only if they changed.
+	 */
+	protected static class OrderedSamples {
+		/** Number of samples that may be computed at the same time. */
+		protected static final int WINDOW = 64;
+
+		protected final PrintWriter out;
+		protected final LinkedList<Double> time = new LinkedList<Double>();
+		protected final LinkedList<Future<Integer>> value = new LinkedList<Future<Integer>>();
+		protected int last = -1;
+
+		protected OrderedSamples(PrintWriter out) {
+			this.out = out;
+		}
+
+		protected void add(double t, Future<Integer> v) throws IOException {
+			time.add(Double.valueOf(t));
+			value.add(v);
+			while ((value.size() > WINDOW) || (!value.isEmpty() && value.getFirst().isDone()))
+				writeFirst();
+		}
+
+		protected void flush() throws IOException {
+			while (!value.isEmpty())
+				writeFirst();
+		}
+
+		protected void writeFirst() throws IOException {
+			double t = time.removeFirst().doubleValue();
+			int v = result(value.removeFirst()).intValue();
+			if (v != last) {
+				last = v;
+				out.println(t + " " + v);
+			}
+		}
+	}
+
+	/** Sample times of a statistic in progressive() and the queries that answer them. */
+	protected static class OfflineSamples {
+		protected double[] time = new double[16];
+		protected int[] query = new int[16];
+		protected int count = 0;
+
+		protected void add(double t, int q) {
+			if (count == time.length) {
+				time = java.util.Arrays.copyOf(time, 2 * count);
+				query = java.util.Arrays.copyOf(query, 2 * count);
+			}
+			time[count] = t;
+			query[count] = q;
+			count++;
+		}
+	}
+
 	public static void calcVelocity(String basename, Scenario s) {
 		MobileNode[] node = s.getNode();
 		double duration = s.getDuration();
@@ -371,15 +598,39 @@ public class Statistics extends App {
 	}
 
 	public static void calcAverageNodeDegDistri(String basename, Scenario s) {
-		MobileNode[] node = s.getNode();
-		double duration = s.getDuration();
-		double[] and_per_node = new double[node.length];
-		double[] conn_time_help;
-		PrintWriter fANDDistri = null;
+		final MobileNode[] node = s.getNode();
+		final double duration = s.getDuration();
+		final Dimension dim = s.getScenarioParameters().calculationDim;
+		final double[][] and_per_node = new double[secA.length][node.length];
 
 		for (int r = 0; r < secA.length; r++) {
 			System.out.println("Starting with calculation of Average Node Deg. Distri Radius " + secA[r]);
+		}
 
+		// The connection time is symmetric, so every pair is computed once for all radii and
+		// added to both nodes. In triangle order, the sum of every node still gets its terms
+		// in the order of the partners.
+		PairEngine.prepare(node);
+		new PairEngine(threads).triangle(node.length, new PairEngine.PairFunction() {
+			public double[] compute(int i, int j) {
+				double[][] conn_time_help = MobileNode.getConnectionTime(node[i], node[j], 0.0, duration, secA, new Building[0], dim);
+				double[] ratio = new double[secA.length];
+				for (int r = 0; r < secA.length; r++) {
+					ratio[r] = conn_time_help[r][1] / conn_time_help[r][0];
+				}
+				return ratio;
+			}
+		}, new PairEngine.PairConsumer() {
+			public void consume(int i, int j, double[] ratio) {
+				for (int r = 0; r < secA.length; r++) {
+					and_per_node[r][i] = and_per_node[r][i] + ratio[r];
+					and_per_node[r][j] = and_per_node[r][j] + ratio[r];
+				}
+			}
+		});
+
+		for (int r = 0; r < secA.length; r++) {
+			PrintWriter fANDDistri = null;
 			try {
 				fANDDistri = new PrintWriter(new FileOutputStream(basename + ".and_distri_" + secA[r]));
 			}
@@ -388,108 +639,426 @@ public class Statistics extends App {
 			}
 
 			for (int i = 0; i < node.length; i++) {
-				and_per_node[i] = 0.0;
-				for (int j = 0; j < node.length; j++) {
-					if (i != j) {
-						conn_time_help = MobileNode.getConnectionTime(node[i], node[j], 0.0, duration, secA[r], s.getScenarioParameters().calculationDim);
-						and_per_node[i] = and_per_node[i] + (conn_time_help[1] / conn_time_help[0]);
-					}
-				}
-				fANDDistri.println(i + " " + and_per_node[i]);
+				fANDDistri.println(i + " " + and_per_node[r][i]);
 			}
 			fANDDistri.close();
 		}
 	}
 
 	/** Put LinkStatusChange-events into a heap. */
-	public static double[] schedule(Scenario s, Heap sched, double radius, boolean calculateMobility, String basename, Heap onoffsched) {
-		MobileNode[] node = s.getNode();
-		double duration = s.getDuration();
-		double mobility = 0.0;
-		double on_time = 0.0; // on time for links
-		double on_time_node = 0.0;
-		double mobility_pairs[][] = new double[node.length][node.length];
-		double on_time_pairs[][] = new double[node.length][node.length];
-		double D_spatial = 0.0;
-		int D_spatial_count = 0;
-		double Relative_speed = 0.0;
-		int Relative_speed_count = 0;
-		int connectedPairs = 0;
-		int total = (node.length - 1) * node.length / 2;
-		int done = 0;
-		int progress = -1;
-		double result[] = new double[5];
+	public static double[] schedule(final Scenario s, EventQueue sched, final double radius, final boolean calculateMobility, String basename, EventQueue onoffsched) {
+		return schedule(s, new EventQueue[] {sched}, new double[] {radius}, calculateMobility, basename, new EventQueue[] {onoffsched})[0];
+	}
+
+	/**
+	 * Puts the LinkStatusChange-events of several transmission ranges into one heap per range.
+	 * Every node pair is evaluated only once for all ranges.
+	 * @return the result of schedule() for every range
+	 */
+	public static double[][] schedule(final Scenario s, EventQueue[] sched, final double[] radius, final boolean calculateMobility, String basename, EventQueue[] onoffsched) {
+		final MobileNode[] node = s.getNode();
+		final double duration = s.getDuration();
+		double result[][] = new double[radius.length][5];
 
 		for (int i = 0; i < node.length; i++) {
 			// put on off events in a seperate heap
 			double[] onoffChanges = MobileNode.getOnOffChanges(node[i]);
 			
-			Integer ooidx = new Integer(i);
 			for (int m = 0; m < onoffChanges.length; m++) {
-				onoffsched.add(ooidx, onoffChanges[m]);
-			}
-			for (int j = i + 1; j < node.length; j++) {
-				int nProg = (int)(100.0 * (double)done / (double)total + 0.5);
-				if (nProg > progress) {
-					progress = nProg;
-					System.err.print("scheduling... " + progress + "% done.\r");
-				}
-				done++;
-				IndexPair idx = new IndexPair(i, j);
-				double[] linkStatusChanges;
-				linkStatusChanges = MobileNode.pairStatistics(node[i], node[j], 0.0, duration, radius, calculateMobility, s.getScenarioParameters().calculationDim);
-	            
-				mobility_pairs[i][j] = linkStatusChanges[0];
-				on_time_pairs[i][j] = linkStatusChanges[1];
-				D_spatial += linkStatusChanges[2];
-				D_spatial_count += linkStatusChanges[3];
-				Relative_speed += linkStatusChanges[4];
-				Relative_speed_count += linkStatusChanges[5];
-
-				if (linkStatusChanges.length > 6) {
-					connectedPairs++;
-				}
-
-				for (int l = 6; l < linkStatusChanges.length; l++)
-					sched.add(idx, linkStatusChanges[l]);
-				if ((linkStatusChanges.length & 1) == 0) {
-					// explicitely add "disconnect" at the end
-					sched.add(idx, duration);
+				for (int r = 0; r < radius.length; r++) {
+					onoffsched[r].add(onoffChanges[m], i, -1);
 				}
 			}
-			
 		}
 
-		// calc mobility
-		for (int i = 0; i < node.length; i++) {
-			for (int j = i + 1; j < node.length; j++) {
-				on_time = on_time + on_time_pairs[i][j];
-				mobility = mobility + mobility_pairs[i][j];
+		PairEngine.prepare(node);
+		PairEngine engine = new PairEngine(threads);
+		PairEngine.PairFunction pairStatistics = new PairEngine.PairFunction() {
+			public double[] compute(int i, int j) {
+				return pack(MobileNode.pairStatistics(node[i], node[j], 0.0, duration, radius, calculateMobility, new Building[0], s.getScenarioParameters().calculationDim));
+			}
+		};
+		// Without mobility, pairs that never get closer than 2 * radius (spatial dependence
+		// and relative speed) only contribute their on-time, which is not used then. The
+		// mobility is only needed for the first range.
+		LinkScheduler[] ls = new LinkScheduler[radius.length];
+		SpatialPrefilter widest = null;
+		double widestRadius = 0.0;
+		for (int r = 0; r < radius.length; r++) {
+			if (calculateMobility && r == 0) {
+				ls[r] = new LinkScheduler((long)(node.length - 1) * node.length / 2, null, sched[r], duration, true);
+				continue;
 			}
+			SpatialPrefilter filter = new SpatialPrefilter(node, 0.0, duration, 2 * radius[r]);
+			ls[r] = new LinkScheduler(filter.pairCount(), filter, sched[r], duration, r == 0);
+			if (widest == null || radius[r] > widestRadius) {
+				widest = filter;
+				widestRadius = radius[r];
+			}
+		}
+		if (calculateMobility) {
+			engine.triangle(node.length, pairStatistics, new MultiLinkScheduler(ls));
+		} else {
+			engine.partners(widest.upperPartners(), pairStatistics, new MultiLinkScheduler(ls));
+		}
+		for (int r = 0; r < radius.length; r++) {
+			ls[r].finish();
 		}
 
-        for (int i = 0; i < node.length; i++) {
-            on_time_node = on_time_node + MobileNode.getNodesOnTime(node[i], duration);
-        }
+		double on_time_node = 0.0;
+		for (int i = 0; i < node.length; i++) {
+			on_time_node = on_time_node + MobileNode.getNodesOnTime(node[i], duration);
+		}
 
-		result[0] = mobility / on_time;
-		result[1] = on_time_node;
-		result[2] = D_spatial / D_spatial_count;
-		result[3] = Relative_speed / Relative_speed_count;
-		result[4] = connectedPairs;
+		for (int r = 0; r < radius.length; r++) {
+			result[r][0] = ls[r].mobility / ls[r].on_time;
+			result[r][1] = on_time_node;
+			result[r][2] = ls[r].D_spatial / ls[r].D_spatial_count;
+			result[r][3] = ls[r].Relative_speed / ls[r].Relative_speed_count;
+			result[r][4] = ls[r].connectedPairs;
+		}
 
 		System.out.println();
 		return result;
 	}
 
-	/** Helper function for overall(), merge two partitions. */
-	protected static void pmerge(int[] idx, int[] size, int i, int j) {
-		int old = idx[j];
-		for (int k = 0; k < idx.length; k++)
-			if (idx[k] == old)
-				idx[k] = idx[i];
-		size[idx[i]] += size[old];
-		size[old] = 0;
+	/** Joins the results for several ranges into one array, preceded by their lengths. */
+	protected static double[] pack(double[][] results) {
+		int length = results.length;
+		for (int r = 0; r < results.length; r++) {
+			length += results[r].length;
+		}
+		double[] packed = new double[length];
+		int pos = results.length;
+		for (int r = 0; r < results.length; r++) {
+			packed[r] = results[r].length;
+			System.arraycopy(results[r], 0, packed, pos, results[r].length);
+			pos += results[r].length;
+		}
+		return packed;
+	}
+
+	/** Hands the results of pack() to one LinkScheduler per range. */
+	protected static class MultiLinkScheduler implements PairEngine.PairConsumer {
+		protected final LinkScheduler[] ls;
+
+		protected MultiLinkScheduler(LinkScheduler[] ls) {
+			this.ls = ls;
+		}
+
+		public void consume(int i, int j, double[] packed) {
+			int pos = ls.length;
+			for (int r = 0; r < ls.length; r++) {
+				int length = (int)packed[r];
+				ls[r].consume(i, j, java.util.Arrays.copyOfRange(packed, pos, pos + length));
+				pos += length;
+			}
+		}
+	}
+
+	/** Collects the results of MobileNode.pairStatistics() for schedule(), in pair order. */
+	protected static class LinkScheduler implements PairEngine.PairConsumer {
+		protected final EventQueue sched;
+		protected final double duration;
+		/** pairs that are left out, null if all pairs are scheduled */
+		protected final SpatialPrefilter filter;
+		/** sums over the pairs, in pair order */
+		protected double mobility = 0.0;
+		protected double on_time = 0.0;
+		protected double D_spatial = 0.0;
+		protected int D_spatial_count = 0;
+		protected double Relative_speed = 0.0;
+		protected int Relative_speed_count = 0;
+		protected int connectedPairs = 0;
+		protected final long total;
+		protected final boolean showProgress;
+		protected long done = 0;
+		protected int progress = -1;
+
+		protected LinkScheduler(long pairs, SpatialPrefilter filter, EventQueue sched, double duration, boolean showProgress) {
+			this.filter = filter;
+			this.sched = sched;
+			this.duration = duration;
+			this.total = pairs;
+			this.showProgress = showProgress;
+		}
+
+		public void consume(int i, int j, double[] linkStatusChanges) {
+			if ((filter != null) && !filter.mayInteract(i, j))
+				return;
+			int nProg = (int)(100.0 * (double)done / (double)total + 0.5);
+			if (showProgress && nProg > progress) {
+				progress = nProg;
+				System.err.print("scheduling... " + progress + "% done.\r");
+			}
+			done++;
+
+			mobility = mobility + linkStatusChanges[0];
+			on_time = on_time + linkStatusChanges[1];
+			D_spatial += linkStatusChanges[2];
+			D_spatial_count += linkStatusChanges[3];
+			Relative_speed += linkStatusChanges[4];
+			Relative_speed_count += linkStatusChanges[5];
+
+			if (linkStatusChanges.length > 6) {
+				connectedPairs++;
+			}
+
+			for (int l = 6; l < linkStatusChanges.length; l++)
+				sched.add(linkStatusChanges[l], i, j);
+			if (linkStatusChanges.length > 6 && (linkStatusChanges.length & 1) == 0) {
+				// explicitely add "disconnect" at the end
+				sched.add(duration, i, j);
+			}
+		}
+
+		/**
+		 * Queues the end of the scenario as an event without a link (-1, -1), call after
+		 * the last pair. Pairs that were never connected have no events at all.
+		 */
+		protected void finish() {
+			sched.add(duration, -1, -1);
+		}
+	}
+
+	/**
+	 * Helper for overall(): partitions of the nodes together with the links that are
+	 * currently up. Every link that is up lies within a partition, so rebuilding the
+	 * partitions after a link break only has to split the partition of the broken link.
+	 */
+	protected static class Partitioning {
+		/** partition index of every node, the index of one of its members */
+		protected final int[] label;
+		/** size and members of every partition index in use */
+		protected final int[] size;
+		protected final int[][] members;
+		/** neighbours by the links that are up */
+		protected final int[][] adj;
+		protected final int[] deg;
+		protected int count;
+		/** sum of size * (nodes - size) over all partitions */
+		protected long degSum;
+		/** number of node pairs within the same partition */
+		protected long together;
+
+		/*
+		 * Path availability: the pairs that have ever been in the same partition are kept
+		 * in a bit matrix. Every node belongs to a group whose pairs are already marked;
+		 * only partitions that changed since the last time step ("dirty" ones) contain
+		 * several groups and are marked when the time advances.
+		 */
+		/** summed time that the pairs spent in the same partition */
+		protected double availableTime;
+		protected final int words;
+		protected final long[] ever;
+		protected final int[] group;
+		protected int nextGroup;
+		protected final boolean[] dirty;
+		protected int[] dirtyList;
+		protected int dirtyCount;
+
+		protected Partitioning(int nodes) {
+			label = new int[nodes];
+			size = new int[nodes];
+			members = new int[nodes][];
+			adj = new int[nodes][];
+			deg = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				adj[i] = new int[4];
+			}
+			words = (nodes + 63) >>> 6;
+			ever = new long[nodes * words];
+			group = new int[nodes];
+			dirty = new boolean[nodes];
+			dirtyList = new int[Math.max(nodes, 1)];
+			reset();
+		}
+
+		protected void reset() {
+			int nodes = label.length;
+			for (int i = 0; i < nodes; i++) {
+				label[i] = i;
+				size[i] = 1;
+				members[i] = new int[] {i};
+				deg[i] = 0;
+				group[i] = i;
+				dirty[i] = false;
+			}
+			count = nodes;
+			degSum = (long)nodes * (nodes - 1);
+			together = 0;
+			availableTime = 0.0;
+			java.util.Arrays.fill(ever, 0L);
+			nextGroup = nodes;
+			dirtyCount = 0;
+		}
+
+		protected long term(int s) {
+			return (long)s * (label.length - s);
+		}
+
+		protected static long pairs(int s) {
+			return (long)s * (s - 1) / 2;
+		}
+
+		protected void setDirty(int p) {
+			if (!dirty[p]) {
+				dirty[p] = true;
+				// entries of partitions that vanished are skipped in advance()
+				if (dirtyCount == dirtyList.length)
+					dirtyList = java.util.Arrays.copyOf(dirtyList, 2 * dirtyCount);
+				dirtyList[dirtyCount++] = p;
+			}
+		}
+
+		/** The partitions stay unchanged for dt, their pairs are connected during that time. */
+		protected void advance(double dt) {
+			long[] inside = new long[words];
+			for (int d = 0; d < dirtyCount; d++) {
+				int p = dirtyList[d];
+				if (!dirty[p])
+					continue;
+				dirty[p] = false;
+				int n = size[p];
+				int[] list = members[p];
+
+				// the pairs within the largest group are marked already
+				int[] groups = new int[n];
+				for (int k = 0; k < n; k++)
+					groups[k] = group[list[k]];
+				java.util.Arrays.sort(groups);
+				int largest = groups[0];
+				int run = 0, best = 0;
+				for (int k = 0; k < n; k++) {
+					run = (k > 0 && groups[k] == groups[k - 1]) ? run + 1 : 1;
+					if (run > best) {
+						best = run;
+						largest = groups[k];
+					}
+				}
+				for (int k = 0; k < n; k++)
+					inside[list[k] >>> 6] |= 1L << list[k];
+				for (int k = 0; k < n; k++) {
+					int v = list[k];
+					if (group[v] != largest)
+						for (int w = 0; w < words; w++)
+							ever[v * words + w] |= inside[w];
+				}
+				for (int k = 0; k < n; k++) {
+					inside[list[k] >>> 6] = 0L;
+					group[list[k]] = nextGroup;
+				}
+				nextGroup++;
+			}
+			dirtyCount = 0;
+			availableTime += dt * (double)together;
+		}
+
+		/** @return number of node pairs that have been in the same partition for some time */
+		protected int availablePairs() {
+			int nodes = label.length;
+			int r = 0;
+			for (int i = 0; i < nodes; i++)
+				for (int j = i + 1; j < nodes; j++)
+					if (((ever[i * words + (j >>> 6)] & (1L << j)) != 0) || ((ever[j * words + (i >>> 6)] & (1L << i)) != 0))
+						r++;
+			return r;
+		}
+
+		/** A link goes up, the partitions of both nodes are merged. */
+		protected void link(int i, int j) {
+			if (deg[i] == adj[i].length)
+				adj[i] = java.util.Arrays.copyOf(adj[i], 2 * deg[i]);
+			adj[i][deg[i]++] = j;
+			if (deg[j] == adj[j].length)
+				adj[j] = java.util.Arrays.copyOf(adj[j], 2 * deg[j]);
+			adj[j][deg[j]++] = i;
+
+			int a = label[i];
+			int b = label[j];
+			if (a == b)
+				return;
+			if (size[a] < size[b]) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+			degSum -= term(size[a]) + term(size[b]);
+			together -= pairs(size[a]) + pairs(size[b]);
+			if (members[a].length < size[a] + size[b])
+				members[a] = java.util.Arrays.copyOf(members[a], Math.max(2 * members[a].length, size[a] + size[b]));
+			for (int k = 0; k < size[b]; k++) {
+				int m = members[b][k];
+				label[m] = a;
+				members[a][size[a]++] = m;
+			}
+			size[b] = 0;
+			members[b] = null;
+			dirty[b] = false;
+			setDirty(a);
+			degSum += term(size[a]);
+			together += pairs(size[a]);
+			count--;
+		}
+
+		/** A link goes down, the partitions are not changed. */
+		protected void unlink(int i, int j) {
+			remove(i, j);
+			remove(j, i);
+		}
+
+		protected void remove(int i, int j) {
+			for (int k = 0; k < deg[i]; k++)
+				if (adj[i][k] == j) {
+					adj[i][k] = adj[i][--deg[i]];
+					return;
+				}
+		}
+
+		/** Splits the partition of node i into the components of the links that are up. */
+		protected void split(int i) {
+			int old = label[i];
+			int[] list = members[old];
+			int n = size[old];
+			degSum -= term(n);
+			together -= pairs(n);
+			count--;
+			size[old] = 0;
+			members[old] = null;
+			// parts of a partition without dirty groups have no dirty groups either
+			boolean wasDirty = dirty[old];
+			dirty[old] = false;
+			for (int k = 0; k < n; k++)
+				label[list[k]] = -1;
+
+			int[] queue = new int[n];
+			for (int k = 0; k < n; k++) {
+				int start = list[k];
+				if (label[start] >= 0)
+					continue;
+				int head = 0;
+				int tail = 0;
+				label[start] = start;
+				queue[tail++] = start;
+				while (head < tail) {
+					int v = queue[head++];
+					for (int e = 0; e < deg[v]; e++) {
+						int w = adj[v][e];
+						if (label[w] < 0) {
+							label[w] = start;
+							queue[tail++] = w;
+						}
+					}
+				}
+				size[start] = tail;
+				members[start] = java.util.Arrays.copyOf(queue, tail);
+				degSum += term(tail);
+				together += pairs(tail);
+				count++;
+				if (wasDirty)
+					setDirty(start);
+			}
+		}
 	}
 
 	/** Calc count of nodes that are off at time t **/
@@ -510,24 +1079,24 @@ public class Statistics extends App {
 		MobileNode[] node = s.getNode();
 		System.out.println("calculation of overall stats started");
 		double duration = s.getDuration();
-		double[][] ls = null;
 		PrintWriter stats = new PrintWriter(new FileOutputStream(basename + ".stats"));
 		// check next two lines for ExtendedCatastrophe
-		int tEdges = (node.length * (node.length - 1)) / 2;
+		long tEdges = ((long)node.length * (node.length - 1)) / 2;
 		double normFact = (double)tEdges * duration;
-		Heap heap = null;
-		Heap ooheap = null;
-		int[] pIdx = null; // partition index
-		int[] pSize = null; // partition sizes
+		EventQueue[] heaps = null;
+		EventQueue[] ooheaps = null;
+		Partitioning parts = null;
 		boolean[] isolation = null;
 
-		ls = new double[node.length - 1][];
-		for (int i = 0; i < ls.length; i++)
-			ls[i] = new double[node.length - i - 1];
-		heap = new Heap();
-		ooheap = new Heap();
-		pIdx = new int[node.length]; // partition index
-		pSize = new int[node.length]; // partition sizes
+		// start times of the links that are up, by pair (ni << 32 | nj)
+		LongDoubleHashMap ls = new LongDoubleHashMap(4 * node.length);
+		heaps = new EventQueue[radius.length];
+		ooheaps = new EventQueue[radius.length];
+		for (int k = 0; k < radius.length; k++) {
+			heaps[k] = new EventQueue();
+			ooheaps[k] = new EventQueue();
+		}
+		parts = new Partitioning(node.length);
 		isolation = new boolean[node.length];
 
 		String metrics[] = {"\"tx range\"", "\"avg. degree of spatial dependence\"", "\"avg. degree\"",
@@ -547,8 +1116,14 @@ public class Statistics extends App {
 		}
 		averageSpeed = averageSpeed / node.length;
 
+		// the link changes of all ranges in one pass, the mobility only matters for the first one
+		double[][] res_all = schedule(s, heaps, radius, true, basename, ooheaps);
+
 		for (int k = 0; k < radius.length; k++) {
 			System.out.println("transmission range=" + radius[k]);
+			EventQueue heap = heaps[k];
+			heaps[k] = null;
+			ooheaps[k] = null;
 
 			int partitions = node.length;
 			int partitionsOld = node.length;
@@ -571,23 +1146,16 @@ public class Statistics extends App {
 			int connections = 0;
 			Vector<Double> linkDurations = new Vector<Double>();
 
-			// variables to be used in calculating path availability
-			double available[][] = new double[node.length][];
+			// the partitions also collect the path availability
+			parts.reset();
+			ls.clear();
 
 			for (int i = 0; i < node.length; i++) {
-				pIdx[i] = i;
-				pSize[i] = 1;
 				isolation[i] = true;
-				for (int j = i + 1; j < node.length; j++)
-					ls[i][j - i - 1] = -1.0;
-
-				available[i] = new double[node.length];
-				for (int j = 0; j < node.length; j++)
-					available[i][j] = 0.0;
 			}
 
 			double res_help[] = null;
-			res_help = schedule(s, heap, radius[k], (k == 0), basename, ooheap);
+			res_help = res_all[k];
 			mobility = res_help[0];
 			on_time = res_help[1];
 
@@ -608,89 +1176,63 @@ public class Statistics extends App {
 					System.err.print("calculating... " + progress + "% done.\r");
 				}
 				done++;
-				double tNew = heap.minLevel();
-				IndexPair idx = (IndexPair)heap.deleteMin();
+				double tNew = heap.minTime();
+				int ni = heap.minFirst();
+				int nj = heap.minSecond();
+				heap.deleteMin();
 
 				// for calculating path availability
 				if (tNew > tOld)
-					pathAvailability(node.length, available, tNew - tOld, pIdx);
+					parts.advance(tNew - tOld);
 
-				if (((tNew > tOld) && (partitions != partitionsOld)) || (heap.size() == 0)) {
-					if (heap.size() != 0) {
-						avgPart += (double)partitions_corrected_old * (tOld - pSince);
-					}
-					else {
-						avgPart += (double)partitions_corrected * (tNew - pSince);
-					}
+				if ((tNew > tOld) && (partitions != partitionsOld)) {
+					avgPart += (double)partitions_corrected_old * (tOld - pSince);
 					partitions_corrected_old = partitions_corrected;
 					partitionsOld = partitions;
 					pSince = tOld;
 				}
-				if (((tNew > tOld) && (partDeg != partDegOld)) || (heap.size() == 0)) {
-					if (heap.size() != 0) {
-						avgPartDeg += partDegOld * (tOld - pdSince);
-					}
-					else {
-						avgPartDeg += partDeg * (tNew - pdSince);
-					}
+				if ((tNew > tOld) && (partDeg != partDegOld)) {
+					avgPartDeg += partDegOld * (tOld - pdSince);
 					partDegOld = partDeg;
 					pdSince = tOld;
 				}
-				if (ls[idx.i][idx.j - idx.i - 1] < 0.0) { // connect
-					if (tNew < duration) {
-					    connections++;
-					    ls[idx.i][idx.j - idx.i - 1] = tNew;
-					    if (pIdx[idx.i] != pIdx[idx.j]) {
-						    partitions--;
-						    pmerge(pIdx, pSize, idx.i, idx.j);
-					    }
-					}
-				} else { // disconnect
-					connections--;
-					double tUp = ls[idx.i][idx.j - idx.i - 1];
-					double tConn = tNew - tUp;
-					ls[idx.i][idx.j - idx.i - 1] = -1.0;
-					linkDuration += tConn;
-					links++;
-					if ((tNew < duration) && (tUp > 0.0)) {
-						linkDurations.addElement(new Double(tConn));
-						timeToLinkBreak += tConn;
-						linkbreaks++;
-						// rebuild pIdx
-						if (partitions == 1) {
-							partitions = node.length;
-							for (int i = 0; i < node.length; i++) {
-								pIdx[i] = i;
-								pSize[i] = 1;
-							}
-						} else {
-							int split = pIdx[idx.i];
-							for (int i = 0; i < node.length; i++)
-								if (pIdx[i] == split) {
-									partitions++;
-									pIdx[i] = i;
-									pSize[i] = 1;
-								}
-							partitions--;
+				// (-1, -1) is the end of the scenario, see LinkScheduler.finish()
+				if (ni >= 0) {
+					long link = ((long)ni << 32) | nj;
+					double tUp = ls.remove(link, -1.0);
+					if (tUp < 0.0) { // connect
+						if (tNew < duration) {
+						    connections++;
+						    ls.put(link, tNew);
+						    parts.link(ni, nj);
+						    partitions = parts.count;
+						}
+					} else { // disconnect
+						connections--;
+						double tConn = tNew - tUp;
+						parts.unlink(ni, nj);
+						linkDuration += tConn;
+						links++;
+						if ((tNew < duration) && (tUp > 0.0)) {
+							linkDurations.addElement(new Double(tConn));
+							timeToLinkBreak += tConn;
+							linkbreaks++;
+							// rebuild the partition of the broken link
+							parts.split(ni);
+							partitions = parts.count;
 						}
-						for (int i = 0; i < ls.length; i++)
-							for (int j = i + 1; j < node.length; j++)
-								if ((pIdx[i] != pIdx[j]) && (ls[i][j - i - 1] >= 0.0)) {
-									partitions--;
-									pmerge(pIdx, pSize, i, j);
-								}
 					}
 				}
 
 				partitions_corrected_old = partitions_corrected;
 				partitions_corrected = partitions - count_of_offline_nodes_at_time(s, tNew);
 
-				partDeg = 0.0;
-				for (int i = 0; i < pSize.length; i++)
-					if (pSize[i] > 0)
-						partDeg += (double)(pSize[i] * (node.length - pSize[i]));
+				partDeg = (double)parts.degSum;
 				tOld = tNew;
 			}
+			// the last step lasts until the end of the scenario
+			avgPart += (double)partitions_corrected * (tOld - pSince);
+			avgPartDeg += partDeg * (tOld - pdSince);
 			System.err.println();
 			double expDuration = timeToLinkBreak / (double)linkbreaks;
 			double varDuration = 0.0;
@@ -707,14 +1249,14 @@ public class Statistics extends App {
 			// get the number of node pairs that were ever linked
 			double connectedPairs = res_help[4];
 			// get path availability
-			double P_availability = getAveragePathAvailability(available, node.length, duration);
+			double P_availability = parts.availableTime / (parts.availablePairs() * duration);
 
 			values[k][0] = Double.toString(radius[k]);
 			values[k][1] = Double.toString(D_spatial);
 			values[k][2] = Double.toString((2. * linkDuration / on_time));
 			values[k][3] = Double.toString((avgPart / duration));
 			// TODO: correct it for off-line nodes
-			values[k][4] = Double.toString((avgPartDeg / (duration * (double)((node.length - 1) * node.length))));
+			values[k][4] = Double.toString((avgPartDeg / (duration * ((double)(node.length - 1) * node.length))));
 			values[k][5] = Double.toString(expDuration);
 			values[k][6] = Double.toString(varDuration);
 			values[k][7] = Integer.toString(linkbreaks);
@@ -729,44 +1271,6 @@ public class Statistics extends App {
 		stats.close();
 	}
 
-	/***
-	 * Checks if there is a path between each pair of nodes and adds that to the available array.
-	 * 
-	 * @param nodes The number of nodes
-	 * @param available 2D array to be updated with availability time
-	 * @param time_to_next Time between changes in connectivity
-	 * @param pIdx Partitions
-	 * */
-	protected static void pathAvailability(int nodes, double available[][], double time_to_next, int pIdx[]) {
-		for (int i = 0; i < nodes; i++)
-			for (int j = i + 1; j < nodes; j++) {
-				if (pIdx[i] == pIdx[j])
-					available[i][j] += time_to_next;
-			}
-	}
-
-	/*** 
-	 * Calculates the total path availability.
-	 * 
-	 * @param g Graph
-	 * @param available 2D array with availability time
-	 * @param nodes The number of nodes
-	 * @param duration Total simulation time
-	 * @return double containing the total path availability
-	 * */
-	protected static double getAveragePathAvailability(double[][] available, int nodes, double duration) {
-		double total_available = 0.0;
-		int num_pairs = 0;
-		for (int i = 0; i < nodes; i++)
-			for (int j = i + 1; j < nodes; j++) {
-				if (available[i][j] > 0.0) {
-					total_available += available[i][j];
-					num_pairs++;
-				}
-			}
-		return total_available / (num_pairs * duration);
-	}
-
 	/*** 
 	 * Gets the temporal dependence for the simulation.
 	 * 
@@ -847,6 +1351,9 @@ public class Statistics extends App {
 			case 'f':
 				name = val;
 				return true;
+			case 'j': // threads
+				threads = PairEngine.parseThreads(val);
+				return true;
 			case 'G': // Partitioning Degree
 				flags = flags ^ STATS_PARTDEG;
 				if (val.length() != 0)
@@ -909,6 +1416,7 @@ public class Statistics extends App {
 		System.out.println("\t-V <sec> Velocity over Time (progressive mode)");
 		System.out.println("\t-A <list of radii> Average Node Degree Distribution");
 		System.out.println("\t-c <sec> Average Temporal Dependence c value (default: 100)");
+		System.out.println("\t-j [<threads>] Number of threads for the pairwise calculations and the progressive statistics (default: 1, no value: all processors)");
 	}
 
 	public static void main(String[] args) throws FileNotFoundException, IOException {
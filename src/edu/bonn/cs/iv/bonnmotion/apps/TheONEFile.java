@@ -91,11 +91,15 @@ public class TheONEFile extends App {
 		MobileNode[] node = s.getNode();
 		double duration = s.getDuration();
 		double t = 0.0;
+		MobileNode.Cursor[] cursor = new MobileNode.Cursor[node.length];
+		for (int i = 0; i < node.length; i++) {
+			cursor[i] = node[i].cursor();
+		}
 		
 	    if (s.getScenarioParameters().outputDim == Dimension.THREED) {
 	        while (t < duration) {
 	            for (int i = 0; i < node.length; i++) {
-	                Position p = node[i].positionAt(t);
+	                MobileNode.Cursor p = cursor[i].advanceTo(t);
                     out.println(t + " " + i + " " + p.x + " " + p.y + " " + p.z);
 	            }
 	            t += intervalLength;
@@ -103,7 +107,7 @@ public class TheONEFile extends App {
         } else {
     		while (t < duration) {
     			for (int i = 0; i < node.length; i++) {
-    				Position p = node[i].positionAt(t);
+    				MobileNode.Cursor p = cursor[i].advanceTo(t);
     				out.println(t + " " + i + " " + p.x + " " + p.y);
     			}
     			t += intervalLength;
@@ -61,7 +61,7 @@ public class Visplot extends App {
 			System.exit(0);
 		}
 
-		Scenario s = Scenario.getScenario(name);
+		Scenario s = Scenario.getLazyScenario(name);
 		double duration = s.getDuration();
 		MobileNode node = s.getNode(idx);
 
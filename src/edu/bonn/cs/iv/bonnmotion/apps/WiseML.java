@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.HashMap;
 
 import edu.bonn.cs.iv.bonnmotion.*;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.PairEngine;
 import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
 
 public class WiseML extends App {
@@ -74,6 +75,7 @@ public class WiseML extends App {
 	/* transmission range [m] */
 	protected double transmissionRange = -1.0;
 	protected boolean printlinkactions = false;
+	protected int threads = 1;
     
     public WiseML(String[] args) {
         go(args);
@@ -135,16 +137,10 @@ public class WiseML extends App {
     }
     
     protected List<Double> computeLinkChangeTimes(Scenario s) {
-    	MobileNode[] _nodes = s.getNode();
-    	final double _duration = Math.ceil(s.getDuration());
-    	List<Double> linkChangeTimes = new ArrayList<Double>();
+    	final List<Double> linkChangeTimes = new ArrayList<Double>();
     	
-		for (int j = 0; j < _nodes.length; j++) {
-			for (int k = j+1; k < _nodes.length; k++) {
-				double[] lsc = null;
-				
-			    lsc = MobileNode.pairStatistics(_nodes[j], _nodes[k], 0.0, _duration, transmissionRange, false, s.getBuilding(), s.getScenarioParameters().calculationDim);
-
+    	new PairEngine(threads).triangle(s.nodeCount(), linkStatusChanges(s), new PairEngine.PairConsumer() {
+    		public void consume(int j, int k, double[] lsc) {
 				for (int l = 6; l < lsc.length; l += 2) {
 					double linkUp = lsc[l];
 					double linkDown = (l+1 < lsc.length) ? lsc[l+1] : Double.MAX_VALUE ;
@@ -154,58 +150,63 @@ public class WiseML extends App {
 					if (!linkChangeTimes.contains(linkDown))
 						linkChangeTimes.add(linkDown);	
 				}
-			}
-		}
+    		}
+    	});
 
 		Collections.sort(linkChangeTimes);
     	
     	return linkChangeTimes;
     }
     
-    protected List<Double> computeLinkChangeTimes(Scenario s, HashMap<Double, List<ActionItem>> actionsPerTime) {
-    	MobileNode[] _nodes = s.getNode();
-    	final double _duration = Math.ceil(s.getDuration());
-    	List<Double> linkChangeTimes = new ArrayList<Double>();
+    protected List<Double> computeLinkChangeTimes(Scenario s, final HashMap<Double, List<ActionItem>> actionsPerTime) {
+    	final List<Double> linkChangeTimes = new ArrayList<Double>();
     	
-		for (int j = 0; j < _nodes.length; j++) {
-			for (int k = 0; k < _nodes.length; k++) {
-				if (j != k) {	// do not compare node to itself
-	                double[] lsc = null;
-	                
-	                lsc = MobileNode.pairStatistics(_nodes[j], _nodes[k], 0.0, _duration, transmissionRange, false, s.getBuilding(), s.getScenarioParameters().calculationDim);
-    				
-	                for (int l = 6; l < lsc.length; l += 2) {
-    					double linkUp = lsc[l];
-    					double linkDown = (l+1 < lsc.length) ? lsc[l+1] : Double.MAX_VALUE ;
-    					
-    					if (!linkChangeTimes.contains(linkUp)) linkChangeTimes.add(linkUp);
-    					if (!linkChangeTimes.contains(linkDown)) linkChangeTimes.add(linkDown);	
-    					
-    					List<ActionItem> tmp = actionsPerTime.get(linkUp);
-    					if (tmp == null) {
-    						tmp = new ArrayList<ActionItem>();
-    					}
-    					
-    					tmp.add(new ActionItem(LinkAction.enableLink, j, k));
-    					actionsPerTime.put(linkUp, tmp);
-    					
-    					tmp = actionsPerTime.get(linkDown);
-    					if (tmp == null) {
-    						tmp = new ArrayList<ActionItem>();	
-    					}
-    					
-    					tmp.add(new ActionItem(LinkAction.disableLink, j, k));
-    					actionsPerTime.put(linkDown, tmp);
-    				}
+    	// do not compare node to itself
+    	new PairEngine(threads).square(s.nodeCount(), linkStatusChanges(s), new PairEngine.PairConsumer() {
+    		public void consume(int j, int k, double[] lsc) {
+                for (int l = 6; l < lsc.length; l += 2) {
+					double linkUp = lsc[l];
+					double linkDown = (l+1 < lsc.length) ? lsc[l+1] : Double.MAX_VALUE ;
+					
+					if (!linkChangeTimes.contains(linkUp)) linkChangeTimes.add(linkUp);
+					if (!linkChangeTimes.contains(linkDown)) linkChangeTimes.add(linkDown);	
+					
+					List<ActionItem> tmp = actionsPerTime.get(linkUp);
+					if (tmp == null) {
+						tmp = new ArrayList<ActionItem>();
+					}
+					
+					tmp.add(new ActionItem(LinkAction.enableLink, j, k));
+					actionsPerTime.put(linkUp, tmp);
+					
+					tmp = actionsPerTime.get(linkDown);
+					if (tmp == null) {
+						tmp = new ArrayList<ActionItem>();	
+					}
+					
+					tmp.add(new ActionItem(LinkAction.disableLink, j, k));
+					actionsPerTime.put(linkDown, tmp);
 				}
-			}
-		}
+    		}
+    	});
 		
 		Collections.sort(linkChangeTimes);
 		
     	return linkChangeTimes;
     }
 
+    /** @return MobileNode.pairStatistics() with the transmission range for all node pairs of s */
+    protected PairEngine.PairFunction linkStatusChanges(final Scenario s) {
+    	final MobileNode[] _nodes = s.getNode();
+    	final double _duration = Math.ceil(s.getDuration());
+    	PairEngine.prepare(_nodes);
+    	return new PairEngine.PairFunction() {
+    		public double[] compute(int j, int k) {
+    			return MobileNode.pairStatistics(_nodes[j], _nodes[k], 0.0, _duration, transmissionRange, false, s.getBuilding(), s.getScenarioParameters().calculationDim);
+    		}
+    	};
+    }
+
     protected void printWiseMLNodeMovement(Scenario s) {
     	MobileNode[] _nodes = s.getNode();
     	final double _duration = Math.ceil(s.getDuration());
@@ -518,6 +519,9 @@ public class WiseML extends App {
 			case 'o':
 			    this.printOnlyChangingNodes = true;
 			    return true;
+			case 'j':
+				this.threads = PairEngine.parseThreads(val);
+				return true;
             default:
                 return super.parseArg(key, val);
         }
@@ -533,6 +537,7 @@ public class WiseML extends App {
         System.out.println("\t[-F <path to file>]\tWiseML footer");
         System.out.println("\t[-H <path to file>]\tWiseML header");
         System.out.println("\t[-I]\tConvert times to integer values");
+        System.out.println("\t[-j [<threads>]]\tThreads for the link calculation (default 1, no value: all processors)");
         System.out.println("\t-L <double>\tTime between two outputs [s] (interval-based)");
         System.out.println("\t[-N <path to file>]\tWiseML node ids");
 		System.out.println("\t-r <double>\ttransmission range [m] (contact-based)");
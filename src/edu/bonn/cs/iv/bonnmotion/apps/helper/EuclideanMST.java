@@ -0,0 +1,349 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.bonnmotion.apps.helper;
+
+import java.util.Arrays;
+
+/**
+ * Euclidean minimum spanning tree of a set of points, e.g. the node positions at one
+ * point in time.
+ *
+ * Boruvka's algorithm on a k-d tree: in every round each point looks for its nearest
+ * neighbour in another component, subtrees that only contain points of its own
+ * component or that are farther away than the best edge found for the component so
+ * far are skipped. Every round at least halves the number of components, so there are
+ * O(log n) rounds of O(n log n) expected work. Edges of the same length are ordered by
+ * their end points, so the result is a proper minimum spanning tree.
+ *
+ * The internal arrays are kept between calls, an instance must not be used by several
+ * threads at the same time.
+ */
+public class EuclideanMST {
+	/** Maximum number of points in a leaf of the k-d tree. */
+	protected static final int LEAF_SIZE = 8;
+
+	protected int n;
+	protected double[][] coord = new double[3][];
+
+	/** k-d tree: points idx[start[k] .. end[k] - 1], children left[k], right[k] (-1 for leaves) */
+	protected int[] idx = new int[0];
+	protected int[] start = new int[0];
+	protected int[] end = new int[0];
+	protected int[] left = new int[0];
+	protected int[] right = new int[0];
+	/** bounding box of node k: min x, y, z, max x, y, z at 6 * k */
+	protected double[] box = new double[0];
+	protected int nodes;
+
+	/** union-find over the points */
+	protected int[] parent = new int[0];
+	protected int[] comp = new int[0];
+	/** component of all points in a node, -1 if mixed */
+	protected int[] uniform = new int[0];
+	/** best outgoing edge of every component */
+	protected double[] bestD2 = new double[0];
+	protected int[] bestA = new int[0];
+	protected int[] bestB = new int[0];
+	protected int[] stack = new int[64];
+
+	/** squared lengths and end points of the edges of the last tree */
+	protected double[] edgeD2 = new double[0];
+	protected int[] edgeA = new int[0];
+	protected int[] edgeB = new int[0];
+	protected int edges;
+
+	/**
+	 * Computes the minimum spanning tree of the points (x[i], y[i], z[i]), i &lt; n.
+	 * @param z z coordinates, null for 2D
+	 * @return the length of the longest edge of the tree, 0 for less than two points
+	 */
+	public double longestEdge(double[] x, double[] y, double[] z, int n) {
+		compute(x, y, z, n);
+		double max = 0.0;
+		for (int e = 0; e < edges; e++) {
+			max = Math.max(max, edgeD2[e]);
+		}
+		return Math.sqrt(max);
+	}
+
+	/** @return number of edges of the last tree */
+	public int edgeCount() {
+		return edges;
+	}
+
+	public int edgeA(int e) {
+		return edgeA[e];
+	}
+
+	public int edgeB(int e) {
+		return edgeB[e];
+	}
+
+	/** @return the length of edge e of the last tree */
+	public double edgeLength(int e) {
+		return Math.sqrt(edgeD2[e]);
+	}
+
+	/** Computes the minimum spanning tree of the points (x[i], y[i], z[i]), i &lt; n. */
+	public void compute(double[] x, double[] y, double[] z, int n) {
+		this.n = n;
+		coord[0] = x;
+		coord[1] = y;
+		coord[2] = z;
+		allocate(n);
+		edges = 0;
+		if (n < 2) {
+			return;
+		}
+
+		for (int i = 0; i < n; i++) {
+			idx[i] = i;
+			parent[i] = i;
+		}
+		nodes = 0;
+		build(0, n);
+
+		int components = n;
+		int before = 0;
+		while (components > 1 && components != before) {
+			before = components;
+			for (int i = 0; i < n; i++) {
+				comp[i] = find(i);
+				bestD2[i] = Double.POSITIVE_INFINITY;
+				bestA[i] = -1;
+			}
+			// children are created after their parent
+			for (int k = nodes - 1; k >= 0; k--) {
+				if (left[k] < 0) {
+					int c = comp[idx[start[k]]];
+					for (int p = start[k] + 1; p < end[k] && c >= 0; p++) {
+						if (comp[idx[p]] != c) {
+							c = -1;
+						}
+					}
+					uniform[k] = c;
+				}
+				else {
+					uniform[k] = (uniform[left[k]] == uniform[right[k]]) ? uniform[left[k]] : -1;
+				}
+			}
+
+			for (int p = 0; p < n; p++) {
+				nearestOther(idx[p]);
+			}
+
+			for (int i = 0; i < n; i++) {
+				if (comp[i] != i || bestA[i] < 0) {
+					continue;
+				}
+				int a = find(bestA[i]);
+				int b = find(bestB[i]);
+				if (a == b) {
+					continue;
+				}
+				parent[a] = b;
+				edgeD2[edges] = bestD2[i];
+				edgeA[edges] = bestA[i];
+				edgeB[edges] = bestB[i];
+				edges++;
+				components--;
+			}
+		}
+	}
+
+	protected void allocate(int n) {
+		if (idx.length >= n) {
+			return;
+		}
+		int maxNodes = 2 * (n / (LEAF_SIZE / 2) + 1);
+		idx = new int[n];
+		parent = new int[n];
+		comp = new int[n];
+		bestD2 = new double[n];
+		bestA = new int[n];
+		bestB = new int[n];
+		edgeD2 = new double[n];
+		edgeA = new int[n];
+		edgeB = new int[n];
+		start = new int[maxNodes];
+		end = new int[maxNodes];
+		left = new int[maxNodes];
+		right = new int[maxNodes];
+		uniform = new int[maxNodes];
+		box = new double[6 * maxNodes];
+	}
+
+	protected double coord(int d, int i) {
+		return (coord[d] == null) ? 0.0 : coord[d][i];
+	}
+
+	/** Builds the subtree of idx[from .. to - 1]. @return its node */
+	protected int build(int from, int to) {
+		int k = nodes++;
+		start[k] = from;
+		end[k] = to;
+		left[k] = -1;
+		right[k] = -1;
+		for (int d = 0; d < 3; d++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int p = from; p < to; p++) {
+				double v = coord(d, idx[p]);
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			box[6 * k + d] = min;
+			box[6 * k + 3 + d] = max;
+		}
+		if (to - from <= LEAF_SIZE) {
+			return k;
+		}
+
+		int dim = 0;
+		for (int d = 1; d < 3; d++) {
+			if (box[6 * k + 3 + d] - box[6 * k + d] > box[6 * k + 3 + dim] - box[6 * k + dim]) {
+				dim = d;
+			}
+		}
+		int mid = (from + to) >>> 1;
+		select(dim, from, to - 1, mid);
+		left[k] = build(from, mid);
+		right[k] = build(mid, to);
+		return k;
+	}
+
+	/** Reorders idx[lo .. hi] so that idx[k] holds the point with the k-th smallest coordinate d. */
+	protected void select(int d, int lo, int hi, int k) {
+		while (hi > lo) {
+			int m = (lo + hi) >>> 1;
+			double pivot = coord(d, idx[m]);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (coord(d, idx[i]) < pivot) {
+					i++;
+				}
+				while (coord(d, idx[j]) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int t = idx[i];
+					idx[i] = idx[j];
+					idx[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			}
+			else if (k >= i) {
+				lo = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	protected int find(int i) {
+		int r = i;
+		while (parent[r] != r) {
+			r = parent[r];
+		}
+		while (parent[i] != r) {
+			int next = parent[i];
+			parent[i] = r;
+			i = next;
+		}
+		return r;
+	}
+
+	/** Offers the nearest point of point a in another component to the component of a. */
+	protected void nearestOther(int a) {
+		final int c = comp[a];
+		final double ax = coord(0, a);
+		final double ay = coord(1, a);
+		final double az = coord(2, a);
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int k = stack[--top];
+			if (uniform[k] == c || boxDistance2(k, ax, ay, az) > bestD2[c]) {
+				continue;
+			}
+			if (left[k] < 0) {
+				for (int p = start[k]; p < end[k]; p++) {
+					int b = idx[p];
+					if (comp[b] == c) {
+						continue;
+					}
+					double dx = coord(0, b) - ax;
+					double dy = coord(1, b) - ay;
+					double dz = coord(2, b) - az;
+					double d2 = dx * dx + dy * dy + dz * dz;
+					if (better(d2, a, b, bestD2[c], bestA[c], bestB[c])) {
+						bestD2[c] = d2;
+						bestA[c] = a;
+						bestB[c] = b;
+					}
+				}
+				continue;
+			}
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			}
+			// visit the nearer child first
+			int near = left[k];
+			int far = right[k];
+			if (boxDistance2(far, ax, ay, az) < boxDistance2(near, ax, ay, az)) {
+				near = right[k];
+				far = left[k];
+			}
+			stack[top++] = far;
+			stack[top++] = near;
+		}
+	}
+
+	protected double boxDistance2(int k, double x, double y, double z) {
+		double dx = Math.max(0.0, Math.max(box[6 * k] - x, x - box[6 * k + 3]));
+		double dy = Math.max(0.0, Math.max(box[6 * k + 1] - y, y - box[6 * k + 4]));
+		double dz = Math.max(0.0, Math.max(box[6 * k + 2] - z, z - box[6 * k + 5]));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/** Orders edges by length, then by their smaller and their larger end point. */
+	protected static boolean better(double d2, int a, int b, double bestD2, int bestA, int bestB) {
+		if (d2 != bestD2) {
+			return d2 < bestD2;
+		}
+		if (bestA < 0) {
+			return true;
+		}
+		int lo = Math.min(a, b);
+		int bestLo = Math.min(bestA, bestB);
+		if (lo != bestLo) {
+			return lo < bestLo;
+		}
+		return Math.max(a, b) < Math.max(bestA, bestB);
+	}
+}
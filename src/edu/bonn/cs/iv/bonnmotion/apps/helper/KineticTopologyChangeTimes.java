@@ -0,0 +1,276 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.apps.helper;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import edu.bonn.cs.iv.bonnmotion.MobileNode;
+
+/**
+ * Event driven computation of the topology change times.
+ *
+ * While two nodes stay on their current segments, their distance is a quadratic
+ * function of time, so the next time the link goes up or down (a "certificate") can
+ * be predicted. The certificates of all pairs are kept in a priority queue. When a
+ * node reaches its next waypoint, only the certificates of the pairs involving this
+ * node are recomputed. The cost is proportional to the number of waypoints times the
+ * number of neighbours plus the number of link changes, instead of the number of
+ * global direction change times times the number of pairs.
+ */
+public class KineticTopologyChangeTimes extends TopologyChangeTimes {
+	/** Relative tolerance for distances that are considered to be exactly the range. */
+	protected static final double TOLERANCE = 1e-9;
+
+	/** Current segment of every node: waypoint index, or -1 before the first waypoint. */
+	protected int[] segment;
+	/** Pair ids of the partners of every node, partner lists are taken from the prefilter. */
+	protected int[][] neighbours;
+	protected int[][] neighbourPairs;
+	/** Nodes of every pair, src &lt; dst. */
+	protected int[] pairSrc;
+	protected int[] pairDst;
+	protected boolean[] inRange;
+	/** Incremented whenever the certificate of a pair is recomputed, outdated ones are dropped. */
+	protected int[] version;
+
+	protected PriorityQueue<Certificate> queue;
+	/** Scratch buffers for motion(), see there. */
+	protected final double[] pa = new double[6];
+	protected final double[] pb = new double[6];
+
+	public KineticTopologyChangeTimes(double transmissionRange, MobileNode scenarioNodes[], double scenarioDuration) {
+		super(transmissionRange, scenarioNodes, scenarioDuration);
+	}
+
+	public TopologyChangeTimesResult getTopologyChanges() {
+		tctr.addChangeTime(0.0);
+
+		SpatialPrefilter filter = new SpatialPrefilter(nodes, 0.0, duration, range);
+		initPairs(filter);
+
+		queue = new PriorityQueue<Certificate>();
+		segment = new int[nodes.length];
+		for (int n = 0; n < nodes.length; n++) {
+			segment[n] = segmentAt(nodes[n], 0.0);
+			scheduleSegmentEnd(n);
+		}
+		for (int p = 0; p < pairSrc.length; p++) {
+			inRange[p] = (distance(pairSrc[p], pairDst[p], 0.0) < range);
+			schedulePair(p, 0.0, false);
+		}
+
+		while (!queue.isEmpty()) {
+			Certificate c = queue.poll();
+			if (c.pair < 0) {
+				segment[c.node]++;
+				scheduleSegmentEnd(c.node);
+				for (int k = 0; k < neighbourPairs[c.node].length; k++) {
+					schedulePair(neighbourPairs[c.node][k], c.time, true);
+				}
+			}
+			else if (c.version == version[c.pair]) {
+				inRange[c.pair] = !inRange[c.pair];
+				tctr.addChangeTime(c.time, pairSrc[c.pair], pairDst[c.pair], inRange[c.pair]);
+				schedulePair(c.pair, c.time, false);
+			}
+		}
+
+		return tctr;
+	}
+
+	protected void initPairs(SpatialPrefilter filter) {
+		int[][] upper = filter.upperPartners();
+		int pairs = (int)filter.pairCount();
+		pairSrc = new int[pairs];
+		pairDst = new int[pairs];
+		inRange = new boolean[pairs];
+		version = new int[pairs];
+
+		int[][] upperIds = new int[nodes.length][];
+		int p = 0;
+		for (int src = 0; src < nodes.length; src++) {
+			upperIds[src] = new int[upper[src].length];
+			for (int k = 0; k < upper[src].length; k++) {
+				pairSrc[p] = src;
+				pairDst[p] = upper[src][k];
+				upperIds[src][k] = p++;
+			}
+		}
+
+		neighbours = new int[nodes.length][];
+		neighbourPairs = new int[nodes.length][];
+		for (int n = 0; n < nodes.length; n++) {
+			neighbours[n] = filter.partners(n);
+			neighbourPairs[n] = new int[neighbours[n].length];
+			for (int k = 0; k < neighbours[n].length; k++) {
+				int m = neighbours[n][k];
+				if (m > n) {
+					neighbourPairs[n][k] = upperIds[n][Arrays.binarySearch(upper[n], m)];
+				}
+				else {
+					neighbourPairs[n][k] = upperIds[m][Arrays.binarySearch(upper[m], n)];
+				}
+			}
+		}
+	}
+
+	/** @return index of the last waypoint not after time, -1 if time is before the first one */
+	protected static int segmentAt(MobileNode node, double time) {
+		int i = -1;
+		while (i + 1 < node.getNumWaypoints() && node.getWaypointTime(i + 1) <= time) {
+			i++;
+		}
+		return i;
+	}
+
+	protected void scheduleSegmentEnd(int n) {
+		double end = segmentEnd(n);
+		if (end <= duration) {
+			queue.add(new Certificate(end, n, -1, 0));
+		}
+	}
+
+	protected double segmentStart(int n) {
+		return (segment[n] < 0) ? Double.NEGATIVE_INFINITY : nodes[n].getWaypointTime(segment[n]);
+	}
+
+	protected double segmentEnd(int n) {
+		int next = segment[n] + 1;
+		return (next < nodes[n].getNumWaypoints()) ? nodes[n].getWaypointTime(next) : Double.POSITIVE_INFINITY;
+	}
+
+	/** Writes position and velocity of node n on its current segment at the given time into pv. */
+	protected void motion(int n, double time, double[] pv) {
+		MobileNode node = nodes[n];
+		int k = segment[n];
+		if (k < 0 || k + 1 >= node.getNumWaypoints()) {
+			k = Math.max(k, 0);
+			pv[0] = node.getWaypointX(k);
+			pv[1] = node.getWaypointY(k);
+			pv[2] = node.getWaypointZ(k);
+			pv[3] = pv[4] = pv[5] = 0.0;
+			return;
+		}
+		double t1 = node.getWaypointTime(k);
+		double x1 = node.getWaypointX(k);
+		double y1 = node.getWaypointY(k);
+		double z1 = node.getWaypointZ(k);
+		double dt = node.getWaypointTime(k + 1) - t1;
+		if (dt > 0.0) {
+			pv[3] = (node.getWaypointX(k + 1) - x1) / dt;
+			pv[4] = (node.getWaypointY(k + 1) - y1) / dt;
+			pv[5] = (node.getWaypointZ(k + 1) - z1) / dt;
+		}
+		else {
+			pv[3] = pv[4] = pv[5] = 0.0;
+		}
+		pv[0] = x1 + pv[3] * (time - t1);
+		pv[1] = y1 + pv[4] * (time - t1);
+		pv[2] = z1 + pv[5] * (time - t1);
+	}
+
+	/** Overwrites the scratch buffers pa and pb. */
+	protected double distance(int a, int b, double time) {
+		motion(a, time, pa);
+		motion(b, time, pb);
+		double dx = pb[0] - pa[0];
+		double dy = pb[1] - pa[1];
+		double dz = pb[2] - pa[2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Predicts the next link change of a pair after the given time and queues it.
+	 * @param segmentChanged true if one of the nodes just started a new segment; a link
+	 *        state that does not match the positions any more (e.g. after a jump) then
+	 *        changes immediately
+	 */
+	protected void schedulePair(int p, double now, boolean segmentChanged) {
+		version[p]++;
+		final int a = pairSrc[p];
+		final int b = pairDst[p];
+
+		// the roots only depend on the joint segment, so that recomputing them after an
+		// event of the pair yields exactly the same times again
+		double start = Math.max(0.0, Math.max(segmentStart(a), segmentStart(b)));
+		double end = Math.min(segmentEnd(a), segmentEnd(b));
+
+		motion(a, start, pa);
+		motion(b, start, pb);
+		double px = pb[0] - pa[0];
+		double py = pb[1] - pa[1];
+		double pz = pb[2] - pa[2];
+		double vx = pb[3] - pa[3];
+		double vy = pb[4] - pa[4];
+		double vz = pb[5] - pa[5];
+
+		if (segmentChanged) {
+			double d = distance(a, b, now);
+			if ((inRange[p] && d >= range * (1.0 + TOLERANCE)) || (!inRange[p] && d < range * (1.0 - TOLERANCE))) {
+				queue.add(new Certificate(now, a, p, version[p]));
+				return;
+			}
+		}
+
+		double qa = vx * vx + vy * vy + vz * vz;
+		double qb = 2 * (px * vx + py * vy + pz * vz);
+		double qc = px * px + py * py + pz * pz - range * range;
+		double disc = qb * qb - 4 * qa * qc;
+		if (qa == 0.0 || disc <= 0.0) {
+			return;
+		}
+		double sqrt = Math.sqrt(disc);
+		double t = inRange[p] ? start + (-qb + sqrt) / (2 * qa) : start + (-qb - sqrt) / (2 * qa);
+		if (t > now && t <= end && t <= duration) {
+			queue.add(new Certificate(t, a, p, version[p]));
+		}
+	}
+
+	/** Predicted event: a node reaching its next waypoint (pair == -1) or a link change. */
+	protected static class Certificate implements Comparable<Certificate> {
+		protected final double time;
+		protected final int node;
+		protected final int pair;
+		protected final int version;
+
+		protected Certificate(double time, int node, int pair, int version) {
+			this.time = time;
+			this.node = node;
+			this.pair = pair;
+			this.version = version;
+		}
+
+		/** Link changes come before segment changes at the same time, then ordered by pair. */
+		public int compareTo(Certificate o) {
+			if (time != o.time) {
+				return (time < o.time) ? -1 : 1;
+			}
+			if ((pair < 0) != (o.pair < 0)) {
+				return (pair < 0) ? 1 : -1;
+			}
+			if (pair != o.pair) {
+				return (pair < o.pair) ? -1 : 1;
+			}
+			return (node < o.node) ? -1 : ((node == o.node) ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.bonnmotion.apps.helper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Connected components of an undirected graph whose edges and nodes are switched on and
+ * off over time, for a sequence of queries that is recorded in advance.
+ *
+ * The changes and queries are recorded first; every edge is then present in a range of
+ * queries, except where one of its nodes is switched off. solve() puts these ranges into
+ * the O(log q) nodes of a segment tree over the q queries and walks the tree depth first
+ * with a union-find structure that undoes its unions on the way back (union by size,
+ * without path compression). For e ranges this takes O((e log q + q) log n) instead of a
+ * search of the whole graph per query.
+ */
+public class OfflineConnectivity {
+	protected final int nodeCount;
+	protected int queries = 0;
+
+	/** first query of the edges that are switched on at the moment, by pair */
+	protected final HashMap<Long, Integer> openEdges = new HashMap<Long, Integer>();
+	/** the recorded ranges [from, to) of queries in which an edge is switched on */
+	protected int rangeCount = 0;
+	protected int[] rangeSrc = new int[16];
+	protected int[] rangeDst = new int[16];
+	protected int[] rangeFrom = new int[16];
+	protected int[] rangeTo = new int[16];
+
+	/** queries at which a node was switched off or on again, alternating, per node */
+	protected final int[][] nodeToggles;
+	protected final int[] nodeToggleCount;
+	protected int nodesOff = 0;
+	/** number of nodes that are switched on, per query */
+	protected int[] nodesOn = new int[16];
+
+	/** results per query: number of unions, sum of the squared component sizes */
+	protected int[] unions = null;
+	protected long[] squares = null;
+
+	// union-find with undo
+	protected int[] parent;
+	protected int[] size;
+	protected int[] undo;
+	protected int undoCount;
+	protected int currentUnions;
+	protected long currentSquares;
+
+	/** All nodes are switched on and there are no edges in the beginning. */
+	public OfflineConnectivity(int nodeCount) {
+		this.nodeCount = nodeCount;
+		nodeToggles = new int[nodeCount][];
+		nodeToggleCount = new int[nodeCount];
+	}
+
+	/** Switches the edge between the nodes on if it is off, and off otherwise. */
+	public void toggleEdge(int i, int j) {
+		if (i > j) {
+			int t = i;
+			i = j;
+			j = t;
+		}
+		Long key = Long.valueOf(((long)i << 32) | j);
+		Integer from = openEdges.remove(key);
+		if (from == null) {
+			openEdges.put(key, Integer.valueOf(queries));
+		}
+		else {
+			addRange(i, j, from.intValue(), queries);
+		}
+	}
+
+	/** Switches a node off if it is on, and on otherwise; a node that is off has no edges. */
+	public void toggleNode(int i) {
+		if (nodeToggles[i] == null) {
+			nodeToggles[i] = new int[4];
+		}
+		else if (nodeToggleCount[i] == nodeToggles[i].length) {
+			nodeToggles[i] = Arrays.copyOf(nodeToggles[i], 2 * nodeToggleCount[i]);
+		}
+		nodeToggles[i][nodeToggleCount[i]++] = queries;
+		nodesOff += ((nodeToggleCount[i] & 1) == 1) ? 1 : -1;
+	}
+
+	/** Records a query of the current graph. @return the number of the query */
+	public int query() {
+		if (queries == nodesOn.length) {
+			nodesOn = Arrays.copyOf(nodesOn, 2 * queries);
+		}
+		nodesOn[queries] = nodeCount - nodesOff;
+		return queries++;
+	}
+
+	protected void addRange(int i, int j, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		if (rangeCount == rangeSrc.length) {
+			rangeSrc = Arrays.copyOf(rangeSrc, 2 * rangeCount);
+			rangeDst = Arrays.copyOf(rangeDst, 2 * rangeCount);
+			rangeFrom = Arrays.copyOf(rangeFrom, 2 * rangeCount);
+			rangeTo = Arrays.copyOf(rangeTo, 2 * rangeCount);
+		}
+		rangeSrc[rangeCount] = i;
+		rangeDst[rangeCount] = j;
+		rangeFrom[rangeCount] = from;
+		rangeTo[rangeCount] = to;
+		rangeCount++;
+	}
+
+	/** Answers all recorded queries, no changes can be recorded afterwards. */
+	public void solve() {
+		for (java.util.Map.Entry<Long, Integer> e : openEdges.entrySet()) {
+			long key = e.getKey().longValue();
+			addRange((int)(key >>> 32), (int)key, e.getValue().intValue(), queries);
+		}
+		openEdges.clear();
+
+		unions = new int[queries];
+		squares = new long[queries];
+		if (queries == 0) {
+			return;
+		}
+
+		// count, then fill the ranges of every tree node
+		int[] start = new int[4 * queries + 1];
+		forEachRange(start, null);
+		for (int t = 1; t < start.length; t++) {
+			start[t] += start[t - 1];
+		}
+		int[] items = new int[start[start.length - 1]];
+		int[] fill = Arrays.copyOf(start, start.length);
+		forEachRange(fill, items);
+
+		parent = new int[nodeCount];
+		size = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+		undo = new int[Math.max(1, nodeCount)];
+		undoCount = 0;
+		currentUnions = 0;
+		currentSquares = nodeCount;
+		walk(1, 0, queries, start, items);
+	}
+
+	/**
+	 * Assigns the ranges of all present edges to the tree nodes. Without items, only the
+	 * number of ranges per tree node is counted into slot[tree node]; otherwise the ranges
+	 * are written to items at slot[tree node - 1], which is advanced.
+	 */
+	protected void forEachRange(int[] slot, int[] items) {
+		for (int r = 0; r < rangeCount; r++) {
+			int i = rangeSrc[r];
+			int j = rangeDst[r];
+			// split the range where one of the nodes is switched off
+			int from = rangeFrom[r];
+			while (from < rangeTo[r]) {
+				int offFrom = nextOff(i, from);
+				int offFrom2 = nextOff(j, from);
+				int end = Math.min(rangeTo[r], Math.min(offFrom, offFrom2));
+				if (from < end) {
+					insert(1, 0, queries, from, end, r, slot, items);
+				}
+				if (end >= rangeTo[r]) {
+					break;
+				}
+				from = Math.max(onAgain(i, end), onAgain(j, end));
+			}
+		}
+	}
+
+	/** @return the first query from the given one on at which node i is off, or queries */
+	protected int nextOff(int i, int query) {
+		int k = toggleIndex(i, query);
+		if ((k & 1) == 1) {
+			// the node is off at the query
+			return query;
+		}
+		return (k < nodeToggleCount[i]) ? nodeToggles[i][k] : queries;
+	}
+
+	/** @return the first query from the given one on at which node i is on, or queries */
+	protected int onAgain(int i, int query) {
+		int k = toggleIndex(i, query);
+		if ((k & 1) == 0) {
+			return query;
+		}
+		return (k < nodeToggleCount[i]) ? nodeToggles[i][k] : queries;
+	}
+
+	/** @return the number of toggles of node i before or at the query */
+	protected int toggleIndex(int i, int query) {
+		if (nodeToggles[i] == null) {
+			return 0;
+		}
+		int lo = 0;
+		int hi = nodeToggleCount[i];
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (nodeToggles[i][mid] <= query) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	protected void insert(int t, int lo, int hi, int from, int to, int r, int[] slot, int[] items) {
+		if (from <= lo && hi <= to) {
+			if (items == null) {
+				slot[t]++;
+			}
+			else {
+				items[slot[t - 1]++] = r;
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		if (from < mid) {
+			insert(2 * t, lo, mid, from, to, r, slot, items);
+		}
+		if (to > mid) {
+			insert(2 * t + 1, mid, hi, from, to, r, slot, items);
+		}
+	}
+
+	protected void walk(int t, int lo, int hi, int[] start, int[] items) {
+		int mark = undoCount;
+		for (int k = start[t - 1]; k < start[t]; k++) {
+			union(rangeSrc[items[k]], rangeDst[items[k]]);
+		}
+		if (hi - lo == 1) {
+			unions[lo] = currentUnions;
+			squares[lo] = currentSquares;
+		}
+		else {
+			int mid = (lo + hi) >>> 1;
+			walk(2 * t, lo, mid, start, items);
+			walk(2 * t + 1, mid, hi, start, items);
+		}
+		while (undoCount > mark) {
+			int child = undo[--undoCount];
+			int root = parent[child];
+			currentSquares -= 2L * (size[root] - size[child]) * size[child];
+			size[root] -= size[child];
+			parent[child] = child;
+			currentUnions--;
+		}
+	}
+
+	protected int find(int i) {
+		while (parent[i] != i) {
+			i = parent[i];
+		}
+		return i;
+	}
+
+	protected void union(int i, int j) {
+		int a = find(i);
+		int b = find(j);
+		if (a == b) {
+			return;
+		}
+		if (size[a] < size[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		currentSquares += 2L * size[a] * size[b];
+		parent[b] = a;
+		size[a] += size[b];
+		undo[undoCount++] = b;
+		currentUnions++;
+	}
+
+	/** @return number of connected components of the nodes that are switched on */
+	public int components(int query) {
+		return nodesOn[query] - unions[query];
+	}
+
+	/**
+	 * @return probability that two different nodes that are switched on lie in different
+	 *         components, as Graph.partdeg()
+	 */
+	public double partdeg(int query) {
+		long n = nodesOn[query];
+		// the nodes that are switched off are single components
+		long sq = squares[query] - (nodeCount - n);
+		return (double)(n * n - sq) / (double)(n * (n - 1));
+	}
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.apps.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.bonn.cs.iv.bonnmotion.MobileNode;
+
+/**
+ * Evaluates a function for node pairs of a scenario on a pool of threads.
+ *
+ * The pairs are enumerated row by row (node i, then its partners j) and cut into
+ * blocks with the same number of pairs, so that long and short rows of the triangle
+ * are balanced. The results are handed to the consumer on the calling thread in
+ * exactly the order of the sequential loops, hence the output of an application
+ * does not depend on the number of threads. The same holds for the diagnostics that
+ * MobileNode prints while computing a pair, which are printed before the result of
+ * the pair is consumed. An exception of the function is thrown by the calling thread,
+ * after the results of the pairs before.
+ */
+public class PairEngine {
+	/** Computation for a single pair, called concurrently from worker threads. */
+	public interface PairFunction {
+		double[] compute(int i, int j);
+	}
+
+	/** Receives the results in sequential order on the calling thread. */
+	public interface PairConsumer {
+		void consume(int i, int j, double[] result);
+	}
+
+	/** Number of blocks per thread that may be queued at the same time. */
+	protected static final int BLOCKS_PER_THREAD = 4;
+	/** Upper bound of pairs per block. */
+	protected static final int MAX_BLOCK_SIZE = 1024;
+
+	protected static final int MODE_TRIANGLE = 0;
+	protected static final int MODE_SQUARE = 1;
+	protected static final int MODE_PARTNERS = 2;
+
+	protected final int threads;
+
+	/** @param threads number of worker threads, values < 2 compute on the calling thread */
+	public PairEngine(int threads) {
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Converts the value of a command line switch to a thread count.
+	 * @return the given number or the number of available processors if no (valid) number is given
+	 */
+	public static int parseThreads(String val) {
+		int t = 0;
+		if (val.length() > 0) {
+			t = Integer.parseInt(val);
+		}
+		if (t < 1) {
+			t = Runtime.getRuntime().availableProcessors();
+		}
+		return t;
+	}
+
+	/** Builds the lazily cached per node data before it is shared between threads. */
+	public static void prepare(MobileNode[] nodes) {
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i].changeTimes();
+		}
+	}
+
+	/** All pairs (i, j) with i &lt; j, ordered by i, then j. */
+	public void triangle(int n, PairFunction f, PairConsumer c) {
+		run(n, MODE_TRIANGLE, null, f, c);
+	}
+
+	/** All ordered pairs (i, j) with i != j, ordered by i, then j. */
+	public void square(int n, PairFunction f, PairConsumer c) {
+		run(n, MODE_SQUARE, null, f, c);
+	}
+
+	/**
+	 * The pairs (i, partners[i][k]), ordered by i, then k.
+	 * @param partners partner list of every node, null entries are treated as empty lists
+	 */
+	public void partners(int[][] partners, PairFunction f, PairConsumer c) {
+		run(partners.length, MODE_PARTNERS, partners, f, c);
+	}
+
+	protected void run(int n, int mode, int[][] partners, PairFunction f, PairConsumer c) {
+		PairCursor all = new PairCursor(n, mode, partners, 0, 0);
+		if (threads < 2) {
+			while (all.hasNext()) {
+				c.consume(all.i, all.j(), f.compute(all.i, all.j()));
+				all.next();
+			}
+			return;
+		}
+
+		long total = all.remaining();
+		int blockSize = (int)Math.max(1, Math.min(MAX_BLOCK_SIZE, total / (16L * threads)));
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		LinkedList<Future<Block>> results = new LinkedList<Future<Block>>();
+		LinkedList<PairCursor> blocks = new LinkedList<PairCursor>();
+		try {
+			while (all.hasNext() || !results.isEmpty()) {
+				while (all.hasNext() && results.size() < threads * BLOCKS_PER_THREAD) {
+					final PairCursor block = new PairCursor(n, mode, partners, all.i, all.k);
+					final PairCursor p = block.copy();
+					final int size = all.skip(blockSize);
+					final PairFunction fn = f;
+					results.add(pool.submit(new Callable<Block>() {
+						public Block call() {
+							return new Block(fn, p, size);
+						}
+					}));
+					blocks.add(block);
+				}
+
+				Block r = results.removeFirst().get();
+				PairCursor p = blocks.removeFirst();
+				for (int l = 0; l < r.result.length; l++) {
+					if (r.diagnostics[l] != null) {
+						System.out.print(r.diagnostics[l]);
+						System.out.flush();
+					}
+					if (r.failure != null && l == r.failed) {
+						throw r.failure;
+					}
+					c.consume(p.i, p.j(), r.result[l]);
+					p.next();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException("pair computation interrupted");
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/** Results of a block of pairs, computed on a worker thread. */
+	protected static class Block {
+		protected final double[][] result;
+		/** what MobileNode printed while computing a pair, null if nothing */
+		protected final String[] diagnostics;
+		/** exception of pair number failed, the pairs after it are not computed */
+		protected RuntimeException failure = null;
+		protected int failed = -1;
+
+		protected Block(PairFunction f, PairCursor p, int size) {
+			result = new double[size][];
+			diagnostics = new String[size];
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			PrintStream out = new PrintStream(buffer);
+			MobileNode.setDiagnostics(out);
+			try {
+				for (int l = 0; l < size && failure == null; l++) {
+					try {
+						result[l] = f.compute(p.i, p.j());
+					}
+					catch (RuntimeException e) {
+						failure = e;
+						failed = l;
+					}
+					out.flush();
+					if (buffer.size() > 0) {
+						diagnostics[l] = buffer.toString();
+						buffer.reset();
+					}
+					p.next();
+				}
+			}
+			finally {
+				MobileNode.setDiagnostics(null);
+			}
+		}
+	}
+
+	/** Position (row i, k-th partner of i) in the enumeration of the pairs. */
+	protected static class PairCursor {
+		protected final int n;
+		protected final int mode;
+		protected final int[][] partners;
+		protected int i;
+		protected int k;
+
+		protected PairCursor(int n, int mode, int[][] partners, int i, int k) {
+			this.n = n;
+			this.mode = mode;
+			this.partners = partners;
+			this.i = i;
+			this.k = k;
+			skipEmptyRows();
+		}
+
+		protected PairCursor copy() {
+			return new PairCursor(n, mode, partners, i, k);
+		}
+
+		protected int rowLength(int row) {
+			switch (mode) {
+				case MODE_TRIANGLE:
+					return n - row - 1;
+				case MODE_SQUARE:
+					return n - 1;
+				default:
+					return (partners[row] == null) ? 0 : partners[row].length;
+			}
+		}
+
+		protected int j() {
+			switch (mode) {
+				case MODE_TRIANGLE:
+					return i + 1 + k;
+				case MODE_SQUARE:
+					return (k < i) ? k : k + 1;
+				default:
+					return partners[i][k];
+			}
+		}
+
+		protected boolean hasNext() {
+			return i < n;
+		}
+
+		protected void next() {
+			k++;
+			skipEmptyRows();
+		}
+
+		/** Advances by up to count pairs. @return the number of pairs skipped */
+		protected int skip(int count) {
+			int skipped = 0;
+			while ((skipped < count) && hasNext()) {
+				int step = Math.min(count - skipped, rowLength(i) - k);
+				k += step;
+				skipped += step;
+				skipEmptyRows();
+			}
+			return skipped;
+		}
+
+		protected long remaining() {
+			if (!hasNext()) {
+				return 0;
+			}
+			long r = rowLength(i) - k;
+			for (int row = i + 1; row < n; row++) {
+				r += rowLength(row);
+			}
+			return r;
+		}
+
+		protected void skipEmptyRows() {
+			while ((i < n) && (k >= rowLength(i))) {
+				i++;
+				k = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.apps.helper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import edu.bonn.cs.iv.bonnmotion.MobileNode;
+
+/**
+ * Finds the node pairs that can come closer than a given distance.
+ *
+ * The time span is cut into windows. For every window the box swept by each node is
+ * computed from its waypoints and hashed into a uniform grid; only nodes whose boxes
+ * are at most "reach" apart in some window become partners. All other pairs are
+ * provably never in range, so the expensive pair computations can skip them.
+ */
+public class SpatialPrefilter {
+	/** Upper bound for the number of time windows. */
+	protected static final int MAX_WINDOWS = 1024;
+
+	protected final int nodeCount;
+	/** Sorted partners of every node, in both directions. */
+	protected final int[][] partners;
+	protected long pairCount = 0;
+
+	/**
+	 * @param nodes the mobile nodes
+	 * @param start begin of the relevant time span
+	 * @param end end of the relevant time span
+	 * @param reach maximum distance of two nodes that still matters
+	 */
+	public SpatialPrefilter(MobileNode[] nodes, double start, double end, double reach) {
+		this(nodes, start, end, reach, defaultWindows(nodes));
+	}
+
+	public SpatialPrefilter(MobileNode[] nodes, double start, double end, double reach, int windows) {
+		nodeCount = nodes.length;
+		if (windows < 1 || !(end > start)) {
+			windows = 1;
+		}
+		// tolerate rounding in the pair computations
+		final double r = reach * (1.0 + 1e-9) + 1e-9;
+
+		int[][] lists = new int[nodeCount][];
+		int[] sizes = new int[nodeCount];
+		double[][] box = new double[nodeCount][6];
+		int[] next = new int[nodeCount];
+		double[] p = new double[4];
+
+		double windowLength = (end - start) / windows;
+		for (int w = 0; w < windows; w++) {
+			double ws = start + w * windowLength;
+			double we = (w == windows - 1) ? end : ws + windowLength;
+
+			double extent = 0.0;
+			for (int i = 0; i < nodeCount; i++) {
+				next[i] = sweep(nodes[i], ws, we, next[i], box[i], p);
+				extent += Math.max(box[i][3] - box[i][0], box[i][4] - box[i][1]);
+			}
+			double cell = r + ((nodeCount > 0) ? extent / nodeCount : 0.0);
+			if (!(cell > 0.0)) {
+				cell = 1.0;
+			}
+
+			HashMap<Long, int[]> grid = new HashMap<Long, int[]>();
+			for (int i = 0; i < nodeCount; i++) {
+				long x0 = cellIndex(box[i][0] - r / 2, cell);
+				long x1 = cellIndex(box[i][3] + r / 2, cell);
+				long y0 = cellIndex(box[i][1] - r / 2, cell);
+				long y1 = cellIndex(box[i][4] + r / 2, cell);
+				for (long cx = x0; cx <= x1; cx++) {
+					for (long cy = y0; cy <= y1; cy++) {
+						Long key = key(cx, cy);
+						int[] members = grid.get(key);
+						if (members == null) {
+							members = new int[5];
+						}
+						else if (members[0] + 1 == members.length) {
+							members = Arrays.copyOf(members, 2 * members.length);
+						}
+						members[++members[0]] = i;
+						grid.put(key, members);
+					}
+				}
+			}
+
+			for (java.util.Map.Entry<Long, int[]> e : grid.entrySet()) {
+				int[] members = e.getValue();
+				long key = e.getKey().longValue();
+				for (int a = 1; a <= members[0]; a++) {
+					double[] ba = box[members[a]];
+					for (int b = a + 1; b <= members[0]; b++) {
+						double[] bb = box[members[b]];
+						if (separation(ba, bb) > r) {
+							continue;
+						}
+						// report a pair only in the cell of the lower corner of the overlap
+						long ox = cellIndex(Math.max(ba[0], bb[0]) - r / 2, cell);
+						long oy = cellIndex(Math.max(ba[1], bb[1]) - r / 2, cell);
+						if (key(ox, oy).longValue() != key) {
+							continue;
+						}
+						int i = members[a];
+						int j = members[b];
+						lists[i] = append(lists[i], sizes[i]++, j);
+						lists[j] = append(lists[j], sizes[j]++, i);
+					}
+				}
+			}
+		}
+
+		partners = new int[nodeCount][];
+		for (int i = 0; i < nodeCount; i++) {
+			partners[i] = unique(lists[i], sizes[i]);
+			pairCount += partners[i].length;
+		}
+		pairCount /= 2;
+	}
+
+	/** Chooses about as many windows as the nodes have waypoints on average. */
+	public static int defaultWindows(MobileNode[] nodes) {
+		if (nodes.length == 0) {
+			return 1;
+		}
+		long waypoints = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			waypoints += nodes[i].getNumWaypoints();
+		}
+		return (int)Math.max(1, Math.min(MAX_WINDOWS, waypoints / nodes.length));
+	}
+
+	/** @return sorted partners of node i */
+	public int[] partners(int i) {
+		return partners[i];
+	}
+
+	/** @return for every node i the sorted partners j &gt; i, for use with PairEngine.partners() */
+	public int[][] upperPartners() {
+		int[][] r = new int[nodeCount][];
+		for (int i = 0; i < nodeCount; i++) {
+			int from = -Arrays.binarySearch(partners[i], i) - 1;
+			r[i] = Arrays.copyOfRange(partners[i], from, partners[i].length);
+		}
+		return r;
+	}
+
+	/** @return false if the nodes are never within reach of each other */
+	public boolean mayInteract(int i, int j) {
+		return Arrays.binarySearch(partners[i], j) >= 0;
+	}
+
+	/** @return number of unordered pairs that may interact */
+	public long pairCount() {
+		return pairCount;
+	}
+
+	/**
+	 * Computes the bounding box of a node in [ws, we] into box (min x, y, z, max x, y, z).
+	 * @param first index of the first waypoint that may lie after ws
+	 * @param p scratch buffer for MobileNode.positionAt()
+	 * @return index of the first waypoint after we
+	 */
+	protected static int sweep(MobileNode node, double ws, double we, int first, double[] box, double[] p) {
+		node.positionAt(ws, p);
+		box[0] = box[3] = p[0];
+		box[1] = box[4] = p[1];
+		box[2] = box[5] = p[2];
+		node.positionAt(we, p);
+		include(box, p[0], p[1], p[2]);
+		int n = node.getNumWaypoints();
+		int k = first;
+		while (k < n) {
+			double time = node.getWaypointTime(k);
+			if (time > we) {
+				break;
+			}
+			if (time > ws) {
+				include(box, node.getWaypointX(k), node.getWaypointY(k), node.getWaypointZ(k));
+			}
+			k++;
+		}
+		return k;
+	}
+
+	protected static void include(double[] box, double x, double y, double z) {
+		box[0] = Math.min(box[0], x);
+		box[1] = Math.min(box[1], y);
+		box[2] = Math.min(box[2], z);
+		box[3] = Math.max(box[3], x);
+		box[4] = Math.max(box[4], y);
+		box[5] = Math.max(box[5], z);
+	}
+
+	/** @return the smallest distance between two points of the boxes */
+	protected static double separation(double[] a, double[] b) {
+		double dx = Math.max(0.0, Math.max(a[0] - b[3], b[0] - a[3]));
+		double dy = Math.max(0.0, Math.max(a[1] - b[4], b[1] - a[4]));
+		double dz = Math.max(0.0, Math.max(a[2] - b[5], b[2] - a[5]));
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	protected static long cellIndex(double v, double cell) {
+		return (long)Math.floor(v / cell);
+	}
+
+	protected static Long key(long cx, long cy) {
+		return Long.valueOf((cx << 32) ^ (cy & 0xffffffffL));
+	}
+
+	protected static int[] append(int[] list, int size, int value) {
+		if (list == null) {
+			list = new int[4];
+		}
+		else if (size == list.length) {
+			list = Arrays.copyOf(list, 2 * size);
+		}
+		list[size] = value;
+		return list;
+	}
+
+	protected static int[] unique(int[] list, int size) {
+		if (list == null) {
+			return new int[0];
+		}
+		Arrays.sort(list, 0, size);
+		int n = 0;
+		for (int k = 0; k < size; k++) {
+			if (n == 0 || list[n - 1] != list[k]) {
+				list[n++] = list[k];
+			}
+		}
+		return Arrays.copyOf(list, n);
+	}
+}
@@ -58,12 +58,16 @@ public class TopologyChangeTimes {
 		
 		tctr.addChangeTime(0.0);
 		
+		// pairs that never come within range cannot change the topology
+		final int[][] partners = new SpatialPrefilter(nodes, 0.0, duration, range).upperPartners();
+		
 		for(int i=0;i<directionChangeTimes.size()-1;i++) {
 			final double windowStart = directionChangeTimes.get(i);
 			final double windowEnd = directionChangeTimes.get(i+1);
 			
 			for(int src=0;src<nodes.length;src++) {
-				for(int dst=src+1;dst<nodes.length;dst++) {
+				for(int l=0;l<partners[src].length;l++) {
+					final int dst = partners[src][l];
 					final Position srcPositionStart = new Position(nodes[src].positionAt(windowStart));
 					final Position srcPositionEnd = new Position(nodes[src].positionAt(windowEnd));
 					final Position dstPositionStart = new Position(nodes[dst].positionAt(windowStart));
@@ -43,7 +43,7 @@ public class TopologyChangeTimesResult {
 	protected HashSet<Double> topologyChangeTimes;	
 	
 	public TopologyChangeTimesResult() {
-		rangeInfo = new Vector<InRangeInfo>(0,1);
+		rangeInfo = new Vector<InRangeInfo>();
 		topologyChangeTimes = new HashSet<Double>();	
 	}
 	
@@ -26,9 +26,14 @@ import java.util.Vector;
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.EuclideanMST;
 
 public class LongestLinkMetrics {
 	Scenario s;
+	protected final EuclideanMST mst = new EuclideanMST();
+	protected double[] x = null;
+	protected double[] y = null;
+	protected double[] z = null;
 	public LongestLinkMetrics(Scenario scenario) {
 		s = scenario;
 	}
@@ -71,40 +76,21 @@ public class LongestLinkMetrics {
 		return longestLink;
 	}
 		
+	/** @return the longest edge of the minimum spanning tree of the node positions at the given time */
 	public double longest(final double time) {
 		MobileNode[] node = s.getNode();
-		double longestEdge = Double.MIN_VALUE;
-		Vector<Position> inTheGraph = new Vector<Position>(node.length,1);
-		Vector<Position> notInTheGraph = new Vector<Position>(node.length,1);
-		
-		inTheGraph.add(node[0].positionAt(time));
-		
-		for(int i=0;i<node.length;i++) {
-			notInTheGraph.add(node[i].positionAt(time));
+		if(x == null || x.length != node.length) {
+			x = new double[node.length];
+			y = new double[node.length];
+			z = new double[node.length];
 		}
-
-		double edgeLength;
-		Position next;
-		double edge;	
-		while(!notInTheGraph.isEmpty()) { //Add edges until graph is fully connected
-			next = null;
-			edgeLength = Double.MAX_VALUE;
-			for(int i=0;i<inTheGraph.size();i++) {
-				for(int j=0;j<notInTheGraph.size();j++) {
-					edge = inTheGraph.elementAt(i).distance(notInTheGraph.elementAt(j));
-					if(edge < edgeLength) {
-						edgeLength = edge;
-						next = notInTheGraph.elementAt(j);
-					}
-				}	
-			}
-
-			inTheGraph.add(next);
-			notInTheGraph.remove(next);
-
-			if(edgeLength > longestEdge) { longestEdge = edgeLength; }
+		for(int i=0;i<node.length;i++) {
+			Position p = node[i].positionAt(time);
+			x[i] = p.x;
+			y[i] = p.y;
+			z[i] = p.z;
 		}
-		
-		return longestEdge;
+		// no edge is shorter than Double.MIN_VALUE, as in the former Prim implementation
+		return Math.max(Double.MIN_VALUE, mst.longestEdge(x, y, z, node.length));
 	}
 }
@@ -21,6 +21,7 @@
 package edu.bonn.cs.iv.bonnmotion.apps.statistics;
 
 import edu.bonn.cs.iv.bonnmotion.Scenario;
+import edu.bonn.cs.iv.bonnmotion.apps.helper.KineticTopologyChangeTimes;
 import edu.bonn.cs.iv.bonnmotion.apps.helper.TopologyChangeTimes;
 import edu.bonn.cs.iv.bonnmotion.apps.helper.TopologyChangeTimesResult;
 
@@ -33,8 +34,16 @@ public class StatisticsNGServer {
 	protected TopologyChangeTimesResult topologyChangeTimes = null;
 	
 	public StatisticsNGServer(Scenario s, double transmissionRange) {
+		this(s, transmissionRange, false);
+	}
+	
+	/**
+	 * @param windowScan compute the topology changes with the window scan of
+	 *        TopologyChangeTimes instead of KineticTopologyChangeTimes
+	 */
+	public StatisticsNGServer(Scenario s, double transmissionRange, boolean windowScan) {
 		init(s);
-		transmissionRangeMetrics(transmissionRange);
+		transmissionRangeMetrics(transmissionRange, windowScan);
 		independentMetrics();
 	}
 	
@@ -48,8 +57,8 @@ public class StatisticsNGServer {
 		nodeCount = scenario.nodeCount();
 	}
 	
-	protected void transmissionRangeMetrics(final double transmissionRange) {
-		TopologyChangeTimes tct = new TopologyChangeTimes(transmissionRange,scenario.getNode(),scenario.getDuration());
+	protected void transmissionRangeMetrics(final double transmissionRange, final boolean windowScan) {
+		TopologyChangeTimes tct = windowScan ? new TopologyChangeTimes(transmissionRange,scenario.getNode(),scenario.getDuration()) : new KineticTopologyChangeTimes(transmissionRange,scenario.getNode(),scenario.getDuration());
 		topologyChangeTimes = tct.getTopologyChanges();
 	}
 	
@@ -25,14 +25,17 @@ import java.io.IOException;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
 import edu.bonn.cs.iv.bonnmotion.ScenarioLinkException;
 import edu.bonn.cs.iv.bonnmotion.Waypoint;
+import edu.bonn.cs.iv.bonnmotion.printer.MovementSink;
+import edu.bonn.cs.iv.bonnmotion.printer.MovementSpool;
 
 /** Application to construct Gauss-Markov mobility scenarios. */
 
-public class GaussMarkov extends Scenario {
+public class GaussMarkov extends Scenario implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -73,6 +76,11 @@ public class GaussMarkov extends Scenario {
 	protected double inputX = 0;
 	protected double inputY = 0;
 
+	/** holds the streamed movements until the shift of the positions is known */
+	protected MovementSpool spool = null;
+	/** minimum x, maximum x, minimum y and maximum y of the positions of every node */
+	protected double[][] nodeBounds;
+
 	protected boolean parseArg(String key, String value) {
 		if (key.equals("updateFrequency")) {
 			updateFrequency = Double.parseDouble(value);
@@ -175,163 +183,196 @@ public class GaussMarkov extends Scenario {
 	public void generate() {
 		preGeneration();
 
-		double maxX = parameterData.x;
-		double maxY = parameterData.y;
-		double minX = 0;
-		double minY = 0;
-
 		if (maxspeed < minspeed) {
 			double tempspeed = minspeed;
 			minspeed = maxspeed;
 			maxspeed = tempspeed;
 		}
 
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
-			double t = 0.0;
-			Position src = null;
-			if (isTransition) {
-				try {
-					Waypoint lastW = transition(predecessorScenario, transitionMode, i);
-					src = lastW.pos;
-					t = lastW.time;
-				}
-				catch (ScenarioLinkException e) {
-					e.printStackTrace();
-				}
+		nodeBounds = new double[parameterData.nodes.length][];
+		generateNodes(this, 0, parameterData.nodes.length);
+
+		double maxX = parameterData.x;
+		double maxY = parameterData.y;
+		double minX = 0;
+		double minY = 0;
+		for (int i = 0; i < nodeBounds.length; i++) {
+			if (nodeBounds[i][0] < minX)
+				minX = nodeBounds[i][0];
+			if (nodeBounds[i][1] > maxX)
+				maxX = nodeBounds[i][1];
+			if (nodeBounds[i][2] < minY)
+				minY = nodeBounds[i][2];
+			if (nodeBounds[i][3] > maxY)
+				maxY = nodeBounds[i][3];
+		}
+		nodeBounds = null;
+
+		inputX = parameterData.x;
+		inputY = parameterData.y;
+		// setting new borders and shifting the waypoints ...
+		double shiftX = Math.abs(minX);
+		double shiftY = Math.abs(minY);
+		parameterData.x = Math.ceil(maxX + shiftX);
+		parameterData.y = Math.ceil(maxY + shiftY);
+		if (spool != null)
+			spool.setShift(shiftX, shiftY);
+		else
+			for (int i = 0; i < parameterData.nodes.length; i++)
+				parameterData.nodes[i].shiftPos(shiftX, shiftY);
+
+		postGeneration();
+	}
+
+	public void generateNode(int i) {
+		double maxX = parameterData.x;
+		double maxY = parameterData.y;
+		double minX = 0;
+		double minY = 0;
+
+		parameterData.nodes[i] = newNode(i);
+		double t = 0.0;
+		Position src = null;
+		if (isTransition) {
+			try {
+				Waypoint lastW = transition(predecessorScenario, transitionMode, i);
+				src = lastW.pos;
+				t = lastW.time;
 			}
-			else {
-				src = new Position(parameterData.x * randomNextDouble(), parameterData.y * randomNextDouble());
-				if (!parameterData.nodes[i].add(0.0, src)) {
-					System.out.println(getInfo().name + ".<init>: error while adding node movement (1)");
-					System.exit(0);
-				}
+			catch (ScenarioLinkException e) {
+				e.printStackTrace();
 			}
-
-			double dir = randomNextDouble() * 2 * Math.PI;
-			double speed = (randomNextDouble() * (maxspeed - minspeed)) + minspeed;
-			if (gaussSpeed) {
-				speed = getNewSpeed((maxspeed + minspeed) / 2.);
+		}
+		else {
+			src = new Position(parameterData.x * randomNextDouble(), parameterData.y * randomNextDouble());
+			if (!parameterData.nodes[i].add(0.0, src)) {
+				System.out.println(getInfo().name + ".<init>: error while adding node movement (1)");
+				System.exit(0);
 			}
+		}
 
-			boolean intervalShortened = false;
+		double dir = randomNextDouble() * 2 * Math.PI;
+		double speed = (randomNextDouble() * (maxspeed - minspeed)) + minspeed;
+		if (gaussSpeed) {
+			speed = getNewSpeed((maxspeed + minspeed) / 2.);
+		}
 
-			while (t < parameterData.duration) {
-				double t1 = t + updateFrequency;
+		boolean intervalShortened = false;
 
-				if (!checkBounds) {
-					dir = getNewDir(dir, src);
+		while (t < parameterData.duration) {
+			double t1 = t + updateFrequency;
+
+			if (!checkBounds) {
+				dir = getNewDir(dir, src);
+			}
+			else {
+				if (intervalShortened) {
+					// reset status:
+					intervalShortened = false;
 				}
 				else {
-					if (intervalShortened) {
-						// reset status:
-						intervalShortened = false;
-					}
-					else {
-						dir = getNewDir(dir, src);
-					}
+					dir = getNewDir(dir, src);
 				}
+			}
 
-				speed = getNewSpeed(speed);
-				if (speed > 0.0) {
-					Position dst = new Position(src.x + Math.cos(dir) * updateFrequency * speed, src.y + Math.sin(dir) * updateFrequency * speed);
-
-					if (checkBounds) {
-						/* check if node will leave the simulation area */
-						if ((dst.x < 0) || (dst.x > parameterData.x) || (dst.y < 0) || (dst.y > parameterData.y)) {
-							/* calculate intersection with boundarys */
-							double yR, yL, xU, xL, ratio;
-							ratio = (dst.y - src.y) / (dst.x - src.x);
-
-							/* right boundary */
-							/*
-							 * get y for dst on boundary ratio = (yR-src.y)/x-src.x <=> ratio *
-							 * (x-src.x) + src.y = yr
-							 */
-							yR = ratio * (parameterData.x - src.x) + src.y;
-							/* left boundary */
-							/* get y for dst on boundary */
-							yL = ratio * (-src.x) + src.y;
-							/* upper boundary */
-							/* get x for dst on boundary */
-							/*
-							 * ratio = (0-src.y)/(xU-src.x) <=> (-src.y)/ratio +src.x = xU
-							 */
-							xU = (-src.y) / ratio + src.x;
-							/* lower boundary */
-							/* get x for dst on boundary */
-							xL = (parameterData.y - src.y) / ratio + src.x;
-
-							double newX = 0.0, newY = 0.0;
-							if ((yL >= 0) && (yL <= parameterData.y) && (dir > 0.5 * Math.PI) && (dir < 1.5 * Math.PI)) {
-								newY = yL;
-								newX = 0;
-								dir = (twoPi + Math.PI - dir) % twoPi;
-							}
-							else if ((yR >= 0) && (yR <= parameterData.y) && ((dir > 1.5 * Math.PI) || (dir < 0.5 * Math.PI))) {
-								newY = yR;
-								newX = parameterData.x;
-								dir = (twoPi + Math.PI - dir) % twoPi;
-							}
-
-							if ((xU >= 0) && (xU <= parameterData.x) && (dir > Math.PI) && (dir < 2.0 * Math.PI)) {
-								newX = xU;
-								newY = 0;
-								dir = (twoPi + twoPi - dir) % twoPi;
-							}
-							else if ((xL >= 0) && (xL <= parameterData.x) && (dir > 0.0 * Math.PI) && (dir < Math.PI)) {
-								newX = xL;
-								newY = parameterData.y;
-								dir = (twoPi + twoPi - dir) % twoPi;
-							}
-
-							Position newdst = new Position(newX, newY);
-
-							// we have a new point => new interval for the given speed
-							// length of the new vector / length of the old vector =
-							// new interval / old interval
-							// =>
-							double vl1 = Math.sqrt((newdst.y - src.y) * (newdst.y - src.y) + (newdst.x - src.x) * (newdst.x - src.x));
-							double vl2 = Math.sqrt((dst.y - src.y) * (dst.y - src.y) + (dst.x - src.x) * (dst.x - src.x));
-							double newInterv = vl1 / vl2 * updateFrequency;
-							t1 = t + newInterv;
-							// memorize the shortening of the interval
-							intervalShortened = true;
-							dst = newdst;
+			speed = getNewSpeed(speed);
+			if (speed > 0.0) {
+				Position dst = new Position(src.x + Math.cos(dir) * updateFrequency * speed, src.y + Math.sin(dir) * updateFrequency * speed);
+
+				if (checkBounds) {
+					/* check if node will leave the simulation area */
+					if ((dst.x < 0) || (dst.x > parameterData.x) || (dst.y < 0) || (dst.y > parameterData.y)) {
+						/* calculate intersection with boundarys */
+						double yR, yL, xU, xL, ratio;
+						ratio = (dst.y - src.y) / (dst.x - src.x);
+
+						/* right boundary */
+						/*
+						 * get y for dst on boundary ratio = (yR-src.y)/x-src.x <=> ratio *
+						 * (x-src.x) + src.y = yr
+						 */
+						yR = ratio * (parameterData.x - src.x) + src.y;
+						/* left boundary */
+						/* get y for dst on boundary */
+						yL = ratio * (-src.x) + src.y;
+						/* upper boundary */
+						/* get x for dst on boundary */
+						/*
+						 * ratio = (0-src.y)/(xU-src.x) <=> (-src.y)/ratio +src.x = xU
+						 */
+						xU = (-src.y) / ratio + src.x;
+						/* lower boundary */
+						/* get x for dst on boundary */
+						xL = (parameterData.y - src.y) / ratio + src.x;
+
+						double newX = 0.0, newY = 0.0;
+						if ((yL >= 0) && (yL <= parameterData.y) && (dir > 0.5 * Math.PI) && (dir < 1.5 * Math.PI)) {
+							newY = yL;
+							newX = 0;
+							dir = (twoPi + Math.PI - dir) % twoPi;
+						}
+						else if ((yR >= 0) && (yR <= parameterData.y) && ((dir > 1.5 * Math.PI) || (dir < 0.5 * Math.PI))) {
+							newY = yR;
+							newX = parameterData.x;
+							dir = (twoPi + Math.PI - dir) % twoPi;
+						}
+
+						if ((xU >= 0) && (xU <= parameterData.x) && (dir > Math.PI) && (dir < 2.0 * Math.PI)) {
+							newX = xU;
+							newY = 0;
+							dir = (twoPi + twoPi - dir) % twoPi;
+						}
+						else if ((xL >= 0) && (xL <= parameterData.x) && (dir > 0.0 * Math.PI) && (dir < Math.PI)) {
+							newX = xL;
+							newY = parameterData.y;
+							dir = (twoPi + twoPi - dir) % twoPi;
 						}
-					}
-					else {
-						if (dst.x < minX)
-							minX = dst.x;
-						else if (dst.x > maxX)
-							maxX = dst.x;
-						if (dst.y < minY)
-							minY = dst.y;
-						else if (dst.y > maxY)
-							maxY = dst.y;
-					}
 
-					if (!parameterData.nodes[i].add(t1, dst)) {
-						System.out.println(getInfo().name + ".<init>: error while adding node movement (2)");
-						System.exit(0);
+						Position newdst = new Position(newX, newY);
+
+						// we have a new point => new interval for the given speed
+						// length of the new vector / length of the old vector =
+						// new interval / old interval
+						// =>
+						double vl1 = Math.sqrt((newdst.y - src.y) * (newdst.y - src.y) + (newdst.x - src.x) * (newdst.x - src.x));
+						double vl2 = Math.sqrt((dst.y - src.y) * (dst.y - src.y) + (dst.x - src.x) * (dst.x - src.x));
+						double newInterv = vl1 / vl2 * updateFrequency;
+						t1 = t + newInterv;
+						// memorize the shortening of the interval
+						intervalShortened = true;
+						dst = newdst;
 					}
-					src = dst;
 				}
-				t = t1;
+				else {
+					if (dst.x < minX)
+						minX = dst.x;
+					else if (dst.x > maxX)
+						maxX = dst.x;
+					if (dst.y < minY)
+						minY = dst.y;
+					else if (dst.y > maxY)
+						maxY = dst.y;
+				}
+
+				if (!parameterData.nodes[i].add(t1, dst)) {
+					System.out.println(getInfo().name + ".<init>: error while adding node movement (2)");
+					System.exit(0);
+				}
+				src = dst;
 			}
+			t = t1;
 		}
+		nodeBounds[i] = new double[] { minX, maxX, minY, maxY };
+	}
 
-		inputX = parameterData.x;
-		inputY = parameterData.y;
-		// setting new borders and shifting the waypoints ...
-		double shiftX = Math.abs(minX);
-		double shiftY = Math.abs(minY);
-		parameterData.x = Math.ceil(maxX + shiftX);
-		parameterData.y = Math.ceil(maxY + shiftY);
-		for (int i = 0; i < parameterData.nodes.length; i++)
-			parameterData.nodes[i].shiftPos(shiftX, shiftY);
+	protected boolean supportsStreaming() {
+		return true;
+	}
 
-		postGeneration();
+	protected MovementSink openStream(String basename, boolean binary) throws IOException {
+		// the waypoints are shifted at the end, before they are cut and written
+		spool = new MovementSpool(basename, super.openStream(basename, binary));
+		return spool;
 	}
 
 	public double getNewDir(double oldDir, Position pos) {
@@ -176,73 +176,72 @@ out:    for (int user = 0; user < parameterData.nodes.length; user++) {
                 }
 
                 ClusterMember[] not_visited = new ClusterMember[count];
+                int[] not_visited_index = new int[count];
                 count = 0;
                 for (int i = 0; i < wlist.length; i++) {
                     if (!wlist[i].is_visited) {
+                        not_visited_index[count] = i;
                         not_visited[count++] = wlist[i];
                     }
                 }
                 // get distance from source to all remaining waypoints
                 double[] dist = new double[not_visited.length];
+                String[] keys = new String[not_visited.length];
+                // waypoints whose route distance is not known yet
+                int[] missing = new int[not_visited.length];
+                int missingCount = 0;
                 for (int i = 0; i < not_visited.length; i++) {
                 	assert(not_visited[i].pos instanceof PositionGeo);
                 	PositionGeo tmp_dst = (PositionGeo)not_visited[i].pos;
                 	
-                	String key = new String(sha1Digest.digest((source.toString() + "," + tmp_dst.toString()).getBytes()));
+                	keys[i] = new String(sha1Digest.digest((source.toString() + "," + tmp_dst.toString()).getBytes()));
                 	
                     if (distanceMetric.equals("Route")) {
-                        if (distanceTable.containsKey(key)) {
-                            dist[i] = distanceTable.get(key);
+                        if (distanceTable.containsKey(keys[i])) {
+                            dist[i] = distanceTable.get(keys[i]);
                         } else {
-                        	try {
-                        		Route tmp = rsInstance.getOptimalRoute(source, tmp_dst);
-                        		dist[i] = tmp.distanceGeodesic();
-                        	} catch (RSIRequestFailedException e) {
-                                // redo all for this node
-                    			System.out.println("Error: Could not retrieve route distance (" + source.toString() + " to " + tmp_dst.toString() +", flight length " + source.distance(tmp_dst) + "m), retrying movement generation for node " + (user+1) + "...\n");
-                                user--;
-                                continue out;
-                        	}
-                        	
-                        	if (dist[i] < 0) {
-                        		System.out.println("Error: Negative route distance returned, exiting...\n");
-                        		System.exit(-1);
-                        	}
-
-                            distanceTable.put(key, dist[i]);
+                        	missing[missingCount++] = i;
                         }
                     } else {
                         dist[i] = source.distance(tmp_dst);
                     }
                 }
-
-                double[] weights = new double[not_visited.length];
-                // cumulative sum of distance weights
-                for (int i = 0; i < weights.length; i++) {
-                    weights[i] = 0;
-                    for (int j = 0; j <= i; j++) {
-                        weights[i] += 1 / Math.pow(dist[j], this.dist_weight);
-                    }
+                
+                // request the missing routes at once, the distances are stored in the same order as before
+                PositionGeo[] missingDst = new PositionGeo[missingCount];
+                for (int k = 0; k < missingCount; k++) {
+                	missingDst[k] = (PositionGeo)not_visited[missing[k]].pos;
                 }
+                RouteFetcher.Batch batch = routeFetcher.request(source, missingDst);
+                for (int k = 0; k < missingCount; k++) {
+                	int i = missing[k];
+                	try {
+                		Route tmp = batch.next();
+                		writeDistance(user, tmp);
+                		dist[i] = tmp.distanceGeodesic();
+                	} catch (RSIRequestFailedException e) {
+                		batch.cancel();
+                        // redo all for this node
+            			System.out.println("Error: Could not retrieve route distance (" + source.toString() + " to " + missingDst[k].toString() +", flight length " + source.distance(missingDst[k]) + "m), retrying movement generation for node " + (user+1) + "...\n");
+                        user--;
+                        continue out;
+                	}
+                	
+                	if (dist[i] < 0) {
+                		System.out.println("Error: Negative route distance returned, exiting...\n");
+                		System.exit(-1);
+                	}
 
-                for (int i = 0; i < weights.length; i++) {
-                    weights[i] /= weights[weights.length - 1];
+                    distanceTable.put(keys[i], dist[i]);
                 }
 
-                double r = randomNextDouble();
-                int index;
-                for (index = 0; index < weights.length; index++) {
-                    if (r < weights[index]) {
-                        break;
-                    }
-                }
-                
-                if (index == weights.length) {
+                int index = SLAWBase.select_latp(dist, this.dist_weight, this);
+                if (index == dist.length) {
                     index--;
                 }
 
-                // select the next destination
-                for (int i = 0; i < wlist.length; i++) {
+                // select the next destination, the first waypoint at the selected position
+                for (int i = 0; i <= not_visited_index[index]; i++) {
                 	assert(wlist[i].pos instanceof PositionGeo);
                 	assert(not_visited[index].pos instanceof PositionGeo);
                     if (((PositionGeo)wlist[i].pos).x() == ((PositionGeo)not_visited[index].pos).x() &&
@@ -258,6 +257,7 @@ out:    for (int user = 0; user < parameterData.nodes.length; user++) {
                 Route route = null;
                 try {
                     route = rsInstance.getOptimalRoute(source, destination);
+                    writeDistance(user, route);
                 } catch (RSIRequestFailedException e) {
                     // redo all for this node
         			System.out.println("Error: Could not retrieve route, retrying movement generation for node " + (user+1) + "...\n");
@@ -443,25 +443,28 @@ out:    for (int user = 0; user < parameterData.nodes.length; user++) {
                     		waypoints.add(temp);
                     		j++;
                     		
-                    		// test routes and store distances
-                    		Route route = null;
-                    		String key = null;
+                    		// test routes to and from all other waypoints and store distances
+                    		Vector<PositionGeo> from = new Vector<PositionGeo>();
+                    		Vector<PositionGeo> to = new Vector<PositionGeo>();
                     		for (PositionGeo p : waypoints) {
                     			if (p.equals(temp)) {
                     				continue;
                     			}
-                    			
+                    			from.add(p);
+                    			to.add(temp);
+                    			from.add(temp);
+                    			to.add(p);
+                    		}
+                    		RouteFetcher.Batch batch = routeFetcher.request(from.toArray(new PositionGeo[from.size()]), to.toArray(new PositionGeo[to.size()]));
+                    		for (int r = 0; r < from.size(); r++) {
                                 try {
-                                    route = rsInstance.getOptimalRoute(p, temp);
-                                    key = new String(sha1Digest.digest((p.toString() + "," + temp.toString()).getBytes()));
-                                    assert(!distanceTable.containsKey(key));
-                                    distanceTable.put(key, route.distanceGeodesic());
-                                    
-                                    route = rsInstance.getOptimalRoute(temp, p);
-                                    key = new String(sha1Digest.digest((temp.toString() + "," + p.toString()).getBytes()));
+                                    Route route = batch.next();
+                                    writeDistance(-1, route);
+                                    String key = new String(sha1Digest.digest((from.get(r).toString() + "," + to.get(r).toString()).getBytes()));
                                     assert(!distanceTable.containsKey(key));
                                     distanceTable.put(key, route.distanceGeodesic());
                                 } catch (RSIRequestFailedException e) {
+                                	batch.cancel();
                                 	noRouteCount++;
                                 	waypoints.remove(temp);
                                 	j--;
@@ -137,7 +137,7 @@ public class ManhattanGrid extends Scenario {
 		double init_xr = init_xh / (init_xh + (parameterData.y * (double)(yblocks+1)));
 
 		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
+			parameterData.nodes[i] = newNode(i);
 
 			double t = 0.0, st = 0.0;
 			Position src = null;
@@ -291,6 +291,10 @@ public class ManhattanGrid extends Scenario {
 		postGeneration();
 	}
 
+	protected boolean supportsStreaming() {
+		return true;
+	}
+
 	protected boolean parseArg(String key, String value) {
 		if (key.equals("xblocks")) {
 			xblocks = Integer.parseInt(value);
@@ -25,6 +25,7 @@ import java.io.IOException;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.RandomSpeedBase;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
@@ -43,7 +44,7 @@ import edu.bonn.cs.iv.bonnmotion.Waypoint;
  *  
  */
 
-public class RandomDirection extends RandomSpeedBase {
+public class RandomDirection extends RandomSpeedBase implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -90,149 +91,150 @@ public class RandomDirection extends RandomSpeedBase {
 	}
 	
 	public void generate() {	
-		double xTime, yTime, speed, newX, newY, angle;
 		preGeneration();
 
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
-			double t = 0.0;
-			Position src = null;
-			
-			if (isTransition) {
-				try {
-					Waypoint lastW = transition(predecessorScenario, transitionMode, i);
-					src = lastW.pos;
-					t = lastW.time;
-				} 
-				catch (ScenarioLinkException e) {
-					e.printStackTrace();
-				}
+		generateNodes(this, 0, parameterData.nodes.length);
+		postGeneration();
+	}
+
+	public void generateNode(int i) {
+		double xTime, yTime, speed, newX, newY, angle;
+		parameterData.nodes[i] = new MobileNode();
+		double t = 0.0;
+		Position src = null;
+		
+		if (isTransition) {
+			try {
+				Waypoint lastW = transition(predecessorScenario, transitionMode, i);
+				src = lastW.pos;
+				t = lastW.time;
 			} 
-			else src = randomNextPosition();
+			catch (ScenarioLinkException e) {
+				e.printStackTrace();
+			}
+		} 
+		else src = randomNextPosition();
+		
+		angle = randomNextDouble() * 2 * Math.PI;
+		
+		while (t < parameterData.duration) {
+			Position dst;
 			
-			angle = randomNextDouble() * 2 * Math.PI;
+			if (!parameterData.nodes[i].add(t, src))
+				throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (1)");
 			
-			while (t < parameterData.duration) {
-				Position dst;
-				
-				if (!parameterData.nodes[i].add(t, src))
-					throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (1)");
-				
-				speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
+			speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
+			
+			if (angle >= 0 && angle < Math.PI/2)
+			{
+				xTime = (parameterData.x - src.x)/(speed*Math.cos(angle));
+				yTime = (parameterData.y - src.y)/(speed*Math.sin(angle));
 				
-				if (angle >= 0 && angle < Math.PI/2)
+				if(xTime < yTime) // hit right wall first 
 				{
-					xTime = (parameterData.x - src.x)/(speed*Math.cos(angle));
-					yTime = (parameterData.y - src.y)/(speed*Math.sin(angle));
-					
-					if(xTime < yTime) // hit right wall first 
-					{
-						newX = parameterData.x;
-						newY = (speed*xTime*Math.sin(angle)) + src.y;
-						angle = (randomNextDouble() * Math.PI) + (Math.PI/2);
-					}
-					else if (yTime < xTime) // hit top wall first 
-					{
-						newX = (speed*yTime*Math.cos(angle)) + src.x;
-						newY = parameterData.y;
-						angle = (randomNextDouble() * Math.PI) + (Math.PI);
-					}
-					else // hit corner angle = Math.PI/2
-					{
-						newX = parameterData.x;
-						newY = parameterData.y;
-						angle = (randomNextDouble() * Math.PI/2) + (Math.PI);
-					}					
+					newX = parameterData.x;
+					newY = (speed*xTime*Math.sin(angle)) + src.y;
+					angle = (randomNextDouble() * Math.PI) + (Math.PI/2);
 				}
-				else if (angle >= Math.PI/2 && angle < Math.PI)
+				else if (yTime < xTime) // hit top wall first 
 				{
-					xTime = (0 - src.x)/(speed*Math.cos(angle));
-					yTime = (parameterData.y - src.y)/(speed*Math.sin(angle));
-					
-					if(xTime < yTime) // hit left wall first
-					{
-						newX = 0;
-						newY = (speed*xTime*Math.sin(angle)) + src.y;
-						angle = ((randomNextDouble() * Math.PI) + (Math.PI*3/2)) % (2*Math.PI);
-					}
-					else if (yTime < xTime) // hit top wall first
-					{
-						newX = (speed*yTime*Math.cos(angle)) + src.x;
-						newY = parameterData.y;
-						angle = (randomNextDouble() * Math.PI) + (Math.PI);
-					}
-					else // hit corner angle = Math.PI/2
-					{
-						newX = 0;
-						newY = parameterData.y;
-						angle = (randomNextDouble() * Math.PI/2) + (Math.PI*3/2);
-					}	
+					newX = (speed*yTime*Math.cos(angle)) + src.x;
+					newY = parameterData.y;
+					angle = (randomNextDouble() * Math.PI) + (Math.PI);
 				}
-				else if (angle >= Math.PI && angle < Math.PI*3/2)
+				else // hit corner angle = Math.PI/2
 				{
-					xTime = (0 - src.x)/(speed*Math.cos(angle));
-					yTime = (0 - src.y)/(speed*Math.sin(angle));
-					
-					if(xTime < yTime) // hit left wall first
-					{
-						newX = 0;
-						newY = (speed*xTime*Math.sin(angle)) + src.y;
-						angle = ((randomNextDouble() * Math.PI) + (Math.PI*3/2)) % (2*Math.PI);
-					}
-					else if (yTime < xTime) // hit bottom wall first
-					{
-						newX = (speed*yTime*Math.cos(angle)) + src.x;
-						newY = 0;
-						angle = (randomNextDouble() * Math.PI);
-					}
-					else // hit corner angle = Math.PI/2
-					{
-						newX = 0;
-						newY = 0;
-						angle = (randomNextDouble() * Math.PI/2);
-					}	
+					newX = parameterData.x;
+					newY = parameterData.y;
+					angle = (randomNextDouble() * Math.PI/2) + (Math.PI);
+				}					
+			}
+			else if (angle >= Math.PI/2 && angle < Math.PI)
+			{
+				xTime = (0 - src.x)/(speed*Math.cos(angle));
+				yTime = (parameterData.y - src.y)/(speed*Math.sin(angle));
+				
+				if(xTime < yTime) // hit left wall first
+				{
+					newX = 0;
+					newY = (speed*xTime*Math.sin(angle)) + src.y;
+					angle = ((randomNextDouble() * Math.PI) + (Math.PI*3/2)) % (2*Math.PI);
 				}
-				else if (angle >= Math.PI*3/2 && angle < Math.PI*2)
+				else if (yTime < xTime) // hit top wall first
 				{
-					xTime = (parameterData.x - src.x)/(speed*Math.cos(angle));
-					yTime = (0 - src.y)/(speed*Math.sin(angle));
-					
-					if(xTime < yTime) // hit right wall first
-					{
-						newX = parameterData.x;
-						newY = (speed*xTime*Math.sin(angle)) + src.y;
-						angle = (randomNextDouble() * Math.PI) + (Math.PI/2);
-					}
-					else if (yTime < xTime) // hit bottom wall first
-					{
-						newX = (speed*yTime*Math.cos(angle)) + src.x;
-						newY = 0;
-						angle = (randomNextDouble() * Math.PI);
-					}
-					else // hit corner angle = Math.PI/2
-					{
-						newX = parameterData.x;
-						newY = 0;
-						angle = (randomNextDouble() * Math.PI/2) + (Math.PI/2);
-					}
+					newX = (speed*yTime*Math.cos(angle)) + src.x;
+					newY = parameterData.y;
+					angle = (randomNextDouble() * Math.PI) + (Math.PI);
 				}
-				else throw new RuntimeException(getInfo().name + ".go: error angle didn't fall into any of the four quadrants. (Something blew up?)");
-				
-				dst = new Position(newX, newY);
-				t += src.distance(dst) / speed;
+				else // hit corner angle = Math.PI/2
+				{
+					newX = 0;
+					newY = parameterData.y;
+					angle = (randomNextDouble() * Math.PI/2) + (Math.PI*3/2);
+				}	
+			}
+			else if (angle >= Math.PI && angle < Math.PI*3/2)
+			{
+				xTime = (0 - src.x)/(speed*Math.cos(angle));
+				yTime = (0 - src.y)/(speed*Math.sin(angle));
 				
-				if (!parameterData.nodes[i].add(t, dst))
-					throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2)");
+				if(xTime < yTime) // hit left wall first
+				{
+					newX = 0;
+					newY = (speed*xTime*Math.sin(angle)) + src.y;
+					angle = ((randomNextDouble() * Math.PI) + (Math.PI*3/2)) % (2*Math.PI);
+				}
+				else if (yTime < xTime) // hit bottom wall first
+				{
+					newX = (speed*yTime*Math.cos(angle)) + src.x;
+					newY = 0;
+					angle = (randomNextDouble() * Math.PI);
+				}
+				else // hit corner angle = Math.PI/2
+				{
+					newX = 0;
+					newY = 0;
+					angle = (randomNextDouble() * Math.PI/2);
+				}	
+			}
+			else if (angle >= Math.PI*3/2 && angle < Math.PI*2)
+			{
+				xTime = (parameterData.x - src.x)/(speed*Math.cos(angle));
+				yTime = (0 - src.y)/(speed*Math.sin(angle));
 				
-				if ((t < parameterData.duration) && (maxpause > 0.0)) {
-					double pause = (maxpause-minpause) * randomNextDouble() + minpause;
-					t += pause;
+				if(xTime < yTime) // hit right wall first
+				{
+					newX = parameterData.x;
+					newY = (speed*xTime*Math.sin(angle)) + src.y;
+					angle = (randomNextDouble() * Math.PI) + (Math.PI/2);
+				}
+				else if (yTime < xTime) // hit bottom wall first
+				{
+					newX = (speed*yTime*Math.cos(angle)) + src.x;
+					newY = 0;
+					angle = (randomNextDouble() * Math.PI);
+				}
+				else // hit corner angle = Math.PI/2
+				{
+					newX = parameterData.x;
+					newY = 0;
+					angle = (randomNextDouble() * Math.PI/2) + (Math.PI/2);
 				}
-				src = dst;
 			}
+			else throw new RuntimeException(getInfo().name + ".go: error angle didn't fall into any of the four quadrants. (Something blew up?)");
+			
+			dst = new Position(newX, newY);
+			t += src.distance(dst) / speed;
+			
+			if (!parameterData.nodes[i].add(t, dst))
+				throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2)");
+			
+			if ((t < parameterData.duration) && (maxpause > 0.0)) {
+				double pause = (maxpause-minpause) * randomNextDouble() + minpause;
+				t += pause;
+			}
+			src = dst;
 		}
-
-		postGeneration();
 	}
 
 	protected boolean parseArg(String key, String value) {
@@ -26,12 +26,13 @@ import java.util.Vector;
 import edu.bonn.cs.iv.bonnmotion.MapScenario;
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.util.maps.*;
 import edu.bonn.cs.iv.util.maps.RouteServiceInterface.RSIRequestFailedException;
 
 /** Application to construct RandomStreet mobility scenarios. */
 
-public class RandomStreet extends MapScenario
+public class RandomStreet extends MapScenario implements NodeIndependent
 {
     private static ModuleInfo info;
     
@@ -80,49 +81,57 @@ public class RandomStreet extends MapScenario
             System.out.println("Warning: Ignoring transition...");
         }
 
+        // the waypoint lists exist before the nodes are generated (in parallel with -j)
         for (int i = 0; i < parameterData.nodes.length; i++) {
-            double t = 0.0;
-            parameterData.nodes[i] = new MobileNode();
             wpGeo.add(new Vector<WaypointGeo>());
+        }
+        generateNodes(this, 0, parameterData.nodes.length);
 
-            // set initial position of mobile node
-            PositionGeo src = randomNextGeoPosition();
-            addWaypoint(i, t, src);
+        postGeneration();
+    }
 
-            while (t < parameterData.duration) {
-                if (maxPause > 0.0) {
-                    double pause = maxPause * randomNextDouble();
-                    t += pause;
-                }
-                
-                src = wpGeo.get(i).lastElement().pos;
-                PositionGeo dst = randomNextGeoPosition();
-                Route route = null;
-                for (int r = 0; r <= RND_RETRY_COUNT; r++) {
-                    try {
-                    	route = rsInstance.getOptimalRoute(src, dst);
-                    } catch (RSIRequestFailedException e) {
-                    	if (r == RND_RETRY_COUNT) { // no valid route after RND_RETRY_COUNT retries
-                    		System.out.println("Error: no valid route found after " + (RND_RETRY_COUNT+1) + " tries. Exiting...");
-                    		System.exit(-1);
-                    	}
-                    	System.out.println("Warning: route from src to dst could not be computed (flight length "+ src.distance(dst) +"m). Retrying...");
-                    	dst = randomNextGeoPosition();
-                    	continue;
-                    }
-                    break;
-                }
-                
-                route.setScenarioStartTime(t);
+    /** Moves node i from random position to random position along the shortest routes. */
+    public void generateNode(int i)
+    {
+        double t = 0.0;
+        parameterData.nodes[i] = new MobileNode();
+
+        // set initial position of mobile node
+        PositionGeo src = randomNextGeoPosition();
+        addWaypoint(i, t, src);
 
-                // add route to waypoint list (drive to destination)
-                t = addRoute(i, route, minSpeed, maxSpeed);
+        while (t < parameterData.duration) {
+            if (maxPause > 0.0) {
+                double pause = maxPause * randomNextDouble();
+                t += pause;
             }
             
-            System.out.println("Node " + (i + 1) + " of " + parameterData.nodes.length + " done.");
-        }
+            src = wpGeo.get(i).lastElement().pos;
+            PositionGeo dst = randomNextGeoPosition();
+            Route route = null;
+            for (int r = 0; r <= RND_RETRY_COUNT; r++) {
+                try {
+                	route = rsInstance.getOptimalRoute(src, dst);
+                	writeDistance(i, route);
+                } catch (RSIRequestFailedException e) {
+                	if (r == RND_RETRY_COUNT) { // no valid route after RND_RETRY_COUNT retries
+                		System.out.println("Error: no valid route found after " + (RND_RETRY_COUNT+1) + " tries. Exiting...");
+                		System.exit(-1);
+                	}
+                	System.out.println("Warning: route from src to dst could not be computed (flight length "+ src.distance(dst) +"m). Retrying...");
+                	dst = randomNextGeoPosition();
+                	continue;
+                }
+                break;
+            }
+            
+            route.setScenarioStartTime(t);
 
-        postGeneration();
+            // add route to waypoint list (drive to destination)
+            t = addRoute(i, route, minSpeed, maxSpeed);
+        }
+        
+        System.out.println("Node " + (i + 1) + " of " + parameterData.nodes.length + " done.");
     }
 
     protected boolean parseArg(String key, String value)
@@ -27,6 +27,7 @@ import java.util.TreeMap;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.RandomSpeedBase;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
@@ -52,7 +53,7 @@ import edu.bonn.cs.iv.bonnmotion.Waypoint;
  *  
  */
 
-public class RandomWalk extends RandomSpeedBase {
+public class RandomWalk extends RandomSpeedBase implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -101,91 +102,97 @@ public class RandomWalk extends RandomSpeedBase {
 	}
 	
 	public void generate() {
+		preGeneration();
+
+		generateNodes(this, 0, parameterData.nodes.length);
+		postGeneration();
+	}
+
+	public void generateNode(int i) {
 		SortedMap<Double, Position> dstList = new TreeMap<Double, Position>();
 		double maxDist;
+
+		parameterData.nodes[i] = newNode(i);
+		double t = 0.0;
+		Position src = null;
 		
-		preGeneration();
+		if (isTransition) {
+			try {
+				Waypoint lastW = transition(predecessorScenario, transitionMode, i);
+				src = lastW.pos;
+				t = lastW.time;
+			} 
+			catch (ScenarioLinkException e) {
+				e.printStackTrace();
+			}
+		} 
+		else src = randomNextPosition();
+		
+		if (!parameterData.nodes[i].add(t, src))   		// add source Waypoint
+			throw new RuntimeException(getInfo().name + ".go: error while adding waypoint");
+		
+		while (t < parameterData.duration) {
+			Position dst = null;
+			double angle, dX, dY;
 
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
-			double t = 0.0;
-			Position src = null;
+			angle = randomNextDouble() * 2 * Math.PI;
 			
-			if (isTransition) {
-				try {
-					Waypoint lastW = transition(predecessorScenario, transitionMode, i);
-					src = lastW.pos;
-					t = lastW.time;
-				} 
-				catch (ScenarioLinkException e) {
-					e.printStackTrace();
-				}
-			} 
-			else src = randomNextPosition();
+			double speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
 			
-			if (!parameterData.nodes[i].add(t, src))   		// add source Waypoint
-				throw new RuntimeException(getInfo().name + ".go: error while adding waypoint");
+			switch (mode)
+			{
+				case 't': //Time is the limiter
+					// Compute how far we are allowed to travel in time T, where T = modeDelta. Then add the necessary destinations.
+					maxDist = speed * modeDelta;
+					if((parameterData.duration - t) < (maxDist / speed))
+					{
+						maxDist = speed * (parameterData.duration - t);
+						dX = (parameterData.duration - t) * speed * Math.cos(angle);
+						dY = (parameterData.duration - t) * speed * Math.sin(angle);
+					}
+					else
+					{
+						dX = modeDelta * speed * Math.cos(angle);
+						dY = modeDelta * speed * Math.sin(angle);
+					}
+					break;
 			
-			while (t < parameterData.duration) {
-				Position dst = null;
-				double angle, dX, dY;
-
-				angle = randomNextDouble() * 2 * Math.PI;
-				
-				double speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
-				
-				switch (mode)
-				{
-					case 't': //Time is the limiter
-						// Compute how far we are allowed to travel in time T, where T = modeDelta. Then add the necessary destinations.
-						maxDist = speed * modeDelta;
-						if((parameterData.duration - t) < (maxDist / speed))
-						{
-							maxDist = speed * (parameterData.duration - t);
-							dX = (parameterData.duration - t) * speed * Math.cos(angle);
-							dY = (parameterData.duration - t) * speed * Math.sin(angle);
-						}
-						else
-						{
-							dX = modeDelta * speed * Math.cos(angle);
-							dY = modeDelta * speed * Math.sin(angle);
-						}
-						break;
-				
-					case 's': //diStance is the limiter
-						// We know how far we're allowed to travel (modeDelta), now compute the necessary destinations
-						maxDist = modeDelta;
-						if((parameterData.duration - t) < (maxDist / speed))
-						{
-							maxDist = speed * (parameterData.duration - t);
-							dX = (parameterData.duration - t) * speed * Math.cos(angle);
-							dY = (parameterData.duration - t) * speed * Math.sin(angle);
-						}
-						else
-						{
-							dX = modeDelta * Math.cos(angle);
-							dY = modeDelta * Math.sin(angle);
-						}
-						break;
-					default: 
-						throw new RuntimeException(getInfo().name + ".go: error calculating next destination - mode is not 't' or 's'. Please supply -t or -s flag");
-				}
-				
-				dstList = checkReflection(dstList, src, dX, dY, angle, t, parameterData.duration, 0, maxDist, speed);
-				
-				for (double key : dstList.keySet())
-				{
-			    	t = key;
-			    	dst = dstList.get(key);
-			    	if (!parameterData.nodes[i].add(t, dst)) throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2t)");
-				}
-				
-				dstList.clear();
-				src = dst;
+				case 's': //diStance is the limiter
+					// We know how far we're allowed to travel (modeDelta), now compute the necessary destinations
+					maxDist = modeDelta;
+					if((parameterData.duration - t) < (maxDist / speed))
+					{
+						maxDist = speed * (parameterData.duration - t);
+						dX = (parameterData.duration - t) * speed * Math.cos(angle);
+						dY = (parameterData.duration - t) * speed * Math.sin(angle);
+					}
+					else
+					{
+						dX = modeDelta * Math.cos(angle);
+						dY = modeDelta * Math.sin(angle);
+					}
+					break;
+				default: 
+					throw new RuntimeException(getInfo().name + ".go: error calculating next destination - mode is not 't' or 's'. Please supply -t or -s flag");
+			}
+			
+			dstList = checkReflection(dstList, src, dX, dY, angle, t, parameterData.duration, 0, maxDist, speed);
+			
+			for (double key : dstList.keySet())
+			{
+		    	t = key;
+		    	dst = dstList.get(key);
+		    	if (!parameterData.nodes[i].add(t, dst)) throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2t)");
 			}
+			
+			dstList.clear();
+			src = dst;
 		}
+		clipToDuration(parameterData.nodes[i]);
+	}
 
-		postGeneration();
+	protected boolean supportsStreaming() {
+		return true;
 	}
 
 	protected boolean parseArg(String key, String value) {
@@ -628,17 +635,4 @@ public class RandomWalk extends RandomSpeedBase {
 			return list;
 		}
 	}
-
-	protected void postGeneration() {
-		for ( int i = 0; i < parameterData.nodes.length; i++ ) 
-		{
-			Waypoint l = parameterData.nodes[i].getLastWaypoint();
-			if (l.time > parameterData.duration) {
-				Position p = parameterData.nodes[i].positionAt(parameterData.duration);
-				parameterData.nodes[i].removeLastElement();
-				parameterData.nodes[i].add(parameterData.duration, p);
-			}
-		}
-		super.postGeneration();
-	}
 }
\ No newline at end of file
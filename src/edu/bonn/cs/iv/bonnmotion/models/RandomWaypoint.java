@@ -25,13 +25,14 @@ import java.io.IOException;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.RandomSpeedBase;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
 import edu.bonn.cs.iv.bonnmotion.ScenarioLinkException;
 import edu.bonn.cs.iv.bonnmotion.Waypoint;
 
-public class RandomWaypoint extends RandomSpeedBase {
+public class RandomWaypoint extends RandomSpeedBase implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -80,81 +81,88 @@ public class RandomWaypoint extends RandomSpeedBase {
 	public void generate(){
 		preGeneration();	// Sets Random Seed & Duration += ignore-Time & Attractor Field
 		
-		for(int i = 0; i < parameterData.nodes.length; i++){
-			parameterData.nodes[i] = new MobileNode();
-			double t = 0.;
-			Position src = null;
-			if(isTransition){
-				try{
-					Waypoint lastW = transition(predecessorScenario, transitionMode, i);
-					src = lastW.pos;
-					t = lastW.time;
-				} catch(ScenarioLinkException e){
-					e.printStackTrace();
-				}
-			} 
-			else{
-				src = randomNextPosition();
+		generateNodes(this, 0, parameterData.nodes.length);
+		postGeneration();
+	}
+
+	public void generateNode(int i) {
+		parameterData.nodes[i] = newNode(i);
+		double t = 0.;
+		Position src = null;
+		if(isTransition){
+			try{
+				Waypoint lastW = transition(predecessorScenario, transitionMode, i);
+				src = lastW.pos;
+				t = lastW.time;
+			} catch(ScenarioLinkException e){
+				e.printStackTrace();
 			}
-			while(t < parameterData.duration){
-				Position dst;
-				if(!parameterData.nodes[i].add(t, src))
-					throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (1)");
-			
-				switch(dim){
-					case 1 :		// movement only on x-axis
-						dst = randomNextPosition(-1., src.y, -1.);
-						break;
-					case 2 : 		// movement on x or y-axis
-						switch((int)(randomNextDouble() * 2.0)){
-							case 0 :
-								dst = randomNextPosition(-1., src.y, src.z);
-								break;
-							case 1 :
-								dst = randomNextPosition(src.x, -1., src.z);
-								break;
-							default :
-								throw new RuntimeException(getInfo().name + ".go: This is impossible - how can (int)(randomNextDouble() * 2.0) be something other than 0 or 1?!");
-						}
-						break;
-					case 3 :
-						dst = randomNextPosition();
-						break;
-					case 4 : 		// movement on x, y or z-axis
-						switch((int)(randomNextDouble() * 3.0)){
-							case 0 :
-								dst = randomNextPosition(-1., src.y, src.z);
-								break;
-							case 1 :
-								dst = randomNextPosition(src.x, -1., src.z);
-								break;
-							case 2 :
-								dst = randomNextPosition(src.x, src.y, -1.);
-								break;
-							default :
-								throw new RuntimeException(getInfo().name + ".go: This is impossible - how can (int)(randomNextDouble() * 3.0) be something other than 0, 1 or 2?!");
-						}
-						break;
-					case 5 : 		// classical Random Waypoint
-						dst = randomNextPosition();
-						break;
-					default :
-						throw new RuntimeException(getInfo().name + ".go: dimension may only be of value 1, 2, 3, 4 or 5.");
-				}
-				double speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
-				double dist = src.distance(dst);
-				double time = dist / speed;
-				t += time;
-				if(!parameterData.nodes[i].add(t, dst))
-					throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2)");
-				if((t < parameterData.duration) && (maxpause > 0.0)){
-					double pause = maxpause * randomNextDouble();
-					t += pause;
-				}
-				src = dst;
+		} 
+		else{
+			src = randomNextPosition();
+		}
+		while(t < parameterData.duration){
+			Position dst;
+			if(!parameterData.nodes[i].add(t, src))
+				throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (1)");
+		
+			switch(dim){
+				case 1 :		// movement only on x-axis
+					dst = randomNextPosition(-1., src.y, -1.);
+					break;
+				case 2 : 		// movement on x or y-axis
+					switch((int)(randomNextDouble() * 2.0)){
+						case 0 :
+							dst = randomNextPosition(-1., src.y, src.z);
+							break;
+						case 1 :
+							dst = randomNextPosition(src.x, -1., src.z);
+							break;
+						default :
+							throw new RuntimeException(getInfo().name + ".go: This is impossible - how can (int)(randomNextDouble() * 2.0) be something other than 0 or 1?!");
+					}
+					break;
+				case 3 :
+					dst = randomNextPosition();
+					break;
+				case 4 : 		// movement on x, y or z-axis
+					switch((int)(randomNextDouble() * 3.0)){
+						case 0 :
+							dst = randomNextPosition(-1., src.y, src.z);
+							break;
+						case 1 :
+							dst = randomNextPosition(src.x, -1., src.z);
+							break;
+						case 2 :
+							dst = randomNextPosition(src.x, src.y, -1.);
+							break;
+						default :
+							throw new RuntimeException(getInfo().name + ".go: This is impossible - how can (int)(randomNextDouble() * 3.0) be something other than 0, 1 or 2?!");
+					}
+					break;
+				case 5 : 		// classical Random Waypoint
+					dst = randomNextPosition();
+					break;
+				default :
+					throw new RuntimeException(getInfo().name + ".go: dimension may only be of value 1, 2, 3, 4 or 5.");
+			}
+			double speed = (maxspeed - minspeed) * randomNextDouble() + minspeed;
+			double dist = src.distance(dst);
+			double time = dist / speed;
+			t += time;
+			if(!parameterData.nodes[i].add(t, dst))
+				throw new RuntimeException(getInfo().name + ".go: error while adding waypoint (2)");
+			if((t < parameterData.duration) && (maxpause > 0.0)){
+				double pause = maxpause * randomNextDouble();
+				t += pause;
 			}
+			src = dst;
 		}
-		postGeneration();
+		clipToDuration(parameterData.nodes[i]);
+	}
+
+	protected boolean supportsStreaming() {
+		return true;
 	}
 
     protected boolean parseArg(String key, String value) {
@@ -191,16 +199,6 @@ public class RandomWaypoint extends RandomSpeedBase {
 	}
 	
 	protected void postGeneration() {
-		for ( int i = 0; i < parameterData.nodes.length; i++ ) {
-
-			Waypoint l = parameterData.nodes[i].getLastWaypoint();
-			if (l.time > parameterData.duration) {
-				Position p = parameterData.nodes[i].positionAt(parameterData.duration);
-				parameterData.nodes[i].removeLastElement();
-				parameterData.nodes[i].add(parameterData.duration, p);
-			}
-		}
-		
 		if (meshNodeDistance > 0)
 		    addMeshNodes();
     
@@ -219,13 +217,14 @@ public class RandomWaypoint extends RandomSpeedBase {
         MobileNode[] nodeNew = new MobileNode[parameterData.nodes.length + numMeshNodes];
         for (int i = 0; i < parameterData.nodes.length; i++)
             nodeNew[i] = parameterData.nodes[i];
-        for (int i = 0; i < numMeshNodes; i++)
-            nodeNew[parameterData.nodes.length + i] = new MobileNode();
-
-        for (int j = 0; j < numMeshY; j++)
+        // nodes in increasing order, as required by newNode()
+        for (int k = 0; k < numMeshNodes; k++)
         {
-            for (int i = 0; i < numMeshX; i++)
-                nodeNew[parameterData.nodes.length + j*numMeshX + i].add(0.0, new Position((i+1) * meshNodeDistance, (j+1) * meshNodeDistance, (i+1)*(j+1)*meshNodeDistance));
+            int i = k % numMeshX;
+            int j = k / numMeshX;
+            nodeNew[parameterData.nodes.length + k] = newNode(parameterData.nodes.length + k);
+            if (j < numMeshY)
+                nodeNew[parameterData.nodes.length + k].add(0.0, new Position((i+1) * meshNodeDistance, (j+1) * meshNodeDistance, (i+1)*(j+1)*meshNodeDistance));
         }
 
         parameterData.nodes = nodeNew;
@@ -29,6 +29,7 @@ import java.util.*;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
 import edu.bonn.cs.iv.bonnmotion.Waypoint;
@@ -41,7 +42,7 @@ import edu.bonn.cs.iv.bonnmotion.printer.PrinterStyle;
 
 /** Application to construct SLAW mobility scenarios. */
 
-public class SLAW extends Scenario {
+public class SLAW extends Scenario implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -77,6 +78,8 @@ public class SLAW extends Scenario {
     private double cluster_range = 50;
     private String waypoints_filename = null;
     private Position[] waypoints;
+    /** clusters of the waypoints, during the generation */
+    private Cluster[] clusters;
 
     public SLAW(int nodes, double x, double y, double duration, double ignore, long randomSeed, int waypoints, double minpause,
             double maxpause, double beta, double hurst, double dist_weight, double cluster_range, int cr, int wr) {
@@ -125,132 +128,117 @@ public class SLAW extends Scenario {
         }
         
         System.out.println("Generating Clusters.\n\n");
-        Cluster[] clusters = SLAWBase.generate_clusters(this.waypoints, this.cluster_range);
+        clusters = SLAWBase.generate_clusters(this.waypoints, this.cluster_range);
         System.out.println(clusters.length + " Clusters found.");
 
+        if (clusters.length > 1){
+            System.out.println("Trace generation started.\n");
+
+            generateNodes(this, 0, parameterData.nodes.length);
+            System.out.println("\n");
+            postGeneration();
+            System.out.println("Trace generation done.\n");
+        } else {
+            System.out.println("Error: Too few Clusters to generate Trace!");
+            System.exit(0);
+        }
+    }
+
+    public void generateNode(int user) {
         // These variables have values same as in the matlab implementation of
         // SLAW model by Seongik Hong, NCSU, US (3/10/2009)
         final double speed = 1;
         final int powerlaw_step = 1;
         final int levy_scale_factor = 1;
         final int powerlaw_mode = 1;
-        if (clusters.length > 1){
-            System.out.println("Trace generation started.\n");
 
-            for (int user = 0; user < parameterData.nodes.length; user++) {
-            	parameterData.nodes[user] = new MobileNode();
-                double t = 0.0;
-                // get random clusters and waypoints
-                Cluster[] clts = SLAWBase.make_selection(clusters, null, false, cluster_ratio, noOfWaypoints, waypoint_ratio, this);
-                // total list of waypoints assigned
-                ClusterMember[] wlist = SLAWBase.get_waypoint_list(clts);
-
-                // random source node
-                int src = (int)Math.floor(randomNextDouble() * wlist.length);
-                int dst = -1;
-                int count;
-                
-                while (t < parameterData.duration) {
-                    count = 0;
-                    
-                    Position source = (Position)wlist[src].pos;
-                    
-                    if (!parameterData.nodes[user].add(t, source)) {
-                        throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint (1)");
-                    }
-                    wlist[src].is_visited = true;
-                    
-                    // get list of not visited locations
-                    for (int i = 0; i < wlist.length; i++) {
-                        if (!wlist[i].is_visited) {
+        parameterData.nodes[user] = new MobileNode();
+        double t = 0.0;
+        // get random clusters and waypoints
+        Cluster[] clts = SLAWBase.make_selection(clusters, null, false, cluster_ratio, noOfWaypoints, waypoint_ratio, this);
+        // total list of waypoints assigned
+        ClusterMember[] wlist = SLAWBase.get_waypoint_list(clts);
+
+        // random source node
+        int src = (int)Math.floor(randomNextDouble() * wlist.length);
+        int dst = -1;
+        int count;
+        
+        while (t < parameterData.duration) {
+            count = 0;
+            
+            Position source = (Position)wlist[src].pos;
+            
+            if (!parameterData.nodes[user].add(t, source)) {
+                throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint (1)");
+            }
+            wlist[src].is_visited = true;
+            
+            // get list of not visited locations
+            for (int i = 0; i < wlist.length; i++) {
+                if (!wlist[i].is_visited) {
+                    count++;
+                }
+            }
+            
+            // if all waypoints are visited then select new clusters and
+            // waypoints. Destructive mode of original SLAW matlab
+            // implementation by Seongik Hong, NCSU, US (3/10/2009)
+            while (count == 0) {
+                clts = SLAWBase.make_selection(clusters, clts, true, cluster_ratio, noOfWaypoints, waypoint_ratio, this);
+                wlist = SLAWBase.get_waypoint_list(clts);
+                for (int i = 0; i < wlist.length; i++) {
+                    if (!wlist[i].is_visited) {
+                        if (source.distance(wlist[i].pos) != 0.0) {
                             count++;
+                        } else {
+                            wlist[i].is_visited = true;
                         }
                     }
-                    
-                    // if all waypoints are visited then select new clusters and
-                    // waypoints. Destructive mode of original SLAW matlab
-                    // implementation by Seongik Hong, NCSU, US (3/10/2009)
-                    while (count == 0) {
-                        clts = SLAWBase.make_selection(clusters, clts, true, cluster_ratio, noOfWaypoints, waypoint_ratio, this);
-                        wlist = SLAWBase.get_waypoint_list(clts);
-                        for (int i = 0; i < wlist.length; i++) {
-                            if (!wlist[i].is_visited) {
-                                if (source.distance(wlist[i].pos) != 0.0) {
-                                    count++;
-                                } else {
-                                    wlist[i].is_visited = true;
-                                }
-                            }
-                        }
-                    }
-
-                    ClusterMember[] not_visited = new ClusterMember[count];
-                    count = 0;
-                    for (int i = 0; i < wlist.length; i++) {
-                        if (!wlist[i].is_visited) {
-                            not_visited[count++] = wlist[i];
-                        }
-                    }
-                    
-                    // get distance from source to all remaining waypoints
-                    double[] dist = new double[not_visited.length];
-                    for (int i = 0; i < not_visited.length; i++) {
-                        dist[i] = source.distance(not_visited[i].pos);
-                    }
-
-                    double[] weights = new double[not_visited.length];
-                    // cumulative sum of distance weights
-                    for (int i = 0; i < weights.length; i++) {
-                        weights[i] = 0;
-                        for (int j = 0; j <= i; j++) {
-                            weights[i] += 1 / Math.pow(dist[j], this.dist_weight);
-                        }
-                    }
-
-                    for (int i = 0; i < weights.length; i++) {
-                        weights[i] /= weights[weights.length - 1];
-                    }
+                }
+            }
 
-                    double r = randomNextDouble();
+            ClusterMember[] not_visited = new ClusterMember[count];
+            int[] not_visited_index = new int[count];
+            count = 0;
+            for (int i = 0; i < wlist.length; i++) {
+                if (!wlist[i].is_visited) {
+                    not_visited_index[count] = i;
+                    not_visited[count++] = wlist[i];
+                }
+            }
+            
+            // get distance from source to all remaining waypoints
+            double[] dist = new double[not_visited.length];
+            for (int i = 0; i < not_visited.length; i++) {
+                dist[i] = source.distance(not_visited[i].pos);
+            }
 
-                    int index;
-                    for (index = 0; index < weights.length; index++) {
-                        if (r < weights[index]) {
-                            break;
-                        }
-                    }
+            int index = SLAWBase.select_latp(dist, this.dist_weight, this);
 
-                    // select the next destination
-                    for (int i = 0; i < wlist.length; i++) {
-                        if (wlist[i].pos.equals(not_visited[index].pos)) {
-                            dst = i;
-                            break;
-                        }
-                    }
+            // select the next destination, the first waypoint at the selected position
+            for (int i = 0; i <= not_visited_index[index]; i++) {
+                if (wlist[i].pos.equals(not_visited[index].pos)) {
+                    dst = i;
+                    break;
+                }
+            }
 
-                    double distance = source.distance(wlist[dst].pos);
-                    t += distance / speed;
+            double distance = source.distance(wlist[dst].pos);
+            t += distance / speed;
 
-                    if (!parameterData.nodes[user].add(t, (Position)wlist[dst].pos)) {
-                        throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint (2)");
-                    }
-                    
-                    // select pause time by power law formula
-                    if ((t < parameterData.duration) && (this.maxpause > 0.0)) {
-                        t += SLAWBase.random_powerlaw(powerlaw_step, levy_scale_factor, powerlaw_mode, minpause, maxpause, beta, this)[0];
-                    }
-                    // change destination to next source
-                    src = dst;
-                }
-                System.out.println("Trace generation for node " + (user + 1) + " of " + parameterData.nodes.length + " done.");
+            if (!parameterData.nodes[user].add(t, (Position)wlist[dst].pos)) {
+                throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint (2)");
             }
-            System.out.println("\n");
-            postGeneration();
-            System.out.println("Trace generation done.\n");
-        } else {
-            System.out.println("Error: Too few Clusters to generate Trace!");
-            System.exit(0);
+            
+            // select pause time by power law formula
+            if ((t < parameterData.duration) && (this.maxpause > 0.0)) {
+                t += SLAWBase.random_powerlaw(powerlaw_step, levy_scale_factor, powerlaw_mode, minpause, maxpause, beta, this)[0];
+            }
+            // change destination to next source
+            src = dst;
         }
+        System.out.println("Trace generation for node " + (user + 1) + " of " + parameterData.nodes.length + " done.");
     }
 
     /**
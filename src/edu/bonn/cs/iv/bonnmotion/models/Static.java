@@ -26,7 +26,7 @@ import edu.bonn.cs.iv.bonnmotion.*;
 
 /** Application to construct static scenarios. */
 
-public class Static extends Scenario {
+public class Static extends Scenario implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -83,14 +83,7 @@ public class Static extends Scenario {
 				}
 				double xSave = parameterData.x;
 				parameterData.x = hx;
-				for (int i = n; i < hn; i++) {
-					Position pos;
-					do {
-						pos = randomNextPosition();
-					} while (pos.x > parameterData.x); // this may happen because of the attractor field
-					if (! (parameterData.nodes[i] = new MobileNode()).add(0.0, pos))
-						throw new RuntimeException(getInfo().name + ".go: error while adding waypoint");
-				}
+				generateNodes(this, n, hn);
 				parameterData.x = xSave;
 				n = hn;
 			}
@@ -99,6 +92,15 @@ public class Static extends Scenario {
 		postGeneration();
 	}
 
+	public void generateNode(int i) {
+		Position pos;
+		do {
+			pos = randomNextPosition();
+		} while (pos.x > parameterData.x); // this may happen because of the attractor field
+		if (! (parameterData.nodes[i] = new MobileNode()).add(0.0, pos))
+			throw new RuntimeException(getInfo().name + ".go: error while adding waypoint");
+	}
+
 	protected boolean parseArg(String key, String val) {
 		if (key.equals("densityLevels")) {
 			densityLevels = Integer.parseInt(val);
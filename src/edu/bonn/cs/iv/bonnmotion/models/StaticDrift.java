@@ -28,7 +28,7 @@ import edu.bonn.cs.iv.bonnmotion.printer.Dimension;
 
 /** Application to construct static scenarios with a drift. */
 
-public class StaticDrift extends Scenario {
+public class StaticDrift extends Scenario implements NodeIndependent {
     private static ModuleInfo info;
     
     static {
@@ -59,6 +59,8 @@ public class StaticDrift extends Scenario {
 	protected double deltaZ = DEFAULT_Z;
 	protected String input_filename = "";
 	protected double interval_len = DEFAULT_INTERVAL_LEN;
+	/** positions read from input_filename, during the generation */
+	protected ArrayList<Position> inputPositions = null;
 
 	public StaticDrift(int nodes, double x, double y, double z, double duration, double ignore, long randomSeed, double deltaX,
 			double deltaY, double deltaZ) {
@@ -86,39 +88,39 @@ public class StaticDrift extends Scenario {
 
 		preGeneration();
 
-		ArrayList<Position> inputPositions = getPositionsFromFile(input_filename);
+		inputPositions = getPositionsFromFile(input_filename);
 		parameterData.nodes = new MobileNode[inputPositions.size()];
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
-		}
+		generateNodes(this, 0, parameterData.nodes.length);
+		inputPositions = null;
+			
+		postGeneration();
+	}
+
+	public void generateNode(int i) {
+		parameterData.nodes[i] = new MobileNode();
+		Position tmp = inputPositions.get(i);
 		
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			Position tmp = inputPositions.get(i);
+		double time = 0;
+		while (time < parameterData.duration) {
+			double newX = (tmp.x - deltaX) + randomNextDouble() * 2 * deltaX;
+			double newY = (tmp.y - deltaY) + randomNextDouble() * 2 * deltaY;
+			double newZ = 0.0;
+			if (this.parameterData.calculationDim == Dimension.THREED){
+				newZ = (tmp.z - deltaZ) + randomNextDouble() * 2 * deltaZ;
+			}
 			
-			double time = 0;
-			while (time < parameterData.duration) {
-				double newX = (tmp.x - deltaX) + randomNextDouble() * 2 * deltaX;
-				double newY = (tmp.y - deltaY) + randomNextDouble() * 2 * deltaY;
-				double newZ = 0.0;
-				if (this.parameterData.calculationDim == Dimension.THREED){
-					newZ = (tmp.z - deltaZ) + randomNextDouble() * 2 * deltaZ;
-				}
-				
-				
-				if (!(parameterData.nodes[i].add(time, new Position(newX, newY, newZ)))) {
-					throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint");
-				}
-				
-				if(interval_len > 0) {
-					time += interval_len;
-				}
-				else {
-					time = parameterData.duration;
-				}
+			
+			if (!(parameterData.nodes[i].add(time, new Position(newX, newY, newZ)))) {
+				throw new RuntimeException(getInfo().name + ".generate: error while adding waypoint");
 			}
-		}
 			
-		postGeneration();
+			if(interval_len > 0) {
+				time += interval_len;
+			}
+			else {
+				time = parameterData.duration;
+			}
+		}
 	}
 
 	/**
@@ -148,7 +148,7 @@ public class SteadyStateRandomWaypoint extends Scenario {
 		probabilityPaused = expectedPauseTime / (expectedPauseTime + expectedTravelTime);
 
 		for (int i = 0; i < parameterData.nodes.length; i++) {
-			parameterData.nodes[i] = new MobileNode();
+			parameterData.nodes[i] = newNode(i);
 			double t = 0.0;
 			Position src = null;
 			if (isTransition) {
@@ -250,11 +250,16 @@ public class SteadyStateRandomWaypoint extends Scenario {
 				}
 				src = dst;
 			}
+			clipToDuration(parameterData.nodes[i]);
 		}
 
 		postGeneration();
 	}
 
+	protected boolean supportsStreaming() {
+		return true;
+	}
+
 	protected boolean parseArg(String key, String value) {
 		if (key.equals("speedMean")) {
 			speedMean = Double.parseDouble(value);
@@ -312,16 +317,4 @@ public class SteadyStateRandomWaypoint extends Scenario {
 		System.out.println("\t-k <pause mean>");
 		System.out.println("\t-l <pause delta>");
 	}
-
-	protected void postGeneration() {
-		for (int i = 0; i < parameterData.nodes.length; i++) {
-			Waypoint l = parameterData.nodes[i].getLastWaypoint();
-			if (l.time > parameterData.duration) {
-				Position p = parameterData.nodes[i].positionAt(parameterData.duration);
-				parameterData.nodes[i].removeLastElement();
-				parameterData.nodes[i].add(parameterData.duration, p);
-			}
-		}
-		super.postGeneration();
-	}
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.NodeIndependent;
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
 import edu.bonn.cs.iv.bonnmotion.models.slaw.SLAWBase;
@@ -40,7 +41,7 @@ import edu.bonn.cs.iv.bonnmotion.models.slaw.SLAWBase;
  * (http://ieeexplore.ieee.org/xpl/articleDetails.jsp?arnumber=5750071)
 */	
 
-public class TLW extends Scenario {
+public class TLW extends Scenario implements NodeIndependent {
 	
     private static ModuleInfo info;
    
@@ -71,6 +72,7 @@ public class TLW extends Scenario {
     private double minimum_flight_length = 5;  		// min flight length (meters)
     private double maximum_flight_length = 1000;  	// max flight length (meters)
     private double boundary_condition;  			// boundary condition
+    private static final double time_size = 60;		// interval of the waypoints (seconds)
 
     public TLW(int nodes, double x, double y, double duration, double ignore, long randomSeed, double alpha, double beta, double size_max, double s_min, double s_max, double f_min, double f_max, double b_c) {
         super(nodes, x, y, duration, ignore, randomSeed);
@@ -98,13 +100,23 @@ public class TLW extends Scenario {
     	
         preGeneration();
 		
+        parameterData.duration = parameterData.duration - time_size; // TODO: because matlab starts with time_size instead of zero
+
+		// iteration for each node
+		generateNodes(this, 0, nodeCount());
+       
+        postGeneration();
+        
+        // restore duration, such that it is printed correctly in the parameter file 
+        parameterData.duration += time_size;
+    }
+
+    public void generateNode(int mn) {
 		// variables
         int pt_scale = 1;
         int fl_scale = 10;       
         int num_step = 50000;
         double mu = 0;
-        double time_size = 60;
-        parameterData.duration = parameterData.duration - time_size; // TODO: because matlab starts with time_size instead of zero
         double end_time = parameterData.duration;
         double max_x = maximum_size;
         double max_y = maximum_size;
@@ -116,20 +128,16 @@ public class TLW extends Scenario {
         double x_mobile[] = new double[(int)parameterData.duration + 1];
 		double y_mobile[] = new double[(int)parameterData.duration + 1];
 		double t_mobile[] = new double[(int)parameterData.duration + 1];
-	
-		// iteration for each node
-		int node_count = nodeCount();
-		for (int mn = 0; mn < node_count; mn++) {
-			
-			parameterData.nodes[mn] = new MobileNode();
-			
-	        // generate flight length
-	        for (int k = 0; k < num_step; ) {
-	        	
-	        	double[] stabrnd_result = SLAWBase.stabrnd(0, fl_scale, 0, num_step, alpha, this);
 
-	        	ArrayList<Double> temp = new ArrayList<Double>();
-	        	
+		parameterData.nodes[mn] = new MobileNode();
+		
+        // generate flight length
+        for (int k = 0; k < num_step; ) {
+        	
+        	double[] stabrnd_result = SLAWBase.stabrnd(0, fl_scale, 0, num_step, alpha, this);
+
+        	ArrayList<Double> temp = new ArrayList<Double>();
+        	
                 for (int i = 0; i < stabrnd_result.length; i++) {
                     if (stabrnd_result[i] > minimum_flight_length && stabrnd_result[i] < maximum_flight_length) {
                         temp.add(new Double(stabrnd_result[i]));
@@ -143,18 +151,18 @@ public class TLW extends Scenario {
                         }
                     }
                 }
-	        }
-	        for (int i = 0; i < num_step; i++) {
-	        	flight_lengths[i] = Math.round(flight_lengths[i]);
-	        }
-	        
-	        // generate pause time
-	        for (int k = 0; k < num_step; ) {
-	        	
-	        	double[] stabrnd_result = SLAWBase.stabrnd(0, pt_scale, 0, num_step, beta, this);
-	        	
-	        	ArrayList<Double> temp = new ArrayList<Double>();
-	        	
+        }
+        for (int i = 0; i < num_step; i++) {
+        	flight_lengths[i] = Math.round(flight_lengths[i]);
+        }
+        
+        // generate pause time
+        for (int k = 0; k < num_step; ) {
+        	
+        	double[] stabrnd_result = SLAWBase.stabrnd(0, pt_scale, 0, num_step, beta, this);
+        	
+        	ArrayList<Double> temp = new ArrayList<Double>();
+        	
                 for (int i = 0; i < stabrnd_result.length; i++) {
                     if (stabrnd_result[i] >= minimum_pause_time && stabrnd_result[i] < maximum_pause_time) {
                         temp.add(new Double(stabrnd_result[i]));
@@ -168,135 +176,129 @@ public class TLW extends Scenario {
                         }
                     }
                 }
-	        }
-	        for (int i = 0; i < num_step; i++) {
-	        	pause_times[i] = Math.round(pause_times[i]);
-	        }
-	        
-	        // generate random values for first entries
-	        x_values[0] = this.randomNextDouble() * max_x;
-	        y_values[0] = this.randomNextDouble() * max_y;
-	        times[0] = 0.0;
-	        
-	        int j = 0;
-	        for (int i = 1; i < num_step - 1; i = i + 2) {
-	        	
-	        	double theta = 2 * Math.PI * this.randomNextDouble();
-	        	double next_x = Math.round( x_values[i-1] + flight_lengths[i/2] * Math.cos( theta ) );
-	        	double next_y = Math.round( y_values[i-1] + flight_lengths[i/2] * Math.sin( theta ) );
-	        	
-	            // wrap around
-	        	if (boundary_condition == 1.0) {
-	        		if (next_x < 0) {
-	        			x_values[i] = max_x + next_x;
-	        		} else if (next_x > max_x) {
-	        			x_values[i] = next_x - max_x;
-	        		} else {
-	        			x_values[i] = next_x;
-	        		}
-	        		
-	        		if (next_y < 0) {
-	        			y_values[i] = max_y + next_y;
-	        		} else if (next_y > max_y) {
-	        			y_values[i] = next_y - max_y;
-	        		} else {
-	        			y_values[i] = next_y;
-	        		}
-	        	}
-	        	// reflection
-	        	else if (boundary_condition == 2.0) {
-	        		if (next_x < 0) {
-	        			x_values[i] = -next_x;
-	        		} else if (next_x > max_x) {
-	        			x_values[i] = max_x - (next_x - max_x);
-	        		} else {
-	        			x_values[i] = next_x;
-	        		}
-	        		
-	        		if (next_y < 0) {
-	        			y_values[i] = -next_y;
-	        		} else if (next_y > max_y) {
-	        			y_values[i] = max_y - (next_y - max_y);
-	        		} else {
-	        			y_values[i] = next_y;
-	        		}
-	        	}
-	        	else {
-	        		System.err.println("Error@TLW: invalid boundary condition");
-	        	}
-	        	
-	        	double dist = Math.sqrt( (double) Math.pow( (next_x - x_values[i-1]), 2 ) + Math.pow( (next_y - y_values[i-1]), 2 ) );
-	    		times[i] = times[i-1] + Math.pow(dist, 1-mu);
-	    		times[i+1] = times[i] + Math.abs(pause_times[i/2]);
-	    		x_values[i+1] = x_values[i];
-	    		y_values[i+1] = y_values[i];
-	    				
-	    		while (j * time_size < times[i+1]) {
-	    			
-	    			if (j * time_size < times[i]) {
-	    				
-	    				double p_ratio = (j * time_size - times[i-1]) / (times[i] - times[i-1]); 
-	    				double x_temp = next_x * p_ratio + x_values[i-1] * (1 - p_ratio);
-	    				double y_temp = next_y * p_ratio + y_values[i-1] * (1 - p_ratio);
-	    				
-	    	            // wrap around
-	    				if (boundary_condition == 1.0) {
-	    	        		if (x_temp < 0) {
-	    	        			x_temp = max_x + x_temp;
-	    	        		} else if (x_temp > max_x) {
-	    	        			x_temp = x_temp - max_x;
-	    	        		} 
-	    	        		
-	    	        		if (y_temp < 0) {
-	    	        			y_temp = max_y + y_temp;
-	    	        		} else if (y_temp > max_y) {
-	    	        			y_temp = y_temp - max_y;
-	    	        		} 
-	    	        	}
-	    	        	// reflection
-	    	        	else if (boundary_condition == 2.0) {
-	    	        		if (x_temp < 0) {
-	    	        			x_temp = -x_temp;
-	    	        		} else if (x_temp > max_x) {
-	    	        			x_temp = max_x - (x_temp - max_x);
-	    	        		} 
-	    	        		
-	    	        		if (y_temp < 0) {
-	    	        			y_temp = -next_y; 
-	    	        		} else if (next_y > max_y) {
-	    	        			y_temp = max_y - (next_y - max_y);
-	    	        		} 
-	    	        	}
-	    	        	else {
-	    	        		System.err.println("Error@TLW: invalid boundary condition");
-	    	        	}
-	    				
-	    				parameterData.nodes[mn].add(j * time_size, new Position( Math.round( x_temp ), Math.round( y_temp ) ));
-	    				x_mobile[j] = x_temp;
-	    				y_mobile[j] = y_temp;
-	    				t_mobile[j] = j * time_size;
-	    				
-	    			} else {
-	    				
-	    				parameterData.nodes[mn].add(j * time_size, new Position( Math.round( x_values[i] ), Math.round( y_values[i] ) ));
-	    				x_mobile[j] = x_values[i];
-	    				y_mobile[j] = y_values[i];
-	    				t_mobile[j] = j * time_size;
-	    				
-	    			}
-	    			j = j + 1;
-	    			
-	    		}
-	    		if (times[i+1] > end_time) {
-	    			break;
-	    		}
-	        }
-		}
-       
-        postGeneration();
+        }
+        for (int i = 0; i < num_step; i++) {
+        	pause_times[i] = Math.round(pause_times[i]);
+        }
         
-        // restore duration, such that it is printed correctly in the parameter file 
-        parameterData.duration += time_size;
+        // generate random values for first entries
+        x_values[0] = this.randomNextDouble() * max_x;
+        y_values[0] = this.randomNextDouble() * max_y;
+        times[0] = 0.0;
+        
+        int j = 0;
+        for (int i = 1; i < num_step - 1; i = i + 2) {
+        	
+        	double theta = 2 * Math.PI * this.randomNextDouble();
+        	double next_x = Math.round( x_values[i-1] + flight_lengths[i/2] * Math.cos( theta ) );
+        	double next_y = Math.round( y_values[i-1] + flight_lengths[i/2] * Math.sin( theta ) );
+        	
+            // wrap around
+        	if (boundary_condition == 1.0) {
+        		if (next_x < 0) {
+        			x_values[i] = max_x + next_x;
+        		} else if (next_x > max_x) {
+        			x_values[i] = next_x - max_x;
+        		} else {
+        			x_values[i] = next_x;
+        		}
+        		
+        		if (next_y < 0) {
+        			y_values[i] = max_y + next_y;
+        		} else if (next_y > max_y) {
+        			y_values[i] = next_y - max_y;
+        		} else {
+        			y_values[i] = next_y;
+        		}
+        	}
+        	// reflection
+        	else if (boundary_condition == 2.0) {
+        		if (next_x < 0) {
+        			x_values[i] = -next_x;
+        		} else if (next_x > max_x) {
+        			x_values[i] = max_x - (next_x - max_x);
+        		} else {
+        			x_values[i] = next_x;
+        		}
+        		
+        		if (next_y < 0) {
+        			y_values[i] = -next_y;
+        		} else if (next_y > max_y) {
+        			y_values[i] = max_y - (next_y - max_y);
+        		} else {
+        			y_values[i] = next_y;
+        		}
+        	}
+        	else {
+        		System.err.println("Error@TLW: invalid boundary condition");
+        	}
+        	
+        	double dist = Math.sqrt( (double) Math.pow( (next_x - x_values[i-1]), 2 ) + Math.pow( (next_y - y_values[i-1]), 2 ) );
+    		times[i] = times[i-1] + Math.pow(dist, 1-mu);
+    		times[i+1] = times[i] + Math.abs(pause_times[i/2]);
+    		x_values[i+1] = x_values[i];
+    		y_values[i+1] = y_values[i];
+    				
+    		while (j * time_size < times[i+1]) {
+    			
+    			if (j * time_size < times[i]) {
+    				
+    				double p_ratio = (j * time_size - times[i-1]) / (times[i] - times[i-1]); 
+    				double x_temp = next_x * p_ratio + x_values[i-1] * (1 - p_ratio);
+    				double y_temp = next_y * p_ratio + y_values[i-1] * (1 - p_ratio);
+    				
+    	            // wrap around
+    				if (boundary_condition == 1.0) {
+    	        		if (x_temp < 0) {
+    	        			x_temp = max_x + x_temp;
+    	        		} else if (x_temp > max_x) {
+    	        			x_temp = x_temp - max_x;
+    	        		} 
+    	        		
+    	        		if (y_temp < 0) {
+    	        			y_temp = max_y + y_temp;
+    	        		} else if (y_temp > max_y) {
+    	        			y_temp = y_temp - max_y;
+    	        		} 
+    	        	}
+    	        	// reflection
+    	        	else if (boundary_condition == 2.0) {
+    	        		if (x_temp < 0) {
+    	        			x_temp = -x_temp;
+    	        		} else if (x_temp > max_x) {
+    	        			x_temp = max_x - (x_temp - max_x);
+    	        		} 
+    	        		
+    	        		if (y_temp < 0) {
+    	        			y_temp = -next_y; 
+    	        		} else if (next_y > max_y) {
+    	        			y_temp = max_y - (next_y - max_y);
+    	        		} 
+    	        	}
+    	        	else {
+    	        		System.err.println("Error@TLW: invalid boundary condition");
+    	        	}
+    				
+    				parameterData.nodes[mn].add(j * time_size, new Position( Math.round( x_temp ), Math.round( y_temp ) ));
+    				x_mobile[j] = x_temp;
+    				y_mobile[j] = y_temp;
+    				t_mobile[j] = j * time_size;
+    				
+    			} else {
+    				
+    				parameterData.nodes[mn].add(j * time_size, new Position( Math.round( x_values[i] ), Math.round( y_values[i] ) ));
+    				x_mobile[j] = x_values[i];
+    				y_mobile[j] = y_values[i];
+    				t_mobile[j] = j * time_size;
+    				
+    			}
+    			j = j + 1;
+    			
+    		}
+    		if (times[i+1] > end_time) {
+    			break;
+    		}
+        }
     }
 
     public void write(String _name) throws FileNotFoundException, IOException {
@@ -22,7 +22,6 @@ package edu.bonn.cs.iv.bonnmotion.models.da;
 
 import edu.bonn.cs.iv.bonnmotion.MobileNode;
 import edu.bonn.cs.iv.bonnmotion.Position;
-import edu.bonn.cs.iv.bonnmotion.Waypoint;
 
 /** Catastrophe node. */
 
@@ -64,17 +63,16 @@ public class CatastropheNode extends MobileNode {
 	}
 
 	public String movementString() {
-		StringBuffer sb = new StringBuffer(140*waypoints.size());
-		for (int i = 0; i < waypoints.size(); i++) {
-			Waypoint w = waypoints.elementAt(i);
+		StringBuffer sb = new StringBuffer(140*waypointCount);
+		for (int i = 0; i < waypointCount; i++) {
 			sb.append("\n");
-			sb.append(w.time);
+			sb.append(wpTime[i]);
 			sb.append("\n");
-			sb.append(w.pos.x);
+			sb.append(wpX[i]);
 			sb.append("\n");
-			sb.append(w.pos.y);
+			sb.append(wpY[i]);
 			sb.append("\n");
-			sb.append(w.pos.status);
+			sb.append(wpStatus[i]);
 		}
 		sb.deleteCharAt(0);
 		return sb.toString();
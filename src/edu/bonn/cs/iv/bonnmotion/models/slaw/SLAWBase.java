@@ -26,11 +26,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Vector;
 
 import edu.bonn.cs.iv.bonnmotion.Position;
 import edu.bonn.cs.iv.bonnmotion.Scenario;
+import edu.bonn.cs.iv.util.maps.PositionGeo;
 
 public class SLAWBase {
     /**
@@ -269,6 +270,36 @@ public class SLAWBase {
         return result.toArray(new ClusterMember[0]);
     }
 
+    /**
+     * selects the next destination by the least-action trip planning (LATP) rule: candidate i
+     * is chosen with a probability proportional to 1 / dist[i]^dist_weight. The cumulative
+     * weights are summed up in one pass, in the same order as before, so that the selection
+     * and the drawn random value are exactly the same.
+     * 
+     * @param dist
+     *            distances from the source to the candidates
+     * @param dist_weight
+     *            exponent of the distances
+     * @return index of the selected candidate, dist.length if the weights are not finite
+     */
+    public static int select_latp(double[] dist, double dist_weight, Scenario s) {
+        double[] weights = new double[dist.length];
+        double sum = 0;
+        for (int i = 0; i < dist.length; i++) {
+            sum += 1 / Math.pow(dist[i], dist_weight);
+            weights[i] = sum;
+        }
+
+        double r = s.randomNextDouble();
+        int index;
+        for (index = 0; index < weights.length; index++) {
+            if (r < weights[index] / sum) {
+                break;
+            }
+        }
+        return index;
+    }
+
     /**
      * selects k numbers out of n uniformly
      * 
@@ -304,7 +335,12 @@ public class SLAWBase {
     }
 
     /**
-     * generates clusters
+     * generates clusters: starting with the first unassigned waypoint, all waypoints within
+     * cluster_range of a cluster member are added to its cluster (breadth first, each
+     * expansion in the order of the waypoints).
+     * 
+     * The waypoints are hashed into a grid whose cells are at least cluster_range wide, so only
+     * the unassigned waypoints in the cells around a member have to be checked.
      * 
      * @param waypoints
      *            list of waypoint positions
@@ -312,57 +348,126 @@ public class SLAWBase {
      */
     public static Cluster[] generate_clusters(PositionInterface[] waypoints,
     										  double cluster_range) {
-        Vector<PositionInterface> all_points = new Vector<PositionInterface>();
-        Vector<PositionInterface> new_points = new Vector<PositionInterface>();
-        Vector<PositionInterface> members = new Vector<PositionInterface>();
+        // tolerate rounding in the distance computation
+        double reach = cluster_range * (1.0 + 1e-9) + 1e-9;
+        double cell_x = reach;
+        double cell_y = reach;
+        if (waypoints.length > 0 && waypoints[0] instanceof PositionGeo) {
+            // geodesic distance in meters, a degree of latitude is longer than 110 km
+            cell_x = Double.POSITIVE_INFINITY;
+            cell_y = reach / 110000.0;
+        }
+        else if (waypoints.length > 0 && !(waypoints[0] instanceof Position)) {
+            cell_x = Double.POSITIVE_INFINITY;
+            cell_y = Double.POSITIVE_INFINITY;
+        }
 
-        Vector<Cluster> clusters = new Vector<Cluster>();
-        Vector<ClusterMember> cluster_members = new Vector<ClusterMember>();
+        // number of neighbouring cells to check in each direction, none without a grid
+        int span_x = (cell_x == Double.POSITIVE_INFINITY) ? 0 : 1;
+        int span_y = (cell_y == Double.POSITIVE_INFINITY) ? 0 : 1;
 
+        long[] cell_xs = new long[waypoints.length];
+        long[] cell_ys = new long[waypoints.length];
+        // members of every cell in the order of the waypoints, element 0 is the size
+        HashMap<Long, int[]> grid = new HashMap<Long, int[]>();
         for (int i = 0; i < waypoints.length; i++) {
-            all_points.add(waypoints[i]);
+            cell_xs[i] = cell_index(coordinate(waypoints[i], true), cell_x);
+            cell_ys[i] = cell_index(coordinate(waypoints[i], false), cell_y);
+            Long key = cell_key(cell_xs[i], cell_ys[i]);
+            int[] cell = grid.get(key);
+            if (cell == null) {
+                cell = new int[5];
+            }
+            else if (cell[0] + 1 == cell.length) {
+                cell = Arrays.copyOf(cell, 2 * cell.length);
+            }
+            cell[++cell[0]] = i;
+            grid.put(key, cell);
         }
 
-        PositionInterface init_pos = null;
+        boolean[] assigned = new boolean[waypoints.length];
+        int[] queue = new int[waypoints.length];
+        int[] hits = new int[16];
+        ArrayList<Cluster> clusters = new ArrayList<Cluster>();
         int cluster_count = 0;
+        int first = 0;
 
-        while (!all_points.isEmpty()) {
-            if (init_pos == null) {
-                init_pos = all_points.firstElement();
-                all_points.remove(0);
-                members.add(init_pos);
+        while (true) {
+            while (first < waypoints.length && assigned[first]) {
+                first++;
             }
-
-            for (int i = 0; i < all_points.size(); i++) {
-            	PositionInterface new_pos = all_points.elementAt(i);
-
-                if (init_pos.distance(new_pos) <= cluster_range) {
-                    new_points.add(new_pos);
-                    members.add(new_pos);
-                    all_points.remove(i--);
+            if (first == waypoints.length) {
+                break;
+            }
+            // queue[0..size) are the members of the cluster in the order they were found
+            int size = 0;
+            queue[size++] = first;
+            assigned[first] = true;
+
+            for (int head = 0; head < size; head++) {
+                int center = queue[head];
+                int hit_count = 0;
+                for (long cx = cell_xs[center] - span_x; cx <= cell_xs[center] + span_x; cx++) {
+                    for (long cy = cell_ys[center] - span_y; cy <= cell_ys[center] + span_y; cy++) {
+                        int[] cell = grid.get(cell_key(cx, cy));
+                        if (cell == null) {
+                            continue;
+                        }
+                        // drop the assigned waypoints of the cell on the way
+                        int kept = 0;
+                        for (int k = 1; k <= cell[0]; k++) {
+                            int i = cell[k];
+                            if (assigned[i]) {
+                                continue;
+                            }
+                            if (waypoints[center].distance(waypoints[i]) <= cluster_range) {
+                                assigned[i] = true;
+                                if (hit_count == hits.length) {
+                                    hits = Arrays.copyOf(hits, 2 * hits.length);
+                                }
+                                hits[hit_count++] = i;
+                            }
+                            else {
+                                cell[++kept] = i;
+                            }
+                        }
+                        cell[0] = kept;
+                    }
                 }
-            }// for all_points
+                Arrays.sort(hits, 0, hit_count);
+                System.arraycopy(hits, 0, queue, size, hit_count);
+                size += hit_count;
+            }
 
-            if (!new_points.isEmpty() && !all_points.isEmpty()) {
-                init_pos = new_points.firstElement();
-                new_points.remove(0);
+            ClusterMember[] cluster_members = new ClusterMember[size];
+            for (int k = 0; k < size; k++) {
+                cluster_members[k] = new ClusterMember(cluster_count, waypoints[queue[k]], false);
             }
-            else {
-                for (int i = 0; i < members.size(); i++) {
-                    cluster_members.add(new ClusterMember(cluster_count, members.elementAt(i), false));
-                }
+            clusters.add(new Cluster(++cluster_count, cluster_members));
+        }
 
-                clusters.add(new Cluster(++cluster_count, cluster_members.toArray(new ClusterMember[0])));
+        return clusters.toArray(new Cluster[0]);
+    }
 
-                cluster_members.clear();
-                new_points.clear();
-                members.clear();
-                init_pos = null;
-            }
+    private static double coordinate(PositionInterface p, boolean x) {
+        if (p instanceof Position) {
+            return x ? ((Position)p).x : ((Position)p).y;
+        }
+        if (p instanceof PositionGeo) {
+            return x ? ((PositionGeo)p).x() : ((PositionGeo)p).y();
+        }
+        return 0.0;
+    }
 
-        }// while all_points
+    private static long cell_index(double v, double cell) {
+        if (cell == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+        return (long)Math.floor(v / cell);
+    }
 
-        return clusters.toArray(new Cluster[0]);
+    private static Long cell_key(long cx, long cy) {
+        return Long.valueOf((cx << 32) ^ (cy & 0xffffffffL));
     }
 
     /**
@@ -0,0 +1,323 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.printer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import edu.bonn.cs.iv.bonnmotion.MobileNode;
+
+/**
+ * Binary columnar movement file (basename.movements.bin).
+ *
+ * Layout (big endian): int magic, int version, int flags, int node count,
+ * long[node count + 1] index of the first waypoint of every node, followed by the
+ * columns double[] time, x, y, z (only 3D) and status (only if stored), each with
+ * one entry per waypoint of all nodes. The values are the exact doubles of the
+ * scenario, so reading the file gives the same nodes as parsing the text file.
+ *
+ * The file is memory mapped for reading, a node is only read when it is requested,
+ * see node() and Scenario.getLazyScenario().
+ */
+public class BinaryMovementFile {
+	public static final String SUFFIX = ".movements.bin";
+
+	protected static final int MAGIC = 0x424D4D42; // "BMMB"
+	protected static final int VERSION = 1;
+	public static final int FLAG_Z = 1;
+	public static final int FLAG_STATUS = 2;
+
+	protected static final int HEADER_SIZE = 16;
+
+	protected final int flags;
+	protected final int nodeCount;
+	protected final LongBuffer index;
+	protected final DoubleBuffer time;
+	protected final DoubleBuffer x;
+	protected final DoubleBuffer y;
+	protected final DoubleBuffer z;
+	protected final DoubleBuffer status;
+
+	/** Maps basename.movements.bin. */
+	public BinaryMovementFile(String basename) throws FileNotFoundException, IOException {
+		RandomAccessFile file = new RandomAccessFile(basename + SUFFIX, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(basename + SUFFIX + " is not a movement file of this version");
+			}
+			flags = header.getInt();
+			nodeCount = header.getInt();
+
+			long position = HEADER_SIZE;
+			index = map(channel, position, nodeCount + 1).asLongBuffer();
+			position += 8L * (nodeCount + 1);
+			long waypoints = index.get(nodeCount);
+
+			time = map(channel, position, waypoints).asDoubleBuffer();
+			position += 8L * waypoints;
+			x = map(channel, position, waypoints).asDoubleBuffer();
+			position += 8L * waypoints;
+			y = map(channel, position, waypoints).asDoubleBuffer();
+			position += 8L * waypoints;
+			if ((flags & FLAG_Z) != 0) {
+				z = map(channel, position, waypoints).asDoubleBuffer();
+				position += 8L * waypoints;
+			}
+			else {
+				z = null;
+			}
+			if ((flags & FLAG_STATUS) != 0) {
+				status = map(channel, position, waypoints).asDoubleBuffer();
+			}
+			else {
+				status = null;
+			}
+		}
+		finally {
+			// the mappings stay valid after closing the file
+			file.close();
+		}
+	}
+
+	protected static MappedByteBuffer map(FileChannel channel, long position, long values) throws IOException {
+		if (8L * values > Integer.MAX_VALUE) {
+			throw new IOException("movement file too large: " + values + " values per column");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * values);
+	}
+
+	/** @return true if basename.movements.bin exists and is not older than basename.movements.gz */
+	public static boolean isUpToDate(String basename) {
+		File bin = new File(basename + SUFFIX);
+		File gz = new File(basename + ".movements.gz");
+		return bin.isFile() && (!gz.exists() || bin.lastModified() >= gz.lastModified());
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/** @return index of the first waypoint of node n in the columns */
+	public int firstWaypoint(int n) {
+		return (int)index.get(n);
+	}
+
+	public int waypointCount(int n) {
+		return (int)(index.get(n + 1) - index.get(n));
+	}
+
+	public double time(int i) {
+		return time.get(i);
+	}
+
+	public double x(int i) {
+		return x.get(i);
+	}
+
+	public double y(int i) {
+		return y.get(i);
+	}
+
+	/** @return z coordinate of waypoint i, 0 if the file is 2D */
+	public double z(int i) {
+		return (z == null) ? 0.0 : z.get(i);
+	}
+
+	/** @return status of waypoint i, 0 if no status is stored */
+	public double status(int i) {
+		return (status == null) ? 0.0 : status.get(i);
+	}
+
+	/**
+	 * Reads node n in bulk from the columns.
+	 * @param withZ read the z coordinates, otherwise they are 0
+	 * @param withStatus read the status, otherwise it is 0
+	 */
+	public MobileNode node(int n, boolean withZ, boolean withStatus) {
+		int first = firstWaypoint(n);
+		int count = waypointCount(n);
+		return MobileNode.fromColumns(column(time, first, count), column(x, first, count), column(y, first, count),
+				withZ ? column(z, first, count) : new double[count], withStatus ? column(status, first, count) : new double[count]);
+	}
+
+	/** @return count values of the column from index first on, zeros if the column is not stored */
+	protected static double[] column(DoubleBuffer column, int first, int count) {
+		double[] values = new double[count];
+		if (column != null) {
+			// a duplicate has its own position, so that nodes can be read concurrently
+			DoubleBuffer d = column.duplicate();
+			d.position(first);
+			d.get(values);
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the nodes to basename.movements.bin.
+	 * @param flags combination of FLAG_Z and FLAG_STATUS
+	 */
+	public static void write(String basename, MobileNode[] nodes, int flags) throws FileNotFoundException, IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(basename + SUFFIX), 1 << 16));
+		writeHeader(out, flags, nodes.length);
+
+		long waypoints = 0;
+		out.writeLong(waypoints);
+		for (int n = 0; n < nodes.length; n++) {
+			waypoints += nodes[n].getNumWaypoints();
+			out.writeLong(waypoints);
+		}
+
+		for (int c = 0; c < 5; c++) {
+			if ((c == 3 && (flags & FLAG_Z) == 0) || (c == 4 && (flags & FLAG_STATUS) == 0)) {
+				continue;
+			}
+			for (int n = 0; n < nodes.length; n++) {
+				MobileNode node = nodes[n];
+				for (int i = 0; i < node.getNumWaypoints(); i++) {
+					switch (c) {
+						case 0:
+							out.writeDouble(node.getWaypointTime(i));
+							break;
+						case 1:
+							out.writeDouble(node.getWaypointX(i));
+							break;
+						case 2:
+							out.writeDouble(node.getWaypointY(i));
+							break;
+						case 3:
+							out.writeDouble(node.getWaypointZ(i));
+							break;
+						default:
+							out.writeDouble(node.getWaypointStatus(i));
+							break;
+					}
+				}
+			}
+		}
+		out.close();
+	}
+
+	protected static void writeHeader(DataOutputStream out, int flags, int nodeCount) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(flags);
+		out.writeInt(nodeCount);
+	}
+
+	/**
+	 * Writes basename.movements.bin node by node. As the file is stored column wise,
+	 * the columns are collected in temporary files next to it and joined on close().
+	 */
+	public static class Appender implements MovementSink {
+		protected final String basename;
+		protected final int flags;
+		protected final File[] columnFiles;
+		protected final DataOutputStream[] columns;
+		/** index[n] is the number of waypoints of the nodes before node n */
+		protected long[] index = new long[16];
+		protected int nodeCount = 0;
+		protected long waypoints = 0;
+
+		/** @param flags combination of FLAG_Z and FLAG_STATUS */
+		public Appender(String basename, int flags) throws IOException {
+			this.basename = basename;
+			this.flags = flags;
+			int count = 3;
+			if ((flags & FLAG_Z) != 0) {
+				count++;
+			}
+			if ((flags & FLAG_STATUS) != 0) {
+				count++;
+			}
+			columnFiles = new File[count];
+			columns = new DataOutputStream[count];
+			for (int c = 0; c < count; c++) {
+				columnFiles[c] = new File(basename + SUFFIX + ".col" + c);
+				columns[c] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(columnFiles[c]), 1 << 16));
+			}
+		}
+
+		public void beginNode() {
+		}
+
+		public void waypoint(double time, double x, double y, double z, double status) throws IOException {
+			columns[0].writeDouble(time);
+			columns[1].writeDouble(x);
+			columns[2].writeDouble(y);
+			int c = 3;
+			if ((flags & FLAG_Z) != 0) {
+				columns[c++].writeDouble(z);
+			}
+			if ((flags & FLAG_STATUS) != 0) {
+				columns[c].writeDouble(status);
+			}
+			waypoints++;
+		}
+
+		public void endNode() {
+			if (nodeCount + 1 == index.length) {
+				index = Arrays.copyOf(index, 2 * index.length);
+			}
+			index[++nodeCount] = waypoints;
+		}
+
+		public void close() throws IOException {
+			for (int c = 0; c < columns.length; c++) {
+				columns[c].close();
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(basename + SUFFIX), 1 << 16));
+			writeHeader(out, flags, nodeCount);
+			for (int n = 0; n <= nodeCount; n++) {
+				out.writeLong(index[n]);
+			}
+			byte[] buffer = new byte[1 << 16];
+			for (int c = 0; c < columns.length; c++) {
+				InputStream in = new BufferedInputStream(new FileInputStream(columnFiles[c]));
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					out.write(buffer, 0, read);
+				}
+				in.close();
+				columnFiles[c].delete();
+			}
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.printer;
+
+import java.io.IOException;
+
+/**
+ * Extracts the time span [begin, end] from the nodes passing through, with the same
+ * result as MobileNode.cut(begin, end), and hands the shifted waypoints on to another
+ * sink. Only the previous waypoint of the current node is remembered.
+ */
+public class CutFilter implements MovementSink {
+	protected final double begin;
+	protected final double end;
+	protected final MovementSink target;
+
+	/** number of waypoints of the current node so far */
+	protected int count;
+	/** previous waypoint: time, x, y, z, status */
+	protected final double[] prev = new double[5];
+	/** status carried into the time span, like in MobileNode.cut() */
+	protected double oldstatus;
+	/** true if a waypoint of the current node was inside [begin, end] */
+	protected boolean inside;
+	/** true if the first waypoint after end was seen, the rest of the node is dropped */
+	protected boolean done;
+
+	protected final double[] cur = new double[5];
+	protected final double[] p = new double[4];
+	protected final double[] q = new double[4];
+
+	public CutFilter(double begin, double end, MovementSink target) {
+		this.begin = begin;
+		this.end = end;
+		this.target = target;
+	}
+
+	public void beginNode() throws IOException {
+		count = 0;
+		oldstatus = 0.0;
+		inside = false;
+		done = false;
+		target.beginNode();
+	}
+
+	public void waypoint(double time, double x, double y, double z, double status) throws IOException {
+		if (done) {
+			return;
+		}
+		cur[0] = time;
+		cur[1] = x;
+		cur[2] = y;
+		cur[3] = z;
+		cur[4] = status;
+
+		if ((time >= begin) && (time <= end)) {
+			if (!inside) {
+				positionAt(begin, p);
+				target.waypoint(0.0, p[0], p[1], p[2], oldstatus);
+				if (time > begin) {
+					target.waypoint(time - begin, x, y, z, status);
+				}
+				inside = true;
+			}
+			else {
+				target.waypoint(time - begin, x, y, z, status);
+			}
+		}
+		else if (time > end) {
+			if (!inside) {
+				// no waypoint within the time span
+				positionAt(begin, p);
+				positionAt(end, q);
+				target.waypoint(0.0, p[0], p[1], p[2], p[3]);
+				if ((p[0] != q[0]) || (p[1] != q[1]) || (p[2] != q[2])) {
+					target.waypoint(end - begin, q[0], q[1], q[2], q[3]);
+				}
+			}
+			else if (prev[0] < end) {
+				positionAt(end, q);
+				if ((prev[1] != q[0]) || (prev[2] != q[1]) || (prev[3] != q[2])) {
+					target.waypoint(end - begin, q[0], q[1], q[2], q[3]);
+				}
+			}
+			done = true;
+		}
+
+		if (status == 2.0) {
+			oldstatus = 2.0;
+		}
+		else if (status == 1.0) {
+			oldstatus = 0.0;
+		}
+		System.arraycopy(cur, 0, prev, 0, 5);
+		count++;
+	}
+
+	public void endNode() throws IOException {
+		if (!done && !inside && (count > 0)) {
+			// all waypoints before the time span, the node stays at the last one
+			target.waypoint(0.0, prev[1], prev[2], prev[3], prev[4]);
+		}
+		target.endNode();
+	}
+
+	public void close() throws IOException {
+		target.close();
+	}
+
+	/**
+	 * Position at a time not after the current waypoint, computed like
+	 * MobileNode.positionAt() from the previous and the current waypoint.
+	 */
+	protected void positionAt(double time, double[] result) {
+		if ((count == 0) || (time == cur[0])) {
+			copy(cur, result);
+		}
+		else if ((prev[1] == cur[1]) && (prev[2] == cur[2]) && (prev[3] == cur[3])) {
+			copy(prev, result);
+		}
+		else {
+			double weight = (time - prev[0]) / (cur[0] - prev[0]);
+			result[0] = prev[1] * (1 - weight) + cur[1] * weight;
+			result[1] = prev[2] * (1 - weight) + cur[2] * weight;
+			result[2] = prev[3] * (1 - weight) + cur[3] * weight;
+			result[3] = prev[4];
+		}
+	}
+
+	protected static void copy(double[] waypoint, double[] result) {
+		result[0] = waypoint[1];
+		result[1] = waypoint[2];
+		result[2] = waypoint[3];
+		result[3] = waypoint[4];
+	}
+}
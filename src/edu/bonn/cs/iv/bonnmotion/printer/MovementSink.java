@@ -18,51 +18,24 @@
  ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
  *******************************************************************************/
 
-package edu.bonn.cs.iv.util.maps.osm;
+package edu.bonn.cs.iv.bonnmotion.printer;
 
-import java.util.ArrayList;
+import java.io.IOException;
 
-public class OSMWay
-{
-	private long id = -1;
-	private ArrayList<Long> nodeRefs = null;
-	private double length = -1;
-	private int componentId = -1;
-	
-	public OSMWay(long id, ArrayList<Long> nodeRefs)
-	{
-		this.id = id;
-		this.nodeRefs = nodeRefs;
-	}
-	
-	public long id()
-	{
-		return this.id;
-	}
-	
-	public ArrayList<Long> nodeRefs()
-	{
-		return this.nodeRefs;
-	}
-	
-	public double length()
-	{
-		return this.length;
-	}
-	
-	public int componentId()
-	{
-		return this.componentId;
-	}
-	
-	public void setLength(double len)
-	{
-		this.length = len;
-	}
-	
-	public void setComponentId(int id)
-	{
-		assert(componentId < 0);
-		this.componentId = id;
-	}
+/**
+ * Receives the movements of a scenario while they are generated. The nodes are passed
+ * one after another in the order of their ids, the waypoints of a node in increasing
+ * time order.
+ */
+public interface MovementSink {
+	/** Starts the next node. */
+	void beginNode() throws IOException;
+
+	void waypoint(double time, double x, double y, double z, double status) throws IOException;
+
+	/** Ends the current node, no more waypoints follow for it. */
+	void endNode() throws IOException;
+
+	/** Called after the last node, everything that is left is written. */
+	void close() throws IOException;
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.printer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps the generated waypoints in a temporary file until all nodes are known, for
+ * models that move the whole scenario by an offset computed at the end (GaussMarkov).
+ * On close() the positions are shifted like MobileNode.shiftPos(x, y), which also sets
+ * z and status to 0, and the nodes are passed on to the target sink.
+ */
+public class MovementSpool implements MovementSink {
+	protected final File file;
+	protected final MovementSink target;
+	protected final DataOutputStream out;
+	protected int[] waypointCount = new int[16];
+	protected int nodeCount = 0;
+	protected double shiftX = 0.0;
+	protected double shiftY = 0.0;
+
+	public MovementSpool(String basename, MovementSink target) throws IOException {
+		this.target = target;
+		file = new File(basename + ".movements.spool");
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+	}
+
+	/** Sets the offset that is added to all positions. */
+	public void setShift(double x, double y) {
+		shiftX = x;
+		shiftY = y;
+	}
+
+	public void beginNode() {
+		if (nodeCount == waypointCount.length) {
+			waypointCount = Arrays.copyOf(waypointCount, 2 * nodeCount);
+		}
+		waypointCount[nodeCount] = 0;
+	}
+
+	public void waypoint(double time, double x, double y, double z, double status) throws IOException {
+		out.writeDouble(time);
+		out.writeDouble(x);
+		out.writeDouble(y);
+		waypointCount[nodeCount]++;
+	}
+
+	public void endNode() {
+		nodeCount++;
+	}
+
+	public void close() throws IOException {
+		out.close();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		for (int n = 0; n < nodeCount; n++) {
+			target.beginNode();
+			for (int k = 0; k < waypointCount[n]; k++) {
+				double time = in.readDouble();
+				double x = in.readDouble();
+				double y = in.readDouble();
+				target.waypoint(time, x + shiftX, y + shiftY, 0.0, 0.0);
+			}
+			target.endNode();
+		}
+		in.close();
+		file.delete();
+		target.close();
+	}
+}
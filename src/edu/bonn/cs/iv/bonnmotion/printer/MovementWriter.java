@@ -0,0 +1,96 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.bonnmotion.printer;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes basename.movements.gz (and optionally basename.movements.bin) node by node,
+ * in the same format as Printer.writeOutsourced(), without keeping the nodes in memory.
+ */
+public class MovementWriter implements MovementSink {
+	protected final PrintWriter out;
+	protected final Dimension dim;
+	protected final BinaryMovementFile.Appender binary;
+	/** true until the first waypoint of the current node is written */
+	protected boolean firstWaypoint;
+
+	/** @param binary also write the binary movement file, see BinaryMovementFile */
+	public MovementWriter(String basename, Dimension dim, boolean binary) throws IOException {
+		this.dim = dim;
+		out = new PrintWriter(new GZIPOutputStream(new FileOutputStream(basename + ".movements.gz")));
+		if (dim == Dimension.THREED) {
+			out.println("#3D");
+		}
+		if (binary) {
+			this.binary = new BinaryMovementFile.Appender(basename, (dim == Dimension.THREED) ? BinaryMovementFile.FLAG_Z : 0);
+		}
+		else {
+			this.binary = null;
+		}
+	}
+
+	public void beginNode() throws IOException {
+		firstWaypoint = true;
+		if (binary != null) {
+			binary.beginNode();
+		}
+	}
+
+	public void waypoint(double time, double x, double y, double z, double status) throws IOException {
+		if (!firstWaypoint) {
+			out.print(' ');
+		}
+		firstWaypoint = false;
+		out.print(time);
+		out.print(' ');
+		out.print(x);
+		out.print(' ');
+		out.print(y);
+		if (dim == Dimension.THREED) {
+			out.print(' ');
+			out.print(z);
+		}
+		if (binary != null) {
+			binary.waypoint(time, x, y, z, status);
+		}
+	}
+
+	public void endNode() throws IOException {
+		out.println();
+		if (binary != null) {
+			binary.endNode();
+		}
+	}
+
+	public void close() throws IOException {
+		out.close();
+		if (out.checkError()) {
+			throw new IOException("error while writing the movement file");
+		}
+		if (binary != null) {
+			binary.close();
+		}
+	}
+}
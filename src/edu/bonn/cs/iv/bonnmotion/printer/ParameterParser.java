@@ -37,6 +37,9 @@ public class ParameterParser {
 		parameterString += "duration="+parameters.duration+"\n";
 		parameterString += "nn="+parameters.nodes.length+"\n";
 		parameterString += "circular="+parameters.circular+"\n";
+		if (parameters.nodeRandomStreams) {
+			parameterString += "nodeRandomStreams=true\n";
+		}
 		parameterString += "J="+(parameters.outputDim == Dimension.THREED ? "3D" : "2D");
 		return parameterString;
 	}
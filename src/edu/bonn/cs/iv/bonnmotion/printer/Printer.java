@@ -57,10 +57,17 @@ public class Printer {
 			final int waypointCount = mn.getNumWaypoints();
 			StringBuffer sb = new StringBuffer(100 * waypointCount);
 	        for (int i = 0; i < waypointCount; i++) {
-	            Waypoint w = mn.getWaypoint(i);
+	            // same format as print(Waypoint), read from the arrays of the node
 	            sb.append(" ");
-	            sb.append(print(w));
-	            //sb.append(w.getMovementStringPart());
+	            sb.append(mn.getWaypointTime(i));
+	            sb.append(" ");
+	            sb.append(mn.getWaypointX(i));
+	            sb.append(" ");
+	            sb.append(mn.getWaypointY(i));
+	            if (this.dim == Dimension.THREED) {
+	                sb.append(" ");
+	                sb.append(mn.getWaypointZ(i));
+	            }
 	        }
 	        sb.deleteCharAt(0);
 	        return sb.toString();
@@ -106,36 +113,23 @@ public class Printer {
 	public String movementStringDisasterArea(MobileNode node) {
 		StringBuffer buffer = new StringBuffer(140*node.getNumWaypoints());
 		for (int i = 0; i < node.getNumWaypoints(); i++) {
-			Waypoint point = node.getWaypoint(i);
 			buffer.append("\n");
-			buffer.append(point.time);
+			buffer.append(node.getWaypointTime(i));
 			buffer.append("\n");
-			buffer.append(point.pos.x);
+			buffer.append(node.getWaypointX(i));
 			buffer.append("\n");
-			buffer.append(point.pos.y);
+			buffer.append(node.getWaypointY(i));
 			buffer.append("\n");
-			buffer.append(point.pos.status);
+			buffer.append(node.getWaypointStatus(i));
 		}
 		buffer.deleteCharAt(0);
 		return buffer.toString();
 	}
 
     public void writeOutsourced(String basename, ScenarioParameters baseParameters, String[] additionalParameters) throws FileNotFoundException, IOException {
-    	PrintWriter parameterWriter = new PrintWriter(new FileOutputStream(basename + ".params"));
-    	ParameterParser parser = new ParameterParser();
-
-    	parameterWriter.println(parser.scenarioParser(baseParameters));
-		if (additionalParameters != null) {
-			parameterWriter.println(parser.additionalParameterParser(additionalParameters));
-		}
-		if (baseParameters.aFieldParams != null) {
-			parameterWriter.println(parser.attractorFieldParser(baseParameters));
-		}
-
-		parameterWriter.close();
+    	writeParameters(basename, baseParameters, additionalParameters);
 
     	PrintWriter movementWriter = new PrintWriter(new GZIPOutputStream(new FileOutputStream(basename + ".movements.gz")));
-		
     	if (baseParameters.outputDim == Dimension.THREED) {
 			movementWriter.println("#3D");
 		}
@@ -148,5 +142,32 @@ public class Printer {
 		}
 		
     	movementWriter.close();
+
+		if (baseParameters.binaryMovements) {
+			int flags = 0;
+			if (baseParameters.outputDim == Dimension.THREED) {
+				flags |= BinaryMovementFile.FLAG_Z;
+			}
+			if (baseParameters.modelName.equals("DisasterArea")) {
+				flags |= BinaryMovementFile.FLAG_STATUS;
+			}
+			BinaryMovementFile.write(basename, baseParameters.nodes, flags);
+		}
+    }
+
+    /** Writes basename.params only, e.g. if the movements were written while they were generated. */
+    public void writeParameters(String basename, ScenarioParameters baseParameters, String[] additionalParameters) throws FileNotFoundException, IOException {
+    	PrintWriter parameterWriter = new PrintWriter(new FileOutputStream(basename + ".params"));
+    	ParameterParser parser = new ParameterParser();
+
+    	parameterWriter.println(parser.scenarioParser(baseParameters));
+		if (additionalParameters != null) {
+			parameterWriter.println(parser.additionalParameterParser(additionalParameters));
+		}
+		if (baseParameters.aFieldParams != null) {
+			parameterWriter.println(parser.attractorFieldParser(baseParameters));
+		}
+
+		parameterWriter.close();
     }
 }
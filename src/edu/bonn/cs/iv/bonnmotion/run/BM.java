@@ -38,6 +38,7 @@ package edu.bonn.cs.iv.bonnmotion.run;
 import edu.bonn.cs.iv.bonnmotion.App;
 import edu.bonn.cs.iv.bonnmotion.Model;
 import edu.bonn.cs.iv.bonnmotion.ModuleInfo;
+import edu.bonn.cs.iv.bonnmotion.Scenario;
 
 /** Frontend for all applications and scenario generators. */
 
@@ -97,6 +98,8 @@ public class BM {
 
     private String fSettings = null;
     private String fSaveScenario = null;
+    private boolean fBinary = false;
+    private boolean fStream = false;
 
     /**
      * Converts a classname into a Class object
@@ -200,7 +203,10 @@ public class BM {
         System.out.println("  -h                    	Print this help");
         System.out.println("");
         System.out.println("Scenario generation:");
-        System.out.println("  -f <scenario name> [-I <parameter file>] <model name> [model options]");
+        System.out.println("  -f <scenario name> [-I <parameter file>] [-b] [-s] <model name> [model options]");
+        System.out.println("  -b                            Also write the movements to <scenario name>.movements.bin");
+        System.out.println("  -s                            Write the movements while they are generated (GaussMarkov,");
+        System.out.println("                                ManhattanGrid, RandomWalk, RandomWaypoint, SteadyStateRandomWaypoint)");
         System.out.println("  -hm                           Print available models");
         System.out.println("  -hm <module name>             Print help to specific model");
         System.out.println("");
@@ -218,6 +224,12 @@ public class BM {
             case 'f' :
                 fSaveScenario = val;
                 return true;
+            case 'b' :
+                fBinary = true;
+                return true;
+            case 's' :
+                fStream = true;
+                return true;
             default :
                 return false;
         }
@@ -256,6 +268,8 @@ public class BM {
                     String value;
                     if (_args[pos].length() > 2)
                         value = _args[pos].substring(2);
+                    else if (key == 'b' || key == 's') // switches without value
+                        value = "";
                     else
                         value = _args[++pos];
                     if (!parseArg(key, value)) {
@@ -280,7 +294,14 @@ public class BM {
                         args[0] = fSettings;
                         Class<?>[] cType = {String[].class};
                         Object[] cParam = {args};
-                        ((Model)c.getConstructor(cType).newInstance(cParam)).write(fSaveScenario);
+                        if (fStream) {
+                            Scenario.setStreamingOutput(fSaveScenario, fBinary);
+                        }
+                        Model model = (Model)c.getConstructor(cType).newInstance(cParam);
+                        if (fBinary && (model instanceof Scenario)) {
+                            ((Scenario)model).getScenarioParameters().binaryMovements = true;
+                        }
+                        model.write(fSaveScenario);
                     } else {
                         String[] args = removeFirstElements(_args, pos + 1);
                         Class<?>[] cType = {String[].class};
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.graph;
+
+import java.util.Arrays;
+
+/**
+ * Unweighted directed graph on the nodes 0 .. size - 1, stored as one adjacency bit
+ * set per node. Edges are inserted and deleted in O(1), nodes can be removed together
+ * with their edges.
+ *
+ * Changes made after snapshot() are recorded in a log and undone by rollback(), so a
+ * temporarily modified graph (e.g. without switched off nodes or unidirectional links)
+ * does not have to be copied. The graph algorithms give the same results as the ones
+ * of Graph with all edge weights 1.
+ */
+public class CompactGraph {
+	protected static final int LOG_ADD = 0;
+	protected static final int LOG_DELETE = 1;
+	protected static final int LOG_REMOVE_NODE = 2;
+
+	protected final int size;
+	/** Number of longs per adjacency row. */
+	protected final int words;
+	/** Row v has bit w set if there is an edge v -> w. */
+	protected final long[] succ;
+	protected final boolean[] present;
+	protected int nodeCount;
+	protected int edgeCount = 0;
+
+	/** Undo log of (operation, a, b) triples, only written while a snapshot is open. */
+	protected int[] log = new int[48];
+	protected int logSize = 0;
+	protected int snapshots = 0;
+
+	/** Creates a graph with the nodes 0 .. size - 1 and no edges. */
+	public CompactGraph(int size) {
+		this.size = size;
+		this.words = (size + 63) >>> 6;
+		this.succ = new long[size * words];
+		this.present = new boolean[size];
+		Arrays.fill(present, true);
+		this.nodeCount = size;
+	}
+
+	/** Copy of the nodes and edges, without the undo log. */
+	public CompactGraph copy() {
+		CompactGraph g = new CompactGraph(size);
+		System.arraycopy(succ, 0, g.succ, 0, succ.length);
+		System.arraycopy(present, 0, g.present, 0, size);
+		g.nodeCount = nodeCount;
+		g.edgeCount = edgeCount;
+		return g;
+	}
+
+	/** @return number of node slots, including removed nodes */
+	public int size() {
+		return size;
+	}
+
+	/** @return number of nodes that have not been removed */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/** @return number of directed edges */
+	public int edgeCount() {
+		return edgeCount;
+	}
+
+	public boolean isPresent(int v) {
+		return present[v];
+	}
+
+	public boolean hasEdge(int src, int dst) {
+		return (succ[src * words + (dst >>> 6)] & (1L << dst)) != 0;
+	}
+
+	/** Adds the edge src -> dst, which must not exist yet. */
+	public void addEdge(int src, int dst) {
+		if (hasEdge(src, dst))
+			throw new RuntimeException("edge " + src + " -> " + dst + " already exists!");
+		succ[src * words + (dst >>> 6)] |= (1L << dst);
+		edgeCount++;
+		record(LOG_ADD, src, dst);
+	}
+
+	/** Removes the edge src -> dst.
+ * 	@return false, if the edge did not exist. */
+	public boolean delEdge(int src, int dst) {
+		if (!hasEdge(src, dst))
+			return false;
+		succ[src * words + (dst >>> 6)] &= ~(1L << dst);
+		edgeCount--;
+		record(LOG_DELETE, src, dst);
+		return true;
+	}
+
+	/** Number of outgoing edges. */
+	public int outDeg(int v) {
+		int d = 0;
+		for (int k = v * words; k < (v + 1) * words; k++)
+			d += Long.bitCount(succ[k]);
+		return d;
+	}
+
+	/** Removes a node with all its incoming and outgoing edges. */
+	public void delNode(int v) {
+		if (!present[v])
+			return;
+		for (int w = nextSucc(v, 0); w >= 0; w = nextSucc(v, w + 1))
+			delEdge(v, w);
+		for (int u = 0; u < size; u++)
+			if (hasEdge(u, v))
+				delEdge(u, v);
+		present[v] = false;
+		nodeCount--;
+		record(LOG_REMOVE_NODE, v, v);
+	}
+
+	/** @return the smallest successor w &gt;= from of v, or -1 */
+	public int nextSucc(int v, int from) {
+		if (from >= size)
+			return -1;
+		int row = v * words;
+		int k = from >>> 6;
+		long bits = succ[row + k] & (-1L << from);
+		while (bits == 0) {
+			if (++k == words)
+				return -1;
+			bits = succ[row + k];
+		}
+		return (k << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/** Starts recording changes.
+ * 	@return Mark to be passed to rollback(). */
+	public int snapshot() {
+		snapshots++;
+		return logSize;
+	}
+
+	/** Undoes all changes since the snapshot that returned the mark. */
+	public void rollback(int mark) {
+		while (logSize > mark) {
+			logSize -= 3;
+			int a = log[logSize + 1];
+			int b = log[logSize + 2];
+			switch (log[logSize]) {
+				case LOG_ADD:
+					succ[a * words + (b >>> 6)] &= ~(1L << b);
+					edgeCount--;
+					break;
+				case LOG_DELETE:
+					succ[a * words + (b >>> 6)] |= (1L << b);
+					edgeCount++;
+					break;
+				default:
+					present[a] = true;
+					nodeCount++;
+					break;
+			}
+		}
+		snapshots--;
+	}
+
+	protected void record(int op, int a, int b) {
+		if (snapshots == 0)
+			return;
+		if (logSize + 3 > log.length)
+			log = Arrays.copyOf(log, 2 * log.length);
+		log[logSize++] = op;
+		log[logSize++] = a;
+		log[logSize++] = b;
+	}
+
+	/** Removes all edges v -> w without an edge w -> v, see Graph.unidirRemove. */
+	public double[] unidirRemove(int[] result) {
+		if (result != null) {
+			result[0] = 0; // removed edges
+			result[1] = 0; // # source nodes whose edges are removed
+			result[2] = 0; // # dest nodes whose edges are removed
+			result[3] = 0; // bidirectional edges
+		}
+		int[] uSrc = new int[size];
+		int[] uDst = new int[size];
+		for (int v = 0; v < size; v++) {
+			for (int w = nextSucc(v, 0); w >= 0; w = nextSucc(v, w + 1)) {
+				if (!hasEdge(w, v)) {
+					uSrc[v]++;
+					uDst[w]++;
+					if (result != null)
+						result[0]++;
+					delEdge(v, w);
+				}
+				else if (result != null)
+					result[3]++;
+			}
+		}
+		int asrc = 0, adst = 0;
+		for (int i = 0; i < size; i++) {
+			if (uSrc[i] > 0) {
+				if (result != null)
+					result[1]++;
+				asrc += uSrc[i];
+			}
+			if (uDst[i] > 0) {
+				if (result != null)
+					result[2]++;
+				adst += uDst[i];
+			}
+		}
+		double[] r = null;
+		if (result != null) {
+			r = new double[2];
+			r[0] = (double)asrc / (double)result[1];
+			r[1] = (double)adst / (double)result[2];
+		}
+		return r;
+	}
+
+	/** Labels the connected components (expects undirected graph).
+ * 	@param label Receives the component of every present node, components are numbered by their smallest node.
+ * 	@param compSize Receives the size of every component, may be null.
+ * 	@return Number of components. */
+	public int components(int[] label, int[] compSize) {
+		long[] seen = new long[words];
+		int[] stack = new int[size];
+		int components = 0;
+		for (int s = 0; s < size; s++) {
+			if (!present[s] || (seen[s >>> 6] & (1L << s)) != 0)
+				continue;
+			seen[s >>> 6] |= (1L << s);
+			int top = 0, count = 0;
+			stack[top++] = s;
+			while (top > 0) {
+				int v = stack[--top];
+				label[v] = components;
+				count++;
+				int row = v * words;
+				for (int k = 0; k < words; k++) {
+					long bits = succ[row + k] & ~seen[k];
+					seen[k] |= bits;
+					while (bits != 0) {
+						stack[top++] = (k << 6) + Long.numberOfTrailingZeros(bits);
+						bits &= bits - 1;
+					}
+				}
+			}
+			if (compSize != null)
+				compSize[components] = count;
+			components++;
+		}
+		return components;
+	}
+
+	/** Number of connected components (expects undirected graph). */
+	public int partitions() {
+		return components(new int[size], null);
+	}
+
+	/** "Degree of separation" within this graph (expects the graph do be undirected), see Graph.partdeg. */
+	public double partdeg() {
+		int[] compSize = new int[size];
+		int components = components(new int[size], compSize);
+		double rVal = 0.0;
+		for (int c = 0; c < components; c++)
+			rVal += (double)compSize[c] * (nodeCount - compSize[c]);
+		return rVal / ((double)nodeCount * (nodeCount - 1));
+	}
+
+	/**
+	 * Calculate minimum number of node disjoint paths between all node pairs that are not
+	 * adjacent, see Graph.stability.
+	 */
+	public int stability() {
+		int[] position = new int[nodeCount];
+		int n = 0;
+		for (int v = 0; v < size; v++)
+			if (present[v])
+				position[n++] = v;
+		PathCounter counter = new PathCounter(this, position);
+
+		int k = 0, y = n - 1;
+		while (k <= y) {
+			for (int i = k + 1; (i < n) && (y > 0); i++)
+				if (!hasEdge(position[k], position[i])) {
+					int x = counter.pathnr(k, i);
+					if (x < y)
+						y = x;
+				}
+			k++;
+		}
+		return y;
+	}
+
+	/**
+	 * Number of node disjoint paths between two nodes as found by Graph.pathnr: every node
+	 * other than s and t is split into an in- and an out-vertex joined by an edge, then
+	 * shortest paths from s to t are removed one after another (Graph.mincut01). Like
+	 * there, a path is traced back from t, always taking the predecessor with the smallest
+	 * ID at the right distance. Vertex 0 is s, 1 is t, 2 + 2i and 3 + 2i are the in- and
+	 * out-vertex of the i-th node, which is the order of the node IDs in Graph.pathnr.
+	 */
+	protected static class PathCounter {
+		protected final CompactGraph g;
+		protected final int[] position;
+		protected final int[] index;
+		protected final int vertices;
+		protected final int words;
+		/** remaining edges of the split graph and the same edges reversed */
+		protected final long[] succ;
+		protected final long[] pred;
+		protected final int[] dist;
+		protected final int[] queue;
+
+		protected PathCounter(CompactGraph g, int[] position) {
+			this.g = g;
+			this.position = position;
+			this.index = new int[g.size];
+			for (int a = 0; a < position.length; a++)
+				index[position[a]] = a;
+			this.vertices = 2 * position.length + 2;
+			this.words = (vertices + 63) >>> 6;
+			this.succ = new long[vertices * words];
+			this.pred = new long[vertices * words];
+			this.dist = new int[vertices];
+			this.queue = new int[vertices];
+		}
+
+		protected void add(int a, int b) {
+			succ[a * words + (b >>> 6)] |= (1L << b);
+			pred[b * words + (a >>> 6)] |= (1L << a);
+		}
+
+		protected void del(int a, int b) {
+			succ[a * words + (b >>> 6)] &= ~(1L << b);
+			pred[b * words + (a >>> 6)] &= ~(1L << a);
+		}
+
+		protected int pathnr(int s, int t) {
+			Arrays.fill(succ, 0L);
+			Arrays.fill(pred, 0L);
+			int n = position.length;
+			for (int a = 0; a < n; a++) {
+				if ((a != s) && (a != t))
+					add(2 + 2 * a, 3 + 2 * a);
+			}
+			for (int a = 0; a < n; a++) {
+				if (a == t)
+					continue;
+				int v = position[a];
+				for (int w = g.nextSucc(v, 0); w >= 0; w = g.nextSucc(v, w + 1)) {
+					int b = index[w];
+					if ((b != s) && ((b != t) || (a != s))) {
+						if (a == s)
+							add(0, 2 + 2 * b);
+						else if (b == t)
+							add(3 + 2 * a, 1);
+						else {
+							add(3 + 2 * b, 2 + 2 * a);
+							add(3 + 2 * a, 2 + 2 * b);
+						}
+					}
+				}
+			}
+			int nc = 0;
+			while (removePath())
+				nc++;
+			if (g.hasEdge(position[s], position[t]))
+				return nc + 1;
+			else
+				return nc;
+		}
+
+		/** Removes a shortest path from vertex 0 to vertex 1.
+ * 		@return false, if there is no such path. */
+		protected boolean removePath() {
+			Arrays.fill(dist, -1);
+			int head = 0, tail = 0;
+			dist[0] = 0;
+			queue[tail++] = 0;
+			while ((head < tail) && (dist[1] < 0)) {
+				int v = queue[head++];
+				int row = v * words;
+				for (int k = 0; k < words; k++) {
+					long bits = succ[row + k];
+					while (bits != 0) {
+						int w = (k << 6) + Long.numberOfTrailingZeros(bits);
+						if (dist[w] < 0) {
+							dist[w] = dist[v] + 1;
+							queue[tail++] = w;
+						}
+						bits &= bits - 1;
+					}
+				}
+			}
+			if (dist[1] < 0)
+				return false;
+			int target = 1;
+			while (target != 0) {
+				int row = target * words;
+				int n = -1;
+				for (int k = 0; (k < words) && (n < 0); k++) {
+					long bits = pred[row + k];
+					while (bits != 0) {
+						int v = (k << 6) + Long.numberOfTrailingZeros(bits);
+						if (dist[v] == dist[target] - 1) {
+							n = v;
+							break;
+						}
+						bits &= bits - 1;
+					}
+				}
+				del(n, target);
+				target = n;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.graph;
+
+import java.util.Arrays;
+
+/**
+ * Minimum cut of an undirected graph with unit edge weights, i.e. the smallest number of
+ * edges whose removal splits a connected component. This is the smallest edge weight of
+ * the separator tree of Graph.buildSeperatorTree, but needs no tree: within a component,
+ * the minimum cut separates a fixed root from some other node, so it is the smallest
+ * maximum flow from the root to any other node.
+ *
+ * Every flow is cut off at the best cut found so far. The first bound is the smallest
+ * degree; the node set on one side of the previous minimum cut is kept and evaluated
+ * again on the next call, so if the graph changed only a little since then, the flows
+ * usually stop after few augmenting paths.
+ */
+public class EdgeConnectivity {
+	/** Nodes on the source side of the last minimum cut, null if there was none. */
+	protected boolean[] witness = null;
+
+	protected int[] label = new int[0];
+	protected int[] compSize;
+	protected int[] cut;
+	protected int[] inside;
+	protected int[] parent;
+	protected int[] queue;
+	/** Row a has bit b set if one unit flows from a to b. */
+	protected long[] flow;
+	protected long[] seen;
+
+	/** @return minimum cut of the connected components with at least two nodes, 0 if there are none */
+	public int minCut(CompactGraph g) {
+		int size = g.size;
+		int words = g.words;
+		if (label.length != size) {
+			label = new int[size];
+			compSize = new int[size];
+			cut = new int[size];
+			inside = new int[size];
+			parent = new int[size];
+			queue = new int[size];
+			flow = new long[size * words];
+			seen = new long[words];
+			witness = null;
+		}
+		int components = g.components(label, compSize);
+
+		int best = Integer.MAX_VALUE;
+		boolean[] bestSide = null;
+		int bestNode = -1;
+		for (int v = 0; v < size; v++) {
+			if (g.present[v] && (compSize[label[v]] > 1)) {
+				int d = g.outDeg(v);
+				if (d < best) {
+					best = d;
+					bestNode = v;
+				}
+			}
+		}
+		if (bestNode < 0) {
+			witness = null;
+			return 0;
+		}
+
+		if (witness != null) {
+			Arrays.fill(cut, 0, components, 0);
+			Arrays.fill(inside, 0, components, 0);
+			for (int v = 0; v < size; v++) {
+				if (g.present[v] && witness[v]) {
+					inside[label[v]]++;
+					for (int w = g.nextSucc(v, 0); w >= 0; w = g.nextSucc(v, w + 1))
+						if (!witness[w])
+							cut[label[v]]++;
+				}
+			}
+			for (int c = 0; c < components; c++) {
+				if ((inside[c] > 0) && (inside[c] < compSize[c]) && (cut[c] < best)) {
+					best = cut[c];
+					bestSide = new boolean[size];
+					for (int v = 0; v < size; v++)
+						bestSide[v] = witness[v] && g.present[v] && (label[v] == c);
+				}
+			}
+		}
+
+		// every component with two or more nodes needs at least one edge to be split
+		if (best > 1) {
+			int[] root = new int[components];
+			Arrays.fill(root, -1);
+			for (int v = 0; (v < size) && (best > 1); v++) {
+				if (!g.present[v] || (compSize[label[v]] < 2))
+					continue;
+				int r = root[label[v]];
+				if (r < 0) {
+					root[label[v]] = v;
+					continue;
+				}
+				int f = maxFlow(g, r, v, best);
+				if (f < best) {
+					best = f;
+					bestSide = new boolean[size];
+					for (int u = 0; u < size; u++)
+						bestSide[u] = (seen[u >>> 6] & (1L << u)) != 0;
+				}
+			}
+		}
+
+		if (bestSide == null) {
+			bestSide = new boolean[size];
+			bestSide[bestNode] = true;
+		}
+		witness = bestSide;
+		return best;
+	}
+
+	/**
+	 * Maximum flow from s to t with unit capacities in both directions of every edge,
+	 * cut off at limit. If the result is below limit, seen holds the nodes reachable
+	 * from s in the residual graph, i.e. the source side of a minimum s-t cut.
+	 */
+	protected int maxFlow(CompactGraph g, int s, int t, int limit) {
+		int words = g.words;
+		Arrays.fill(flow, 0L);
+		int f = 0;
+		while (f < limit) {
+			Arrays.fill(seen, 0L);
+			seen[s >>> 6] |= (1L << s);
+			int head = 0, tail = 0;
+			queue[tail++] = s;
+			boolean reached = false;
+			while ((head < tail) && !reached) {
+				int v = queue[head++];
+				int row = v * words;
+				for (int k = 0; k < words; k++) {
+					long bits = g.succ[row + k] & ~flow[row + k] & ~seen[k];
+					seen[k] |= bits;
+					while (bits != 0) {
+						int w = (k << 6) + Long.numberOfTrailingZeros(bits);
+						parent[w] = v;
+						queue[tail++] = w;
+						bits &= bits - 1;
+					}
+				}
+				reached = (seen[t >>> 6] & (1L << t)) != 0;
+			}
+			if (!reached)
+				return f;
+			for (int x = t; x != s; x = parent[x]) {
+				int p = parent[x];
+				long back = 1L << p;
+				if ((flow[x * words + (p >>> 6)] & back) != 0)
+					flow[x * words + (p >>> 6)] &= ~back;
+				else
+					flow[p * words + (x >>> 6)] |= (1L << x);
+			}
+			f++;
+		}
+		return f;
+	}
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.util;
+
+import java.util.Arrays;
+
+/**
+ * Queue of events with a time and two int values, e.g. the nodes of a link change.
+ * Events with the same time are returned in the order they were added.
+ *
+ * The events are kept in parallel primitive arrays. All events that are added before
+ * the first one is read are sorted once (radix sort on the time) and then read
+ * sequentially; events added later go into a small 4-ary heap. So a queue that is
+ * completely filled before it is read costs O(n) and no objects per event.
+ */
+public class EventQueue {
+	/** sorted run, read from head on */
+	protected double[] time;
+	protected int[] first;
+	protected int[] second;
+	protected int count = 0;
+	protected int head = 0;
+	protected boolean built = false;
+
+	/** heap of the events added after build(), ties ordered by seq */
+	protected double[] hTime = new double[0];
+	protected int[] hFirst = new int[0];
+	protected int[] hSecond = new int[0];
+	protected long[] hSeq = new long[0];
+	protected int hCount = 0;
+	protected long seq = 0;
+
+	public EventQueue() {
+		this(16);
+	}
+
+	/** @param capacity expected number of events */
+	public EventQueue(int capacity) {
+		capacity = Math.max(capacity, 1);
+		time = new double[capacity];
+		first = new int[capacity];
+		second = new int[capacity];
+	}
+
+	public void add(double t, int a, int b) {
+		if (!built) {
+			if (count == time.length) {
+				int nsize = Math.max(2 * count, 16);
+				time = Arrays.copyOf(time, nsize);
+				first = Arrays.copyOf(first, nsize);
+				second = Arrays.copyOf(second, nsize);
+			}
+			time[count] = t;
+			first[count] = a;
+			second[count] = b;
+			count++;
+			return;
+		}
+
+		if (hCount == hTime.length) {
+			int nsize = Math.max(2 * hCount, 16);
+			hTime = Arrays.copyOf(hTime, nsize);
+			hFirst = Arrays.copyOf(hFirst, nsize);
+			hSecond = Arrays.copyOf(hSecond, nsize);
+			hSeq = Arrays.copyOf(hSeq, nsize);
+		}
+		int p = hCount++;
+		long s = seq++;
+		while (p > 0) {
+			int parent = (p - 1) / 4;
+			if (!before(t, s, hTime[parent], hSeq[parent])) {
+				break;
+			}
+			moveHeap(parent, p);
+			p = parent;
+		}
+		hTime[p] = t;
+		hFirst[p] = a;
+		hSecond[p] = b;
+		hSeq[p] = s;
+	}
+
+	public int size() {
+		return (count - head) + hCount;
+	}
+
+	/** Sorts the events added so far. Called automatically when the first event is read. */
+	public void build() {
+		if (built) {
+			return;
+		}
+		built = true;
+		if (count < 2) {
+			return;
+		}
+
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = sortKey(time[i]);
+		}
+		int[] order = new int[count];
+		int[] buffer = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		// LSD radix sort, 8 bits per pass; stable, so ties keep the order of insertion
+		int[] histogram = new int[257];
+		for (int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill(histogram, 0);
+			for (int i = 0; i < count; i++) {
+				histogram[(int)((keys[order[i]] >>> shift) & 0xff) + 1]++;
+			}
+			if (histogram[(int)((keys[order[0]] >>> shift) & 0xff) + 1] == count) {
+				continue; // all keys have the same byte
+			}
+			for (int k = 0; k < 256; k++) {
+				histogram[k + 1] += histogram[k];
+			}
+			for (int i = 0; i < count; i++) {
+				buffer[histogram[(int)((keys[order[i]] >>> shift) & 0xff)]++] = order[i];
+			}
+			int[] swap = order;
+			order = buffer;
+			buffer = swap;
+		}
+
+		double[] sTime = new double[count];
+		int[] sFirst = new int[count];
+		int[] sSecond = new int[count];
+		for (int i = 0; i < count; i++) {
+			sTime[i] = time[order[i]];
+			sFirst[i] = first[order[i]];
+			sSecond[i] = second[order[i]];
+		}
+		time = sTime;
+		first = sFirst;
+		second = sSecond;
+	}
+
+	/** @return the smallest time in the queue */
+	public double minTime() {
+		return fromRun() ? time[head] : hTime[0];
+	}
+
+	/** @return the first int value of the event with the smallest time */
+	public int minFirst() {
+		return fromRun() ? first[head] : hFirst[0];
+	}
+
+	/** @return the second int value of the event with the smallest time */
+	public int minSecond() {
+		return fromRun() ? second[head] : hSecond[0];
+	}
+
+	/** Removes the event with the smallest time. */
+	public void deleteMin() {
+		if (fromRun()) {
+			head++;
+			return;
+		}
+
+		int last = --hCount;
+		double t = hTime[last];
+		long s = hSeq[last];
+		int p = 0;
+		while (true) {
+			int c = 4 * p + 1;
+			if (c >= hCount) {
+				break;
+			}
+			int best = c;
+			int end = Math.min(c + 4, hCount);
+			for (int k = c + 1; k < end; k++) {
+				if (before(hTime[k], hSeq[k], hTime[best], hSeq[best])) {
+					best = k;
+				}
+			}
+			if (!before(hTime[best], hSeq[best], t, s)) {
+				break;
+			}
+			moveHeap(best, p);
+			p = best;
+		}
+		if (hCount > 0) {
+			hTime[p] = t;
+			hFirst[p] = hFirst[last];
+			hSecond[p] = hSecond[last];
+			hSeq[p] = s;
+		}
+	}
+
+	/** @return true if the next event is taken from the sorted run */
+	protected boolean fromRun() {
+		build();
+		if (head == count) {
+			if (hCount == 0) {
+				throw new IllegalStateException("event queue is empty");
+			}
+			return false;
+		}
+		// the events of the run were all added before those of the heap
+		return (hCount == 0) || !(hTime[0] < time[head]);
+	}
+
+	protected void moveHeap(int from, int to) {
+		hTime[to] = hTime[from];
+		hFirst[to] = hFirst[from];
+		hSecond[to] = hSecond[from];
+		hSeq[to] = hSeq[from];
+	}
+
+	protected static boolean before(double t1, long s1, double t2, long s2) {
+		return (t1 < t2) || ((t1 == t2) && (s1 < s2));
+	}
+
+	/** Maps a time to a long with the same order, 0.0 and -0.0 are the same. */
+	protected static long sortKey(double t) {
+		if (t == 0.0) {
+			t = 0.0;
+		}
+		long bits = Double.doubleToLongBits(t);
+		return (bits < 0) ? ~bits : (bits | Long.MIN_VALUE);
+	}
+}
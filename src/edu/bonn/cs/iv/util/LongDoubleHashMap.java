@@ -0,0 +1,64 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.util;
+
+/**
+ * Hash map from long keys to double values without boxing, see LongHashMap. Used for
+ * per-pair values of which only a few exist at the same time, instead of a matrix over
+ * all pairs.
+ */
+public class LongDoubleHashMap extends LongHashMap<double[]> {
+	public LongDoubleHashMap() {
+		this(16);
+	}
+
+	/** @param capacity expected number of entries */
+	public LongDoubleHashMap(int capacity) {
+		super(capacity);
+	}
+
+	protected double[] newValues(int length) {
+		return new double[length];
+	}
+
+	/** @return value of the key, or missing if there is none */
+	public double get(long key, double missing) {
+		int p = find(key);
+		return (p < 0) ? missing : values[p];
+	}
+
+	/** Sets the value of a key. The key Long.MIN_VALUE is reserved. */
+	public void put(long key, double value) {
+		int p = insert(key); // may rehash
+		values[p] = value;
+	}
+
+	/** Removes a key.
+	 *  @return its value, or missing if there was none */
+	public double remove(long key, double missing) {
+		int p = find(key);
+		if (p < 0)
+			return missing;
+		double r = values[p];
+		delete(p);
+		return r;
+	}
+}
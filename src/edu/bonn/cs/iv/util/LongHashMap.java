@@ -0,0 +1,129 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash table with long keys without boxing: open addressing with linear probing, the
+ * values are kept by the subclasses in an array parallel to the keys. Deleted entries
+ * are filled by moving later entries of the same probe sequence back.
+ * @param <A> type of the value array
+ */
+public abstract class LongHashMap<A> {
+	protected static final long FREE = Long.MIN_VALUE;
+
+	protected long[] keys;
+	protected A values;
+	protected int mask;
+	protected int size = 0;
+
+	/** @param capacity expected number of entries */
+	protected LongHashMap(int capacity) {
+		int length = 16;
+		while (length < 2 * capacity)
+			length <<= 1;
+		allocate(length);
+	}
+
+	/** @return new value array of the given length */
+	protected abstract A newValues(int length);
+
+	protected void allocate(int length) {
+		keys = new long[length];
+		values = newValues(length);
+		Arrays.fill(keys, FREE);
+		mask = length - 1;
+	}
+
+	protected int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		if (size > 0)
+			Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/** @return slot of the key, -1 if there is none */
+	protected int find(long key) {
+		for (int p = slot(key); keys[p] != FREE; p = (p + 1) & mask)
+			if (keys[p] == key)
+				return p;
+		return -1;
+	}
+
+	/** @return slot of the key, which is added if it is not there yet. The key Long.MIN_VALUE is reserved. */
+	protected int insert(long key) {
+		if (key == FREE)
+			throw new IllegalArgumentException("key " + key + " is reserved");
+		int p = find(key);
+		if (p >= 0)
+			return p;
+		if (++size > (mask + 1) / 2)
+			rehash();
+		for (p = slot(key); keys[p] != FREE; p = (p + 1) & mask)
+			;
+		keys[p] = key;
+		return p;
+	}
+
+	/** Removes the entry in slot p. */
+	protected void delete(int p) {
+		size--;
+		// move entries back whose probe sequence passes the freed slot
+		int free = p;
+		for (p = (p + 1) & mask; keys[p] != FREE; p = (p + 1) & mask) {
+			int home = slot(keys[p]);
+			if (((p - home) & mask) >= ((p - free) & mask)) {
+				keys[free] = keys[p];
+				System.arraycopy(values, p, values, free, 1);
+				free = p;
+			}
+		}
+		keys[free] = FREE;
+	}
+
+	protected void rehash() {
+		long[] oldKeys = keys;
+		A oldValues = values;
+		allocate(2 * oldKeys.length);
+		for (int p = 0; p < oldKeys.length; p++) {
+			if (oldKeys[p] != FREE) {
+				int q = slot(oldKeys[p]);
+				while (keys[q] != FREE)
+					q = (q + 1) & mask;
+				keys[q] = oldKeys[p];
+				System.arraycopy(oldValues, p, values, q, 1);
+			}
+		}
+	}
+}
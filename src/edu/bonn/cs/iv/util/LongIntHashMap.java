@@ -18,86 +18,46 @@
  ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
  *******************************************************************************/
 
-package edu.bonn.cs.iv.util.maps.osm;
+package edu.bonn.cs.iv.util;
 
-import java.util.ArrayList;
-
-import edu.bonn.cs.iv.util.maps.PositionGeo;
-
-public class OSMNode
-{
-	private long id = -1;
-	private PositionGeo pos = null;
-	private ArrayList<Long> ways = null;
-	private boolean isPhantomNode = false;
-	private int degree = 0;
-	
-	public OSMNode(long id, PositionGeo pos)
-	{
-		this.id = id;
-		this.pos = pos;
-		this.ways = new ArrayList<Long>();
-	}
-	
-	public OSMNode(long id, PositionGeo pos, boolean isPhantomNode)
-	{
-		this.id = id;
-		this.pos = pos;
-		this.ways = new ArrayList<Long>();
-		this.isPhantomNode = isPhantomNode;
-	}
-	
-	public long id()
-	{
-		return this.id;
-	}
-	
-	public PositionGeo pos()
-	{
-		return this.pos;
+/**
+ * Hash map from long keys to int values without boxing, see LongHashMap. Used to map
+ * large sets of ids to array indices.
+ */
+public class LongIntHashMap extends LongHashMap<int[]> {
+	public LongIntHashMap() {
+		this(16);
 	}
-	
-	public ArrayList<Long> ways()
-	{
-		return this.ways;
+
+	/** @param capacity expected number of entries */
+	public LongIntHashMap(int capacity) {
+		super(capacity);
 	}
-	
-	public boolean isPhantomNode()
-	{
-		return this.isPhantomNode;
+
+	protected int[] newValues(int length) {
+		return new int[length];
 	}
-	
-	public int degree()
-	{
-		return this.degree;
+
+	/** @return value of the key, or missing if there is none */
+	public int get(long key, int missing) {
+		int p = find(key);
+		return (p < 0) ? missing : values[p];
 	}
-	
-	public void addWay(long id, boolean isFirstOrLastNode)
-	{
-		// a way might reference a node multiple times (-> cycle)
-		if (!ways.contains(id)) {
-			ways.add(id);
-		}
-		
-		if (isFirstOrLastNode) {
-			degree++;
-		} else {
-			degree += 2;
-		}
+
+	/** Sets the value of a key. The key Long.MIN_VALUE is reserved. */
+	public void put(long key, int value) {
+		int p = insert(key); // may rehash
+		values[p] = value;
 	}
-	
-	public void removeWay(long id, boolean isFirstOrLastNode)
-	{
-		if (ways.contains(id)) {
-			ways.remove(id);
-		}
-		
-		if (isFirstOrLastNode) {
-			degree--;
-		} else {
-			degree -= 2;
-		}
 
-		assert(degree >= 0);
+	/** Removes a key.
+	 *  @return its value, or missing if there was none */
+	public int remove(long key, int missing) {
+		int p = find(key);
+		if (p < 0)
+			return missing;
+		int r = values[p];
+		delete(p);
+		return r;
 	}
 }
@@ -98,7 +98,8 @@ public class CoordinateTransformation
     	}
     }
     
-    private Point2D.Double transform_new(double x, double y, boolean inverse)
+    /** synchronized, as the proj4j transformations keep intermediate results in fields */
+    private synchronized Point2D.Double transform_new(double x, double y, boolean inverse)
     {
     	org.osgeo.proj4j.ProjCoordinate src = new org.osgeo.proj4j.ProjCoordinate(x, y);
     	org.osgeo.proj4j.ProjCoordinate dst = new org.osgeo.proj4j.ProjCoordinate();
@@ -21,10 +21,7 @@
 package edu.bonn.cs.iv.util.maps;
 
 import java.awt.geom.Point2D;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.URL;
 import java.net.URLConnection;
 import java.text.DecimalFormat;
@@ -66,24 +63,28 @@ public class OSRoutingMachine implements RouteServiceInterface
 	public static final int ROUTE_AS_FLIGHT_THRESH = 0;
 	
 	private static final String OSRM_URL = "http://192.168.95.134:5000"; // shortest
+	/** thread-safe, shared by all requests */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
 	private String serviceUrl = null;
-	public PrintWriter distWriter = null;
 	
-	public OSRoutingMachine(String serviceUrl,
-							String distFile)
+	public OSRoutingMachine(String serviceUrl)
 	{
 		this.serviceUrl = serviceUrl;
 		
 		if (serviceUrl == null) {
 			this.serviceUrl = OSRM_URL;
 		}
-		
-		if (distFile != null) {
-			try {
-				this.distWriter = new PrintWriter(new FileOutputStream(distFile));
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			}
+	}
+
+	/**
+	 * Keeps up to the given number of idle connections to the route service open for
+	 * reuse (the JDK keeps 5), so that concurrent requests do not open a new connection
+	 * each. Has to be called before the first request.
+	 */
+	public static void setMaxConnections(int connections)
+	{
+		if (System.getProperty("http.maxConnections") == null && connections > 5) {
+			System.setProperty("http.maxConnections", Integer.toString(connections));
 		}
 	}
 
@@ -116,85 +117,88 @@ public class OSRoutingMachine implements RouteServiceInterface
             conn.setConnectTimeout(30000);
 
             // receive and parse JSON-formatted response
-            JsonFactory jf = new JsonFactory();
-            JsonParser jp = jf.createParser(conn.getInputStream());
+            JsonParser jp = JSON_FACTORY.createParser(conn.getInputStream());
             Vector<PositionGeo> tpLonLat = new Vector<PositionGeo>();
 
-            JsonToken jt = jp.nextToken();
-            assert(jt == JsonToken.START_OBJECT);
-            while (jp.nextToken() != JsonToken.END_OBJECT) {
-            	String fieldName = jp.getCurrentName();
-            	jt = jp.nextToken();
+            try {
+                JsonToken jt = jp.nextToken();
+                assert(jt == JsonToken.START_OBJECT);
+                while (jp.nextToken() != JsonToken.END_OBJECT) {
+                	String fieldName = jp.getCurrentName();
+                	jt = jp.nextToken();
             	
-            	if (fieldName.equals("version")) {
-            		jp.getDoubleValue();
-            	} else if (fieldName.equals("status")) {
-            		int status = jp.getIntValue();
-            		try {
-            			processResponseStatus(status);
-            		} catch (RSIRequestFailedException e) {
-            			System.err.println(request);
-            			jp.nextToken();
-            			jp.nextToken();
-            			System.err.println("status_message: " + jp.getText());
+                	if (fieldName.equals("version")) {
+                		jp.getDoubleValue();
+                	} else if (fieldName.equals("status")) {
+                		int status = jp.getIntValue();
+                		try {
+                			processResponseStatus(status);
+                		} catch (RSIRequestFailedException e) {
+                			System.err.println(request);
+                			jp.nextToken();
+                			jp.nextToken();
+                			System.err.println("status_message: " + jp.getText());
             			
-            			double dist = src.distance(dst);
-            			if (status == STATUS_NO_ROUTE && almostEqual(getNearestPosition(src), getNearestPosition(dst))) { // OSRM maps src and dst to the same position
-            				result.setTurningPoint(new PositionGeo[0]);
-            				return result;
-            			} else if (status == STATUS_NO_ROUTE && dist < ROUTE_AS_FLIGHT_THRESH) {
-                			result.setTurningPoint(new PositionGeo[0]);
-                			return result;
-                		} else {
-                			System.err.println(e.getMessage());
-                			e.printStackTrace();
-                			throw e;
-            			}
-            		}
-            	} else if (fieldName.equals("status_message")) {
-            		jp.getText();
-            	} else if (fieldName.equals("route_geometry")) { // JSON array
-//            		assert(jt == JsonToken.START_ARRAY);
+                			double dist = src.distance(dst);
+                			if (status == STATUS_NO_ROUTE && almostEqual(getNearestPosition(src), getNearestPosition(dst))) { // OSRM maps src and dst to the same position
+                				result.setTurningPoint(new PositionGeo[0]);
+                				return result;
+                			} else if (status == STATUS_NO_ROUTE && dist < ROUTE_AS_FLIGHT_THRESH) {
+                    			result.setTurningPoint(new PositionGeo[0]);
+                    			return result;
+                    		} else {
+                    			System.err.println(e.getMessage());
+                    			e.printStackTrace();
+                    			throw e;
+                			}
+                		}
+                	} else if (fieldName.equals("status_message")) {
+                		jp.getText();
+                	} else if (fieldName.equals("route_geometry")) { // JSON array
+    //            		assert(jt == JsonToken.START_ARRAY);
             		
-            		String polyline = jp.getText();
-            		PositionGeo[] tmp = decodeEncodedPolyline(polyline);
+                		String polyline = jp.getText();
+                		PositionGeo[] tmp = decodeEncodedPolyline(polyline);
             		
-            		for (int i = 0; i < tmp.length; i++) {
-            			tpLonLat.add(tmp[i]);
-            		}
+                		for (int i = 0; i < tmp.length; i++) {
+                			tpLonLat.add(tmp[i]);
+                		}
             		
-//            		if (DEBUG) {
-//            			System.out.println(request);
-//            			System.out.println("Polyline encoded: \"" + polyline + "\"");
-//            			System.out.println("Polyline decoded:");
-//                		for (int i = 0; i < tmp.length; i++) {
-//                			System.out.println(tmp[i].toString());
-//                		}
-//            		}
-            	} else if (fieldName.equals("route_summary")) { // JSON object
-            	    while (jp.nextToken() != JsonToken.END_OBJECT) {
-            	    	fieldName = jp.getCurrentName();
-            	    	jp.nextToken(); // move to value
-              	      	if (fieldName.equals("total_distance")) { // total length in metres
-              	      		result.setDistanceRS(jp.getIntValue());
-              	      	} else if (fieldName.equals("total_time")) { // total trip time in seconds
-              	      		result.setTripTime(jp.getIntValue());
-              	      	} else if (fieldName.equals("start_point")) {
-              	      		result.setStartPoint(jp.getText());
-              	      	} else if (fieldName.equals("end_point")) {
-              	      		result.setEndPoint(jp.getText());
-              	      	} else {
-              	      		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
-              	      	}
-            	    }
-            	} else if (fieldName.equals("transactionId")) {
-            		jp.getText();
-            	} else {
-            		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
-            	}
-            }
+    //            		if (DEBUG) {
+    //            			System.out.println(request);
+    //            			System.out.println("Polyline encoded: \"" + polyline + "\"");
+    //            			System.out.println("Polyline decoded:");
+    //                		for (int i = 0; i < tmp.length; i++) {
+    //                			System.out.println(tmp[i].toString());
+    //                		}
+    //            		}
+                	} else if (fieldName.equals("route_summary")) { // JSON object
+                	    while (jp.nextToken() != JsonToken.END_OBJECT) {
+                	    	fieldName = jp.getCurrentName();
+                	    	jp.nextToken(); // move to value
+                  	      	if (fieldName.equals("total_distance")) { // total length in metres
+                  	      		result.setDistanceRS(jp.getIntValue());
+                  	      	} else if (fieldName.equals("total_time")) { // total trip time in seconds
+                  	      		result.setTripTime(jp.getIntValue());
+                  	      	} else if (fieldName.equals("start_point")) {
+                  	      		result.setStartPoint(jp.getText());
+                  	      	} else if (fieldName.equals("end_point")) {
+                  	      		result.setEndPoint(jp.getText());
+                  	      	} else {
+                  	      		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
+                  	      	}
+                	    }
+                	} else if (fieldName.equals("transactionId")) {
+                		jp.getText();
+                	} else {
+                		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
+                	}
+                }
 
-            jp.close();
+            } finally {
+            	// closing the response hands the connection back for reuse (keep-alive)
+            	jp.close();
+            }
             
     		// check whether tpLonLat contains src and dst
     		if (almostEqual(src, tpLonLat.firstElement())) {
@@ -223,10 +227,6 @@ public class OSRoutingMachine implements RouteServiceInterface
             	System.exit(-1);
             }
         }
-
-        if (distWriter != null) {
-            distWriter.printf("%.6f %.6f %.6f %.6f %.2f %.2f %.4f\n", result.src().x(), result.src().y(), result.dst().x(), result.dst().y(), result.flightLength(), result.distanceGeodesic(), result.distanceGeodesic() / result.flightLength());
-        }
 		
 		return result;
 	}
@@ -264,46 +264,48 @@ public class OSRoutingMachine implements RouteServiceInterface
             conn.setConnectTimeout(30000);
 
             // receive and parse JSON-formatted response
-            JsonFactory jf = new JsonFactory();
-            JsonParser jp = jf.createParser(conn.getInputStream());
+            JsonParser jp = JSON_FACTORY.createParser(conn.getInputStream());
 
-            JsonToken jt = jp.nextToken();
-            assert(jt == JsonToken.START_OBJECT);
-            while (jp.nextToken() != JsonToken.END_OBJECT) {
-            	String fieldName = jp.getCurrentName();
-            	jt = jp.nextToken();
+            try {
+                JsonToken jt = jp.nextToken();
+                assert(jt == JsonToken.START_OBJECT);
+                while (jp.nextToken() != JsonToken.END_OBJECT) {
+                	String fieldName = jp.getCurrentName();
+                	jt = jp.nextToken();
             	
-            	if (fieldName.equals("version")) {
-            		jp.getDoubleValue();
-            	} else if (fieldName.equals("status")) {
-            		try {
-            			processResponseStatus(jp.getIntValue());
-            		} catch (RSIRequestFailedException e) {
-            			System.err.println(e.getMessage());
-            			e.printStackTrace();
-            			throw e;
-            		}
-            	} else if (fieldName.equals("mapped_coordinate")) { // JSON array
-            		assert(jt == JsonToken.START_ARRAY);
+                	if (fieldName.equals("version")) {
+                		jp.getDoubleValue();
+                	} else if (fieldName.equals("status")) {
+                		try {
+                			processResponseStatus(jp.getIntValue());
+                		} catch (RSIRequestFailedException e) {
+                			System.err.println(e.getMessage());
+                			e.printStackTrace();
+                			throw e;
+                		}
+                	} else if (fieldName.equals("mapped_coordinate")) { // JSON array
+                		assert(jt == JsonToken.START_ARRAY);
             		
-            		jt = jp.nextToken();
+                		jt = jp.nextToken();
             		
-        			double lat = jp.getDoubleValue();
-        			jt = jp.nextToken();
-        			assert(jt == JsonToken.VALUE_NUMBER_FLOAT);
-        			double lon = jp.getDoubleValue();
-        			result = new PositionGeo(lon, lat);
+            			double lat = jp.getDoubleValue();
+            			jt = jp.nextToken();
+            			assert(jt == JsonToken.VALUE_NUMBER_FLOAT);
+            			double lon = jp.getDoubleValue();
+            			result = new PositionGeo(lon, lat);
         			
-        			jt = jp.nextToken();
-        			assert(jt == JsonToken.END_ARRAY);
-            	} else if (fieldName.equals("transactionId")) {
-            		jp.getText();
-            	} else {
-            		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
-            	}
-            }
+            			jt = jp.nextToken();
+            			assert(jt == JsonToken.END_ARRAY);
+                	} else if (fieldName.equals("transactionId")) {
+                		jp.getText();
+                	} else {
+                		throw new RSIRequestFailedException("Unrecognized field '" + fieldName + "'!");
+                	}
+                }
 
-            jp.close();
+            } finally {
+            	jp.close();
+            }
             
 //            if (DEBUG) System.out.println("NearestPosition():\nquery: "+this.toString(posLonLat)+"\nresponse: "+this.toString(resultLonLat));
             
@@ -133,6 +133,11 @@ public class Route
 		return this.distanceRS;
 	}
 	
+	public double tripTime()
+	{
+		return this.tripTime;
+	}
+	
 	public double flightLength()
 	{
 		return this.flightLength;
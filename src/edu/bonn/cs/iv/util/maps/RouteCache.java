@@ -0,0 +1,400 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.util.maps;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Route service that caches the routes of another route service in a file.
+ * 
+ * The file is an append-only log of routes. A route is identified by the source and
+ * destination, rounded to the lon/lat precision of OSRM, and a hash of the map and
+ * profile the routes were computed for, so one file can be used for several maps.
+ * On opening, the file is scanned and the file offset of every route is kept in
+ * memory; the most recently used routes are also kept in memory. Appending is done
+ * under a file lock and routes appended by other processes are picked up, so several
+ * runs can share a cache file at the same time.
+ * 
+ * Failed requests are not cached. Nearest positions are not cached either.
+ */
+public class RouteCache implements RouteServiceInterface
+{
+	public static final int DEFAULT_MEMORY_ROUTES = 10000;
+	
+	private static final int MAGIC = 0x424D5243; // "BMRC"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	/** identity, src and dst, distance, trip time, number of turning points */
+	private static final int RECORD_HEADER_SIZE = 8 + 4 * 4 + 8 + 8 + 4;
+	/** decimal digit precision for lat/lon values of the keys, as in OSRoutingMachine */
+	private static final double LATLON_SCALE = 1e6;
+	
+	private final RouteServiceInterface service;
+	private final long identity;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	/** length of the part of the file that has been indexed */
+	private long indexed;
+	/** file offset of every route in the file */
+	private final HashMap<Key, Long> offsets = new HashMap<Key, Long>();
+	private final LinkedHashMap<Key, Entry> memory;
+	
+	private long memoryHits = 0;
+	private long fileHits = 0;
+	private long misses = 0;
+	
+	/**
+	 * @param service route service to ask for routes that are not in the cache
+	 * @param fileName cache file, created if it does not exist
+	 * @param identity describes the map and profile of the route service, see identity()
+	 */
+	public RouteCache(RouteServiceInterface service, String fileName, String identity) throws IOException
+	{
+		this(service, fileName, identity, DEFAULT_MEMORY_ROUTES);
+	}
+	
+	@SuppressWarnings("serial")
+	public RouteCache(RouteServiceInterface service, String fileName, String identity, final int memoryRoutes) throws IOException
+	{
+		this.service = service;
+		this.identity = hash(identity);
+		this.memory = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+			{
+				return size() > memoryRoutes;
+			}
+		};
+		
+		file = new RandomAccessFile(fileName, "rw");
+		channel = file.getChannel();
+		FileLock lock = channel.lock();
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				file.setLength(0);
+				file.writeInt(MAGIC);
+				file.writeInt(VERSION);
+			} else {
+				file.seek(0);
+				if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+					throw new IOException(fileName + " is not a route cache of this version");
+				}
+			}
+			indexed = HEADER_SIZE;
+			update(true);
+		} finally {
+			lock.release();
+		}
+	}
+	
+	/**
+	 * Builds an identity string for routes computed from a file, e.g. an OSM file.
+	 * It changes if the file is changed.
+	 */
+	public static String identity(String kind, String fileName, String profile)
+	{
+		File f = new File(fileName);
+		return kind + ":" + f.getAbsolutePath() + ":" + f.length() + ":" + f.lastModified() + ":" + profile;
+	}
+	
+	public RouteServiceInterface service()
+	{
+		return this.service;
+	}
+	
+	@Override
+	public Route getOptimalRoute(PositionGeo src, PositionGeo dst) throws RSIRequestFailedException
+	{
+		Key key = new Key(identity, src, dst);
+		Entry e = lookup(key);
+		if (e != null) {
+			return e.toRoute(src, dst);
+		}
+		
+		// the lock is not held while the route is computed
+		Route result = service.getOptimalRoute(src, dst);
+		store(key, new Entry(result));
+		return result;
+	}
+	
+	@Override
+	public boolean isRoutable(PositionGeo p)
+	{
+		return service.isRoutable(p);
+	}
+	
+	@Override
+	public PositionGeo getNearestPosition(PositionGeo p) throws RSIRequestFailedException
+	{
+		return service.getNearestPosition(p);
+	}
+	
+	public synchronized long memoryHits()
+	{
+		return this.memoryHits;
+	}
+	
+	public synchronized long fileHits()
+	{
+		return this.fileHits;
+	}
+	
+	public synchronized long misses()
+	{
+		return this.misses;
+	}
+	
+	public synchronized String statistics()
+	{
+		return "Route cache: " + memoryHits + " memory hits, " + fileHits + " file hits, " + misses + " misses, " + offsets.size() + " routes in file";
+	}
+	
+	public synchronized void close() throws IOException
+	{
+		file.close();
+	}
+	
+	private synchronized Entry lookup(Key key) throws RSIRequestFailedException
+	{
+		Entry e = memory.get(key);
+		if (e != null) {
+			memoryHits++;
+			return e;
+		}
+		
+		try {
+			Long offset = offsets.get(key);
+			if (offset == null && channel.size() > indexed) { // appended by another process
+				FileLock lock = channel.lock();
+				try {
+					update(false);
+				} finally {
+					lock.release();
+				}
+				offset = offsets.get(key);
+			}
+			if (offset == null) {
+				misses++;
+				return null;
+			}
+			e = read(offset);
+		} catch (IOException ex) {
+			throw new RSIRequestFailedException("Route cache: " + ex.toString());
+		}
+		memory.put(key, e);
+		fileHits++;
+		return e;
+	}
+	
+	private synchronized void store(Key key, Entry e) throws RSIRequestFailedException
+	{
+		memory.put(key, e);
+		try {
+			FileLock lock = channel.lock();
+			try {
+				update(false);
+				if (offsets.containsKey(key)) { // computed by another process in the meantime
+					return;
+				}
+				ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER_SIZE + 16 * e.turningPoint.length);
+				b.putLong(key.identity);
+				b.putInt(key.srcLon);
+				b.putInt(key.srcLat);
+				b.putInt(key.dstLon);
+				b.putInt(key.dstLat);
+				b.putDouble(e.distanceRS);
+				b.putDouble(e.tripTime);
+				b.putInt(e.turningPoint.length);
+				for (int i = 0; i < e.turningPoint.length; i++) {
+					b.putDouble(e.turningPoint[i].lon());
+					b.putDouble(e.turningPoint[i].lat());
+				}
+				b.flip();
+				long offset = indexed;
+				while (b.hasRemaining()) {
+					channel.write(b, offset + b.position());
+				}
+				indexed = offset + b.limit();
+				offsets.put(key, offset);
+			} finally {
+				lock.release();
+			}
+		} catch (IOException ex) {
+			throw new RSIRequestFailedException("Route cache: " + ex.toString());
+		}
+	}
+	
+	/**
+	 * Indexes the records after the indexed part of the file. The file must be locked.
+	 * 
+	 * @param repair cut off an incomplete record at the end, left by a process that did not finish writing it
+	 */
+	private void update(boolean repair) throws IOException
+	{
+		long size = channel.size();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		while (indexed + RECORD_HEADER_SIZE <= size) {
+			header.clear();
+			readFully(header, indexed);
+			header.flip();
+			Key key = new Key(header.getLong(), header.getInt(), header.getInt(), header.getInt(), header.getInt());
+			header.position(header.position() + 16);
+			long length = RECORD_HEADER_SIZE + 16L * header.getInt();
+			if (indexed + length > size) {
+				break;
+			}
+			offsets.put(key, indexed);
+			indexed += length;
+		}
+		if (indexed < size && repair) {
+			System.out.println("Warning: removing incomplete route at the end of the route cache");
+			channel.truncate(indexed);
+		}
+	}
+	
+	private Entry read(long offset) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		readFully(header, offset);
+		header.flip();
+		header.position(8 + 4 * 4);
+		double distanceRS = header.getDouble();
+		double tripTime = header.getDouble();
+		int n = header.getInt();
+		
+		ByteBuffer points = ByteBuffer.allocate(16 * n);
+		readFully(points, offset + RECORD_HEADER_SIZE);
+		points.flip();
+		PositionGeo[] tp = new PositionGeo[n];
+		for (int i = 0; i < n; i++) {
+			tp[i] = new PositionGeo(points.getDouble(), points.getDouble());
+		}
+		return new Entry(tp, distanceRS, tripTime);
+	}
+	
+	private void readFully(ByteBuffer b, long offset) throws IOException
+	{
+		long start = offset - b.position();
+		while (b.hasRemaining()) {
+			if (channel.read(b, start + b.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+	
+	/** 64 bit FNV-1a hash */
+	private static long hash(String s)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+	
+	private static int quantize(double v)
+	{
+		return (int)Math.round(v * LATLON_SCALE);
+	}
+	
+	private static class Key
+	{
+		final long identity;
+		final int srcLon;
+		final int srcLat;
+		final int dstLon;
+		final int dstLat;
+		
+		Key(long identity, PositionGeo src, PositionGeo dst)
+		{
+			this(identity, quantize(src.lon()), quantize(src.lat()), quantize(dst.lon()), quantize(dst.lat()));
+		}
+		
+		Key(long identity, int srcLon, int srcLat, int dstLon, int dstLat)
+		{
+			this.identity = identity;
+			this.srcLon = srcLon;
+			this.srcLat = srcLat;
+			this.dstLon = dstLon;
+			this.dstLat = dstLat;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key)o;
+			return identity == k.identity && srcLon == k.srcLon && srcLat == k.srcLat && dstLon == k.dstLon && dstLat == k.dstLat;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int h = (int)(identity ^ (identity >>> 32));
+			h = 31 * h + srcLon;
+			h = 31 * h + srcLat;
+			h = 31 * h + dstLon;
+			return 31 * h + dstLat;
+		}
+	}
+	
+	/** The cached values of a route, a new Route is created for every request. */
+	private static class Entry
+	{
+		final PositionGeo[] turningPoint;
+		final double distanceRS;
+		final double tripTime;
+		
+		Entry(Route r)
+		{
+			this((r.turningPoint() == null) ? new PositionGeo[0] : r.turningPoint(), r.distanceRS(), r.tripTime());
+		}
+		
+		Entry(PositionGeo[] turningPoint, double distanceRS, double tripTime)
+		{
+			this.turningPoint = turningPoint;
+			this.distanceRS = distanceRS;
+			this.tripTime = tripTime;
+		}
+		
+		Route toRoute(PositionGeo src, PositionGeo dst)
+		{
+			Route r = new Route(src, dst);
+			r.setDistanceRS(distanceRS);
+			r.setTripTime(tripTime);
+			r.setTurningPoint(turningPoint.clone());
+			return r;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.util.maps;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.bonn.cs.iv.util.maps.RouteServiceInterface.RSIRequestFailedException;
+
+/**
+ * Requests batches of routes from a route service with several requests in flight.
+ * 
+ * The routes of a batch are requested on a pool of threads, at most a fixed number of
+ * requests ahead of the one the caller waits for, and are handed out in the order of
+ * the batch. A caller that stops at the first failed request and cancels the batch
+ * therefore gets the same routes and failures as with sequential requests; requests
+ * behind the failure may have been sent, but their results are never seen.
+ */
+public class RouteFetcher
+{
+	/** Number of requests per thread that may be in flight at the same time. */
+	private static final int REQUESTS_PER_THREAD = 2;
+	
+	private final RouteServiceInterface service;
+	private final int threads;
+	private final ExecutorService pool;
+	
+	/** @param threads number of concurrent requests, values < 2 request on the calling thread */
+	public RouteFetcher(RouteServiceInterface service, int threads)
+	{
+		this.service = service;
+		this.threads = threads;
+		
+		if (threads < 2) {
+			this.pool = null;
+		} else {
+			this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "RouteFetcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+	
+	public RouteServiceInterface service()
+	{
+		return this.service;
+	}
+	
+	public int getThreads()
+	{
+		return threads;
+	}
+	
+	/** @return the routes from src[i] to dst[i] */
+	public Batch request(PositionGeo[] src, PositionGeo[] dst)
+	{
+		assert(src.length == dst.length);
+		return new Batch(src, dst);
+	}
+	
+	/** @return the routes from src to every dst[i] */
+	public Batch request(PositionGeo src, PositionGeo[] dst)
+	{
+		PositionGeo[] s = new PositionGeo[dst.length];
+		for (int i = 0; i < s.length; i++) {
+			s[i] = src;
+		}
+		return new Batch(s, dst);
+	}
+	
+	public void shutdown()
+	{
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+	
+	/** Routes of a batch, in the order of the request. */
+	public class Batch
+	{
+		private final PositionGeo[] src;
+		private final PositionGeo[] dst;
+		/** next route to be submitted to the pool */
+		private int submitted = 0;
+		/** next route to be handed out */
+		private int next = 0;
+		private final LinkedList<Future<Route>> results = new LinkedList<Future<Route>>();
+		
+		private Batch(PositionGeo[] src, PositionGeo[] dst)
+		{
+			this.src = src;
+			this.dst = dst;
+			fill();
+		}
+		
+		public boolean hasNext()
+		{
+			return next < src.length;
+		}
+		
+		/** @return the next route; the batch should be cancelled if this fails */
+		public Route next() throws RSIRequestFailedException
+		{
+			if (!hasNext()) {
+				throw new IllegalStateException("no more routes in batch");
+			}
+			if (pool == null) {
+				int i = next++;
+				return service.getOptimalRoute(src[i], dst[i]);
+			}
+			
+			Future<Route> f = results.removeFirst();
+			next++;
+			fill();
+			try {
+				return f.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException("route request interrupted");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RSIRequestFailedException) {
+					throw (RSIRequestFailedException)cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+		
+		/** Drops the routes that have not been handed out yet. */
+		public void cancel()
+		{
+			for (Future<Route> f : results) {
+				f.cancel(false);
+			}
+			results.clear();
+			submitted = next = src.length;
+		}
+		
+		private void fill()
+		{
+			if (pool == null) {
+				return;
+			}
+			while (submitted < src.length && results.size() < threads * REQUESTS_PER_THREAD) {
+				final PositionGeo s = src[submitted];
+				final PositionGeo d = dst[submitted];
+				submitted++;
+				results.add(pool.submit(new Callable<Route>() {
+					public Route call() throws RSIRequestFailedException
+					{
+						return service.getOptimalRoute(s, d);
+					}
+				}));
+			}
+		}
+	}
+}
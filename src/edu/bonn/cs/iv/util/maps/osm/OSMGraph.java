@@ -21,100 +21,365 @@
 package edu.bonn.cs.iv.util.maps.osm;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Set;
 
+import edu.bonn.cs.iv.util.LongIntHashMap;
 import edu.bonn.cs.iv.util.maps.BoundingBox;
 import edu.bonn.cs.iv.util.maps.PositionGeo;
 
+/**
+ * Road network of OSM nodes and the ways between them.
+ * 
+ * Nodes and ways are stored in parallel arrays and are referred to by their index;
+ * the OSM ids are mapped to the indices by primitive hash maps. The node references of
+ * all ways are kept in one int array, the ways at a node in a linked list of int arrays.
+ * A removed way keeps its index, removeIsolatedNodes() compacts the nodes.
+ * 
+ * nodes() and ways() enumerate in insertion order. (When the graph was stored in
+ * HashMaps, they enumerated in hash order, so random positions and routes for a given
+ * random seed differ from the ones of earlier versions.)
+ */
 public class OSMGraph
 {
-	private HashMap<Long, OSMNode> osmNodes = null;
-	private HashMap<Long, OSMWay> osmWays = null;
+	private LongIntHashMap nodeIndex = new LongIntHashMap();
+	private int numNodes = 0;
+	private long[] nodeId = new long[16];
+	private double[] nodeLon = new double[16];
+	private double[] nodeLat = new double[16];
+	private int[] nodeDegree = new int[16];
+	/** number of (not removed) ways at every node */
+	private int[] nodeWays = new int[16];
+	private final BitSet phantomNodes = new BitSet();
+	/** ways at node v are incWay[k] for k = incFirst[v], incNext[k], ... until -1, in the order they were added */
+	private int[] incFirst = new int[16];
+	private int[] incLast = new int[16];
+	private int[] incWay = new int[64];
+	private int[] incNext = new int[64];
+	private int numInc = 0;
+	
+	private final LongIntHashMap wayIndex = new LongIntHashMap();
+	/** number of way indices in use, including removed ways */
+	private int wayCount = 0;
+	private int numWays = 0;
+	private long[] wayId = new long[16];
+	/** nodes of way w are refs[wayStart[w]] ... refs[wayStart[w+1]-1] */
+	private int[] wayStart = new int[17];
+	private int[] refs = new int[64];
+	private double[] wayLength = new double[16];
+	private int[] wayComponent = new int[16];
+	private final BitSet removedWays = new BitSet();
+	
+	/** results of nodes() and ways(), null if they have to be computed again */
+	private int[] nodeOrder = null;
+	private int[] wayOrder = null;
+	
 	private double roadNetworkLength = 0;
 	private BoundingBox bbox = null;
 	private int numEdges = 0;
 
 	public OSMGraph()
 	{
-		osmNodes = new HashMap<Long, OSMNode>();
-		osmWays = new HashMap<Long, OSMWay>();
 	}
 	
-	public void putNode(long k, OSMNode v)
+	/** @return index of the new node */
+	public int putNode(long id, double lon, double lat)
+	{
+		return putNode(id, lon, lat, false);
+	}
+	
+	private int putNode(long id, double lon, double lat, boolean isPhantomNode)
+	{
+		assert !nodeIndex.containsKey(id) : "key: "+id;
+		
+		int v = numNodes++;
+		if (v == nodeId.length) {
+			int length = 2 * v;
+			nodeId = Arrays.copyOf(nodeId, length);
+			nodeLon = Arrays.copyOf(nodeLon, length);
+			nodeLat = Arrays.copyOf(nodeLat, length);
+			nodeDegree = Arrays.copyOf(nodeDegree, length);
+			nodeWays = Arrays.copyOf(nodeWays, length);
+			incFirst = Arrays.copyOf(incFirst, length);
+			incLast = Arrays.copyOf(incLast, length);
+		}
+		nodeId[v] = id;
+		nodeLon[v] = lon;
+		nodeLat[v] = lat;
+		nodeDegree[v] = 0;
+		nodeWays[v] = 0;
+		incFirst[v] = incLast[v] = -1;
+		phantomNodes.set(v, isPhantomNode);
+		nodeIndex.put(id, v);
+		
+		nodeOrder = null;
+		return v;
+	}
+	
+	/**
+	 * Adds a way along the nodes with the given ids, which have to be in the graph.
+	 * @return index of the new way
+	 */
+	public int putWay(long id, long[] nodeRefs, int count)
 	{
-		assert !osmNodes.containsKey(k) : "key: "+k;
-		osmNodes.put(k, v);
+		int[] nodes = new int[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = nodeIndex.get(nodeRefs[i], -1);
+			assert(nodes[i] >= 0);
+		}
+		return putWay(id, nodes, count);
 	}
 	
-	public void putWay(long k, OSMWay v)
+	/** Adds a way along the nodes with the given indices. */
+	private int putWay(long id, int[] nodes, int count)
 	{
-		assert(!osmWays.containsKey(k));
-		assert(v.nodeRefs().size() > 1);
+		assert(!wayIndex.containsKey(id));
+		assert(count > 1);
 		
-		double len = calculateWayLength(v);
-		v.setLength(len);
+		int w = wayCount++;
+		if (w == wayId.length) {
+			int length = 2 * w;
+			wayId = Arrays.copyOf(wayId, length);
+			wayStart = Arrays.copyOf(wayStart, length + 1);
+			wayLength = Arrays.copyOf(wayLength, length);
+			wayComponent = Arrays.copyOf(wayComponent, length);
+		}
+		int start = wayStart[w];
+		if (start + count > refs.length) {
+			refs = Arrays.copyOf(refs, Math.max(2 * refs.length, start + count));
+		}
+		System.arraycopy(nodes, 0, refs, start, count);
+		wayStart[w + 1] = start + count;
+		wayId[w] = id;
+		wayComponent[w] = -1;
+		
+		double len = calculateWayLength(w);
+		wayLength[w] = len;
 		roadNetworkLength += len;
 		
-		numEdges += v.nodeRefs().size() - 1;
+		numEdges += count - 1;
 		
-		for (int i = 0; i < v.nodeRefs().size(); i++) {
-			long nr = v.nodeRefs().get(i);
-			OSMNode n = osmNodes.get(nr);
-			n.addWay(k, (i == 0 || i == v.nodeRefs().size()-1));
+		for (int i = 0; i < count; i++) {
+			int v = nodes[i];
+			addWayToNode(v, w);
+			nodeDegree[v] += (i == 0 || i == count-1) ? 1 : 2;
 		}
 		
-		osmWays.put(k, v);
+		wayIndex.put(id, w);
+		numWays++;
+		wayOrder = null;
+		return w;
+	}
+	
+	private void addWayToNode(int v, int w)
+	{
+		// a way might reference a node multiple times (-> cycle)
+		for (int k = incFirst[v]; k >= 0; k = incNext[k]) {
+			if (incWay[k] == w) {
+				return;
+			}
+		}
+		
+		if (numInc == incWay.length) {
+			incWay = Arrays.copyOf(incWay, 2 * numInc);
+			incNext = Arrays.copyOf(incNext, 2 * numInc);
+		}
+		int k = numInc++;
+		incWay[k] = w;
+		incNext[k] = -1;
+		if (incLast[v] < 0) {
+			incFirst[v] = k;
+		} else {
+			incNext[incLast[v]] = k;
+		}
+		incLast[v] = k;
+		nodeWays[v]++;
 	}
 	
+	/** Removes the nodes without ways and compacts the node arrays. */
 	public void removeIsolatedNodes()
 	{
-		ArrayList<Long> keys = new ArrayList<Long>(osmNodes.keySet());
-		for (long nr : keys) {
-			if (osmNodes.get(nr).ways().isEmpty()) {
-				assert(osmNodes.get(nr).degree() == 0);
-				osmNodes.remove(nr);
+		int[] newIndex = new int[numNodes];
+		int n = 0;
+		for (int v = 0; v < numNodes; v++) {
+			if (nodeWays[v] == 0) {
+				assert(nodeDegree[v] == 0);
+				newIndex[v] = -1;
+				continue;
 			}
+			newIndex[v] = n;
+			nodeId[n] = nodeId[v];
+			nodeLon[n] = nodeLon[v];
+			nodeLat[n] = nodeLat[v];
+			nodeDegree[n] = nodeDegree[v];
+			nodeWays[n] = nodeWays[v];
+			incFirst[n] = incFirst[v];
+			incLast[n] = incLast[v];
+			phantomNodes.set(n, phantomNodes.get(v));
+			n++;
+		}
+		if (n == numNodes) {
+			return;
+		}
+		
+		phantomNodes.clear(n, numNodes);
+		numNodes = n;
+		int length = Math.max(16, n);
+		nodeId = Arrays.copyOf(nodeId, length);
+		nodeLon = Arrays.copyOf(nodeLon, length);
+		nodeLat = Arrays.copyOf(nodeLat, length);
+		nodeDegree = Arrays.copyOf(nodeDegree, length);
+		nodeWays = Arrays.copyOf(nodeWays, length);
+		incFirst = Arrays.copyOf(incFirst, length);
+		incLast = Arrays.copyOf(incLast, length);
+		
+		// removed ways may reference removed nodes (-1), they are never read again
+		for (int k = 0; k < wayStart[wayCount]; k++) {
+			if (refs[k] >= 0) {
+				refs[k] = newIndex[refs[k]];
+			}
+		}
+		nodeIndex = new LongIntHashMap(n);
+		for (int v = 0; v < n; v++) {
+			nodeIndex.put(nodeId[v], v);
 		}
+		nodeOrder = null;
 	}
 	
-	public void removeWay(long k)
+	public void removeWay(long id)
 	{
-		assert(osmWays.containsKey(k));
+		int w = wayIndex.remove(id, -1);
+		assert(w >= 0);
 		
-		OSMWay w = osmWays.get(k);
-		roadNetworkLength -= w.length();
+		roadNetworkLength -= wayLength[w];
 		
-		numEdges -= w.nodeRefs().size() - 1;
+		int start = wayStart[w];
+		int count = wayStart[w + 1] - start;
+		numEdges -= count - 1;
 		
-		for (int i = 0; i < w.nodeRefs().size(); i++) {
-			long nr = w.nodeRefs().get(i);
-			OSMNode n = osmNodes.get(nr);
-			n.removeWay(k, (i == 0 || i == w.nodeRefs().size()-1));
+		for (int i = 0; i < count; i++) {
+			int v = refs[start + i];
+			nodeDegree[v] -= (i == 0 || i == count-1) ? 1 : 2;
+			assert(nodeDegree[v] >= 0);
+			
+			// the way is counted once at a node, even if it references the node several times
+			boolean first = true;
+			for (int j = 0; j < i && first; j++) {
+				first = (refs[start + j] != v);
+			}
+			if (first) {
+				nodeWays[v]--;
+			}
 		}
 		
-		osmWays.remove(k);
+		removedWays.set(w);
+		numWays--;
+		wayOrder = null;
+	}
+	
+	public boolean containsNode(long id)
+	{
+		return nodeIndex.containsKey(id);
 	}
 	
-	public boolean containsNode(long k)
+	public boolean containsWay(long id)
 	{
-		return osmNodes.containsKey(k);
+		return wayIndex.containsKey(id);
 	}
 	
-	public boolean containsWay(long k)
+	/** @return index of the node with the given id, -1 if there is none */
+	public int nodeIndex(long id)
 	{
-		return osmWays.containsKey(k);
+		return nodeIndex.get(id, -1);
 	}
 	
-	public OSMNode getNode(long k)
+	/** @return index of the way with the given id, -1 if there is none */
+	public int wayIndex(long id)
 	{
-		return osmNodes.get(k);
+		return wayIndex.get(id, -1);
 	}
 	
-	public OSMWay getWay(long k)
+	public long nodeId(int v)
 	{
-		return osmWays.get(k);
+		return nodeId[v];
+	}
+	
+	public double lon(int v)
+	{
+		return nodeLon[v];
+	}
+	
+	public double lat(int v)
+	{
+		return nodeLat[v];
+	}
+	
+	public PositionGeo pos(int v)
+	{
+		return new PositionGeo(nodeLon[v], nodeLat[v]);
+	}
+	
+	public int degree(int v)
+	{
+		return nodeDegree[v];
+	}
+	
+	public boolean isPhantomNode(int v)
+	{
+		return phantomNodes.get(v);
+	}
+	
+	public long wayId(int w)
+	{
+		return wayId[w];
+	}
+	
+	public int wayNodeCount(int w)
+	{
+		return wayStart[w + 1] - wayStart[w];
+	}
+	
+	/** @return index of the i-th node of way w */
+	public int wayNode(int w, int i)
+	{
+		return refs[wayStart[w] + i];
+	}
+	
+	public double wayLength(int w)
+	{
+		return wayLength[w];
+	}
+	
+	/** @return component of way w, -1 before findComponents() */
+	public int componentId(int w)
+	{
+		return wayComponent[w];
+	}
+	
+	/** @return indices of all nodes, in insertion order; must not be modified */
+	public int[] nodes()
+	{
+		if (nodeOrder == null) {
+			nodeOrder = new int[numNodes];
+			for (int v = 0; v < numNodes; v++) {
+				nodeOrder[v] = v;
+			}
+		}
+		return nodeOrder;
+	}
+	
+	/** @return indices of all (not removed) ways, in insertion order; must not be modified */
+	public int[] ways()
+	{
+		if (wayOrder == null) {
+			wayOrder = new int[numWays];
+			int n = 0;
+			for (int w = removedWays.nextClearBit(0); w < wayCount; w = removedWays.nextClearBit(w + 1)) {
+				wayOrder[n++] = w;
+			}
+		}
+		return wayOrder;
 	}
 	
 	public double roadNetworkLength()
@@ -129,12 +394,12 @@ public class OSMGraph
 	
 	public int numNodes()
 	{
-		return this.osmNodes.size();
+		return this.numNodes;
 	}
 	
 	public int numWays()
 	{
-		return this.osmWays.size();
+		return this.numWays;
 	}
 	
 	public int numEdges()
@@ -146,11 +411,11 @@ public class OSMGraph
 	{
 		double result = 0.0;
 		
-		for (long nr : osmNodes.keySet()) {
-			assert(osmNodes.get(nr).degree() > 0);
-			result += osmNodes.get(nr).degree();
+		for (int v = 0; v < numNodes; v++) {
+			assert(nodeDegree[v] > 0);
+			result += nodeDegree[v];
 		}
-		result /= osmNodes.size();
+		result /= numNodes;
 		
 		return result;
 	}
@@ -174,8 +439,8 @@ public class OSMGraph
 	{
 		HashMap<Integer, Integer> result = new HashMap<Integer, Integer>();
 		
-		for (long nr : osmNodes.keySet()) {			
-			int d = osmNodes.get(nr).degree();
+		for (int v = 0; v < numNodes; v++) {
+			int d = nodeDegree[v];
 			assert(d > 0);
 			
 			if (result.containsKey(d)) {
@@ -196,7 +461,7 @@ public class OSMGraph
 	
 	/**
 	 * Compute a random position by walking a random distance along the ways of the graph.
-	 * The ways are traversed in the order they have been added to the graph.
+	 * The ways are traversed in the order of ways().
 	 * 
 	 * @param rand random number in [0,1]
 	 * @return The resulting random position
@@ -209,11 +474,10 @@ public class OSMGraph
 		double rlen = roadNetworkLength * rand;
 		
 		// TODO: implement this as binary search
-		for (long k : osmWays.keySet()) {
-			OSMWay w = osmWays.get(k);
-			assert(w.length() > 0);
-			if (rlen > w.length()) {
-				rlen -= w.length();
+		for (int w : ways()) {
+			assert(wayLength[w] > 0);
+			if (rlen > wayLength[w]) {
+				rlen -= wayLength[w];
 			} else {
 				result = computePhantomNode(w, rlen);
 				break;
@@ -223,15 +487,14 @@ public class OSMGraph
 		return result;
 	}
 	
-	private double calculateWayLength(OSMWay w)
+	private double calculateWayLength(int w)
 	{
 		double len = 0.0;
 		
-		ArrayList<Long> nr = w.nodeRefs();
-		for (int i = 0; i < nr.size() - 1; i++) {
-			OSMNode src = osmNodes.get(nr.get(i));
-			OSMNode dst = osmNodes.get(nr.get(i+1));
-			len += src.pos().distance(dst.pos());
+		for (int k = wayStart[w]; k < wayStart[w + 1] - 1; k++) {
+			int src = refs[k];
+			int dst = refs[k + 1];
+			len += PositionGeo.distance(nodeLat[src], nodeLon[src], nodeLat[dst], nodeLon[dst]);
 		}
 		
 		return len;
@@ -243,24 +506,23 @@ public class OSMGraph
 	 * @param w The way on which the phantom node is located
 	 * @param l Distance to walk from the beginning of w until the phantom node
 	 * @return The resulting phantom node
-	 * @pre l <= w.length()
+	 * @pre l <= wayLength(w)
 	 */
-	private PositionGeo computePhantomNode(OSMWay w, double l)
+	private PositionGeo computePhantomNode(int w, double l)
 	{
-		assert(osmWays.containsValue(w));
-		assert(l <= w.length());
+		assert(!removedWays.get(w));
+		assert(l <= wayLength[w]);
 		PositionGeo result = null;
 		
-		ArrayList<Long> nr = w.nodeRefs();
-		for (int i = 0; i < nr.size() - 1; i++) {
-			OSMNode src = osmNodes.get(nr.get(i));
-			OSMNode dst = osmNodes.get(nr.get(i+1));
-			double dist = src.pos().distance(dst.pos());
+		for (int k = wayStart[w]; k < wayStart[w + 1] - 1; k++) {
+			PositionGeo src = pos(refs[k]);
+			PositionGeo dst = pos(refs[k + 1]);
+			double dist = src.distance(dst);
 			
 			if (l > dist) {
 				l -= dist;
 			} else {
-				result = src.pos().getPhantomNode(dst.pos(), l/dist);
+				result = src.getPhantomNode(dst, l/dist);
 				break;
 			}
 		}
@@ -276,7 +538,6 @@ public class OSMGraph
 	 * @param bb Spatial bounding box of the sub-graph
 	 * @return Sub-graph with original and phantom (boundary) nodes, original (if any) and new (clipped) ways
 	 * @see Route.clipRoute()
-	 * @todo Might need optimization for large-sized graphs
 	 * @note Currently creates a new ID even for unaltered ways (shouldn't be a problem though)
 	 */
 	public OSMGraph createSubGraph(BoundingBox bb)
@@ -284,17 +545,17 @@ public class OSMGraph
 		OSMGraph sg = new OSMGraph();
 		sg.setBoundingBox(bb);
 		
-		Set<Long> nodeKeys = osmNodes.keySet();
-		ArrayList<Long> oldWayRefs = new ArrayList<Long>();
-		for (Long k : nodeKeys) { // find and copy nodes within bounding box from this graph to sub-graph
-			OSMNode oldNode = osmNodes.get(k);
-			PositionGeo p = oldNode.pos();
-			if (bb.contains(p)) {
-				OSMNode newNode = new OSMNode(oldNode.id(), new PositionGeo(p));
-				sg.putNode(k, newNode);
-				for (Long w : oldNode.ways()) { // store IDs of ways that reference this node
-					if (!oldWayRefs.contains(w)) {
-						oldWayRefs.add(w);
+		int[] oldWayRefs = new int[numWays];
+		int numOldWayRefs = 0;
+		BitSet referenced = new BitSet(wayCount);
+		for (int v : nodes()) { // find and copy nodes within bounding box from this graph to sub-graph
+			if (bb.contains(pos(v))) {
+				sg.putNode(nodeId[v], nodeLon[v], nodeLat[v]);
+				for (int k = incFirst[v]; k >= 0; k = incNext[k]) { // store ways that reference this node
+					int w = incWay[k];
+					if (!removedWays.get(w) && !referenced.get(w)) {
+						referenced.set(w);
+						oldWayRefs[numOldWayRefs++] = w;
 					}
 				}
 			}
@@ -302,41 +563,46 @@ public class OSMGraph
 
 		long phantomNodeId = 0;
 		long newWayId = 0;
-		for (Long oldWayId : oldWayRefs) { // now find out which way segments are within the bbox and create (boundary) phantom nodes if necessary
-			OSMWay oldWay = osmWays.get(oldWayId);
-			ArrayList<Long> oldNodeRefs = oldWay.nodeRefs();
-			ArrayList<Long> newNodeRefs = null;
+		for (int r = 0; r < numOldWayRefs; r++) { // now find out which way segments are within the bbox and create (boundary) phantom nodes if necessary
+			int oldWay = oldWayRefs[r];
+			int start = wayStart[oldWay];
+			int count = wayStart[oldWay + 1] - start;
+			// sub-graph indices of the nodes of the current new way, null if there is none
+			int[] newNodeRefs = null;
+			int newCount = 0;
 			boolean previousClipped = false;
-			for (int i = 0; i < oldNodeRefs.size(); i++) {
-				long currentNodeId = oldNodeRefs.get(i);
-				if (sg.containsNode(currentNodeId)) { // within bounds
+			for (int i = 0; i < count; i++) {
+				int currentNode = refs[start + i];
+				int subNode = sg.nodeIndex(nodeId[currentNode]);
+				if (subNode >= 0) { // within bounds
 					if (previousClipped) {
 						// start new way
 						phantomNodeId = this.getLowestUnusedNodeIdForSubGraph(phantomNodeId);
-						addPhantomNodeToSubGraph(sg, oldNodeRefs.get(i-1), currentNodeId, phantomNodeId);
+						int phantomNode = addPhantomNodeToSubGraph(sg, refs[start + i - 1], currentNode, phantomNodeId);
 						
 						newWayId = this.getLowestUnusedWayIdForSubGraph(newWayId);
-						newNodeRefs = new ArrayList<Long>();
+						newNodeRefs = new int[count + 2];
+						newCount = 0;
 						
-						newNodeRefs.add(phantomNodeId);
+						newNodeRefs[newCount++] = phantomNode;
 					} else if (i == 0) {
 						// start new way
 						newWayId = this.getLowestUnusedWayIdForSubGraph(newWayId);
-						newNodeRefs = new ArrayList<Long>();
+						newNodeRefs = new int[count + 2];
+						newCount = 0;
 					}
 					
-					newNodeRefs.add(currentNodeId);
+					newNodeRefs[newCount++] = subNode;
 					previousClipped = false;
 				} else { // outside bounds
 					if (!previousClipped) {
 						if (i > 0) { // only if this is not the first node
 							// end current way
 							phantomNodeId = this.getLowestUnusedNodeIdForSubGraph(phantomNodeId);
-							addPhantomNodeToSubGraph(sg, oldNodeRefs.get(i-1), currentNodeId, phantomNodeId);
+							int phantomNode = addPhantomNodeToSubGraph(sg, refs[start + i - 1], currentNode, phantomNodeId);
 							
-							newNodeRefs.add(phantomNodeId);
-							OSMWay newWay = new OSMWay(newWayId, newNodeRefs);
-							sg.putWay(newWayId, newWay);
+							newNodeRefs[newCount++] = phantomNode;
+							sg.putWay(newWayId, newNodeRefs, newCount);
 							newNodeRefs = null;
 						}
 					}
@@ -346,9 +612,8 @@ public class OSMGraph
 			}
 			
 			if (newNodeRefs != null) { // end final way
-				assert(newNodeRefs.size() > 1);
-				OSMWay newWay = new OSMWay(newWayId, newNodeRefs);
-				sg.putWay(newWayId, newWay);
+				assert(newCount > 1);
+				sg.putWay(newWayId, newNodeRefs, newCount);
 			}
 		}
 		
@@ -360,19 +625,16 @@ public class OSMGraph
 	 * where one of the nodes lies outside the bounding box.
 	 * 
 	 * @param subGraph Sub-graph object to add phantom node to
-	 * @param nodeId1 Original node 1
-	 * @param nodeId2 Original node 2
+	 * @param node1 Index of original node 1
+	 * @param node2 Index of original node 2
 	 * @param phantomNodeId Pre-determined ID for the new phantom node
+	 * @return Index of the phantom node in the sub-graph
 	 * @see createSubGraph()
 	 */
-	private void addPhantomNodeToSubGraph(OSMGraph subGraph, long nodeId1, long nodeId2, long phantomNodeId)
+	private int addPhantomNodeToSubGraph(OSMGraph subGraph, int node1, int node2, long phantomNodeId)
 	{
-		PositionGeo p1 = osmNodes.get(nodeId1).pos();
-		PositionGeo p2 = osmNodes.get(nodeId2).pos();
-		PositionGeo phantomPos = subGraph.bbox().calcBoundsIntersection(p1, p2);
-		
-		OSMNode phantomNode = new OSMNode(phantomNodeId, phantomPos, true);
-		subGraph.putNode(phantomNodeId, phantomNode);
+		PositionGeo phantomPos = subGraph.bbox().calcBoundsIntersection(pos(node1), pos(node2));
+		return subGraph.putNode(phantomNodeId, phantomPos.lon(), phantomPos.lat(), true);
 	}
 	
 	/**
@@ -385,7 +647,7 @@ public class OSMGraph
 	{
 		// hint is the lower bound
 		long result = hint + 1;
-		while (osmNodes.containsKey(result)) {
+		while (nodeIndex.containsKey(result)) {
 			result++;
 		}
 		return result;
@@ -401,7 +663,7 @@ public class OSMGraph
 	{
 		// hint is the lower bound
 		long result = hint + 1;
-		while (osmWays.containsKey(result)) {
+		while (wayIndex.containsKey(result)) {
 			result++;
 		}
 		return result;
@@ -410,54 +672,84 @@ public class OSMGraph
 	/**
 	 * Find connected components of this graph.
 	 * 
-	 * @return An array of components, where each component is an array of way IDs
+	 * The ways are visited depth-first with an explicit stack, in the order a recursive
+	 * visit of the ways at every node of a way would take.
+	 * 
+	 * @return An array of components, where each component is an array of way indices
 	 */
-	public ArrayList<ArrayList<Long>> findComponents()
+	public int[][] findComponents()
 	{
-		ArrayList<ArrayList<Long>> result = new ArrayList<ArrayList<Long>>();
+		int[][] result = new int[16][];
+		int numComponents = 0;
 		
-		for (long k : osmWays.keySet()) {
-			OSMWay w = osmWays.get(k);
-			
-			if (w.componentId() >= 0) { // w has already been visited and assigned to a component
+		// stack of ways, with the position in the node list and the way list of the node
+		int[] stackWay = new int[16];
+		int[] stackRef = new int[16];
+		int[] stackInc = new int[16];
+		int[] component = new int[16];
+		
+		for (int root : ways()) {
+			if (wayComponent[root] >= 0) { // root has already been visited and assigned to a component
 				continue;
 			}
 			
-			// w has not been visited yet, therefore it must belong to a new component
-			result.add(new ArrayList<Long>());
-			int cId = result.size() - 1;
-			w.setComponentId(cId);
-			ArrayList<Long> component = result.get(cId);
-			component.add(k);
-			visitAdjacentWays(w, component, cId);
-		}
-		
-		return result;
-	}
-	
-	/**
-	 * Recursive helper function for findComponents() to visit ways adjacent to src.
-	 * 
-	 * @param src Source way
-	 * @param comp Component of way src
-	 * @param id Component ID of comp
-	 */
-	private void visitAdjacentWays(OSMWay src, ArrayList<Long> comp, int id)
-	{
-		for (long nr : src.nodeRefs()) {
-			OSMNode n = osmNodes.get(nr);
-			for (long wr : n.ways()) {
-				OSMWay w = osmWays.get(wr);
+			// root has not been visited yet, therefore it must belong to a new component
+			int cId = numComponents;
+			int size = 0;
+			wayComponent[root] = cId;
+			component[size++] = root;
+			
+			int depth = 0;
+			stackWay[0] = root;
+			stackRef[0] = wayStart[root];
+			stackInc[0] = incFirst[refs[wayStart[root]]];
+			while (depth >= 0) {
+				int src = stackWay[depth];
+				if (stackRef[depth] == wayStart[src + 1]) { // all ways at all nodes of src visited
+					depth--;
+					continue;
+				}
+				int k = stackInc[depth];
+				if (k < 0) { // continue with the next node of src
+					int r = ++stackRef[depth];
+					if (r < wayStart[src + 1]) {
+						stackInc[depth] = incFirst[refs[r]];
+					}
+					continue;
+				}
+				stackInc[depth] = incNext[k];
 				
-				if (w.componentId() < 0) { // this way has not been visited yet
-					w.setComponentId(id);
-					comp.add(wr);
-					visitAdjacentWays(w, comp, id);
+				int w = incWay[k];
+				if (removedWays.get(w)) {
+					continue;
+				}
+				if (wayComponent[w] < 0) { // this way has not been visited yet
+					wayComponent[w] = cId;
+					if (size == component.length) {
+						component = Arrays.copyOf(component, 2 * size);
+					}
+					component[size++] = w;
+					
+					if (++depth == stackWay.length) {
+						stackWay = Arrays.copyOf(stackWay, 2 * depth);
+						stackRef = Arrays.copyOf(stackRef, 2 * depth);
+						stackInc = Arrays.copyOf(stackInc, 2 * depth);
+					}
+					stackWay[depth] = w;
+					stackRef[depth] = wayStart[w];
+					stackInc[depth] = incFirst[refs[wayStart[w]]];
 				} else { // we've already visited this way
-					assert(w.componentId() == id);
+					assert(wayComponent[w] == cId);
 				}
 			}
+			
+			if (numComponents == result.length) {
+				result = Arrays.copyOf(result, 2 * numComponents);
+			}
+			result[numComponents++] = Arrays.copyOf(component, size);
 		}
+		
+		return Arrays.copyOf(result, numComponents);
 	}
 	
 	public void printToFile(String file)
@@ -466,11 +758,9 @@ public class OSMGraph
 		try {
 			writer = new PrintWriter(file, "UTF-8");
 			writer.println("way lon lat");
-			for (long k : osmWays.keySet()) {
-				OSMWay w = osmWays.get(k);
-				for (long nr : w.nodeRefs()) {
-					PositionGeo p = osmNodes.get(nr).pos();
-					writer.printf("%d %.6f %.6f\n", k, p.lon(), p.lat());
+			for (int w : ways()) {
+				for (int k = wayStart[w]; k < wayStart[w + 1]; k++) {
+					writer.printf("%d %.6f %.6f\n", wayId[w], nodeLon[refs[k]], nodeLat[refs[k]]);
 				}
 			}
 			writer.close();
@@ -0,0 +1,701 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+
+package edu.bonn.cs.iv.util.maps.osm;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import edu.bonn.cs.iv.util.maps.PositionGeo;
+import edu.bonn.cs.iv.util.maps.Route;
+import edu.bonn.cs.iv.util.maps.RouteServiceInterface;
+
+/**
+ * Route service that routes in-process on an OSMGraph instead of querying OSRM.
+ * 
+ * The road network is copied into arrays (adjacency lists of node indices, segment
+ * lengths in metres as in OSMGraph). Shortest routes are computed with A* and
+ * landmark lower bounds (ALT): the distances of all nodes to a few landmarks are
+ * computed once, then |d(L,t) - d(L,v)| is a lower bound of the distance from v to t.
+ * Positions are snapped to the nearest road segment using a uniform grid.
+ * 
+ * The router can be used from several threads at the same time.
+ */
+public class OSMRouter implements RouteServiceInterface
+{
+	public static final int DEFAULT_LANDMARKS = 16;
+	
+	/** decimal digit precision for lat/lon values, as in OSRoutingMachine */
+	private static final double LATLON_SCALE = 1e6;
+	/** metres per degree latitude, only used for snapping */
+	private static final double METRES_PER_DEGREE = 111320.0;
+	/** minimum edge length of a grid cell in metres */
+	private static final double MIN_CELL_SIZE = 25.0;
+	
+	private final int numNodes;
+	private final PositionGeo[] pos;
+	/** neighbours of node v are adjTarget[adjStart[v]] ... adjTarget[adjStart[v+1]-1] */
+	private final int[] adjStart;
+	private final int[] adjTarget;
+	private final double[] adjLength;
+	/** road segments between two nodes */
+	private final int[] segA;
+	private final int[] segB;
+	private final double[] segLength;
+	/** connected component of every node */
+	private final int[] component;
+	/** component the landmarks are in, the lower bounds are only valid there */
+	private int landmarkComponent = -1;
+	/** landmarkDist[l][v] is the distance between landmark l and node v */
+	private double[][] landmarkDist;
+	
+	// snapping grid in a local equirectangular projection
+	private final double cosLat;
+	private final double originX;
+	private final double originY;
+	private final double cellSize;
+	private final int cols;
+	private final int rows;
+	/** segments in cell c are cellSegments[cellStart[c]] ... cellSegments[cellStart[c+1]-1] */
+	private final int[] cellStart;
+	private int[] cellSegments;
+	
+	private final ThreadLocal<Search> search = new ThreadLocal<Search>() {
+		@Override
+		protected Search initialValue()
+		{
+			return new Search();
+		}
+	};
+	
+	public OSMRouter(OSMGraph g)
+	{
+		this(g, DEFAULT_LANDMARKS);
+	}
+	
+	/**
+	 * @param g road network, it is not referenced after construction
+	 * @param landmarks number of landmarks for the lower bounds
+	 */
+	public OSMRouter(OSMGraph g, int landmarks)
+	{
+		// nodes and segments of all ways
+		int[] ways = g.ways();
+		int segments = 0;
+		for (int w : ways) {
+			segments += g.wayNodeCount(w) - 1;
+		}
+		// router node of every graph node, numbered in the order of their first use
+		int[] index = new int[g.numNodes()];
+		Arrays.fill(index, -1);
+		PositionGeo[] p = new PositionGeo[g.numNodes()];
+		int[] a = new int[segments];
+		int[] b = new int[segments];
+		double[] len = new double[segments];
+		int n = 0;
+		int s = 0;
+		for (int w : ways) {
+			int prev = -1;
+			for (int i = 0; i < g.wayNodeCount(w); i++) {
+				int node = g.wayNode(w, i);
+				int v = index[node];
+				if (v < 0) {
+					v = n;
+					index[node] = v;
+					p[n++] = g.pos(node);
+				}
+				if (prev >= 0 && prev != v) {
+					a[s] = prev;
+					b[s] = v;
+					len[s] = p[prev].distance(p[v]);
+					s++;
+				}
+				prev = v;
+			}
+		}
+		numNodes = n;
+		pos = Arrays.copyOf(p, n);
+		segA = Arrays.copyOf(a, s);
+		segB = Arrays.copyOf(b, s);
+		segLength = Arrays.copyOf(len, s);
+		
+		// adjacency in both directions
+		adjStart = new int[numNodes + 1];
+		for (int i = 0; i < segA.length; i++) {
+			adjStart[segA[i] + 1]++;
+			adjStart[segB[i] + 1]++;
+		}
+		for (int v = 0; v < numNodes; v++) {
+			adjStart[v + 1] += adjStart[v];
+		}
+		adjTarget = new int[2 * segA.length];
+		adjLength = new double[2 * segA.length];
+		int[] fill = Arrays.copyOf(adjStart, numNodes);
+		for (int i = 0; i < segA.length; i++) {
+			adjTarget[fill[segA[i]]] = segB[i];
+			adjLength[fill[segA[i]]++] = segLength[i];
+			adjTarget[fill[segB[i]]] = segA[i];
+			adjLength[fill[segB[i]]++] = segLength[i];
+		}
+		
+		component = new int[numNodes];
+		int largest = findComponents();
+		
+		// snapping grid
+		double minLon = Double.POSITIVE_INFINITY;
+		double maxLon = Double.NEGATIVE_INFINITY;
+		double minLat = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY;
+		for (int v = 0; v < numNodes; v++) {
+			minLon = Math.min(minLon, pos[v].lon());
+			maxLon = Math.max(maxLon, pos[v].lon());
+			minLat = Math.min(minLat, pos[v].lat());
+			maxLat = Math.max(maxLat, pos[v].lat());
+		}
+		if (numNodes == 0) {
+			minLon = maxLon = minLat = maxLat = 0.0;
+		}
+		cosLat = Math.cos(Math.toRadians((minLat + maxLat) / 2));
+		originX = minLon * METRES_PER_DEGREE * cosLat;
+		originY = minLat * METRES_PER_DEGREE;
+		double width = (maxLon - minLon) * METRES_PER_DEGREE * cosLat;
+		double height = (maxLat - minLat) * METRES_PER_DEGREE;
+		cellSize = Math.max(MIN_CELL_SIZE, 2 * Math.sqrt(width * height / Math.max(1, segA.length)));
+		cols = (int)(width / cellSize) + 1;
+		rows = (int)(height / cellSize) + 1;
+		cellStart = new int[cols * rows + 1];
+		for (int pass = 0; pass < 2; pass++) {
+			int[] next = (pass == 0) ? null : Arrays.copyOf(cellStart, cols * rows);
+			for (int i = 0; i < segA.length; i++) {
+				int x0 = col(Math.min(x(pos[segA[i]]), x(pos[segB[i]])));
+				int x1 = col(Math.max(x(pos[segA[i]]), x(pos[segB[i]])));
+				int y0 = row(Math.min(y(pos[segA[i]]), y(pos[segB[i]])));
+				int y1 = row(Math.max(y(pos[segA[i]]), y(pos[segB[i]])));
+				for (int cy = y0; cy <= y1; cy++) {
+					for (int cx = x0; cx <= x1; cx++) {
+						if (pass == 0) {
+							cellStart[cy * cols + cx + 1]++;
+						} else {
+							cellSegments[next[cy * cols + cx]++] = i;
+						}
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int c = 0; c < cols * rows; c++) {
+					cellStart[c + 1] += cellStart[c];
+				}
+				cellSegments = new int[cellStart[cols * rows]];
+			}
+		}
+		
+		if (largest >= 0) {
+			selectLandmarks(largest, landmarks);
+		}
+	}
+	
+	public int numNodes()
+	{
+		return this.numNodes;
+	}
+	
+	public int numLandmarks()
+	{
+		return (landmarkDist == null) ? 0 : landmarkDist.length;
+	}
+	
+	/**
+	 * Shortest route by length. Only the distance is set (in metres, as by OSRM), the trip
+	 * time is left unset (-1): the road network has no speeds to derive it from.
+	 * 
+	 * @throws RSIRequestFailedException if the road network is empty or src and dst are not connected
+	 */
+	@Override
+	public Route getOptimalRoute(PositionGeo src, PositionGeo dst) throws RSIRequestFailedException
+	{
+		if (segA.length == 0) {
+			throw new RSIRequestFailedException("Empty road network");
+		}
+		Route result = new Route(src, dst);
+		
+		if (almostEqual(src, dst)) { // src and dst are very close
+			result.setTurningPoint(new PositionGeo[0]);
+			return result;
+		}
+		
+		Snap from = snap(src);
+		Snap to = snap(dst);
+		if (component[segA[from.segment]] != component[segA[to.segment]]) {
+			if (almostEqual(from.pos, to.pos)) { // src and dst are mapped to the same position
+				result.setTurningPoint(new PositionGeo[0]);
+				return result;
+			}
+			throw new RSIRequestFailedException("No route from " + src.toString() + " to " + dst.toString());
+		}
+		
+		Search s = search.get();
+		int[] path = s.route(from, to);
+		
+		Vector<PositionGeo> tp = new Vector<PositionGeo>();
+		tp.add(from.pos);
+		for (int i = 0; i < path.length; i++) {
+			if (!almostEqual(tp.lastElement(), pos[path[i]])) {
+				tp.add(pos[path[i]]);
+			}
+		}
+		if (!almostEqual(tp.lastElement(), to.pos)) {
+			tp.add(to.pos);
+		}
+		
+		// the route contains src and dst only if they are not on the road
+		if (almostEqual(src, tp.firstElement())) {
+			tp.remove(0);
+		}
+		if (!tp.isEmpty() && almostEqual(dst, tp.lastElement())) {
+			tp.remove(tp.size() - 1);
+		}
+		
+		result.setDistanceRS(s.best);
+		result.setTurningPoint(tp.toArray(new PositionGeo[tp.size()]));
+		return result;
+	}
+	
+	@Override
+	public boolean isRoutable(PositionGeo p)
+	{
+		PositionGeo np = null;
+		try {
+			np = getNearestPosition(p);
+		} catch (RSIRequestFailedException e) {
+			System.err.println(e.getMessage());
+			e.printStackTrace();
+			System.exit(-1);
+		}
+		return np.equals(p);
+	}
+	
+	@Override
+	public PositionGeo getNearestPosition(PositionGeo p) throws RSIRequestFailedException
+	{
+		return snap(p).pos;
+	}
+	
+	/**
+	 * @return true if and only if the first 6 decimal places of the lon and lat values are equal
+	 * @see OSRoutingMachine
+	 */
+	private static boolean almostEqual(PositionGeo p1, PositionGeo p2)
+	{
+		return Math.round(p1.x() * LATLON_SCALE) == Math.round(p2.x() * LATLON_SCALE)
+			&& Math.round(p1.y() * LATLON_SCALE) == Math.round(p2.y() * LATLON_SCALE);
+	}
+	
+	/**
+	 * Labels the connected components.
+	 * 
+	 * @return the label of the largest component, -1 if there are no nodes
+	 */
+	private int findComponents()
+	{
+		Arrays.fill(component, -1);
+		int[] queue = new int[numNodes];
+		int largest = -1;
+		int largestSize = 0;
+		int label = 0;
+		for (int v = 0; v < numNodes; v++) {
+			if (component[v] >= 0) {
+				continue;
+			}
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = v;
+			component[v] = label;
+			while (head < tail) {
+				int u = queue[head++];
+				for (int e = adjStart[u]; e < adjStart[u + 1]; e++) {
+					if (component[adjTarget[e]] < 0) {
+						component[adjTarget[e]] = label;
+						queue[tail++] = adjTarget[e];
+					}
+				}
+			}
+			if (tail > largestSize) {
+				largestSize = tail;
+				largest = label;
+			}
+			label++;
+		}
+		return largest;
+	}
+	
+	/**
+	 * Chooses the landmarks in component c by farthest selection: every landmark is the
+	 * node that is farthest from the landmarks chosen so far.
+	 */
+	private void selectLandmarks(int c, int count)
+	{
+		Search s = new Search();
+		int start = 0;
+		while (component[start] != c) {
+			start++;
+		}
+		
+		double[] minDist = new double[numNodes];
+		s.dijkstra(start, minDist);
+		
+		Vector<double[]> dist = new Vector<double[]>();
+		for (int l = 0; l < count; l++) {
+			int next = -1;
+			for (int v = 0; v < numNodes; v++) {
+				if (component[v] == c && minDist[v] > 0.0 && (next < 0 || minDist[v] > minDist[next])) {
+					next = v;
+				}
+			}
+			if (next < 0) { // all nodes are landmarks (or at the same position)
+				break;
+			}
+			double[] d = new double[numNodes];
+			s.dijkstra(next, d);
+			dist.add(d);
+			for (int v = 0; v < numNodes; v++) {
+				minDist[v] = (l == 0) ? d[v] : Math.min(minDist[v], d[v]);
+			}
+		}
+		
+		landmarkDist = dist.toArray(new double[dist.size()][]);
+		landmarkComponent = c;
+	}
+	
+	private double x(PositionGeo p)
+	{
+		return p.lon() * METRES_PER_DEGREE * cosLat;
+	}
+	
+	private double y(PositionGeo p)
+	{
+		return p.lat() * METRES_PER_DEGREE;
+	}
+	
+	private int col(double x)
+	{
+		return Math.max(0, Math.min(cols - 1, (int)Math.floor((x - originX) / cellSize)));
+	}
+	
+	private int row(double y)
+	{
+		return Math.max(0, Math.min(rows - 1, (int)Math.floor((y - originY) / cellSize)));
+	}
+	
+	/**
+	 * Finds the nearest position on a road segment. The grid is searched in rings of
+	 * cells around the position until no closer segment can be found.
+	 */
+	private Snap snap(PositionGeo p) throws RSIRequestFailedException
+	{
+		if (segA.length == 0) {
+			throw new RSIRequestFailedException("Empty road network");
+		}
+		
+		double px = x(p);
+		double py = y(p);
+		int cx = col(px);
+		int cy = row(py);
+		
+		int best = -1;
+		double bestDist = Double.POSITIVE_INFINITY;
+		double bestAlpha = 0.0;
+		for (int r = 0; r <= Math.max(cols, rows); r++) {
+			for (int gy = cy - r; gy <= cy + r; gy++) {
+				if (gy < 0 || gy >= rows) {
+					continue;
+				}
+				int step = (gy == cy - r || gy == cy + r) ? 1 : 2 * r;
+				for (int gx = cx - r; gx <= cx + r; gx += Math.max(step, 1)) {
+					if (gx < 0 || gx >= cols) {
+						continue;
+					}
+					int c = gy * cols + gx;
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						int i = cellSegments[k];
+						double ax = x(pos[segA[i]]);
+						double ay = y(pos[segA[i]]);
+						double dx = x(pos[segB[i]]) - ax;
+						double dy = y(pos[segB[i]]) - ay;
+						double l2 = dx * dx + dy * dy;
+						double alpha = (l2 > 0.0) ? ((px - ax) * dx + (py - ay) * dy) / l2 : 0.0;
+						alpha = Math.max(0.0, Math.min(1.0, alpha));
+						double ex = ax + alpha * dx - px;
+						double ey = ay + alpha * dy - py;
+						double d = ex * ex + ey * ey;
+						if (d < bestDist || (d == bestDist && i < best)) {
+							best = i;
+							bestDist = d;
+							bestAlpha = alpha;
+						}
+					}
+				}
+			}
+			// all cells outside the ring are at least r cells away
+			if (best >= 0 && Math.sqrt(bestDist) <= r * cellSize) {
+				break;
+			}
+		}
+		if (best < 0) {
+			throw new RSIRequestFailedException("No road segment near " + p.toString());
+		}
+		
+		Snap result = new Snap();
+		result.segment = best;
+		result.offset = bestAlpha * segLength[best];
+		if (bestAlpha == 0.0) {
+			result.pos = pos[segA[best]];
+		} else if (bestAlpha == 1.0) {
+			result.pos = pos[segB[best]];
+		} else {
+			result.pos = pos[segA[best]].getPhantomNode(pos[segB[best]], bestAlpha);
+		}
+		return result;
+	}
+	
+	/** Position on a road segment. */
+	private static class Snap
+	{
+		int segment;
+		/** distance from the first node of the segment */
+		double offset;
+		PositionGeo pos;
+	}
+	
+	/** State of a shortest path search, one per thread. */
+	private class Search
+	{
+		private final double[] dist = new double[numNodes];
+		private final int[] parent = new int[numNodes];
+		/** the values of a node are only valid if its stamp equals the current epoch */
+		private final int[] stamp = new int[numNodes];
+		private int epoch = 0;
+		
+		// binary heap of nodes, ordered by key
+		private final int[] heapPos = new int[numNodes];
+		private final int[] heapNode = new int[numNodes];
+		private final double[] heapKey = new double[numNodes];
+		private int heapSize = 0;
+		
+		// target segment and the landmark distances of its nodes
+		private int targetA;
+		private int targetB;
+		private double offsetA;
+		private double offsetB;
+		private final double[] boundA = new double[numLandmarks()];
+		private final double[] boundB = new double[numLandmarks()];
+		private boolean useBounds;
+		
+		/** length of the last route and the node it ends at, -1 for a route along a single segment */
+		private double best;
+		private int bestEnd;
+		
+		private void reset()
+		{
+			if (++epoch == Integer.MAX_VALUE) {
+				Arrays.fill(stamp, 0);
+				epoch = 1;
+			}
+			heapSize = 0;
+		}
+		
+		private double distance(int v)
+		{
+			return (stamp[v] == epoch) ? dist[v] : Double.POSITIVE_INFINITY;
+		}
+		
+		/** Sets the distance of v if it is shorter and updates the queue. */
+		private void improve(int v, double d, int from, boolean target)
+		{
+			if (d >= distance(v)) {
+				return;
+			}
+			if (stamp[v] != epoch) {
+				stamp[v] = epoch;
+				heapPos[v] = -1;
+			}
+			dist[v] = d;
+			parent[v] = from;
+			
+			double key = d;
+			if (target) {
+				if (v == targetA && d + offsetA < best) {
+					best = d + offsetA;
+					bestEnd = v;
+				}
+				if (v == targetB && d + offsetB < best) {
+					best = d + offsetB;
+					bestEnd = v;
+				}
+				key += lowerBound(v);
+			}
+			
+			if (heapPos[v] < 0) {
+				heapPos[v] = heapSize;
+				heapNode[heapSize] = v;
+				heapKey[heapSize++] = key;
+			} else {
+				heapKey[heapPos[v]] = key;
+			}
+			up(heapPos[v]);
+		}
+		
+		/** @return lower bound of the distance from v to the target position */
+		private double lowerBound(int v)
+		{
+			if (!useBounds || component[v] != landmarkComponent) {
+				return 0.0;
+			}
+			double a = 0.0;
+			double b = 0.0;
+			for (int l = 0; l < boundA.length; l++) {
+				double d = landmarkDist[l][v];
+				a = Math.max(a, Math.abs(boundA[l] - d));
+				b = Math.max(b, Math.abs(boundB[l] - d));
+			}
+			return Math.min(a + offsetA, b + offsetB);
+		}
+		
+		/**
+		 * Computes the shortest route between two positions on the road network.
+		 * 
+		 * @return nodes of the route, its length is stored in best
+		 */
+		private int[] route(Snap from, Snap to) throws RSIRequestFailedException
+		{
+			reset();
+			targetA = segA[to.segment];
+			targetB = segB[to.segment];
+			offsetA = to.offset;
+			offsetB = segLength[to.segment] - to.offset;
+			useBounds = (landmarkDist != null && component[targetA] == landmarkComponent);
+			if (useBounds) {
+				for (int l = 0; l < boundA.length; l++) {
+					boundA[l] = landmarkDist[l][targetA];
+					boundB[l] = landmarkDist[l][targetB];
+				}
+			}
+			
+			best = Double.POSITIVE_INFINITY;
+			bestEnd = -1;
+			if (from.segment == to.segment) {
+				best = Math.abs(from.offset - to.offset);
+			}
+			improve(segA[from.segment], from.offset, -1, true);
+			improve(segB[from.segment], segLength[from.segment] - from.offset, -1, true);
+			
+			while (heapSize > 0 && heapKey[0] < best) {
+				int u = pop();
+				for (int e = adjStart[u]; e < adjStart[u + 1]; e++) {
+					improve(adjTarget[e], dist[u] + adjLength[e], u, true);
+				}
+			}
+			
+			if (best == Double.POSITIVE_INFINITY) {
+				throw new RSIRequestFailedException("No route found");
+			}
+			
+			int count = 0;
+			for (int v = bestEnd; v >= 0; v = parent[v]) {
+				count++;
+			}
+			int[] path = new int[count];
+			for (int v = bestEnd; v >= 0; v = parent[v]) {
+				path[--count] = v;
+			}
+			return path;
+		}
+		
+		/** Computes the distances of all nodes from source into d. */
+		private void dijkstra(int source, double[] d)
+		{
+			reset();
+			improve(source, 0.0, -1, false);
+			while (heapSize > 0) {
+				int u = pop();
+				for (int e = adjStart[u]; e < adjStart[u + 1]; e++) {
+					improve(adjTarget[e], dist[u] + adjLength[e], u, false);
+				}
+			}
+			for (int v = 0; v < numNodes; v++) {
+				d[v] = distance(v);
+			}
+		}
+		
+		private int pop()
+		{
+			int u = heapNode[0];
+			heapPos[u] = -1;
+			heapSize--;
+			if (heapSize > 0) {
+				heapNode[0] = heapNode[heapSize];
+				heapKey[0] = heapKey[heapSize];
+				heapPos[heapNode[0]] = 0;
+				down(0);
+			}
+			return u;
+		}
+		
+		private void up(int i)
+		{
+			while (i > 0) {
+				int p = (i - 1) / 2;
+				if (heapKey[p] <= heapKey[i]) {
+					break;
+				}
+				swap(i, p);
+				i = p;
+			}
+		}
+		
+		private void down(int i)
+		{
+			while (true) {
+				int l = 2 * i + 1;
+				if (l >= heapSize) {
+					break;
+				}
+				int m = (l + 1 < heapSize && heapKey[l + 1] < heapKey[l]) ? l + 1 : l;
+				if (heapKey[i] <= heapKey[m]) {
+					break;
+				}
+				swap(i, m);
+				i = m;
+			}
+		}
+		
+		private void swap(int i, int j)
+		{
+			int n = heapNode[i];
+			heapNode[i] = heapNode[j];
+			heapNode[j] = n;
+			double k = heapKey[i];
+			heapKey[i] = heapKey[j];
+			heapKey[j] = k;
+			heapPos[heapNode[i]] = i;
+			heapPos[heapNode[j]] = j;
+		}
+	}
+}
@@ -25,6 +25,7 @@ import crosby.binary.Osmformat.*;
 
 import java.util.*;
 
+import edu.bonn.cs.iv.util.LongIntHashMap;
 import edu.bonn.cs.iv.util.maps.BoundingBox;
 import edu.bonn.cs.iv.util.maps.PositionGeo;
 
@@ -38,8 +39,13 @@ public class PBFParser extends BinaryParser
 
 	private OSMGraph g = null;
 	private BoundingBox bb = null;
-	private ArrayList<Long> missingRefs = new ArrayList<Long>();
-	private ArrayList<Long> barrierNodes = new ArrayList<Long>();
+	/** ids of referenced nodes which are not in the graph, used as a set */
+	private LongIntHashMap missingRefs = new LongIntHashMap();
+	/** ids of forbidden barrier nodes, used as a set */
+	private LongIntHashMap barrierNodes = new LongIntHashMap();
+	/** node ids of the current way, as referenced and as added */
+	private long[] wayRefs = new long[256];
+	private long[] refs = new long[256];
 	
 	public PBFParser(OSMGraph g, BoundingBox bb)
 	{
@@ -101,27 +107,55 @@ public class PBFParser extends BinaryParser
     private void processNode(long id, long lat, long lon, Map<String, String> tags)
     {
     	// don't add to graph if node is forbidden barrier
-    	if (tags.containsKey("barrier")) {
-    		boolean forbiddenBarrier = false;
-    		
-    		if (!tags.get("barrier").matches(allowedBarrierValues)) {
-    			forbiddenBarrier = true;
-    		} else if (tags.containsKey("foot") && tags.get("foot").matches("no")) {
-    			// unusual use of "foot:no" in combination with "barrier:entrance"
-    			// cf. e.g. http://www.openstreetmap.org/node/2688035793
-    			forbiddenBarrier = true;
-    		}
-    		
-    		if (forbiddenBarrier) {
-	    		barrierNodes.add(id);
-	    		System.out.println("DEBUG: skipped barrier node (id " + id + ", value " + tags.get("barrier") + ")!");
-	    		return;
-    		}
+    	if (tags.containsKey("barrier") && isForbiddenBarrier(tags.get("barrier"), tags.get("foot"))) {
+    		skipBarrierNode(id, tags.get("barrier"));
+    		return;
     	}
     		
-        PositionGeo p = new PositionGeo(parseLon(lon), parseLat(lat));
-        if (bb == null || (bb != null && bb.contains(p))) {
-            g.putNode(id, new OSMNode(id, p));
+        addNode(id, parseLon(lon), parseLat(lat));
+    }
+    
+    /** @param foot value of the foot tag, null if the node has none */
+    static boolean isForbiddenBarrier(String barrier, String foot)
+    {
+    	if (!barrier.matches(allowedBarrierValues)) {
+    		return true;
+    	}
+    	// unusual use of "foot:no" in combination with "barrier:entrance"
+    	// cf. e.g. http://www.openstreetmap.org/node/2688035793
+    	return foot != null && foot.matches("no");
+    }
+    
+    static boolean isAccessKey(String key)
+    {
+    	return key.matches("access|foot");
+    }
+    
+    static boolean isAllowedAccess(String value)
+    {
+    	return value.matches(allowedAccessValues);
+    }
+    
+    static boolean isRoadKey(String key)
+    {
+    	return key.matches(roadKey);
+    }
+    
+    static boolean isAllowedHighway(String value)
+    {
+    	return value.matches(allowedHighwayValues);
+    }
+    
+    void skipBarrierNode(long id, String value)
+    {
+    	barrierNodes.put(id, 0);
+    	System.out.println("DEBUG: skipped barrier node (id " + id + ", value " + value + ")!");
+    }
+    
+    void addNode(long id, double lonDeg, double latDeg)
+    {
+        if (bb == null || bb.contains(new PositionGeo(lonDeg, latDeg))) {
+            g.putNode(id, lonDeg, latDeg);
         }
     }
 
@@ -139,8 +173,8 @@ public class PBFParser extends BinaryParser
         	boolean accessAllowed = true;
         	
             for (int i = 0; i < w.getKeysCount(); i++) {
-                if (getStringById(w.getKeys(i)).matches("access|foot")) { // check access tag
-                	if (!getStringById(w.getVals(i)).matches(allowedAccessValues)) { // ignore ways where access is forbidden
+                if (isAccessKey(getStringById(w.getKeys(i)))) { // check access tag
+                	if (!isAllowedAccess(getStringById(w.getVals(i)))) { // ignore ways where access is forbidden
                 		System.out.println("DEBUG: skipped inaccessible way (id " + w.getId() + ", value " + getStringById(w.getVals(i)) + ")!");
                 		accessAllowed = false;
                 		break;
@@ -153,43 +187,60 @@ public class PBFParser extends BinaryParser
             }
         	
             for (int i = 0; i < w.getKeysCount(); i++) { // for all OSM keys
-                if (getStringById(w.getKeys(i)).matches(roadKey)) { // we only want ways with the correct key
-                	if (!getStringById(w.getVals(i)).matches(allowedHighwayValues)) { // ignore forbidden highway types
+                if (isRoadKey(getStringById(w.getKeys(i)))) { // we only want ways with the correct key
+                	if (!isAllowedHighway(getStringById(w.getVals(i)))) { // ignore forbidden highway types
                 		System.out.println("DEBUG: skipped highway (id " + w.getId() + ", value " + getStringById(w.getVals(i)) + ")!");
                 		break;
                 	}
                 	
-                	ArrayList<Long> refs = new ArrayList<Long>();
+                	if (w.getRefsCount() > wayRefs.length) {
+                		wayRefs = new long[Math.max(w.getRefsCount(), 2 * wayRefs.length)];
+                	}
                     long lastRef = 0;
-                    
-                    for (Long ref : w.getRefsList()) { // for all node references
-                        lastRef += ref;
-                        
-                        if (barrierNodes.contains(lastRef)) {
-                        	refs.clear();
-                        	System.out.println("DEBUG: skipped highway " + w.getId() + " with barrier node " + lastRef + "!");
-                        	break;
-                        }
-                        
-                        if(!g.containsNode(lastRef)) { // reference to a node which is not in the graph -> discard remaining way segments
-                        	if (!missingRefs.contains(lastRef)) {
-                            	missingRefs.add(lastRef);
-                        	}
-                        	break;
-                        }
-                        
-                		// a way might reference a node multiple times (-> cycle)
-                        refs.add(lastRef);
-                    }
-                    
-                    if (refs.size() > 1) { // only add to graph if at least two nodes remain for this way
-                        g.putWay(w.getId(), new OSMWay(w.getId(), refs));
+                    for (int r = 0; r < w.getRefsCount(); r++) { // for all node references
+                        lastRef += w.getRefs(r);
+                        wayRefs[r] = lastRef;
                     }
+                    addWay(w.getId(), wayRefs, 0, w.getRefsCount());
                     break;
                 }
             }
         }
     }
+    
+    /**
+     * Adds a highway along the node ids nodeRefs[from] ... nodeRefs[to-1], up to the first
+     * node that is not in the graph. Ways with a forbidden barrier are dropped.
+     */
+    void addWay(long id, long[] nodeRefs, int from, int to)
+    {
+    	int count = 0;
+    	
+    	for (int r = from; r < to; r++) { // for all node references
+    		long ref = nodeRefs[r];
+    		
+    		if (barrierNodes.containsKey(ref)) {
+    			count = 0;
+    			System.out.println("DEBUG: skipped highway " + id + " with barrier node " + ref + "!");
+    			break;
+    		}
+    		
+    		if (!g.containsNode(ref)) { // reference to a node which is not in the graph -> discard remaining way segments
+    			missingRefs.put(ref, 0);
+    			break;
+    		}
+    		
+    		// a way might reference a node multiple times (-> cycle)
+    		if (count == refs.length) {
+    			refs = Arrays.copyOf(refs, 2 * count);
+    		}
+    		refs[count++] = ref;
+    	}
+    	
+    	if (count > 1) { // only add to graph if at least two nodes remain for this way
+    		g.putWay(id, refs, count);
+    	}
+    }
 
     @Override
     protected void parse(HeaderBlock header)
@@ -201,11 +252,6 @@ public class PBFParser extends BinaryParser
     public void complete()
     {
         System.out.println("Ignored " + missingRefs.size() + " node references");
-        for (long nr : missingRefs) {
-        	assert(!g.containsNode(nr));
-//        	System.out.print(nr + ", ");
-        }
-//        System.out.println("Check manually on: http://www.openstreetmap.org/node/<ID>");
         
         doPostProcessing();
     }
@@ -214,39 +260,38 @@ public class PBFParser extends BinaryParser
     {
 //    	System.out.println("Total road network length before post-processing: " + g.roadNetworkLength());
     	System.out.println("Computing connected components...");
-    	ArrayList<ArrayList<Long>> componentList = g.findComponents();
+    	int[][] componentList = g.findComponents();
     	System.out.println("done");
     	
     	int maxVal = 0;
     	int maxId = -1;
     	int total = 0;
-    	for (int i = 0; i < componentList.size(); i++) {
-    		ArrayList<Long> comp = componentList.get(i);
-    		assert(comp.size() > 0);
+    	for (int i = 0; i < componentList.length; i++) {
+    		int[] comp = componentList[i];
+    		assert(comp.length > 0);
     		
-    		System.out.println("Component " + i + " consists of " + comp.size() + " ways");
-    		if (comp.size() == 1) {
-    			System.out.println("\t" + comp.get(0));
+    		System.out.println("Component " + i + " consists of " + comp.length + " ways");
+    		if (comp.length == 1) {
+    			System.out.println("\t" + g.wayId(comp[0]));
     		}
     		
-    		total += comp.size();
+    		total += comp.length;
     		
-    		if (comp.size() > maxVal) {
-    			maxVal = comp.size();
+    		if (comp.length > maxVal) {
+    			maxVal = comp.length;
     			maxId = i;
     		}
     	}
     	
     	assert(maxId >= 0);
-    	System.out.println("Choosing component " + maxId + " with " + maxVal + " ways. Removing " + (total - maxVal) + " ways in " + (componentList.size() - 1) + " small components...");
-    	for (int i = 0; i < componentList.size(); i++) {
+    	System.out.println("Choosing component " + maxId + " with " + maxVal + " ways. Removing " + (total - maxVal) + " ways in " + (componentList.length - 1) + " small components...");
+    	for (int i = 0; i < componentList.length; i++) {
     		if (i == maxId) {
     			continue;
     		}
-    		ArrayList<Long> comp = componentList.get(i);
     		
-    		for (long wr : comp) {
-    			g.removeWay(wr);
+    		for (int w : componentList[i]) {
+    			g.removeWay(g.wayId(w));
     		}
     	}
     	System.out.println("done");
@@ -0,0 +1,665 @@
+/*******************************************************************************
+ ** BonnMotion - a mobility scenario generation and analysis tool             **
+ ** Copyright (C) 2002-2012 University of Bonn                                **
+ ** Copyright (C) 2012-2016 University of Osnabrueck                          **
+ **                                                                           **
+ ** This program is free software; you can redistribute it and/or modify      **
+ ** it under the terms of the GNU General Public License as published by      **
+ ** the Free Software Foundation; either version 2 of the License, or         **
+ ** (at your option) any later version.                                       **
+ **                                                                           **
+ ** This program is distributed in the hope that it will be useful,           **
+ ** but WITHOUT ANY WARRANTY; without even the implied warranty of            **
+ ** MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the             **
+ ** GNU General Public License for more details.                              **
+ **                                                                           **
+ ** You should have received a copy of the GNU General Public License         **
+ ** along with this program; if not, write to the Free Software               **
+ ** Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA **
+ *******************************************************************************/
+
+package edu.bonn.cs.iv.util.maps.osm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import crosby.binary.Fileformat.Blob;
+import crosby.binary.Fileformat.BlobHeader;
+import crosby.binary.Osmformat.DenseNodes;
+import crosby.binary.Osmformat.Node;
+import crosby.binary.Osmformat.PrimitiveBlock;
+import crosby.binary.Osmformat.PrimitiveGroup;
+import crosby.binary.Osmformat.StringTable;
+import crosby.binary.Osmformat.Way;
+
+import edu.bonn.cs.iv.util.LongIntHashMap;
+import edu.bonn.cs.iv.util.maps.BoundingBox;
+import edu.bonn.cs.iv.util.maps.PositionGeo;
+
+/**
+ * Reads a .osm.pbf file into an OSMGraph on a pool of threads.
+ * 
+ * The file is read twice. The first pass decodes only the groups of ways and keeps the
+ * highways, the second one decodes only the blocks with nodes and keeps the nodes the
+ * highways reference. The blobs are read on the calling thread and decompressed and
+ * decoded on the pool; the keys and values are compared once per string of a block
+ * instead of building a map of tags for every node and way. The results are merged in
+ * the order of the file through a PBFParser, so the graph and the messages are the same
+ * as with the PBFParser alone, provided the file stores all nodes before the ways, as
+ * the usual tools write it.
+ */
+public class PBFReader
+{
+	/** Number of blocks per thread that may be decoded at the same time. */
+	private static final int BLOCKS_PER_THREAD = 2;
+	/** Maximum sizes of a blob header and a blob, as in the PBF specification. */
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	
+	private final OSMGraph g;
+	private final BoundingBox bb;
+	private final PBFParser parser;
+	private final int threads;
+	private ExecutorService pool = null;
+	
+	/** way blocks of the first pass, in the order of the file */
+	private final List<WayBlock> wayBlocks = new ArrayList<WayBlock>();
+	/** ids of the nodes referenced by highways, used as a set */
+	private final LongIntHashMap referenced = new LongIntHashMap();
+	/** numbers of the blocks with nodes */
+	private final BitSet nodeBlocks = new BitSet();
+	private int firstWayBlock = -1;
+	private boolean unsorted = false;
+	
+	/** @param threads number of threads decoding blocks, values < 2 decode on the calling thread */
+	public PBFReader(OSMGraph g, BoundingBox bb, int threads)
+	{
+		this.g = g;
+		this.bb = bb;
+		this.parser = new PBFParser(g, bb);
+		this.threads = threads;
+	}
+	
+	public void read(String file) throws IOException
+	{
+		if (threads >= 2) {
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "PBFReader");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		
+		try {
+			readBlocks(file, true);
+			readBlocks(file, false);
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+				pool = null;
+			}
+		}
+		
+		if (unsorted) {
+			System.out.println("Warning: the PBF file has nodes after ways, they are used for the ways before them as well");
+		}
+		for (WayBlock b : wayBlocks) {
+			b.addWays();
+		}
+		wayBlocks.clear();
+		
+		parser.complete();
+	}
+	
+	/** @param ways true for the pass over the ways, false for the pass over the nodes */
+	private void readBlocks(String file, boolean ways) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		LinkedList<Future<Block>> pending = new LinkedList<Future<Block>>();
+		try {
+			int block = 0;
+			int headerSize;
+			while ((headerSize = readHeaderSize(in)) >= 0) {
+				if (headerSize > MAX_HEADER_SIZE) {
+					throw new IOException("PBF blob header too large: " + headerSize + " bytes");
+				}
+				byte[] header = new byte[headerSize];
+				in.readFully(header);
+				BlobHeader h = BlobHeader.parseFrom(header);
+				if (h.getDatasize() > MAX_BLOB_SIZE) {
+					throw new IOException("PBF blob too large: " + h.getDatasize() + " bytes");
+				}
+				
+				int b = block++;
+				if (!h.getType().equals("OSMData") || (!ways && !nodeBlocks.get(b))) {
+					skipFully(in, h.getDatasize());
+					continue;
+				}
+				byte[] blob = new byte[h.getDatasize()];
+				in.readFully(blob);
+				
+				Callable<Block> task = ways ? new WayTask(b, blob) : new NodeTask(b, blob);
+				if (pool == null) {
+					merge(call(task));
+				} else {
+					pending.add(pool.submit(task));
+					if (pending.size() >= threads * BLOCKS_PER_THREAD) {
+						merge(get(pending.removeFirst()));
+					}
+				}
+			}
+			while (!pending.isEmpty()) {
+				merge(get(pending.removeFirst()));
+			}
+		} finally {
+			for (Future<Block> f : pending) {
+				f.cancel(false);
+			}
+			in.close();
+		}
+	}
+	
+	/** @return size of the next blob header, -1 at the end of the file */
+	private static int readHeaderSize(DataInputStream in) throws IOException
+	{
+		int b = in.read();
+		if (b < 0) {
+			return -1;
+		}
+		byte[] rest = new byte[3];
+		in.readFully(rest);
+		return (b << 24) | ((rest[0] & 0xff) << 16) | ((rest[1] & 0xff) << 8) | (rest[2] & 0xff);
+	}
+	
+	private static void skipFully(DataInputStream in, int n) throws IOException
+	{
+		while (n > 0) {
+			int skipped = in.skipBytes(n);
+			if (skipped <= 0) {
+				throw new EOFException("PBF file ends within a blob");
+			}
+			n -= skipped;
+		}
+	}
+	
+	private static Block call(Callable<Block> task) throws IOException
+	{
+		try {
+			return task.call();
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static Block get(Future<Block> f) throws IOException
+	{
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException("reading the PBF file interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+	
+	private void merge(Block b)
+	{
+		if (b instanceof WayBlock) {
+			WayBlock w = (WayBlock)b;
+			if (w.hasNodes) {
+				nodeBlocks.set(w.block);
+			}
+			if (w.count > 0) {
+				if (firstWayBlock < 0) {
+					firstWayBlock = w.block;
+				}
+				for (int k = 0; k < w.refStart[w.count]; k++) {
+					referenced.put(w.refs[k], 0);
+				}
+				wayBlocks.add(w);
+			}
+		} else {
+			NodeBlock n = (NodeBlock)b;
+			if (firstWayBlock >= 0 && n.block > firstWayBlock) {
+				unsorted = true;
+			}
+			n.addNodes();
+		}
+	}
+	
+	/** @return the decompressed content of a blob */
+	private static byte[] inflate(byte[] data) throws IOException
+	{
+		Blob blob = Blob.parseFrom(data);
+		if (blob.hasRaw()) {
+			return blob.getRaw().toByteArray();
+		}
+		if (!blob.hasZlibData()) {
+			throw new IOException("PBF blob with unsupported compression");
+		}
+		
+		byte[] raw = new byte[blob.getRawSize()];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(blob.getZlibData().toByteArray());
+			int n = 0;
+			while (n < raw.length && !inflater.finished()) {
+				int k = inflater.inflate(raw, n, raw.length - n);
+				if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += k;
+			}
+			if (n != raw.length) {
+				throw new IOException("PBF blob shorter than its raw size");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("PBF blob with corrupt zlib data: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return raw;
+	}
+	
+	/**
+	 * String table of a block. The strings are decoded when they are used first and are
+	 * compared with the tags the parser looks for only once.
+	 */
+	private static class Strings
+	{
+		private static final int KNOWN = 1;
+		private static final int ACCESS_KEY = 2;
+		private static final int ROAD_KEY = 4;
+		private static final int BARRIER_KEY = 8;
+		private static final int FOOT_KEY = 16;
+		private static final int ALLOWED_ACCESS = 32;
+		private static final int ALLOWED_HIGHWAY = 64;
+		
+		private final StringTable table;
+		private final String[] strings;
+		private final int[] flags;
+		
+		private Strings(StringTable table)
+		{
+			this.table = table;
+			this.strings = new String[table.getSCount()];
+			this.flags = new int[strings.length];
+		}
+		
+		private String get(int id)
+		{
+			if (strings[id] == null) {
+				strings[id] = table.getS(id).toStringUtf8();
+			}
+			return strings[id];
+		}
+		
+		private boolean is(int id, int flag)
+		{
+			if (flags[id] == 0) {
+				String s = get(id);
+				int f = KNOWN;
+				if (PBFParser.isAccessKey(s)) {
+					f |= ACCESS_KEY;
+				}
+				if (PBFParser.isRoadKey(s)) {
+					f |= ROAD_KEY;
+				}
+				if (s.equals("barrier")) {
+					f |= BARRIER_KEY;
+				}
+				if (s.equals("foot")) {
+					f |= FOOT_KEY;
+				}
+				if (PBFParser.isAllowedAccess(s)) {
+					f |= ALLOWED_ACCESS;
+				}
+				if (PBFParser.isAllowedHighway(s)) {
+					f |= ALLOWED_HIGHWAY;
+				}
+				flags[id] = f;
+			}
+			return (flags[id] & flag) != 0;
+		}
+	}
+	
+	private abstract static class Block
+	{
+		/** number of the block in the file */
+		protected final int block;
+		
+		protected Block(int block)
+		{
+			this.block = block;
+		}
+	}
+	
+	/** Highways of a block and the messages about the skipped ways, in the order of the block. */
+	private class WayBlock extends Block
+	{
+		private boolean hasNodes = false;
+		private int count = 0;
+		private long[] ids = new long[16];
+		/** message of way k, null if it is a highway */
+		private String[] messages = new String[16];
+		/** node ids of highway k are refs[refStart[k]] ... refs[refStart[k+1]-1] */
+		private int[] refStart = new int[17];
+		private long[] refs = new long[256];
+		
+		private WayBlock(int block)
+		{
+			super(block);
+		}
+		
+		private void addMessage(long id, String message)
+		{
+			add(id, message);
+			refStart[count] = refStart[count - 1];
+		}
+		
+		private void addHighway(Way w)
+		{
+			add(w.getId(), null);
+			int start = refStart[count - 1];
+			int n = w.getRefsCount();
+			if (start + n > refs.length) {
+				refs = Arrays.copyOf(refs, Math.max(2 * refs.length, start + n));
+			}
+			long ref = 0;
+			for (int r = 0; r < n; r++) {
+				ref += w.getRefs(r);
+				refs[start + r] = ref;
+			}
+			refStart[count] = start + n;
+		}
+		
+		private void add(long id, String message)
+		{
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * count);
+				messages = Arrays.copyOf(messages, 2 * count);
+				refStart = Arrays.copyOf(refStart, 2 * count + 1);
+			}
+			ids[count] = id;
+			messages[count] = message;
+			count++;
+		}
+		
+		private void addWays()
+		{
+			for (int k = 0; k < count; k++) {
+				if (messages[k] != null) {
+					System.out.println(messages[k]);
+				} else {
+					parser.addWay(ids[k], refs, refStart[k], refStart[k + 1]);
+				}
+			}
+		}
+	}
+	
+	/** Decodes the ways of a block, see PBFParser.parseWays(). */
+	private class WayTask implements Callable<Block>
+	{
+		private final int block;
+		private final byte[] blob;
+		
+		private WayTask(int block, byte[] blob)
+		{
+			this.block = block;
+			this.blob = blob;
+		}
+		
+		public Block call() throws IOException
+		{
+			WayBlock result = new WayBlock(block);
+			
+			// only the groups with ways are decoded, a block of nodes is just scanned
+			CodedInputStream in = CodedInputStream.newInstance(inflate(blob));
+			ByteString table = ByteString.EMPTY;
+			List<ByteString> wayGroups = new ArrayList<ByteString>();
+			int tag;
+			while ((tag = in.readTag()) != 0) {
+				int field = WireFormat.getTagFieldNumber(tag);
+				if (field == PrimitiveBlock.STRINGTABLE_FIELD_NUMBER) {
+					table = in.readBytes();
+				} else if (field == PrimitiveBlock.PRIMITIVEGROUP_FIELD_NUMBER) {
+					ByteString group = in.readBytes();
+					int fields = fields(group);
+					if ((fields & (1 << PrimitiveGroup.WAYS_FIELD_NUMBER)) != 0) {
+						wayGroups.add(group);
+					}
+					if ((fields & (1 << PrimitiveGroup.NODES_FIELD_NUMBER | 1 << PrimitiveGroup.DENSE_FIELD_NUMBER)) != 0) {
+						result.hasNodes = true;
+					}
+				} else {
+					in.skipField(tag);
+				}
+			}
+			if (wayGroups.isEmpty()) {
+				return result;
+			}
+			
+			Strings strings = new Strings(StringTable.parseFrom(table));
+			for (ByteString group : wayGroups) {
+				for (Way w : PrimitiveGroup.parseFrom(group).getWaysList()) {
+					parseWay(w, strings, result);
+				}
+			}
+			return result;
+		}
+		
+		private void parseWay(Way w, Strings strings, WayBlock result)
+		{
+			if (w.getRefsCount() < 2) { // only consider ways with at least two nodes
+				return;
+			}
+			
+			for (int i = 0; i < w.getKeysCount(); i++) {
+				if (strings.is(w.getKeys(i), Strings.ACCESS_KEY) && !strings.is(w.getVals(i), Strings.ALLOWED_ACCESS)) {
+					result.addMessage(w.getId(), "DEBUG: skipped inaccessible way (id " + w.getId() + ", value " + strings.get(w.getVals(i)) + ")!");
+					return;
+				}
+			}
+			
+			for (int i = 0; i < w.getKeysCount(); i++) {
+				if (strings.is(w.getKeys(i), Strings.ROAD_KEY)) {
+					if (!strings.is(w.getVals(i), Strings.ALLOWED_HIGHWAY)) {
+						result.addMessage(w.getId(), "DEBUG: skipped highway (id " + w.getId() + ", value " + strings.get(w.getVals(i)) + ")!");
+					} else {
+						result.addHighway(w);
+					}
+					return;
+				}
+			}
+		}
+	}
+	
+	/** @return bit (1 << n) set for every field number n < 32 the message contains */
+	private static int fields(ByteString message) throws IOException
+	{
+		CodedInputStream in = message.newCodedInput();
+		int fields = 0;
+		int tag;
+		while ((tag = in.readTag()) != 0) {
+			int n = WireFormat.getTagFieldNumber(tag);
+			if (n < 32) {
+				fields |= 1 << n;
+			}
+			in.skipField(tag);
+		}
+		return fields;
+	}
+	
+	/** Referenced nodes and forbidden barriers of a block, in the order of the block. */
+	private class NodeBlock extends Block
+	{
+		private int count = 0;
+		private long[] ids = new long[256];
+		private double[] lon = new double[256];
+		private double[] lat = new double[256];
+		private final List<Long> barrierIds = new ArrayList<Long>();
+		private final List<String> barrierValues = new ArrayList<String>();
+		
+		private NodeBlock(int block)
+		{
+			super(block);
+		}
+		
+		private void add(long id, double lonDeg, double latDeg)
+		{
+			if (bb != null && !bb.contains(new PositionGeo(lonDeg, latDeg))) {
+				return;
+			}
+			if (!referenced.containsKey(id)) {
+				return;
+			}
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * count);
+				lon = Arrays.copyOf(lon, 2 * count);
+				lat = Arrays.copyOf(lat, 2 * count);
+			}
+			ids[count] = id;
+			lon[count] = lonDeg;
+			lat[count] = latDeg;
+			count++;
+		}
+		
+		private void addNodes()
+		{
+			for (int k = 0; k < barrierIds.size(); k++) {
+				parser.skipBarrierNode(barrierIds.get(k).longValue(), barrierValues.get(k));
+			}
+			for (int k = 0; k < count; k++) {
+				parser.addNode(ids[k], lon[k], lat[k]);
+			}
+		}
+	}
+	
+	/** Decodes the nodes of a block, see PBFParser.parseDense() and parseNodes(). */
+	private class NodeTask implements Callable<Block>
+	{
+		private final int block;
+		private final byte[] blob;
+		private Strings strings;
+		private long granularity;
+		private long latOffset;
+		private long lonOffset;
+		
+		private NodeTask(int block, byte[] blob)
+		{
+			this.block = block;
+			this.blob = blob;
+		}
+		
+		public Block call() throws IOException
+		{
+			NodeBlock result = new NodeBlock(block);
+			PrimitiveBlock pb = PrimitiveBlock.parseFrom(inflate(blob));
+			strings = new Strings(pb.getStringtable());
+			granularity = pb.getGranularity();
+			latOffset = pb.getLatOffset();
+			lonOffset = pb.getLonOffset();
+			
+			for (PrimitiveGroup group : pb.getPrimitivegroupList()) {
+				for (Node n : group.getNodesList()) {
+					String barrier = null;
+					String foot = null;
+					for (int i = 0; i < n.getKeysCount(); i++) {
+						if (strings.is(n.getKeys(i), Strings.BARRIER_KEY)) {
+							barrier = strings.get(n.getVals(i));
+						} else if (strings.is(n.getKeys(i), Strings.FOOT_KEY)) {
+							foot = strings.get(n.getVals(i));
+						}
+					}
+					addNode(result, n.getId(), n.getLat(), n.getLon(), barrier, foot);
+				}
+				if (group.hasDense()) {
+					parseDense(group.getDense(), result);
+				}
+			}
+			return result;
+		}
+		
+		private void parseDense(DenseNodes nodes, NodeBlock result)
+		{
+			long lastId = 0;
+			long lastLat = 0;
+			long lastLon = 0;
+			int keyIndex = 0;
+			
+			for (int i = 0; i < nodes.getIdCount(); i++) {
+				lastId += nodes.getId(i);
+				lastLat += nodes.getLat(i);
+				lastLon += nodes.getLon(i);
+				
+				String barrier = null;
+				String foot = null;
+				while (keyIndex < nodes.getKeysValsCount()) {
+					int key = nodes.getKeysVals(keyIndex++);
+					if (key == 0) { // end of current node's tags
+						break;
+					} else if (keyIndex < nodes.getKeysValsCount()) {
+						int value = nodes.getKeysVals(keyIndex++);
+						if (strings.is(key, Strings.BARRIER_KEY)) {
+							barrier = strings.get(value);
+						} else if (strings.is(key, Strings.FOOT_KEY)) {
+							foot = strings.get(value);
+						}
+					} else {
+						System.err.println("Invalid DenseNodes key/values table!");
+					}
+				}
+				
+				addNode(result, lastId, lastLat, lastLon, barrier, foot);
+			}
+		}
+		
+		private void addNode(NodeBlock result, long id, long lat, long lon, String barrier, String foot)
+		{
+			if (barrier != null && PBFParser.isForbiddenBarrier(barrier, foot)) {
+				result.barrierIds.add(Long.valueOf(id));
+				result.barrierValues.add(barrier);
+				return;
+			}
+			// as BinaryParser.parseLon() and parseLat()
+			result.add(id, (granularity * lon + lonOffset) * .000000001, (granularity * lat + latOffset) * .000000001);
+		}
+	}
+}
@@ -24,7 +24,7 @@
 
 from Config import Config
 from DataAccess import DataAccess
-from Common import Hashes, runBonnmotionApp
+from Common import Hashes, runBonnmotionApp, removeBinaryMovementsFile
 
 import threading, os, getpass, datetime
 
@@ -57,6 +57,7 @@ class AppDeterminationDispatcher(object):
                 try:
                     os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputmovementsfile').replace('INDEX', str(i))))
                     os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i))))
+                    removeBinaryMovementsFile(Config().readConfigEntry('bonnmotionvalidatepath'), i)
                     
                     for case in t.Cases:
                         for x in case['extensions']: 
@@ -21,7 +21,7 @@
 ################################################################################
 
 from Config import Config
-from Common import log, runBonnmotionApp, Hashes
+from Common import log, runBonnmotionApp, Hashes, removeBinaryMovementsFile
 
 import threading, os
 
@@ -65,6 +65,7 @@ class AppValidationDispatcher(object):
             for i in t.Seq:
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputmovementsfile').replace('INDEX', str(i.no))))
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i.no))))
+                removeBinaryMovementsFile(Config().readConfigEntry('bonnmotionvalidatepath'), i.no)
                 
                 for x in i.ordering.split(','): 
                     if x != 'NULL':
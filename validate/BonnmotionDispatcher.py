@@ -21,7 +21,7 @@
 ################################################################################
 
 from Config import Config
-from Common import readModelnameFromParamsFile, runBonnmotionModel
+from Common import readModelnameFromParamsFile, runBonnmotionModel, removeBinaryMovementsFile
 
 import threading, os
         
@@ -51,6 +51,7 @@ class BonnmotionDispatcher(object):
             for i in t.Seq:
                 os.remove(os.path.join(t.path, Config().readConfigEntry('tempoutputmovementsfile').replace('INDEX', str(i))))
                 os.remove(os.path.join(t.path, Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i))))
+                removeBinaryMovementsFile(t.path, i)
                         
     class BonnmotionJobThread(threading.Thread):
         def __init__(self, seq, path):
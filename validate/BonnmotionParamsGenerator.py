@@ -125,32 +125,25 @@ class BonnmotionParamsGenerator(object):
     #output: 
     #        n: number of outputfiles created
     def _createParamFilesforBM(self, testcases):
+        # tool to create the cross product of all possible values
+        import itertools
         n = 0
         
         for testcase in testcases:
             (constantparams, variableparams) = testcase
             
-            for x in variableparams: 
-                constantparams[x] = str(variableparams[x][0])
-            
-            if (len(variableparams) == 0):                      # if there are no variable params there is only one constant
-                self._writeParametersToFile(constantparams, os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', '0')))
-                self.noOfFilesCreated = 1  
-                return        
-            
-        # tool to create the cross product of all possible values
-        import itertools
-        keys =  variableparams.keys()
-        values =  variableparams.values()
-        # go through every combination and add it to the constant parameters and create a param file
-        for element in itertools.product(*values):
-            output = constantparams.copy()
-            cnt = 0;
-            for key in keys:
-                output[key] = str(element[cnt])
-                cnt = cnt + 1
-            self._writeParametersToFile(output, os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(n))))     
-            n += 1
+            keys =  variableparams.keys()
+            values =  variableparams.values()
+            # go through every combination and add it to the constant parameters and create a param file
+            # (if there are no variable params, there is a single empty combination)
+            for element in itertools.product(*values):
+                output = constantparams.copy()
+                cnt = 0;
+                for key in keys:
+                    output[key] = str(element[cnt])
+                    cnt = cnt + 1
+                self._writeParametersToFile(output, os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(n))))     
+                n += 1
         self.noOfFilesCreated = n
     
     ##
@@ -68,6 +68,11 @@ class Hashes(object):
     def sha1(self, text): 
         return hashlib.sha1(text).hexdigest()        
                 
+## keys of a params file that are passed to bonnmotion on the command line instead of being read by the model
+#    bmparams: options in front of the model name (e.g. "-s -b")
+#    modelparams: options after the model name (e.g. "-j 4")
+COMMANDLINEKEYS = ('bmparams', 'modelparams')
+
 ##
 #input: 
 #        filename: string with filename
@@ -79,11 +84,55 @@ def readModelnameFromParamsFile(filename):
             x, y = (s.strip() for s in line.split("="))
             if x == "model": return y
             
+##
+#removes the command line keys from the params file
+#input: 
+#        filename: string with filename
+#output: dictionary of the removed keys
+def removeCommandlineParams(filename):
+    result = {}
+    lines = []
+    f = open(filename)
+    for line in f:
+        if "=" in line:
+            x, y = (s.strip() for s in line.split("=", 1))
+            if x in COMMANDLINEKEYS:
+                result[x] = y
+                continue
+        lines.append(line)
+    f.close()
+    
+    f = open(filename, 'w')
+    f.writelines(lines)
+    f.close()
+    return result
+
+##
+#appends the command line keys to the params file, so that they are saved with the scenario
+#input: 
+#        filename: string with filename
+#        params: dictionary of command line keys
+def appendCommandlineParams(filename, params):
+    f = open(filename, 'a')
+    for x in params:
+        f.write(x + '=' + params[x] + '\n')
+    f.close()
+
+def removeBinaryMovementsFile(path, i):
+    binaryfilename = os.path.join(path, Config().readConfigEntry('tempoutputbinaryfile').replace('INDEX', str(i)))
+    if os.path.isfile(binaryfilename):
+        os.remove(binaryfilename)
+
 def runBonnmotionModel(path, i, modelname): 
     outputfilename = os.path.join(path, Config().readConfigEntry('tempoutputname') + str(i))
     inputfilename = os.path.join(path, Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i)))
     bmbinarypath = os.path.join(Config().readConfigEntry('bonnmotionpath'), 'bin/bm')  
-    cmd = [bmbinarypath, '-f', outputfilename, '-I', inputfilename, modelname]
+    commandline = removeCommandlineParams(inputfilename)
+    removeBinaryMovementsFile(path, i)            #the apps would read a binary file left over from an earlier -b run
+    cmd = [bmbinarypath, '-f', outputfilename, '-I', inputfilename]
+    if commandline.has_key('bmparams'): cmd.extend(commandline['bmparams'].split())
+    cmd.append(modelname)
+    if commandline.has_key('modelparams'): cmd.extend(commandline['modelparams'].split())
     if Config().readConfigEntry('bonnmotionstdout') is OutputPolicy.NONE:
         if Config().readConfigEntry('bonnmotionstderr') is OutputPolicy.ONLYCONSOLE:
             process = Popen(cmd, stdout=PIPE)
@@ -103,6 +152,8 @@ def runBonnmotionModel(path, i, modelname):
     
     #run BM                   
     process.communicate()
+    #BM has rewritten the params file
+    appendCommandlineParams(inputfilename, commandline)
 
     if process.returncode != 0:
         raise Exception("bonnmotion did not run successfully with params file: " + inputfilename)
@@ -22,7 +22,7 @@
 
 from Config import Config
 from DataAccess import DataAccess
-from Common import readModelnameFromParamsFile, runBonnmotionModel, Hashes, log
+from Common import readModelnameFromParamsFile, runBonnmotionModel, removeBinaryMovementsFile, Hashes, log
   
 import threading, os, gzip, getpass, datetime, sys
                     
@@ -52,6 +52,7 @@ class ModelDeterminationDispatcher(object):
             for i in t.Seq:
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputmovementsfile').replace('INDEX', str(i))))
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i))))
+                removeBinaryMovementsFile(Config().readConfigEntry('bonnmotionvalidatepath'), i)
                         
     class ModelDeterminationThread(threading.Thread):
         def __init__(self, seq):
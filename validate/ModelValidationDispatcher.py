@@ -21,7 +21,7 @@
 ################################################################################
 
 from Config import Config
-from Common import readModelnameFromParamsFile, runBonnmotionModel, Hashes, log
+from Common import readModelnameFromParamsFile, runBonnmotionModel, removeBinaryMovementsFile, Hashes, log
 
 import threading, os, gzip
  
@@ -71,6 +71,7 @@ class ModelValidationDispatcher(object):
             for i in t.Seq:
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputmovementsfile').replace('INDEX', str(i))))
                 os.remove(os.path.join(Config().readConfigEntry('bonnmotionvalidatepath'), Config().readConfigEntry('tempoutputparamsfile').replace('INDEX', str(i))))
+                removeBinaryMovementsFile(Config().readConfigEntry('bonnmotionvalidatepath'), i)
                         
     class ModelValidationThread(threading.Thread):
         def __init__(self, seq, md5, sha1):
@@ -129,6 +129,10 @@ def printHelp():
     validate BonnMotion with hash values saved in database
         [appname] : (optional) name of the app to validate
                     if no app provided all saved apps will be validated
+
+    modeltest files may set the keys bmparams (options in front of the model name, e.g. -b)
+    and modelparams (options after the model name, e.g. -j 4); both are passed to bonnmotion
+    on the command line and saved with the scenario parameters
 """
    
 def listOfModelTestFiles(isDirOrFile):   